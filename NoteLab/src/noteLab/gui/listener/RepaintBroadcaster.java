@@ -24,9 +24,14 @@
 
 package noteLab.gui.listener;
 
+import java.awt.geom.Rectangle2D;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
 
+import noteLab.model.Stroke;
+import noteLab.util.geom.DamageRegion;
+
 public class RepaintBroadcaster implements RepaintBroadcastCenter, 
                                            Iterable<RepaintListener>
 {
@@ -78,6 +83,21 @@ public class RepaintBroadcaster implements RepaintBroadcastCenter,
          listener.redraw(x, y, width, height);
    }
    
+   /**
+    * Requests that each rectangle of the given damaged region be 
+    * redrawn.
+    * 
+    * @param region The damaged region.
+    */
+   public void doRedraw(DamageRegion region)
+   {
+      if (region == null)
+         throw new NullPointerException();
+      
+      for (Rectangle2D.Float rect : region)
+         doRedraw(rect.x, rect.y, rect.width, rect.height, 0);
+   }
+   
    public void doRedrawOverlay(float x, float y, float width, float height, 
                                float delta)
    {
@@ -90,4 +110,35 @@ public class RepaintBroadcaster implements RepaintBroadcastCenter,
       for (RepaintListener listener : this.listeners)
          listener.redrawOverlay(x, y, width, height);
    }
+   
+   public void doAppendLiveInk(Stroke stroke, int startIndex, 
+                               float x, float y)
+   {
+      for (RepaintListener listener : this.listeners)
+         listener.appendLiveInk(stroke, startIndex, x, y);
+   }
+   
+   public void doInvalidateLiveInk()
+   {
+      for (RepaintListener listener : this.listeners)
+         listener.invalidateLiveInk();
+   }
+   
+   public void doBeginSprite(List<Stroke> strokes, float x, float y)
+   {
+      for (RepaintListener listener : this.listeners)
+         listener.beginSprite(strokes, x, y);
+   }
+   
+   public void doMoveSprite(float xOffset, float yOffset)
+   {
+      for (RepaintListener listener : this.listeners)
+         listener.moveSprite(xOffset, yOffset);
+   }
+   
+   public void doEndSprite()
+   {
+      for (RepaintListener listener : this.listeners)
+         listener.endSprite();
+   }
 }
@@ -25,6 +25,9 @@
 package noteLab.gui.listener;
 
 import java.awt.Cursor;
+import java.util.List;
+
+import noteLab.model.Stroke;
 
 public interface RepaintListener
 {
@@ -34,4 +37,52 @@ public interface RepaintListener
    public void redraw();
    public void show(float x, float y, float width, float height);
    public void setCursor(Cursor cursor);
+   
+   /**
+    * Draws the segments of the given stroke that end at or after the 
+    * point with the given index onto the live ink overlay.  Only the new 
+    * segments are drawn, so the cost does not depend on the length of 
+    * the stroke.
+    * 
+    * @param stroke The stroke being drawn.
+    * @param startIndex The index of the first new point of the stroke's 
+    *                   path.
+    * @param x The x coordinate of the page containing the stroke.
+    * @param y The y coordinate of the page containing the stroke.
+    */
+   public void appendLiveInk(Stroke stroke, int startIndex, float x, float y);
+   
+   /**
+    * Informs the listener that the live ink overlay no longer matches 
+    * the strokes being drawn (for example, because a stroke has been 
+    * committed) and must be rebuilt before it is used again.
+    */
+   public void invalidateLiveInk();
+   
+   /**
+    * Begins showing the given strokes as a sprite that can be moved 
+    * without the strokes themselves being moved.  The strokes are 
+    * rendered once into the sprite and aren't rendered where they 
+    * currently are until {@link #endSprite()} is invoked.
+    * 
+    * @param strokes The strokes to show as a sprite.
+    * @param x The x coordinate of the page containing the strokes.
+    * @param y The y coordinate of the page containing the strokes.
+    */
+   public void beginSprite(List<Stroke> strokes, float x, float y);
+   
+   /**
+    * Shows the sprite offset from where its strokes are by the given 
+    * amount.
+    * 
+    * @param xOffset The horizontal offset of the sprite.
+    * @param yOffset The vertical offset of the sprite.
+    */
+   public void moveSprite(float xOffset, float yOffset);
+   
+   /**
+    * Stops showing the sprite and renders its strokes where they are 
+    * again.
+    */
+   public void endSprite();
 }
@@ -51,6 +51,7 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JWindow;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
 import noteLab.gui.DefinedIcon;
@@ -69,9 +70,11 @@ import noteLab.gui.menu.PathMenuItem;
 import noteLab.gui.toolbar.BinderToolBar;
 import noteLab.gui.toolbar.CanvasControlToolBar;
 import noteLab.gui.toolbar.UndoRedoToolBar;
+import noteLab.gui.toolbar.file.CanvasFileProcessor;
 import noteLab.gui.toolbar.file.FileToolBar;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.InfoCenter;
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.mod.ModListener;
 import noteLab.util.mod.ModType;
 import noteLab.util.progress.ProgressEvent;
@@ -362,6 +365,7 @@ public class MainFrame extends JFrame implements Menued,
       
       private void processWindowClosing()
       {
+         boolean discardEdits = false;
          if (canvas.hasBeenModified())
          {
             int result = 
@@ -375,6 +379,8 @@ public class MainFrame extends JFrame implements Menued,
             if (result == JOptionPane.CANCEL_OPTION)
                return;
             
+            discardEdits = (result == JOptionPane.NO_OPTION);
+            
             if (result == JOptionPane.YES_OPTION)
             {
                // The argument 'false' is used so that the "save as" option is 
@@ -388,6 +394,19 @@ public class MainFrame extends JFrame implements Menued,
             }
          }
          
+         // The binder is closed first so that the compacted copy of the 
+         // session it may be reading from can be deleted.
+         CanvasFileProcessor.closeBinder(canvas.getBinder());
+         
+         // The journal is only kept if it contains edits that the user 
+         // wanted to keep but that couldn't be saved.
+         EditJournal journal = canvas.getEditJournal();
+         if (journal != null)
+         {
+            journal.close(discardEdits || !canvas.hasBeenModified());
+            canvas.setEditJournal(null);
+         }
+         
          dispose();
          NUM_OPEN--;
          if (NUM_OPEN == 0)
@@ -412,6 +431,18 @@ public class MainFrame extends JFrame implements Menued,
          curTitle += MODIFIED_TEXT;
       
       setTitle(curTitle);
+      
+      // Once the session's journal has grown large enough, it is folded 
+      // into a compacted copy of the session in the background.  The 
+      // session's file is left as the user last saved it.
+      EditJournal journal = this.canvas.getEditJournal();
+      if (journal != null && 
+          SwingUtilities.isEventDispatchThread() && 
+          !this.canvas.isProcessingPath() && 
+          journal.needsCompaction())
+      {
+         CanvasFileProcessor.compactJournal(this);
+      }
    }
    
    public void progressOccured(ProgressEvent event)
@@ -32,6 +32,7 @@ import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
@@ -42,6 +43,7 @@ import javax.swing.event.MouseInputListener;
 
 import noteLab.gui.listener.RepaintListener;
 import noteLab.model.Page;
+import noteLab.model.Stroke;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.settings.DebugSettings;
 
@@ -194,6 +196,37 @@ public class MainPanel
                               getAdjustedValue(height) );
    }
    
+   public void appendLiveInk(Stroke stroke, int startIndex, float x, float y)
+   {
+      if (DebugSettings.getSharedInstance().forceGlobalRepaints())
+      {
+         redraw();
+         return;
+      }
+      
+      this.paintPanel.appendLiveInk(stroke, startIndex, x, y);
+   }
+   
+   public void invalidateLiveInk()
+   {
+      this.paintPanel.invalidateLiveInk();
+   }
+   
+   public void beginSprite(List<Stroke> strokes, float x, float y)
+   {
+      this.paintPanel.beginSprite(strokes, x, y);
+   }
+   
+   public void moveSprite(float xOffset, float yOffset)
+   {
+      this.paintPanel.moveSprite(xOffset, yOffset);
+   }
+   
+   public void endSprite()
+   {
+      this.paintPanel.endSprite();
+   }
+   
    private int getAdjustedValue(float value)
    {
       int iValue = 1+(int)value;
@@ -24,6 +24,7 @@
 
 package noteLab.gui.main;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
@@ -33,19 +34,26 @@ import java.awt.Shape;
 import java.awt.Toolkit;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Vector;
 
 import javax.swing.JComponent;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import noteLab.model.Page;
+import noteLab.model.Path;
+import noteLab.model.Stroke;
 import noteLab.model.binder.Binder;
 import noteLab.model.binder.BinderListener;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.model.canvas.StrokeCanvas;
+import noteLab.model.geom.FloatPoint2D;
 import noteLab.util.mod.ModListener;
 import noteLab.util.mod.ModType;
+import noteLab.util.render.EmptyRenderer2D;
 import noteLab.util.render.LoggedSwingRenderer2D;
 import noteLab.util.render.QueuedRenderer2D;
 import noteLab.util.render.SwingRenderer2D;
@@ -56,6 +64,7 @@ import noteLab.util.settings.SettingsChangedListener;
 import noteLab.util.settings.SettingsKeys;
 import noteLab.util.settings.SettingsManager;
 import noteLab.util.settings.SettingsUtilities;
+import noteLab.util.trace.InkLatencyTracer;
 
 public class SwingDrawingBoard 
                 extends JComponent 
@@ -83,6 +92,44 @@ public class SwingDrawingBoard
    
    private boolean isImageValid;
    
+   /**
+    * A transparent image, in the same coordinate space as the 
+    * drawing board, that holds the strokes currently being drawn.  
+    * As points are added to a stroke, only the new segments are drawn 
+    * onto this image, and the affected region of the screen is 
+    * composed from the drawing board and this image.  This way, the 
+    * cost of drawing a point does not depend on the length of the 
+    * stroke.  The image is created the first time it is needed.
+    */
+   private BufferedImage liveInkImage;
+   private SwingRenderer2D liveInkRenderer;
+   private volatile boolean isLiveInkValid;
+   private int liveInkOriginX;
+   private int liveInkOriginY;
+   
+   /**
+    * The strokes being shown as a sprite or <code>null</code> if there 
+    * isn't a sprite.  While a selection is dragged, its strokes are 
+    * rendered once into the sprite image and the image is drawn at the 
+    * offset the strokes are being dragged to.  The strokes themselves 
+    * aren't rendered until the sprite ends.
+    */
+   private Vector<Stroke> spriteStrokeVec;
+   
+   /** 
+    * The image of the sprite's strokes or <code>null</code> if the 
+    * strokes are too large and are rendered at the offset instead.
+    */
+   private BufferedImage spriteImage;
+   private SwingRenderer2D spriteRenderer;
+   
+   /** The region of the sprite, ignoring its offset. */
+   private Rectangle spriteBounds;
+   private float spritePageX;
+   private float spritePageY;
+   private int spriteXOffset;
+   private int spriteYOffset;
+   
    private boolean renderScrolling;
    
    public SwingDrawingBoard(CompositeCanvas canvas, MainPanel mainPanel)
@@ -103,6 +150,15 @@ public class SwingDrawingBoard
       
       this.isImageValid = false;
       
+      this.liveInkImage = null;
+      this.liveInkRenderer = new SwingRenderer2D();
+      this.isLiveInkValid = false;
+      
+      this.spriteStrokeVec = null;
+      this.spriteImage = null;
+      this.spriteRenderer = new SwingRenderer2D();
+      this.spriteBounds = null;
+      
       this.renderScrolling = SettingsUtilities.getRenderScrolling();
       SettingsManager.getSharedInstance().addSettingsListener(this);
       
@@ -184,6 +240,10 @@ public class SwingDrawingBoard
                 this.imageRenderer.hasBeenModified())
          {
             g2d.drawImage(this.drawingboard, null, 0, 0);
+            
+            g2d.translate(-viewRect.x, -viewRect.y);
+            paintSprite(g2d);
+            g2d.translate(viewRect.x, viewRect.y);
          }
          
          this.queuedRenderer.replay();
@@ -203,6 +263,7 @@ public class SwingDrawingBoard
             this.canvas.renderInto(this.screenRenderer, 
                                    this.screenRenderer, 
                                    false);
+            paintSprite(g2d);
          }
       }
       
@@ -248,6 +309,10 @@ public class SwingDrawingBoard
       g2d.finalize();
       
       this.isImageValid = false;
+      
+      // A repaint may be the result of strokes being drawn being 
+      // deleted or transformed.  Thus the live ink needs to be rebuilt.
+      this.isLiveInkValid = false;
    }
    
    @Override
@@ -291,15 +356,323 @@ public class SwingDrawingBoard
    
    public void redrawOverlay(int x, int y, int width, int height)
    {
+      long start = System.nanoTime();
+      
       Graphics g = getGraphics();
       g.setClip(x, y, width, height);
       
       paintComponent(g);
+      
+      InkLatencyTracer.getSharedInstance().overlayDrawn(start);
    }
    
    public void redrawOverlay()
    {
+      long start = System.nanoTime();
+      
       paintComponent(getGraphics());
+      
+      InkLatencyTracer.getSharedInstance().overlayDrawn(start);
+   }
+   
+   public void appendLiveInk(Stroke stroke, int startIndex, 
+                             float pageX, float pageY)
+   {
+      if (stroke == null)
+         throw new NullPointerException();
+      
+      long start = System.nanoTime();
+      
+      Path path = stroke.getPath();
+      int numPts = path.getNumItems();
+      if (numPts == 0)
+         return;
+      
+      Rectangle viewRect = this.mainPanel.getViewport().getViewRect();
+      if (!this.isLiveInkValid || 
+            viewRect.x != this.liveInkOriginX || 
+               viewRect.y != this.liveInkOriginY)
+      {
+         // The image needs to be rebuilt from the strokes being drawn 
+         // which include the given stroke.
+         rebuildLiveInk(viewRect);
+      }
+      else
+      {
+         Graphics2D g2d = this.liveInkImage.createGraphics();
+         g2d.translate(pageX-viewRect.x, pageY-viewRect.y);
+         
+         this.liveInkRenderer.setSwingGraphics(g2d, RenderMode.Appearance);
+         stroke.getPen().adjustRenderer(this.liveInkRenderer);
+         
+         if (numPts == 1)
+         {
+            FloatPoint2D pt = path.getFirst();
+            this.liveInkRenderer.drawLine(pt, pt);
+         }
+         else
+         {
+            FloatPoint2D prevPt = path.getItemAt(Math.max(startIndex-1, 0));
+            FloatPoint2D curPt;
+            for (int i=Math.max(startIndex, 1); i<numPts; i++)
+            {
+               curPt = path.getItemAt(i);
+               this.liveInkRenderer.drawLine(prevPt, curPt);
+               prevPt = curPt;
+            }
+         }
+         
+         this.liveInkRenderer.finish();
+      }
+      
+      // Determine the region of the screen containing the new segments
+      FloatPoint2D pt = path.getItemAt(Math.max(startIndex-1, 0));
+      float minX = pt.getX();
+      float minY = pt.getY();
+      float maxX = minX;
+      float maxY = minY;
+      for (int i=Math.max(startIndex, 1); i<numPts; i++)
+      {
+         pt = path.getItemAt(i);
+         minX = Math.min(minX, pt.getX());
+         minY = Math.min(minY, pt.getY());
+         maxX = Math.max(maxX, pt.getX());
+         maxY = Math.max(maxY, pt.getY());
+      }
+      
+      int delta = 2+(int)Math.ceil(stroke.getPen().getWidth()/2f);
+      int x = (int)Math.floor(minX+pageX)-delta;
+      int y = (int)Math.floor(minY+pageY)-delta;
+      int width = (int)Math.ceil(maxX-minX)+2*delta;
+      int height = (int)Math.ceil(maxY-minY)+2*delta;
+      
+      // If the drawing board isn't valid, the binder needs to be 
+      // rendered.  Thus the normal painting process is used.
+      if (!this.isImageValid)
+      {
+         redrawOverlay(x, y, width, height);
+         return;
+      }
+      
+      Graphics g = getGraphics();
+      if (g == null)
+         return;
+      
+      g.setClip(x, y, width, height);
+      g.drawImage(this.drawingboard, viewRect.x, viewRect.y, null);
+      g.drawImage(this.liveInkImage, viewRect.x, viewRect.y, null);
+      g.dispose();
+      
+      InkLatencyTracer.getSharedInstance().overlayDrawn(start);
+   }
+   
+   public void invalidateLiveInk()
+   {
+      this.isLiveInkValid = false;
+   }
+   
+   /**
+    * Clears the live ink image and renders every stroke that the current 
+    * <code>SubCanvas</code> is drawing into it.
+    * 
+    * @param viewRect The current view rectangle.
+    */
+   private void rebuildLiveInk(Rectangle viewRect)
+   {
+      if (this.liveInkImage == null)
+         this.liveInkImage = new BufferedImage(SCREEN_MAX_DIM, 
+                                               SCREEN_MAX_DIM, 
+                                               BufferedImage.TYPE_INT_ARGB);
+      
+      // The flag is set before rendering so that if a stroke is 
+      // committed while rendering, the image is rebuilt again.
+      this.isLiveInkValid = true;
+      this.liveInkOriginX = viewRect.x;
+      this.liveInkOriginY = viewRect.y;
+      
+      Graphics2D g2d = this.liveInkImage.createGraphics();
+      g2d.setComposite(AlphaComposite.Clear);
+      g2d.fillRect(0, 0, SCREEN_MAX_DIM, SCREEN_MAX_DIM);
+      g2d.setComposite(AlphaComposite.SrcOver);
+      g2d.translate(-viewRect.x, -viewRect.y);
+      
+      // Rendering with an EmptyRenderer2D as the main display renders 
+      // only the overlay and doesn't cause the StrokeCanvas to treat 
+      // any strokes as committed.
+      this.liveInkRenderer.setSwingGraphics(g2d, RenderMode.Appearance);
+      this.canvas.getCurrentCanvas().renderInto(this.liveInkRenderer, 
+                                                new EmptyRenderer2D());
+      this.liveInkRenderer.finish();
+   }
+   
+   public void beginSprite(List<Stroke> strokes, float x, float y)
+   {
+      if (strokes == null)
+         throw new NullPointerException();
+      
+      endSprite();
+      if (strokes.isEmpty())
+         return;
+      
+      float minX = Float.MAX_VALUE;
+      float minY = Float.MAX_VALUE;
+      float maxX = -Float.MAX_VALUE;
+      float maxY = -Float.MAX_VALUE;
+      float maxWidth = 0;
+      Rectangle2D.Float bounds;
+      for (Stroke stroke : strokes)
+      {
+         bounds = stroke.getBounds2D();
+         minX = Math.min(minX, bounds.x);
+         minY = Math.min(minY, bounds.y);
+         maxX = Math.max(maxX, bounds.x+bounds.width);
+         maxY = Math.max(maxY, bounds.y+bounds.height);
+         maxWidth = Math.max(maxWidth, 
+                             SwingRenderer2D.getStrokeWidth(
+                                stroke.getPen().getWidth(), 
+                                stroke.isSelected()));
+      }
+      
+      int delta = 2+(int)Math.ceil(maxWidth/2f);
+      int spriteX = (int)Math.floor(minX+x)-delta;
+      int spriteY = (int)Math.floor(minY+y)-delta;
+      this.spriteBounds = new Rectangle(spriteX, spriteY, 
+                                        (int)Math.ceil(maxX-minX)+2*delta, 
+                                        (int)Math.ceil(maxY-minY)+2*delta);
+      this.spriteStrokeVec = new Vector<Stroke>(strokes);
+      this.spritePageX = x;
+      this.spritePageY = y;
+      this.spriteXOffset = 0;
+      this.spriteYOffset = 0;
+      
+      // A selection larger than the screen is rendered at its offset 
+      // each time it is painted instead of being held in an image.
+      if (this.spriteBounds.width <= SCREEN_MAX_DIM && 
+            this.spriteBounds.height <= SCREEN_MAX_DIM)
+      {
+         this.spriteImage = new BufferedImage(this.spriteBounds.width, 
+                                              this.spriteBounds.height, 
+                                              BufferedImage.TYPE_INT_ARGB);
+         
+         Graphics2D g2d = this.spriteImage.createGraphics();
+         g2d.translate(x-spriteX, y-spriteY);
+         renderSpriteStrokes(g2d);
+      }
+      
+      // The strokes are now only shown by the sprite
+      this.imageRenderer.setHiddenItems(this.spriteStrokeVec);
+      this.screenRenderer.setHiddenItems(this.spriteStrokeVec);
+      
+      repaint(this.spriteBounds);
+   }
+   
+   public void moveSprite(float xOffset, float yOffset)
+   {
+      if (this.spriteStrokeVec == null)
+         return;
+      
+      long start = System.nanoTime();
+      
+      Rectangle dirtyRect = getSpriteRect();
+      this.spriteXOffset = Math.round(xOffset);
+      this.spriteYOffset = Math.round(yOffset);
+      dirtyRect.add(getSpriteRect());
+      
+      // If the drawing board isn't valid, the binder needs to be 
+      // rendered.  Thus the normal painting process is used.
+      if (!this.isImageValid)
+      {
+         redrawOverlay(dirtyRect.x, dirtyRect.y, 
+                       dirtyRect.width, dirtyRect.height);
+         return;
+      }
+      
+      Graphics g = getGraphics();
+      if (g == null)
+         return;
+      
+      // The drawing board doesn't contain the sprite's strokes.  Thus 
+      // the sprite just needs to be drawn over it.
+      Rectangle viewRect = this.mainPanel.getViewport().getViewRect();
+      Graphics2D g2d = (Graphics2D)g;
+      g2d.setClip(dirtyRect);
+      g2d.drawImage(this.drawingboard, viewRect.x, viewRect.y, null);
+      paintSprite(g2d);
+      g2d.dispose();
+      
+      InkLatencyTracer.getSharedInstance().overlayDrawn(start);
+   }
+   
+   public void endSprite()
+   {
+      if (this.spriteStrokeVec == null)
+         return;
+      
+      Rectangle dirtyRect = getSpriteRect();
+      dirtyRect.add(this.spriteBounds);
+      
+      this.spriteStrokeVec = null;
+      this.spriteImage = null;
+      this.spriteBounds = null;
+      
+      this.imageRenderer.setHiddenItems(null);
+      this.screenRenderer.setHiddenItems(null);
+      
+      repaint(dirtyRect);
+   }
+   
+   /**
+    * Used to get the region of the screen currently covered by the 
+    * sprite.
+    * 
+    * @return The sprite's bounds moved by its offset.
+    */
+   private Rectangle getSpriteRect()
+   {
+      Rectangle rect = new Rectangle(this.spriteBounds);
+      rect.translate(this.spriteXOffset, this.spriteYOffset);
+      return rect;
+   }
+   
+   /**
+    * Draws the sprite, if there is one, at its offset.
+    * 
+    * @param g2d The graphics object, in the coordinate space of this 
+    *            component, to draw into.
+    */
+   private void paintSprite(Graphics2D g2d)
+   {
+      if (this.spriteStrokeVec == null)
+         return;
+      
+      if (this.spriteImage != null)
+      {
+         g2d.drawImage(this.spriteImage, 
+                       this.spriteBounds.x+this.spriteXOffset, 
+                       this.spriteBounds.y+this.spriteYOffset, 
+                       null);
+         return;
+      }
+      
+      Graphics2D spriteG2d = (Graphics2D)g2d.create();
+      spriteG2d.translate(this.spritePageX+this.spriteXOffset, 
+                          this.spritePageY+this.spriteYOffset);
+      renderSpriteStrokes(spriteG2d);
+   }
+   
+   /**
+    * Renders the sprite's strokes into the given graphics object which 
+    * is disposed afterwards.
+    * 
+    * @param g2d The graphics object translated to the page containing 
+    *            the strokes.
+    */
+   private void renderSpriteStrokes(Graphics2D g2d)
+   {
+      this.spriteRenderer.setSwingGraphics(g2d, RenderMode.Appearance);
+      for (Stroke stroke : this.spriteStrokeVec)
+         stroke.renderInto(this.spriteRenderer);
+      this.spriteRenderer.finish();
    }
    
    public void redraw(int x, int y, int width, int height)
@@ -330,6 +703,7 @@ public class SwingDrawingBoard
    public void componentHidden(ComponentEvent e)
    {
       this.isImageValid = false;
+      this.isLiveInkValid = false;
    }
 
    public void componentMoved(ComponentEvent e)
@@ -339,6 +713,7 @@ public class SwingDrawingBoard
    public void componentResized(ComponentEvent e)
    {
       this.isImageValid = false;
+      this.isLiveInkValid = false;
    }
 
    public void componentShown(ComponentEvent e)
@@ -348,6 +723,11 @@ public class SwingDrawingBoard
    public void stateChanged(ChangeEvent e)
    {
       this.isImageValid = false;
+      this.isLiveInkValid = false;
+      
+      // the pages that scrolled out of view may now be unloaded
+      this.canvas.getPageResidencyManager().
+                     viewChanged(this.mainPanel.getViewport().getViewRect());
    }
    
    public void modOccured(Object source, ModType type)
@@ -27,6 +27,8 @@ package noteLab.gui.menu;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
@@ -34,12 +36,17 @@ import java.util.Vector;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.WindowConstants;
 
+import noteLab.gui.chooser.FileProcessor;
+import noteLab.gui.chooser.NoteLabFileChooser;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.settings.DebugSettings;
 import noteLab.util.settings.SettingsManager;
+import noteLab.util.trace.InkLatencyTracer;
 
 public class DebugMenu implements Menued, MenuConstants, ActionListener
 {
@@ -51,6 +58,11 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
    private static final String FORCE_GLOBAL_REPAINTS_NAME = "Force Global Repaints";
    private static final String DISPLAY_KNOTS_NAME = "Display Knots";
    private static final String OPEN_SETTINGS_VALUES = "Open Settings Values";
+   private static final String TRACE_INK_LATENCY_NAME = "Trace Ink Latency";
+   private static final String OPEN_INK_LATENCY = "Open Ink Latency Report";
+   private static final String EXPORT_INK_LATENCY = "Export Ink Latency Report";
+   private static final String RESET_INK_LATENCY = "Reset Ink Latency Report";
+   private static final String REPORT_EXT = ".txt";
    
    private JCheckBoxMenuItem boundingBoxItem;
    private JCheckBoxMenuItem updateBoxItem;
@@ -59,12 +71,14 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
    private JCheckBoxMenuItem useCacheItem;
    private JCheckBoxMenuItem forceGlobalRepaintsItem;
    private JCheckBoxMenuItem knotsItem;
+   private JCheckBoxMenuItem traceLatencyItem;
    
    private Vector<PathMenuItem> menuItemVec;
    
    private CompositeCanvas canvas;
    
    private SettingsValuesFrame settingsFrame;
+   private LatencyReportFrame latencyFrame;
    
    public DebugMenu(CompositeCanvas canvas)
    {
@@ -99,6 +113,20 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
       this.knotsItem = new JCheckBoxMenuItem(DISPLAY_KNOTS_NAME);
       this.knotsItem.addActionListener(this);
       
+      this.traceLatencyItem = new JCheckBoxMenuItem(TRACE_INK_LATENCY_NAME);
+      this.traceLatencyItem.addActionListener(this);
+      
+      this.latencyFrame = new LatencyReportFrame();
+      
+      JMenuItem openLatencyItem = new JMenuItem(OPEN_INK_LATENCY);
+      openLatencyItem.addActionListener(this);
+      
+      JMenuItem exportLatencyItem = new JMenuItem(EXPORT_INK_LATENCY);
+      exportLatencyItem.addActionListener(this);
+      
+      JMenuItem resetLatencyItem = new JMenuItem(RESET_INK_LATENCY);
+      resetLatencyItem.addActionListener(this);
+      
       this.menuItemVec = new Vector<PathMenuItem>();
       this.menuItemVec.add(new PathMenuItem(this.boundingBoxItem, DEBUG_MENU_PATH));
       this.menuItemVec.add(new PathMenuItem(this.updateBoxItem, DEBUG_MENU_PATH));
@@ -108,6 +136,10 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
       this.menuItemVec.add(new PathMenuItem(this.forceGlobalRepaintsItem, DEBUG_MENU_PATH));
       this.menuItemVec.add(new PathMenuItem(this.knotsItem, DEBUG_MENU_PATH));
       this.menuItemVec.add(new PathMenuItem(settingsValuesItem, DEBUG_MENU_PATH));
+      this.menuItemVec.add(new PathMenuItem(this.traceLatencyItem, DEBUG_MENU_PATH));
+      this.menuItemVec.add(new PathMenuItem(openLatencyItem, DEBUG_MENU_PATH));
+      this.menuItemVec.add(new PathMenuItem(exportLatencyItem, DEBUG_MENU_PATH));
+      this.menuItemVec.add(new PathMenuItem(resetLatencyItem, DEBUG_MENU_PATH));
       
       syncDisplay();
    }
@@ -130,6 +162,8 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
       this.useCacheItem.setSelected(useCache);
       this.forceGlobalRepaintsItem.setSelected(forceRepaints);
       this.knotsItem.setSelected(useKnots);
+      this.traceLatencyItem.setSelected(
+                    InkLatencyTracer.getSharedInstance().isEnabled());
    }
    
    public List<PathMenuItem> getPathMenuItems()
@@ -158,6 +192,19 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
          settings.flipDisplayKnots();
       else if (cmmd.equals(OPEN_SETTINGS_VALUES))
          this.settingsFrame.setVisible(true);
+      else if (cmmd.equals(TRACE_INK_LATENCY_NAME))
+         InkLatencyTracer.getSharedInstance().flipEnabled();
+      else if (cmmd.equals(OPEN_INK_LATENCY))
+         this.latencyFrame.setVisible(true);
+      else if (cmmd.equals(EXPORT_INK_LATENCY))
+         new NoteLabFileChooser("Export", false, true, 
+                                new LatencyReportProcessor()).showFileChooser();
+      else if (cmmd.equals(RESET_INK_LATENCY))
+      {
+         InkLatencyTracer.getSharedInstance().reset();
+         if (this.latencyFrame.isVisible())
+            this.latencyFrame.constructTable();
+      }
       
       // The user can manually repaint the canvas if needed.
       // Sometimes it may be useful for debugging purposes to 
@@ -214,4 +261,87 @@ public class DebugMenu implements Menued, MenuConstants, ActionListener
          super.setVisible(visible);
       }
    }
+   
+   private class LatencyReportFrame extends JFrame
+   {
+      private static final long serialVersionUID = 1L;
+      
+      private JScrollPane scrollPane;
+      
+      public LatencyReportFrame()
+      {
+         setTitle("Ink Latency (ms)");
+         setLayout(new GridLayout(1,1));
+         setAlwaysOnTop(true);
+         setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+         
+         constructTable();
+      }
+      
+      public void constructTable()
+      {
+         String[][] rows = InkLatencyTracer.getSharedInstance().getTable();
+         String[][] values = new String[rows.length-1][];
+         System.arraycopy(rows, 1, values, 0, values.length);
+         
+         if (this.scrollPane != null)
+            remove(this.scrollPane);
+         
+         this.scrollPane = new JScrollPane(new JTable(values, rows[0]));
+         
+         add(this.scrollPane);
+         pack();
+      }
+      
+      @Override
+      public void setVisible(boolean visible)
+      {
+         if (visible)
+            constructTable();
+         
+         super.setVisible(visible);
+      }
+   }
+   
+   private class LatencyReportProcessor implements FileProcessor
+   {
+      private File lastFile;
+      
+      public LatencyReportProcessor()
+      {
+         this.lastFile = null;
+      }
+      
+      public void processFile(File file)
+      {
+         try
+         {
+            InkLatencyTracer.getSharedInstance().exportReport(file);
+            this.lastFile = file;
+         }
+         catch (IOException e)
+         {
+            JOptionPane.showMessageDialog(new JFrame(), 
+                                          "The ink latency report could " +
+                                          "not be saved to '"+file+
+                                          "'.  The error returned was:  "+
+                                          e.getMessage(), 
+                                          "Error", 
+                                          JOptionPane.ERROR_MESSAGE);
+         }
+      }
+      
+      public File getFormattedName(File file)
+      {
+         if (file.getName().toLowerCase().endsWith(REPORT_EXT))
+            return file;
+         
+         return new File(file.getPath()+REPORT_EXT);
+      }
+      
+      public File getLastFileProcessed()
+      {
+         return this.lastFile;
+      }
+   }
 }
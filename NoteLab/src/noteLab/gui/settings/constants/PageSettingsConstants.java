@@ -34,4 +34,10 @@ public interface PageSettingsConstants
    public static final Color PAPER_COLOR = Color.WHITE;
    public static final float DEFAULT_UNIT_SCALE_FACTOR = 0.75f;
    public static final boolean DEFAULT_RENDER_SCROLLING = true;
+   
+   /** 
+    * The number of megabytes the strokes of pages away from the 
+    * visible area can use before they are unloaded.
+    */
+   public static final int DEFAULT_PAGE_MEMORY = 64;
 }
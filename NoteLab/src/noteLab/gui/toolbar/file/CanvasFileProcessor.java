@@ -27,31 +27,43 @@ package noteLab.gui.toolbar.file;
 import java.awt.Color;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.util.zip.GZIPOutputStream;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import noteLab.gui.DefinedIcon;
 import noteLab.gui.GuiSettingsConstants;
 import noteLab.gui.chooser.FileProcessor;
 import noteLab.gui.main.MainFrame;
+import noteLab.model.binder.Binder;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.InfoCenter;
-import noteLab.util.render.EmptyRenderer2D;
+import noteLab.util.io.noteLab.ChunkedFileWriter;
+import noteLab.util.io.noteLab.EditJournal;
+import noteLab.util.mod.ModType;
+import noteLab.util.progress.ProgressEvent;
+import noteLab.util.progress.ProgressListener;
 import noteLab.util.render.RenderProgressManager;
 import noteLab.util.render.SVGRenderer2D;
 import noteLab.util.settings.SettingsUtilities;
 
 public abstract class CanvasFileProcessor implements FileProcessor
 {
-   private static final EmptyRenderer2D OVERLAY_RENDERER = 
-                                           new EmptyRenderer2D();
+   /** 
+    * Used so that only one session is written at a time and sessions 
+    * are written in the order they were saved.
+    */
+   private static final Object SAVE_LOCK = new Object();
    
    private MainFrame mainFrame;
    private File file;
+   private boolean block;
    
    public CanvasFileProcessor(MainFrame frame)
    {
@@ -60,6 +72,7 @@ public abstract class CanvasFileProcessor implements FileProcessor
       
       this.mainFrame = frame;
       this.file = null;
+      this.block = false;
    }
    
    public MainFrame getMainFrame()
@@ -78,9 +91,27 @@ public abstract class CanvasFileProcessor implements FileProcessor
       processFileImpl(file);
    }
    
+   /**
+    * Used to specify if sessions saved by this processor are written 
+    * on the thread that invokes {@link #processFile(File) processFile()} 
+    * or on a background thread.
+    * 
+    * @param block <code>true</code> if <code>processFile()</code> should 
+    *              not return until the file has been written.
+    */
+   public void setBlocking(boolean block)
+   {
+      this.block = block;
+   }
+   
+   public boolean isBlocking()
+   {
+      return this.block;
+   }
+   
    protected void saveAsSVG(File file, String ext, boolean zip, boolean listen, String desc)
    {
-      saveAsSVG(getMainFrame(), file, ext, zip, listen, desc);
+      saveAsSVG(getMainFrame(), file, ext, zip, listen, desc, this.block);
    }
    
    public static void saveAsSVG(MainFrame mainFrame, 
@@ -97,6 +128,39 @@ public abstract class CanvasFileProcessor implements FileProcessor
                                 boolean zip, 
                                 boolean listen, 
                                 String desc)
+   {
+      saveAsSVG(mainFrame, file, ext, zip, listen, desc, false);
+   }
+   
+   /**
+    * Saves the session in the given frame to the given file.  The 
+    * canvas is only locked while a snapshot of its binder is taken on 
+    * the event dispatch thread.  The snapshot is then scaled and written 
+    * without touching the canvas so that the user can continue to write 
+    * while the file is being saved.
+    * 
+    * @param mainFrame The frame containing the session to save.
+    * @param file The file to save to.
+    * @param ext The extension added to the file if it doesn't already 
+    *            have it.
+    * @param zip <code>true</code> if the file should be compressed.  
+    *            Native files are always written in the chunked format 
+    *            whose pages are compressed individually.
+    * @param listen <code>true</code> if the progress of the save should 
+    *               be reported to the user.
+    * @param desc The description of the save reported to the user.
+    * @param block <code>true</code> if the file should be written on 
+    *              the calling thread so that this method does not 
+    *              return until the save is complete.  Otherwise, the 
+    *              file is written on a background thread.
+    */
+   public static void saveAsSVG(MainFrame mainFrame, 
+                                File file, 
+                                String ext, 
+                                boolean zip, 
+                                boolean listen, 
+                                String desc, 
+                                boolean block)
    {
       if (mainFrame == null || file == null || ext == null)
          throw new NullPointerException();
@@ -111,82 +175,79 @@ public abstract class CanvasFileProcessor implements FileProcessor
          file = new File(fullPath);
       }
       
-      final boolean isNativeFile = ext.equalsIgnoreCase(InfoCenter.getFileExtension());
-      
-      CompositeCanvas canvas = mainFrame.getCompositeCanvas();
-      synchronized(canvas)
+      final SessionWriter writer = new SessionWriter(mainFrame, file, ext, 
+                                                     zip, listen, desc);
+      if (SwingUtilities.isEventDispatchThread())
+         writer.takeSnapshot();
+      else
       {
-         mainFrame.setMessage("Saving the session requires momentarily disabling the canvas.", 
-                              Color.BLACK);
-         canvas.setEnabled(false);
-         
-         float zoomFactor = canvas.getZoomLevel();
-         float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
-         canvas.zoomTo(1);
-         canvas.resizeTo(1/unitScaleFactor);
-         boolean hasBeenSaved = false;
-         
          try
          {
-            if (!file.exists())
-               file.createNewFile();
-            
-            OutputStream outStream = new FileOutputStream(file);
-            if (zip)
-               outStream = new GZIPOutputStream(outStream);
-            
-            SVGRenderer2D msvg2D = new SVGRenderer2D(canvas, outStream);
-            if (listen)
+            SwingUtilities.invokeAndWait(new Runnable()
             {
-               RenderProgressManager manager = new RenderProgressManager(msvg2D, canvas, desc);
-               
-               // Uncomment this to show a ProgressFrame
-               //ProgressFrame frame = new ProgressFrame(desc, false);
-               //manager.addProgressListener(frame);
-               //frame.setVisible(true);
-               
-               manager.addProgressListener(mainFrame);
-            }
-            canvas.renderInto(OVERLAY_RENDERER, msvg2D, false);
-            
-            Exception error = msvg2D.getError();
-            if (error != null)
-               throw error;
-            
-            hasBeenSaved = true;
-            
-            if (isNativeFile)
-               canvas.setFile(file);
+               public void run()
+               {
+                  writer.takeSnapshot();
+               }
+            });
          }
-         catch (Throwable throwable)
+         catch (InterruptedException e)
          {
-            notifyOfThrowable(throwable);
+            notifyOfThrowable(e);
+            return;
          }
-         finally
+         catch (InvocationTargetException e)
          {
-            canvas.resizeTo(unitScaleFactor);
-            canvas.zoomTo(zoomFactor);
-            if (hasBeenSaved)
-               mainFrame.hasBeenSaved();
-            
-            canvas.setEnabled(true);
-            StringBuffer messageBuffer = new StringBuffer();
-            if (isNativeFile)
-               messageBuffer.append("Saving ");
-            else
-               messageBuffer.append("Exporting ");
-            messageBuffer.append("to the file '");
-            messageBuffer.append(file.getAbsolutePath());
-            messageBuffer.append("' ");
-            if (!hasBeenSaved)
-               messageBuffer.append("failed.");
-            else
-               messageBuffer.append("completed successfully.");
-            
-            mainFrame.setMessage(messageBuffer.toString(), 
-                                 (!hasBeenSaved)?Color.RED:Color.BLACK);
+            notifyOfThrowable(e.getCause());
+            return;
          }
       }
+      
+      if (block)
+         writer.run();
+      else
+         new Thread(writer).start();
+   }
+   
+   /**
+    * Folds the journal of the session in the given frame into the 
+    * compacted copy of the session, which is written next to the 
+    * session's file in the background.  The session's file itself is 
+    * only written when the user saves the session.
+    * 
+    * @param mainFrame The frame containing the session.
+    */
+   public static void compactJournal(MainFrame mainFrame)
+   {
+      if (mainFrame == null)
+         throw new NullPointerException();
+      
+      EditJournal journal = mainFrame.getCompositeCanvas().getEditJournal();
+      if (journal == null)
+         return;
+      
+      File file = EditJournal.getCompactedFile(journal.getFile());
+      SessionWriter writer = new SessionWriter(mainFrame, file, journal);
+      writer.takeSnapshot();
+      new Thread(writer).start();
+   }
+   
+   /**
+    * Closes the given binder once any session being written has been 
+    * written since the session may still read strokes from the binder's 
+    * file.
+    * 
+    * @param binder The binder to close.
+    */
+   public static void closeBinder(Binder binder)
+   {
+      if (binder == null)
+         throw new NullPointerException();
+      
+      synchronized(SAVE_LOCK)
+      {
+         binder.close();
+      }
    }
    
    public static void notifyOfThrowable(Throwable throwable)
@@ -212,5 +273,347 @@ public abstract class CanvasFileProcessor implements FileProcessor
       throwable.printStackTrace();
    }
    
+   /**
+    * Writes a snapshot of a session's binder to a file.  The snapshot is 
+    * taken on the event dispatch thread by 
+    * {@link #takeSnapshot() takeSnapshot()} and written by 
+    * {@link #run() run()}, typically on a background thread.
+    */
+   private static class SessionWriter implements Runnable
+   {
+      private MainFrame mainFrame;
+      private CompositeCanvas canvas;
+      private File file;
+      private boolean zip;
+      private boolean listen;
+      private String desc;
+      private boolean isNativeFile;
+      
+      /** 
+       * Specifies if the session is written to its compacted copy to 
+       * compact its journal instead of being saved.
+       */
+      private boolean isCompaction;
+      
+      private Binder snapshot;
+      private float unitScaleFactor;
+      private long modCount;
+      
+      private EditJournal journal;
+      private long journalMark;
+      
+      public SessionWriter(MainFrame mainFrame, File file, String ext, 
+                           boolean zip, boolean listen, String desc)
+      {
+         this.mainFrame = mainFrame;
+         this.canvas = mainFrame.getCompositeCanvas();
+         this.file = file;
+         this.zip = zip;
+         this.listen = listen;
+         this.desc = desc;
+         this.isNativeFile = 
+                     ext.equalsIgnoreCase(InfoCenter.getFileExtension());
+         this.isCompaction = false;
+         
+         this.snapshot = null;
+         this.unitScaleFactor = 1;
+         this.modCount = 0;
+         
+         this.journal = null;
+         this.journalMark = -1;
+      }
+      
+      /**
+       * Constructs a writer that writes the session to the given 
+       * compacted copy of the session to compact the given journal.
+       */
+      public SessionWriter(MainFrame mainFrame, File file, 
+                           EditJournal journal)
+      {
+         this(mainFrame, file, InfoCenter.getFileExtension(), 
+              true, false, null);
+         
+         this.isCompaction = true;
+         this.journal = journal;
+      }
+      
+      public void takeSnapshot()
+      {
+         synchronized(this.canvas)
+         {
+            this.unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
+            this.modCount = this.canvas.getModificationCount();
+            this.snapshot = this.canvas.getBinder().getSnapshot();
+            
+            if (this.isCompaction)
+               this.journalMark = this.journal.checkpoint();
+            else if (this.isNativeFile)
+               checkpointJournal();
+         }
+         
+         if (!this.isCompaction)
+            this.mainFrame.setMessage(getMessage(null), Color.BLACK);
+      }
+      
+      /**
+       * Marks the point in the session's journal that corresponds to the 
+       * snapshot so that the journal can be compacted once the snapshot 
+       * has been written.  If the session is being saved to a new file, 
+       * a journal is started for the new file.
+       */
+      private void checkpointJournal()
+      {
+         EditJournal curJournal = this.canvas.getEditJournal();
+         if (curJournal != null && 
+             !curJournal.getFile().getAbsoluteFile().
+                                      equals(this.file.getAbsoluteFile()))
+         {
+            // The old file is left as it was last saved.
+            curJournal.close(true);
+            curJournal = null;
+         }
+         
+         if (curJournal == null)
+         {
+            try
+            {
+               curJournal = EditJournal.create(this.canvas, this.file);
+            }
+            catch (IOException e)
+            {
+               System.err.println("The journal for '"+this.file+
+                                  "' could not be created:  "+
+                                  e.getMessage());
+            }
+         }
+         
+         this.canvas.setEditJournal(curJournal);
+         if (curJournal == null)
+            return;
+         
+         this.journal = curJournal;
+         this.journalMark = curJournal.checkpoint();
+      }
+      
+      public void run()
+      {
+         if (this.snapshot == null)
+            throw new IllegalStateException("A snapshot of the session " +
+                                            "must be taken before it " +
+                                            "can be saved.");
+         
+         boolean hasBeenSaved = false;
+         Throwable error = null;
+         
+         // Sessions are written one at a time so that if the same file 
+         // is saved twice in a row, the last save always wins.
+         synchronized(SAVE_LOCK)
+         {
+            OutputStream outStream = null;
+            try
+            {
+               // Bring the snapshot to the scale at which sessions are 
+               // stored.  This used to be done on the canvas itself which 
+               // required disabling the canvas during the whole save.
+               this.snapshot.scaleTo(1, 1);
+               this.snapshot.resizeTo(1/this.unitScaleFactor, 
+                                      1/this.unitScaleFactor);
+               
+               if (this.isNativeFile)
+                  writeChunkedFile();
+               else
+               {
+                  if (!this.file.exists())
+                     this.file.createNewFile();
+                  
+                  outStream = new FileOutputStream(this.file);
+                  if (this.zip)
+                     outStream = new GZIPOutputStream(outStream);
+                  
+                  SVGRenderer2D msvg2D = 
+                     new SVGRenderer2D(this.snapshot, outStream);
+                  if (this.listen)
+                  {
+                     RenderProgressManager manager = 
+                        new RenderProgressManager(msvg2D, this.snapshot, 
+                                                  this.desc);
+                     
+                     // Uncomment this to show a ProgressFrame
+                     //ProgressFrame frame = new ProgressFrame(desc, false);
+                     //manager.addProgressListener(frame);
+                     //frame.setVisible(true);
+                     
+                     manager.addProgressListener(
+                        new EventThreadProgressListener(this.mainFrame));
+                  }
+                  
+                  this.snapshot.renderInto(msvg2D);
+                  msvg2D.finish();
+                  outStream = null;
+                  
+                  Exception renderError = msvg2D.getError();
+                  if (renderError != null)
+                     throw renderError;
+               }
+               
+               hasBeenSaved = true;
+               
+               // The records in the journal before the snapshot was taken 
+               // are now in the file.  This is done while holding the 
+               // lock so that the journal is compacted in the order the 
+               // session was saved.
+               if (this.journal != null)
+                  this.journal.commit(this.journalMark, 
+                                      this.file, 
+                                      this.file.length(), 
+                                      this.file.lastModified());
+            }
+            catch (Throwable throwable)
+            {
+               error = throwable;
+            }
+            finally
+            {
+               if (outStream != null)
+               {
+                  try
+                  {
+                     outStream.close();
+                  }
+                  catch (IOException e)
+                  {
+                  }
+               }
+            }
+         }
+         
+         final boolean saved = hasBeenSaved;
+         final Throwable cause = error;
+         Runnable finisher = new Runnable()
+         {
+            public void run()
+            {
+               finish(saved, cause);
+            }
+         };
+         
+         if (SwingUtilities.isEventDispatchThread())
+            finisher.run();
+         else
+            SwingUtilities.invokeLater(finisher);
+      }
+      
+      /**
+       * Writes the snapshot in the chunked native format.  SVG is only 
+       * used when the session is exported.
+       */
+      private void writeChunkedFile() throws IOException
+      {
+         ChunkedFileWriter writer = 
+            new ChunkedFileWriter(this.snapshot, 
+                                  SettingsUtilities.getPathPrecision());
+         if (this.listen)
+         {
+            writer.setDescription(this.desc);
+            writer.addProgressListener(
+                      new EventThreadProgressListener(this.mainFrame));
+         }
+         
+         writer.write(this.file);
+      }
+      
+      private void finish(boolean hasBeenSaved, Throwable error)
+      {
+         // The journal is compacted without the user being involved.
+         if (this.isCompaction)
+         {
+            if (error != null)
+               System.err.println("The journal for '"+
+                                  this.journal.getFile()+"' could not " +
+                                  "be compacted:  "+error.getMessage());
+            
+            this.journal.saveFinished(this.file.length());
+            return;
+         }
+         
+         if (error != null)
+            notifyOfThrowable(error);
+         
+         if (this.journal != null)
+            this.journal.saveFinished(this.file.length());
+         
+         if (hasBeenSaved)
+         {
+            if (this.isNativeFile)
+               this.canvas.setFile(this.file);
+            
+            this.mainFrame.hasBeenSaved();
+            
+            // the session was modified while it was being saved
+            if (this.canvas.getModificationCount() != this.modCount)
+            {
+               this.canvas.setHasBeenModified(true);
+               this.mainFrame.modOccured(this.canvas, ModType.Other);
+            }
+         }
+         
+         this.mainFrame.setMessage(getMessage(hasBeenSaved), 
+                                   hasBeenSaved?Color.BLACK:Color.RED);
+      }
+      
+      private String getMessage(Boolean hasBeenSaved)
+      {
+         StringBuffer messageBuffer = new StringBuffer();
+         if (this.isNativeFile)
+            messageBuffer.append("Saving ");
+         else
+            messageBuffer.append("Exporting ");
+         messageBuffer.append("to the file '");
+         messageBuffer.append(this.file.getAbsolutePath());
+         messageBuffer.append("' ");
+         if (hasBeenSaved == null)
+            messageBuffer.append("in the background.");
+         else if (!hasBeenSaved)
+            messageBuffer.append("failed.");
+         else
+            messageBuffer.append("completed successfully.");
+         
+         return messageBuffer.toString();
+      }
+   }
+   
+   /**
+    * Forwards progress events to a listener on the event dispatch thread.  
+    * Events are only forwarded when the percent complete changes so that 
+    * the event queue isn't flooded with an event for every stroke saved.
+    */
+   private static class EventThreadProgressListener 
+                           implements ProgressListener
+   {
+      private ProgressListener listener;
+      private int lastPercent;
+      
+      public EventThreadProgressListener(ProgressListener listener)
+      {
+         this.listener = listener;
+         this.lastPercent = -1;
+      }
+      
+      public void progressOccured(final ProgressEvent event)
+      {
+         if (event.getPercent() == this.lastPercent && !event.isComplete())
+            return;
+         
+         this.lastPercent = event.getPercent();
+         SwingUtilities.invokeLater(new Runnable()
+         {
+            public void run()
+            {
+               listener.progressOccured(event);
+            }
+         });
+      }
+   }
+   
    public abstract void processFileImpl(File file);
 }
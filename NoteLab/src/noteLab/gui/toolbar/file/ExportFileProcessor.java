@@ -25,10 +25,10 @@
 package noteLab.gui.toolbar.file;
 
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
@@ -49,20 +49,14 @@ import noteLab.model.Page;
 import noteLab.model.binder.Binder;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.InfoCenter;
+import noteLab.util.io.PNGStreamWriter;
+import noteLab.util.io.ParallelPageExporter;
+import noteLab.util.io.pdf.PDFExporter;
 import noteLab.util.progress.ProgressEvent;
 import noteLab.util.render.EmptyRenderer2D;
 import noteLab.util.render.ImageRenderer2D;
-import noteLab.util.render.SwingRenderer2D;
-import noteLab.util.render.SwingRenderer2D.RenderMode;
-
-import com.lowagie.text.Document;
-import com.lowagie.text.DocumentException;
-import com.lowagie.text.FontFactory;
-import com.lowagie.text.Rectangle;
-import com.lowagie.text.pdf.DefaultFontMapper;
-import com.lowagie.text.pdf.PdfContentByte;
-import com.lowagie.text.pdf.PdfTemplate;
-import com.lowagie.text.pdf.PdfWriter;
+import noteLab.util.render.Renderable;
+import noteLab.util.render.Renderer2D;
 
 public class ExportFileProcessor extends CanvasFileProcessor implements IIOWriteProgressListener
 {
@@ -76,6 +70,9 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
                                                    "Overwrite Now"
                                                    };
    
+   /** The extension of the images that are written a band at a time. */
+   private static final String PNG_EXT = "png";
+   
    private static final int NEVER_OVERWRITE_OPTION = 0;
    private static final int DONT_OVERWRITE_NOW_OPTION = 1;
    private static final int OVERWRITE_ALWAYS_OPTION = 2;
@@ -170,12 +167,10 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
    }
    
    private void processPdfFile(File formatFile, 
-                               MainFrame mainFrame, 
+                               final MainFrame mainFrame, 
                                CompositeCanvas canvas, 
                                StringBuffer messageBuffer) 
-                                  throws DocumentException, 
-                                         FileNotFoundException, 
-                                         IOException
+                                  throws IOException
    {
       synchronized(canvas)
       {
@@ -183,77 +178,39 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
                               Color.BLACK);
          canvas.setEnabled(false);
          
-         Binder binder = canvas.getBinder();
-         
-         if (!formatFile.exists())
-            formatFile.createNewFile();
-         
-         // Create the document
-         Document doc = new Document();
-         
-         // Create a writer
-         PdfWriter pdfWriter =
-                      PdfWriter.
-                         getInstance(doc,
-                                     new FileOutputStream(formatFile));
-         
-         Rectangle pageSize = pdfWriter.getPageSize();
-         float width = pageSize.getWidth();
-         float height = pageSize.getHeight();
-         
-         // Open the document
-         doc.open();
-         
-         // Configure the fonts
-         DefaultFontMapper mapper = new DefaultFontMapper();
-         FontFactory.registerDirectories();
-         
-         // Get the content-byte to work with
-         PdfContentByte content = pdfWriter.getDirectContent();
-         
-         for (Page page : binder)
+         try
          {
-            renderPage(width, height, content, mapper, page);
-            doc.newPage();
+            Binder binder = canvas.getBinder();
+            final int numPages = binder.getNumberOfPages();
+            
+            if (!formatFile.exists())
+               formatFile.createNewFile();
+            
+            // The pages are rendered concurrently and written in order.
+            PDFExporter exporter = new PDFExporter()
+            {
+               @Override
+               protected void writePage(int pageNum, byte[] rendered) 
+                                           throws IOException
+               {
+                  super.writePage(pageNum, rendered);
+                  mainFrame.progressOccured(
+                     new ProgressEvent(null, null, null, false, 
+                                       100*(pageNum+1)/numPages, false));
+               }
+            };
+            
+            exporter.export(binder, 
+                            new BufferedOutputStream(
+                                   new FileOutputStream(formatFile)));
+         }
+         finally
+         {
+            canvas.setEnabled(true);
          }
-         
-         // Close the document
-         doc.close();
-         
-         canvas.setEnabled(true);
       }
    }
    
-   private void renderPage(float width, float height, 
-                           PdfContentByte content, 
-                           DefaultFontMapper mapper, 
-                           Page page)
-   {
-      // Make a template onto which data is written
-      PdfTemplate template = content.createTemplate(width, height);
-      
-      // Get the template's Graphics2D object
-      Graphics2D g2d = template.createGraphics(width, height, mapper);
-      
-      // Configure the template
-      template.setWidth(width);
-      template.setHeight(height);
-      
-      // Render the canvas
-      g2d.scale(width/page.getWidth(), 
-                height/page.getHeight());
-      
-      SwingRenderer2D pdf2D = new SwingRenderer2D();
-      pdf2D.setSwingGraphics(g2d, RenderMode.Appearance);
-      page.renderInto(pdf2D);
-      
-      // Dispose of the graphics object
-      g2d.dispose();
-      
-      // Add the template to the content
-      content.addTemplate(template, 0, 0);
-   }
-   
    private void processImageFile(File formatFile, 
                                  MainFrame mainFrame, 
                                  CompositeCanvas canvas, 
@@ -261,6 +218,12 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
                                     throws IOException
    {
       String ext = getExtension(formatFile);
+      if (PNG_EXT.equalsIgnoreCase(ext))
+      {
+         processPNGFile(formatFile, mainFrame, canvas);
+         return;
+      }
+      
       String errorText = "There are no writers available to write images with " +
                          "the extension '"+ext+"'";
       
@@ -318,7 +281,7 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
                                                        icon);
             
             if (result == JOptionPane.YES_OPTION)
-               writePages(binder, writer, mainFrame, formatFile);
+               writePages(binder, mainFrame, formatFile);
          }
          
          writer.dispose();
@@ -329,8 +292,48 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
       writer.dispose();
    }
    
+   /**
+    * Exports the binder to a single PNG image by rendering one 
+    * horizontal band of the image at a time and compressing each band 
+    * as soon as it is rendered.  Thus, unlike writing a single 
+    * <code>BufferedImage</code> of the whole binder, the memory used 
+    * doesn't grow with the number of pages in the binder.
+    */
+   private void processPNGFile(File formatFile, 
+                               MainFrame mainFrame, 
+                               final CompositeCanvas canvas) 
+                                  throws IOException
+   {
+      synchronized(canvas)
+      {
+         mainFrame.setMessage("Exporting the session requires momentarily disabling the canvas.", 
+                              Color.BLACK);
+         canvas.setEnabled(false);
+         
+         try
+         {
+            Binder binder = canvas.getBinder();
+            Renderable renderable = new Renderable()
+            {
+               public void renderInto(Renderer2D mG2d)
+               {
+                  canvas.renderInto(OVERLAY_RENDERER, mG2d, false);
+               }
+            };
+            
+            PNGStreamWriter.writeImage(renderable, 
+                                       (int)binder.getWidth(), 
+                                       (int)binder.getHeight(), 
+                                       formatFile, mainFrame);
+         }
+         finally
+         {
+            canvas.setEnabled(true);
+         }
+      }
+   }
+   
    private void writePages(Binder binder, 
-                           ImageWriter writer, 
                            MainFrame mainFrame, 
                            File file) throws IOException
    {
@@ -338,43 +341,100 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
       String ext = getExtension(file);
       path = path.substring(0, path.length()-ext.length()-1);
       
-      float width;
-      float height;
-      BufferedImage image;
-      ImageRenderer2D image2D;
-      File pageFile;
-      
-      boolean alwaysOverwrite = false;
-      boolean neverOverwrite = false;
-      int result;
+      PageImageWriter pageWriter = new PageImageWriter(mainFrame, path, ext, 
+                                                       binder.getNumberOfPages());
+      pageWriter.exportPages(binder);
+   }
+   
+   /**
+    * Writes each page to a separate image.  The pages are rendered and 
+    * encoded concurrently while the user is asked, one page at a time 
+    * and in order, whether existing images should be overwritten.
+    */
+   private static class PageImageWriter extends ParallelPageExporter<byte[]>
+   {
+      private MainFrame mainFrame;
+      private String path;
+      private String ext;
+      private int numPages;
       
-      int size = GuiSettingsConstants.BUTTON_SIZE;
-      ImageIcon icon = DefinedIcon.dialog_question.getIcon(size);
+      private boolean alwaysOverwrite;
+      private boolean neverOverwrite;
       
-      int pageNum = 1;
-      int numPages = binder.getNumberOfPages();
+      public PageImageWriter(MainFrame mainFrame, String path, String ext, 
+                             int numPages)
+      {
+         super();
+         
+         this.mainFrame = mainFrame;
+         this.path = path;
+         this.ext = ext;
+         this.numPages = numPages;
+         
+         this.alwaysOverwrite = false;
+         this.neverOverwrite = false;
+      }
       
-      for (Page page : binder)
+      @Override
+      protected byte[] renderPage(Page page) throws Exception
       {
-         width = page.getWidth();
-         height = page.getHeight();
+         float width = page.getWidth();
+         float height = page.getHeight();
          
-         image = new BufferedImage( (int)width, (int)height, 
-                                    BufferedImage.TYPE_INT_RGB );
-         image2D = new ImageRenderer2D(image);
+         BufferedImage image = new BufferedImage( (int)width, (int)height, 
+                                                  BufferedImage.TYPE_INT_RGB );
+         ImageRenderer2D image2D = new ImageRenderer2D(image);
          image2D.setColor(Color.WHITE);
          image2D.fillRectangle(0, 0, width, height);
          
          page.renderInto(image2D);
+         image2D.finish();
          
-         mainFrame.setMessage("Exporting page "+
-                              pageNum+" of "+numPages, Color.BLACK);
+         // Each page is encoded with its own writer since writers 
+         // cannot be shared between threads.
+         Iterator<ImageWriter> writers = 
+                                  ImageIO.getImageWritersBySuffix(this.ext);
+         if (!writers.hasNext())
+            throw new IOException("There are no writers available to " +
+                                  "write images with the extension '"+
+                                  this.ext+"'");
          
-         pageFile = new File(path+"_page"+pageNum+"."+ext);
+         ImageWriter writer = writers.next();
+         ByteArrayOutputStream output = new ByteArrayOutputStream();
+         ImageOutputStream imageOutput = 
+                              ImageIO.createImageOutputStream(output);
+         try
+         {
+            writer.setOutput(imageOutput);
+            writer.write(image);
+         }
+         finally
+         {
+            imageOutput.close();
+            writer.dispose();
+         }
          
-         result = OVERWRITE_NOW_OPTION;
-         if (!neverOverwrite && !alwaysOverwrite && pageFile.exists())
+         return output.toByteArray();
+      }
+      
+      @Override
+      protected void writePage(int pageNum, byte[] rendered) 
+                                  throws IOException
+      {
+         pageNum++;
+         
+         this.mainFrame.setMessage("Exporting page "+
+                                   pageNum+" of "+this.numPages, Color.BLACK);
+         
+         File pageFile = new File(this.path+"_page"+pageNum+"."+this.ext);
+         
+         int result = OVERWRITE_NOW_OPTION;
+         if (!this.neverOverwrite && !this.alwaysOverwrite && 
+               pageFile.exists())
          {
+            int size = GuiSettingsConstants.BUTTON_SIZE;
+            ImageIcon icon = DefinedIcon.dialog_question.getIcon(size);
+            
             result = 
                 JOptionPane.showOptionDialog(new JFrame(), 
                                              "The file "+
@@ -389,20 +449,30 @@ public class ExportFileProcessor extends CanvasFileProcessor implements IIOWrite
          }
          
          if (result == NEVER_OVERWRITE_OPTION)
-            neverOverwrite = true;
+            this.neverOverwrite = true;
          else if (result == OVERWRITE_ALWAYS_OPTION)
-            alwaysOverwrite = true;
+            this.alwaysOverwrite = true;
          
-         if (!neverOverwrite || result == DONT_OVERWRITE_NOW_OPTION)
+         if (!this.neverOverwrite || result == DONT_OVERWRITE_NOW_OPTION)
          {
-            if (alwaysOverwrite || result == OVERWRITE_NOW_OPTION)
+            if (this.alwaysOverwrite || result == OVERWRITE_NOW_OPTION)
             {
-               writer.setOutput(ImageIO.createImageOutputStream(pageFile));
-               writer.write(image);
+               FileOutputStream output = new FileOutputStream(pageFile);
+               try
+               {
+                  output.write(rendered);
+               }
+               finally
+               {
+                  output.close();
+               }
             }
          }
          
-         pageNum++;
+         this.mainFrame.progressOccured(
+            new ProgressEvent(null, null, null, false, 
+                              100*pageNum/this.numPages, 
+                              pageNum == this.numPages));
       }
    }
    
@@ -64,6 +64,7 @@ import noteLab.model.canvas.CompositeCanvas;
 import noteLab.model.pdf.PDFPageInfo;
 import noteLab.util.InfoCenter;
 import noteLab.util.progress.ProgressEvent;
+import noteLab.util.render.PrintSpooler;
 
 public class FileToolBar 
                 extends JToolBar 
@@ -341,8 +342,17 @@ public class FileToolBar
       }
       else if (cmmd.equals(PRINT))
       {
+         // Only taking the spooler's snapshot of the session requires 
+         // the canvas to be locked.  The pages are printed from the 
+         // snapshot while the canvas continues to be used.
+         PrintSpooler spooler;
+         synchronized(canvas)
+         {
+            spooler = new PrintSpooler(canvas.getBinder());
+         }
+         
          final PrinterJob printerJob = PrinterJob.getPrinterJob();
-         printerJob.setPageable(canvas.getBinder());
+         printerJob.setPageable(spooler);
          
          FullScreenManager.getSharedInstance().revokeFullScreenMode();
          boolean notCancelled = printerJob.printDialog();
@@ -352,27 +362,24 @@ public class FileToolBar
             {
                public void run()
                {
+                  mainFrame.setMessage("Printing the session.", Color.BLACK);
+                  mainFrame.progressOccured(new ProgressEvent(null, null, null, 
+                                                              true, 0, false));
                   try
                   {
-                     synchronized(canvas)
-                     {
-                        mainFrame.setMessage("Printing the session requires momentarily " +
-                                             "disabling the canvas.", Color.BLACK);
-                        canvas.setEnabled(false);
-                        mainFrame.progressOccured(new ProgressEvent(null, null, null, 
-                                                                    true, 0, false));
-                        printerJob.print();
-                        mainFrame.progressOccured(new ProgressEvent(null, null, null, 
-                                                                    true, 0, true));
-                        canvas.setEnabled(true);
-                        mainFrame.setMessage("Printing completed sucessfully.", Color.BLACK);
-                     }
+                     printerJob.print();
+                     mainFrame.setMessage("Printing completed sucessfully.", Color.BLACK);
                   }
                   catch (PrinterException printEx)
                   {
                      CanvasFileProcessor.notifyOfThrowable(printEx);
                      mainFrame.setMessage("Printing failed.", Color.RED);
                   }
+                  finally
+                  {
+                     mainFrame.progressOccured(new ProgressEvent(null, null, null, 
+                                                                 true, 0, true));
+                  }
                }
             })).start();
          }
@@ -385,31 +392,23 @@ public class FileToolBar
    
    public void save(boolean forceSaveAs, boolean block)
    {
-      final File file = this.mainFrame.getCompositeCanvas().getFile();
+      File file = this.mainFrame.getCompositeCanvas().getFile();
       if (!forceSaveAs && file != null)
       {
-         Runnable saver = new Runnable()
-         {
-            public void run()
-            {
-               CanvasFileProcessor.saveAsSVG(mainFrame, 
-                                             file, 
-                                             InfoCenter.getFileExtension(), 
-                                             true, // Zip the file 
-                                             true, // Report progress to the user 
-                                             "Saving the session");
-            }
-         };
-         
-         if (block)
-            saver.run();
-         else
-            new Thread(saver).start();
-         
+         // Only a snapshot of the session is taken on this thread.  
+         // Unless blocking, the file is written in the background.
+         CanvasFileProcessor.saveAsSVG(this.mainFrame, 
+                                       file, 
+                                       InfoCenter.getFileExtension(), 
+                                       true, // Zip the file 
+                                       true, // Report progress to the user 
+                                       "Saving the session", 
+                                       block);
          return;
       }
       
       SaveFileProcessor processor = new SaveFileProcessor(this.mainFrame);
+      processor.setBlocking(block);
       NoteLabFileChooser saveChooser = 
                             new NoteLabFileChooser("Save", false, true, 
                                                    processor, file);
@@ -83,7 +83,7 @@ public class OpenFileProcessor
          
          FileLoader loader = null;
          if (path.endsWith(nativeExt))
-            loader = new NoteLabFileLoader(file, this);
+            loader = NoteLabFileLoader.getLoader(file, this);
          else if (path.endsWith(jarnalExt))
             loader = new JarnalFileLoader(file, this);
          else if (path.endsWith(pdfExt))
@@ -100,6 +100,8 @@ public class OpenFileProcessor
          ProgressFrame frame = new ProgressFrame("", true);
          frame.progressOccured(event);
          addProgressListener(frame);
+         if (loader instanceof Progressive)
+            ((Progressive)loader).addProgressListener(frame);
          
          loader.loadFile();
       }
@@ -25,13 +25,16 @@
 package noteLab.model;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Vector;
 
 import noteLab.model.Paper.PaperType;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.geom.TransformRectangle2D;
+import noteLab.model.pdf.PDFPageInfo;
 import noteLab.util.CopyReady;
 import noteLab.util.Selectable;
 import noteLab.util.UnitScaleDependent;
@@ -41,6 +44,7 @@ import noteLab.util.mod.ModListener;
 import noteLab.util.mod.ModType;
 import noteLab.util.render.Renderable;
 import noteLab.util.render.Renderer2D;
+import noteLab.util.structure.OrderedIdentitySet;
 
 public class Page extends TransformRectangle2D 
                      implements Renderable, CopyReady<Page>, 
@@ -49,10 +53,68 @@ public class Page extends TransformRectangle2D
                                 UnitScaleDependent
 {
    private Paper paper;
-   private LinkedList<Stroke> strokeList;
-   
-   private Vector<Stroke> selStrokeVec;
-   private Vector<Stroke> unSelStrokeVec;
+   private OrderedIdentitySet<Stroke> strokeList;
+   
+   private OrderedIdentitySet<Stroke> selStrokeVec;
+   private OrderedIdentitySet<Stroke> unSelStrokeVec;
+   
+   /** 
+    * Supplies this page's strokes if they haven't been loaded yet.  
+    * This is <code>null</code> once the strokes have been loaded.
+    */
+   private StrokeLoader strokeLoader;
+   
+   /** 
+    * The amount the strokes are resized by when they are loaded so that 
+    * they match the resizes done to this page before they were loaded.
+    */
+   private float loaderXResize;
+   private float loaderYResize;
+   
+   /** 
+    * The loader that can supply this page's strokes again if they are 
+    * unloaded and the amount they would be resized by in that case.
+    */
+   private StrokeLoader baseLoader;
+   private float baseXResize;
+   private float baseYResize;
+   
+   /** 
+    * Specifies if this page's loader could not supply its strokes.  The 
+    * loader is then kept so that the page is still saved with the 
+    * strokes stored in its file.
+    */
+   private boolean hasLoadFailed;
+   
+   /** 
+    * Specifies if strokes have been added to, removed from or modified on 
+    * this page since {@link #clearEdited() clearEdited()} was invoked or 
+    * the page was last unloaded.
+    */
+   private boolean hasBeenEdited;
+   
+   /** 
+    * Specifies if this page is scaling, moving or selecting its strokes.  
+    * Such modifications of the strokes are not edits.
+    */
+   private boolean isUpdatingStrokes;
+   
+   /** 
+    * The strokes this page had when it was last unloaded in the order they 
+    * will be loaded.  Strokes that are still used elsewhere, such as by 
+    * the undo history, are put back on the page instead of their copies 
+    * when the page is loaded.
+    */
+   private Vector<WeakReference<Stroke>> unloadedStrokeVec;
+   
+   /** 
+    * The amount the strokes have been resized by since the page was 
+    * last unloaded.
+    */
+   private float unloadXResize;
+   private float unloadYResize;
+   
+   private Vector<PageLoadListener> loadListenerVec;
    
    public Page(Page page)
    {
@@ -87,14 +149,331 @@ public class Page extends TransformRectangle2D
                              xScaleLevel, yScaleLevel, 
                              screenRes, unitScaleLevel);
       
-      this.strokeList = new LinkedList<Stroke>();
-      this.selStrokeVec = new Vector<Stroke>();
-      this.unSelStrokeVec = new Vector<Stroke>();
+      this.strokeList = new OrderedIdentitySet<Stroke>();
+      this.selStrokeVec = new OrderedIdentitySet<Stroke>();
+      this.unSelStrokeVec = new OrderedIdentitySet<Stroke>();
+      
+      this.strokeLoader = null;
+      this.loaderXResize = 1;
+      this.loaderYResize = 1;
+      this.baseLoader = null;
+      this.baseXResize = 1;
+      this.baseYResize = 1;
+      this.hasLoadFailed = false;
+      this.hasBeenEdited = false;
+      this.isUpdatingStrokes = false;
+      this.unloadedStrokeVec = null;
+      this.unloadXResize = 1;
+      this.unloadYResize = 1;
+      this.loadListenerVec = new Vector<PageLoadListener>();
       
       setPaperType(paperType);
       setSelected(false);
    }
    
+//--------------=[ Methods used to load strokes on demand ]=------------------//
+   /**
+    * Used to specify that this page's strokes should be supplied by the 
+    * given loader the first time they are needed instead of being added 
+    * now.  This page must not contain any strokes.
+    * 
+    * @param loader The loader that supplies this page's strokes.
+    */
+   public void setStrokeLoader(StrokeLoader loader)
+   {
+      if (loader == null)
+         throw new NullPointerException();
+      
+      if (!this.strokeList.isEmpty())
+         throw new IllegalStateException("A stroke loader can only be " +
+                                         "given to a page without " +
+                                         "any strokes.");
+      
+      this.strokeLoader = loader;
+      this.loaderXResize = 1;
+      this.loaderYResize = 1;
+      this.hasLoadFailed = false;
+      
+      this.baseLoader = loader;
+      this.baseXResize = 1;
+      this.baseYResize = 1;
+   }
+   
+   /**
+    * Used to get the loader that will supply this page's strokes.
+    * 
+    * @return The loader or <code>null</code> if this page's strokes 
+    *         have already been loaded.
+    */
+   public StrokeLoader getStrokeLoader()
+   {
+      return this.strokeLoader;
+   }
+   
+   /**
+    * Used to get the amount, in the x direction, the strokes supplied by 
+    * this page's loader will be resized by when they are loaded.
+    * 
+    * @return The amount the strokes will be resized by.
+    */
+   public float getLoaderXResize()
+   {
+      return this.loaderXResize;
+   }
+   
+   /**
+    * Used to get the amount, in the y direction, the strokes supplied by 
+    * this page's loader will be resized by when they are loaded.
+    * 
+    * @return The amount the strokes will be resized by.
+    */
+   public float getLoaderYResize()
+   {
+      return this.loaderYResize;
+   }
+   
+   public boolean isLoaded()
+   {
+      return this.strokeLoader == null;
+   }
+   
+   /**
+    * Used to determine if this page's loader could not supply its 
+    * strokes.
+    * 
+    * @return <code>true</code> if this page's strokes could not be loaded.
+    */
+   public boolean hasLoadFailed()
+   {
+      return this.hasLoadFailed;
+   }
+   
+   /**
+    * Loads this page's strokes if they haven't been loaded already.  
+    * The strokes are brought to the current size and scale of this page 
+    * and any <code>PageLoadListeners</code> are then informed.  If the 
+    * strokes cannot be read, this page keeps its loader and is shown 
+    * without any strokes.  It isn't loaded again and strokes cannot be 
+    * added to it, so that it is saved with the strokes stored in its file.
+    */
+   public void load()
+   {
+      StrokeLoader loader = this.strokeLoader;
+      if (loader == null || this.hasLoadFailed)
+         return;
+      
+      // The loader is cleared first so that this page can be used 
+      // normally while its strokes are being added.
+      this.strokeLoader = null;
+      
+      List<Stroke> strokes = null;
+      try
+      {
+         strokes = loader.loadStrokes();
+      }
+      catch (IOException e)
+      {
+         System.err.println(Page.class.getName()+
+                            " ERROR:  The strokes of a page could not be " +
+                            "loaded.  The error returned was:  "+
+                            e.getMessage());
+         
+         this.strokeLoader = loader;
+         this.hasLoadFailed = true;
+         return;
+      }
+      
+      Vector<WeakReference<Stroke>> unloadedVec = this.unloadedStrokeVec;
+      this.unloadedStrokeVec = null;
+      
+      if (strokes != null)
+      {
+         this.isUpdatingStrokes = true;
+         
+         float xScale = getXScaleLevel();
+         float yScale = getYScaleLevel();
+         int strokeNum = 0;
+         Stroke unloaded;
+         for (Stroke stroke : strokes)
+         {
+            unloaded = null;
+            if (unloadedVec != null && strokeNum < unloadedVec.size())
+               unloaded = unloadedVec.get(strokeNum).get();
+            strokeNum++;
+            
+            if (unloaded == null)
+               stroke.resizeTo(this.loaderXResize, this.loaderYResize);
+            else
+            {
+               stroke = unloaded;
+               if (this.unloadXResize != 1 || this.unloadYResize != 1)
+                  stroke.resizeTo(this.unloadXResize, this.unloadYResize);
+            }
+            
+            stroke.scaleTo(xScale, yScale);
+            stroke.addModListener(this);
+            
+            this.strokeList.add(stroke);
+            this.unSelStrokeVec.add(stroke);
+         }
+         
+         this.isUpdatingStrokes = false;
+      }
+      
+      this.loaderXResize = 1;
+      this.loaderYResize = 1;
+      this.unloadXResize = 1;
+      this.unloadYResize = 1;
+      
+      Vector<PageLoadListener> listeners = 
+                                  new Vector<PageLoadListener>(
+                                                this.loadListenerVec);
+      for (PageLoadListener listener : listeners)
+         listener.strokesLoaded(this);
+   }
+   
+   /**
+    * Used to determine if this page's strokes can be unloaded.  Only the 
+    * strokes of a page that doesn't contain any selected strokes can be 
+    * unloaded since, otherwise, the strokes are used by the current 
+    * selection.
+    * 
+    * @return <code>true</code> if this page's strokes are loaded and can 
+    *         be unloaded.
+    */
+   public boolean canUnload()
+   {
+      return this.strokeLoader == null && 
+             this.selStrokeVec.isEmpty() && 
+             !this.strokeList.isEmpty();
+   }
+   
+   /**
+    * Used to get the loader that will supply this page's strokes if they 
+    * are unloaded.
+    * 
+    * @return The loader or <code>null</code> if the page's strokes were 
+    *         not supplied by a loader.
+    */
+   public StrokeLoader getBaseStrokeLoader()
+   {
+      return this.baseLoader;
+   }
+   
+   /**
+    * Discards this page's strokes so that they are loaded again the next 
+    * time they are needed.  Any <code>PageLoadListeners</code> are 
+    * informed before the strokes are discarded.  The strokes that are 
+    * still used elsewhere, such as by the undo history, are put back on 
+    * the page when it is loaded.  If such a stroke is modified while the 
+    * page is unloaded, the page is loaded again.
+    * 
+    * @param loader The loader that supplies this page's strokes, as they 
+    *               currently are, at a scale level of <code>1</code>.  
+    *               This loader is then used every time the strokes are 
+    *               unloaded and the page is no longer considered edited.  
+    *               If <code>null</code>, the loader that supplied the 
+    *               strokes when they were last loaded is used.
+    * 
+    * @throws IllegalStateException If the strokes can't be unloaded or 
+    *                               <code>loader</code> is <code>null</code> 
+    *                               and the strokes weren't supplied by a 
+    *                               loader or have been edited.
+    */
+   public void unload(StrokeLoader loader)
+   {
+      if (!canUnload())
+         throw new IllegalStateException("The strokes of a page that is " +
+                                         "not loaded or contains selected " +
+                                         "strokes cannot be unloaded.");
+      
+      if (loader != null)
+      {
+         this.baseLoader = loader;
+         this.baseXResize = 1;
+         this.baseYResize = 1;
+      }
+      else if (this.baseLoader == null)
+         throw new IllegalStateException("The strokes of a page that " +
+                                         "weren't supplied by a loader " +
+                                         "cannot be unloaded without one.");
+      else if (this.hasBeenEdited)
+         throw new IllegalStateException("The strokes of a page that has " +
+                                         "been edited cannot be unloaded " +
+                                         "without a new loader.");
+      
+      Vector<PageLoadListener> listeners = 
+                                  new Vector<PageLoadListener>(
+                                                this.loadListenerVec);
+      for (PageLoadListener listener : listeners)
+         listener.strokesUnloading(this);
+      
+      // This page keeps listening to the strokes so that it is loaded 
+      // again if one of them is modified while it is unloaded.
+      Vector<WeakReference<Stroke>> unloadedVec = 
+                   new Vector<WeakReference<Stroke>>(this.strokeList.size());
+      for (Stroke stroke : this.strokeList)
+         unloadedVec.add(new WeakReference<Stroke>(stroke));
+      
+      this.strokeList.clear();
+      this.selStrokeVec.clear();
+      this.unSelStrokeVec.clear();
+      
+      this.strokeLoader = this.baseLoader;
+      this.loaderXResize = this.baseXResize;
+      this.loaderYResize = this.baseYResize;
+      
+      this.unloadedStrokeVec = unloadedVec;
+      this.unloadXResize = 1;
+      this.unloadYResize = 1;
+      this.hasBeenEdited = false;
+   }
+   
+   /**
+    * Used to determine if strokes have been added to, removed from or 
+    * modified on this page since {@link #clearEdited() clearEdited()} was 
+    * last invoked or the page was last unloaded.
+    * 
+    * @return <code>true</code> if this page has been edited.
+    */
+   public boolean hasBeenEdited()
+   {
+      return this.hasBeenEdited;
+   }
+   
+   /**
+    * Specifies that this page has not been edited.  This is done once the 
+    * page has been loaded from its file.
+    */
+   public void clearEdited()
+   {
+      this.hasBeenEdited = false;
+   }
+   
+   /**
+    * Used to add a listener that is informed when this page's strokes 
+    * are loaded or unloaded.
+    * 
+    * @param listener The listener to add.
+    */
+   public void addPageLoadListener(PageLoadListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
+      
+      if (!this.loadListenerVec.contains(listener))
+         this.loadListenerVec.add(listener);
+   }
+   
+   public void removePageLoadListener(PageLoadListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
+      
+      this.loadListenerVec.remove(listener);
+   }
+//------------=[ End methods used to load strokes on demand ]=----------------//
+   
    public boolean isSelected()
    {
       return this.paper.isSelected();
@@ -118,6 +497,10 @@ public class Page extends TransformRectangle2D
    
    public void setAllStrokeSelected(boolean isSelected)
    {
+      // strokes that haven't been loaded are never selected
+      if (this.strokeLoader != null && !isSelected)
+         return;
+      
       for (Stroke stroke : this)
          setStrokeSelected(stroke, isSelected);
    }
@@ -127,7 +510,9 @@ public class Page extends TransformRectangle2D
       if (stroke == null)
          throw new NullPointerException();
       
+      this.isUpdatingStrokes = true;
       stroke.setSelected(isSelected);
+      this.isUpdatingStrokes = false;
       
       if (isSelected)
       {
@@ -135,8 +520,7 @@ public class Page extends TransformRectangle2D
          this.unSelStrokeVec.remove(stroke);
          
          // add the stroke to the list of selected strokes
-         if (!this.selStrokeVec.contains(stroke))
-            this.selStrokeVec.add(stroke);
+         this.selStrokeVec.add(stroke);
       }
       else
       {
@@ -144,25 +528,53 @@ public class Page extends TransformRectangle2D
          this.selStrokeVec.remove(stroke);
          
          // add the stroke to the list of unselected strokes
-         if (!this.unSelStrokeVec.contains(stroke))
-            this.unSelStrokeVec.add(stroke);
+         this.unSelStrokeVec.add(stroke);
       }
    }
    
    public void clear()
    {
+      load();
+      
       int size = this.strokeList.size();
       for (int i=size-1; i>=0; i--)
          removeStroke(this.strokeList.get(i));
    }
    
+   /**
+    * Used to determine if the given stroke is on this page.
+    * 
+    * @param stroke The stroke.
+    * 
+    * @return <code>true</code> if the stroke is on this page.
+    */
+   public boolean containsStroke(Stroke stroke)
+   {
+      load();
+      
+      // a page whose strokes couldn't be loaded doesn't contain the stroke
+      if (this.strokeLoader != null)
+         return false;
+      
+      return this.strokeList.contains(stroke);
+   }
+   
    public void removeStroke(Stroke stroke)
    {
       if (stroke == null)
          throw new NullPointerException();
       
+      // Strokes that are still used elsewhere are put back on the page 
+      // when it is loaded.
+      load();
+      
+      // a page whose strokes couldn't be loaded doesn't contain the stroke
+      if (this.strokeLoader != null)
+         return;
+      
       stroke.removeModListener(this);
-      this.strokeList.remove(stroke);
+      if (this.strokeList.remove(stroke))
+         this.hasBeenEdited = true;
       
       if (stroke.isSelected())
          this.selStrokeVec.remove(stroke);
@@ -177,8 +589,15 @@ public class Page extends TransformRectangle2D
       if (stroke == null)
          throw new NullPointerException();
       
+      load();
+      
+      // the stroke would be lost since the page is saved from its loader
+      if (this.hasLoadFailed)
+         return;
+      
       stroke.addModListener(this);
       
+      this.hasBeenEdited = true;
       this.strokeList.add(stroke);
       if (stroke.isSelected())
          this.selStrokeVec.add(stroke);
@@ -199,6 +618,9 @@ public class Page extends TransformRectangle2D
       mG2d.tryRenderBoundingBox(this);
       this.paper.renderInto(mG2d);
       
+      // A binder only renders the pages in the renderer's clip region 
+      // so the strokes are loaded when the page is first seen.
+      load();
       for (Stroke stroke : this.strokeList)
          if (mG2d.isInClipRegion(stroke))
             stroke.renderInto(mG2d);
@@ -221,6 +643,54 @@ public class Page extends TransformRectangle2D
    }
    
    public Page getCopy()
+   {
+      load();
+      
+      Page copy = getEmptyCopy();
+      
+      for (Stroke stroke : this.strokeList)
+         copy.addStroke(stroke.getCopy());
+      
+      for (ModListener listener : super.modListenerVec)
+         copy.addModListener(listener);
+      
+      return copy;
+   }
+   
+   /**
+    * Used to get a deep copy of this page that does not notify any of 
+    * this page's listeners when it, or any of its strokes, is modified.  
+    * Thus, the copy can be modified on any thread without affecting the 
+    * rest of the program.  Unlike {@link #getCopy() getCopy()}, the copy 
+    * also refers to the same PDF page, if any, as this page.
+    * 
+    * @return A deep copy of this page without any listeners.
+    */
+   public Page getSnapshot()
+   {
+      Page copy = getEmptyCopy();
+      
+      PDFPageInfo pageInfo = this.paper.getPDFPageInfo();
+      if (pageInfo != null)
+         copy.paper.setPDFPageInfo(pageInfo);
+      
+      // The strokes aren't loaded just to take a snapshot.  Instead, the 
+      // snapshot loads the strokes itself if it needs them.
+      if (this.strokeLoader != null)
+      {
+         copy.strokeLoader = this.strokeLoader;
+         copy.loaderXResize = this.loaderXResize;
+         copy.loaderYResize = this.loaderYResize;
+         copy.hasLoadFailed = this.hasLoadFailed;
+      }
+      
+      for (Stroke stroke : this.strokeList)
+         copy.addStroke(stroke.getSnapshot());
+      
+      return copy;
+   }
+   
+   private Page getEmptyCopy()
    {
       Page copy = new Page(this.paper.getWidth(), 
                            this.paper.getHeight(), 
@@ -235,12 +705,6 @@ public class Page extends TransformRectangle2D
                                               bgColor.getBlue(), 
                                               bgColor.getAlpha()));
       
-      for (Stroke stroke : this.strokeList)
-         copy.addStroke(stroke.getCopy());
-      
-      for (ModListener listener : super.modListenerVec)
-         copy.addModListener(listener);
-      
       return copy;
    }
    
@@ -256,6 +720,8 @@ public class Page extends TransformRectangle2D
       if ( ptX < 0 || ptY < 0 || ptX > getWidth() || ptY > getHeight())
          return new Vector<Stroke>(0);
       
+      load();
+      
       Vector<Stroke> strokeVec = new Vector<Stroke>();
       for (Stroke stroke : this.strokeList)
          if (stroke.containsPoint(point))
@@ -300,6 +766,7 @@ public class Page extends TransformRectangle2D
         buffer.append(" px");
         buffer.append("'\n");
         buffer.append("  Strokes:  \n");
+        load();
         for (Stroke stroke : this.strokeList)
         {
            buffer.append("    ");
@@ -317,8 +784,11 @@ public class Page extends TransformRectangle2D
       super.scaleBy(x, y);
       
       this.paper.scaleBy(x, y);
+      
+      this.isUpdatingStrokes = true;
       for (Stroke stroke : this.strokeList)
          stroke.scaleBy(x, y);
+      this.isUpdatingStrokes = false;
    }
 
    @Override
@@ -327,8 +797,11 @@ public class Page extends TransformRectangle2D
       super.scaleTo(x, y);
       
       this.paper.scaleTo(x, y);
+      
+      this.isUpdatingStrokes = true;
       for (Stroke stroke : this.strokeList)
          stroke.scaleTo(x, y);
+      this.isUpdatingStrokes = false;
    }
    
    @Override
@@ -337,8 +810,18 @@ public class Page extends TransformRectangle2D
       super.resizeTo(x, y);
       
       this.paper.resizeTo(x, y);
+      
+      this.loaderXResize *= x;
+      this.loaderYResize *= y;
+      this.baseXResize *= x;
+      this.baseYResize *= y;
+      this.unloadXResize *= x;
+      this.unloadYResize *= y;
+      
+      this.isUpdatingStrokes = true;
       for (Stroke stroke : this.strokeList)
          stroke.resizeTo(x, y);
+      this.isUpdatingStrokes = false;
    }
 
    @Override
@@ -346,9 +829,13 @@ public class Page extends TransformRectangle2D
    {
       super.translateBy(x, y);
       
+      load();
       this.paper.translateBy(x, y);
+      
+      this.isUpdatingStrokes = true;
       for (Stroke stroke : this.strokeList)
          stroke.translateBy(x, y);
+      this.isUpdatingStrokes = false;
    }
 
    @Override
@@ -356,9 +843,13 @@ public class Page extends TransformRectangle2D
    {
       super.translateTo(x, y);
       
+      load();
       this.paper.translateTo(x, y);
+      
+      this.isUpdatingStrokes = true;
       for (Stroke stroke : this.strokeList)
          stroke.translateTo(x, y);
+      this.isUpdatingStrokes = false;
    }
    
    @Override
@@ -395,12 +886,22 @@ public class Page extends TransformRectangle2D
    
    public void modOccured(Object source, ModType type)
    {
+      // the strokes are edited if they are modified by anything else
+      if (source instanceof Stroke && !this.isUpdatingStrokes)
+      {
+         // a stroke used elsewhere was modified while this page was unloaded
+         load();
+         
+         this.hasBeenEdited = true;
+      }
+      
       if (type == ModType.Other)
          notifyModListeners(type);
    }
    
    public Iterator<Stroke> iterator()
    {
+      load();
       return this.strokeList.iterator();
    }
    
@@ -415,6 +916,8 @@ public class Page extends TransformRectangle2D
    
    public Vector<Stroke> getUnselectedStrokesCopy()
    {
+      load();
+      
       Vector<Stroke> copy = new Vector<Stroke>(this.unSelStrokeVec.size());
       for (Stroke stroke : this.unSelStrokeVec)
          copy.add(stroke);
@@ -424,17 +927,23 @@ public class Page extends TransformRectangle2D
    
    public int getNumStrokes()
    {
+      if (this.strokeLoader != null)
+         return this.strokeLoader.getNumStrokes();
+      
       return this.strokeList.size();
    }
    
    public int getNumUnselectedStrokes()
    {
+      if (this.strokeLoader != null)
+         return this.strokeLoader.getNumStrokes();
+      
       return this.unSelStrokeVec.size();
    }
    
    public Stroke getSelectedStrokeAt(int index)
    {
-      return this.selStrokeVec.elementAt(index);
+      return this.selStrokeVec.get(index);
    }
    
    public int getNumSelectedStrokes()
@@ -444,7 +953,8 @@ public class Page extends TransformRectangle2D
    
    public Stroke getUnSelectedStrokeAt(int index)
    {
-      return this.unSelStrokeVec.elementAt(index);
+      load();
+      return this.unSelStrokeVec.get(index);
    }
 
    public float getUnitScaleFactor()
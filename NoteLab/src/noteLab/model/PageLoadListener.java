@@ -0,0 +1,56 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.model;
+
+/**
+ * Classes implement this interface if they want to be informed when the 
+ * strokes of a <code>Page</code> that are read from a file on demand have 
+ * been loaded or are about to be unloaded.
+ * 
+ * @author Dominic Kramer
+ * @see Page#addPageLoadListener(PageLoadListener)
+ */
+public interface PageLoadListener
+{
+   /**
+    * Invoked after the strokes of a <code>Page</code> have been loaded 
+    * and before the page is used in any other way.  When this method 
+    * is invoked, the page's strokes are in the order they were stored 
+    * in the file.
+    * 
+    * @param page The page whose strokes were loaded.
+    */
+   public void strokesLoaded(Page page);
+   
+   /**
+    * Invoked just before the strokes of a <code>Page</code> are 
+    * discarded so that they can be loaded again when they are next 
+    * needed.  When this method is invoked, the page still contains the 
+    * strokes in the order in which they will be loaded.
+    * 
+    * @param page The page whose strokes will be unloaded.
+    */
+   public void strokesUnloading(Page page);
+}
@@ -365,7 +365,17 @@ public class Paper extends TransformRectangle2D
       }
    }
    
-   private String getGroupDesc()
+   /**
+    * Used to get the description of this paper that is stored in 
+    * session files.  It contains this paper's type and, if this paper 
+    * shows a page of a PDF file, the name of the PDF file and the page 
+    * number.
+    * 
+    * @return This paper's description.
+    * @see #decodePaperType(String)
+    * @see #decodePDFPageInfo(File, String)
+    */
+   public String getGroupDesc()
    {
       String desc = this.type.name();
       if (this.pdfPageInfo != null)
@@ -389,9 +399,6 @@ public class Paper extends TransformRectangle2D
       String nameDesc = (index == -1)?
                            (groupDesc):(groupDesc.substring(0, index));
       
-      System.out.println(nameDesc);
-      System.out.println();
-      
       PaperType type = PaperType.Plain;
       if (nameDesc.equals(PaperType.Plain.name()))
          type = PaperType.Plain;
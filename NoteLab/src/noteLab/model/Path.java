@@ -146,6 +146,24 @@ public class Path
       return copy;
    }
    
+   /**
+    * Used to get a deep copy of this path that does not notify any of 
+    * this path's listeners when it is modified.
+    * 
+    * @return A deep copy of this path without any listeners.
+    */
+   public Path getSnapshot()
+   {
+      Path copy = new Path(super.xScaleLevel, super.yScaleLevel);
+      
+      for (FloatPoint2D pt : this)
+         copy.addItem(new FloatPoint2D(pt.getX(), pt.getY(), 
+                                       pt.getXScaleLevel(), 
+                                       pt.getYScaleLevel()));
+      
+      return copy;
+   }
+   
    @Override
    public String toString()
    {
@@ -28,6 +28,7 @@ import java.awt.geom.Rectangle2D;
 
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.tool.Pen;
+import noteLab.model.tool.PenTable;
 import noteLab.util.CopyReady;
 import noteLab.util.Selectable;
 import noteLab.util.geom.ItemContainer;
@@ -41,9 +42,27 @@ public class Stroke
                            implements Renderable, CopyReady<Stroke>, 
                                       Selectable
 {
+   /** The estimated number of bytes used by a stroke without its points. */
+   private static final long STROKE_SIZE = 160;
+   
+   /** The estimated number of bytes used by a point of a stroke. */
+   private static final long POINT_SIZE = 96;
+   
+   /** The number of bytes used by a point of a packed stroke. */
+   private static final long PACKED_POINT_SIZE = 8;
+   
    private Pen pen;
    private boolean isSelected;
    
+   /** 
+    * The coordinates of the points of this stroke's path, with the x and 
+    * y coordinates of each point next to each other, if this stroke is 
+    * packed or <code>null</code> if it isn't.  The array is never 
+    * modified once it is created.  Thus, it is shared by the copies of 
+    * this stroke until they are modified.
+    */
+   private float[] packedCoords;
+   
    public Stroke(Pen pen, Path path)
    {
       super(path.getXScaleLevel(), path.getYScaleLevel());
@@ -88,8 +107,15 @@ public class Stroke
       notifyModListeners(ModType.Other);
    }
    
+   /**
+    * Used to get this stroke's path.  If this stroke is packed, it is 
+    * unpacked first.
+    * 
+    * @return This stroke's path.
+    */
    public Path getPath()
    {
+      unpack();
       return getFirst();
    }
    
@@ -98,6 +124,9 @@ public class Stroke
       if (path == null)
          throw new NullPointerException();
       
+      // the packed coordinates belong to the path being replaced
+      this.packedCoords = null;
+      
       clear();
       addItem(path);
    }
@@ -123,10 +152,138 @@ public class Stroke
       return false;
    }
    
+   /**
+    * Used to get the estimated number of bytes of memory used by this 
+    * stroke, including its pen and its points.
+    * 
+    * @return The estimated memory used by this stroke.
+    */
+   public long getEstimatedSize()
+   {
+      if (this.packedCoords != null)
+         return STROKE_SIZE+PACKED_POINT_SIZE*(this.packedCoords.length/2);
+      
+      return STROKE_SIZE+POINT_SIZE*getPath().getNumItems();
+   }
+   
+   /**
+    * Used to determine if this stroke is packed.
+    * 
+    * @return <code>true</code> if this stroke is packed.
+    * @see #pack()
+    */
+   public boolean isPacked()
+   {
+      return this.packedCoords != null;
+   }
+   
+   /**
+    * Packs the points of this stroke's path into an array of coordinates 
+    * so that this stroke uses far less memory.  While it is packed, this 
+    * stroke's path only contains its first point.  The stroke is 
+    * {@link #unpack() unpacked} when its path is needed or it is 
+    * transformed.  Thus, this should only be done to strokes that won't 
+    * be used for some time, such as the strokes kept so that a deletion 
+    * can be undone.
+    */
+   public void pack()
+   {
+      if (this.packedCoords != null)
+         return;
+      
+      Path path = getFirst();
+      if (path.isEmpty())
+         return;
+      
+      float[] coords = getCoords(path);
+      setPath(getFirstPath(path, coords));
+      this.packedCoords = coords;
+   }
+   
+   /**
+    * Used to get the coordinates of the points of the given path.
+    * 
+    * @param path The path.
+    * 
+    * @return The x and y coordinates of each point next to each other.
+    */
+   private static float[] getCoords(Path path)
+   {
+      float[] coords = new float[2*path.getNumItems()];
+      int i = 0;
+      for (FloatPoint2D pt : path)
+      {
+         coords[i++] = pt.getX();
+         coords[i++] = pt.getY();
+      }
+      
+      return coords;
+   }
+   
+   /**
+    * Used to get the path kept by a packed stroke which only contains 
+    * the first point of the stroke.
+    * 
+    * @param path The stroke's path or the path kept by the stroke if it 
+    *             is already packed.
+    * @param coords The coordinates of the stroke's points.
+    * 
+    * @return A path containing only the first point.
+    */
+   private static Path getFirstPath(Path path, float[] coords)
+   {
+      FloatPoint2D first = path.getFirst();
+      Path firstPath = new Path(path.getXScaleLevel(), 
+                                path.getYScaleLevel());
+      firstPath.addItem(new FloatPoint2D(coords[0], coords[1], 
+                                         first.getXScaleLevel(), 
+                                         first.getYScaleLevel()));
+      
+      return firstPath;
+   }
+   
+   /**
+    * Restores the points of this stroke's path if this stroke is packed.
+    * 
+    * @see #pack()
+    */
+   public void unpack()
+   {
+      if (this.packedCoords == null)
+         return;
+      
+      float[] coords = this.packedCoords;
+      this.packedCoords = null;
+      
+      Path firstPath = getFirst();
+      FloatPoint2D first = firstPath.getFirst();
+      float xScaleLevel = first.getXScaleLevel();
+      float yScaleLevel = first.getYScaleLevel();
+      
+      Path path = new Path(firstPath.getXScaleLevel(), 
+                           firstPath.getYScaleLevel());
+      for (int i=0; i<coords.length; i+=2)
+         path.addItem(new FloatPoint2D(coords[i], coords[i+1], 
+                                       xScaleLevel, yScaleLevel));
+      
+      setPath(path);
+   }
+   
+   /**
+    * Used to get a copy of this stroke.  The copy is packed and shares 
+    * the coordinates of this stroke's points until it is unpacked.  
+    * Thus, copying a stroke doesn't create any points.  If this stroke's 
+    * pen is shared, the copy shares it too.
+    * 
+    * @return A copy of this stroke.
+    */
    public Stroke getCopy()
    {
-      Stroke copy = new Stroke(getPen().getCopy(), 
-                               getPath().getCopy());
+      Pen pen = getPen();
+      if (pen.getTable() == null)
+         pen = pen.getCopy();
+      
+      Stroke copy = getPackedCopy(pen);
       copy.setSelected(this.isSelected);
       
       for (ModListener listener : super.modListenerVec)
@@ -135,6 +292,50 @@ public class Stroke
       return copy;
    }
    
+   /**
+    * Used to get a copy of this stroke that does not notify any of 
+    * this stroke's listeners when it is modified.  Thus, the copy can be 
+    * modified on any thread without affecting the rest of the program.  
+    * Like a copy, the snapshot shares the coordinates of this stroke's 
+    * points until it is unpacked.
+    * 
+    * @return A copy of this stroke without any listeners.
+    */
+   public Stroke getSnapshot()
+   {
+      Pen pen = getPen();
+      if (pen.getTable() == null)
+         pen = pen.getSnapshot();
+      
+      Stroke copy = getPackedCopy(pen);
+      copy.setSelected(this.isSelected);
+      
+      return copy;
+   }
+   
+   /**
+    * Used to get a packed copy of this stroke that uses the given pen.
+    * 
+    * @param pen The copy's pen.
+    * 
+    * @return The copy which doesn't have any listeners.
+    */
+   private Stroke getPackedCopy(Pen pen)
+   {
+      Path path = getFirst();
+      if (path.isEmpty())
+         return new Stroke(pen, path.getSnapshot());
+      
+      float[] coords = this.packedCoords;
+      if (coords == null)
+         coords = getCoords(path);
+      
+      Stroke copy = new Stroke(pen, getFirstPath(path, coords));
+      copy.packedCoords = coords;
+      
+      return copy;
+   }
+   
    public void renderInto(Renderer2D mG2d)
    {
       if (mG2d == null)
@@ -145,7 +346,8 @@ public class Stroke
       
       mG2d.tryRenderBoundingBox(Stroke.this);
       
-      if (this.isSelected)
+      boolean isSelected = this.isSelected && mG2d.rendersSelection();
+      if (isSelected)
          mG2d.setSelected(true);
       
       this.pen.adjustRenderer(mG2d);
@@ -155,7 +357,7 @@ public class Stroke
       // of the path is drawn to look selected.  This 
       // has a better appearance than drawing every 
       // segment of the path in the selected style.
-      if (!this.isSelected)
+      if (!isSelected)
          mG2d.drawPath(getPath());
       else
       {
@@ -170,7 +372,7 @@ public class Stroke
          else
          {
             int increment = 1;
-            if (this.isSelected && numPts > 2)
+            if (isSelected && numPts > 2)
                increment = 2;
             
             FloatPoint2D pt1;
@@ -183,7 +385,7 @@ public class Stroke
                   mG2d.drawLine(pt1, pt2);
             }
             
-            if (this.isSelected && (numPts%2==1) )
+            if (isSelected && (numPts%2==1) )
             {
                FloatPoint2D last = path.getLast();
                if (last != null)
@@ -191,7 +393,7 @@ public class Stroke
             }
          }
          
-         if (this.isSelected)
+         if (isSelected)
             mG2d.setSelected(false);
       }
       
@@ -201,40 +403,113 @@ public class Stroke
    @Override
    public void scaleBy(float x, float y)
    {
+      unpack();
       super.scaleBy(x, y);
-      this.pen.scaleBy(Math.max(x, y));
+      
+      Pen pen = getModifiablePen();
+      pen.scaleBy(Math.max(x, y));
+      sharePen(pen);
    }
 
    @Override
    public void scaleTo(float x, float y)
    {
+      unpack();
       super.scaleTo(x, y);
-      this.pen.scaleTo(Math.max(x, y));
+      
+      Pen pen = getModifiablePen();
+      pen.scaleTo(Math.max(x, y));
+      sharePen(pen);
    }
    
    @Override
    public void resizeTo(float x, float y)
    {
+      unpack();
       super.resizeTo(x, y);
-      this.pen.resizeTo(Math.max(x, y));
+      
+      Pen pen = getModifiablePen();
+      pen.resizeTo(Math.max(x, y));
+      sharePen(pen);
+   }
+   
+   /**
+    * Used to get a pen that can be scaled along with this stroke.  If 
+    * this stroke's pen is shared, a snapshot of it is returned and 
+    * {@link #sharePen(Pen)} has to be invoked once the snapshot is 
+    * scaled.  Otherwise, this stroke's pen itself is returned.
+    * 
+    * @return The pen to scale.
+    */
+   private Pen getModifiablePen()
+   {
+      if (this.pen.getTable() == null)
+         return this.pen;
+      
+      return this.pen.getSnapshot();
+   }
+   
+   /**
+    * Replaces this stroke's shared pen with the pen in the same table 
+    * that matches the given scaled pen.  Scaling a stroke isn't a 
+    * modification that its listeners are notified of.  Thus, this 
+    * stroke's pen is replaced without notifying them.
+    * 
+    * @param pen The pen returned from {@link #getModifiablePen()} after 
+    *            it has been scaled.
+    */
+   private void sharePen(Pen pen)
+   {
+      PenTable table = this.pen.getTable();
+      if (table != null)
+         this.pen = table.getPen(pen);
    }
 
    @Override
    public void translateBy(float x, float y)
    {
+      unpack();
       super.translateBy(x, y);
    }
 
    @Override
    public void translateTo(float x, float y)
    {
+      unpack();
       super.translateTo(x, y);
    }
    
+   /**
+    * Used to get the bounds of this stroke's points.  The bounds of a 
+    * packed stroke are found without unpacking it.
+    * 
+    * @return The bounds of the points.
+    */
+   private Rectangle2D.Float getPointBounds()
+   {
+      float[] coords = this.packedCoords;
+      if (coords == null)
+         return super.getBounds2D();
+      
+      float minX = coords[0];
+      float minY = coords[1];
+      float maxX = minX;
+      float maxY = minY;
+      for (int i=2; i<coords.length; i+=2)
+      {
+         minX = Math.min(minX, coords[i]);
+         minY = Math.min(minY, coords[i+1]);
+         maxX = Math.max(maxX, coords[i]);
+         maxY = Math.max(maxY, coords[i+1]);
+      }
+      
+      return new Rectangle2D.Float(minX, minY, maxX-minX, maxY-minY);
+   }
+   
    @Override
    public Rectangle2D.Float getBounds2D()
    {
-      Rectangle2D.Float bounds = super.getBounds2D();
+      Rectangle2D.Float bounds = getPointBounds();
       
       // modify the bounds to also account for the width of the current 
       // pen's stroke
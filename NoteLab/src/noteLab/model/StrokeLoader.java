@@ -0,0 +1,58 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A <code>StrokeLoader</code> supplies the strokes of a <code>Page</code> 
+ * whose strokes have not been read from the page's file yet.  This allows 
+ * a page to only read its strokes when they are first needed.
+ * 
+ * @author Dominic Kramer
+ * @see Page#setStrokeLoader(StrokeLoader)
+ */
+public interface StrokeLoader
+{
+   /**
+    * Used to get the number of strokes this loader will supply without 
+    * actually loading them.
+    * 
+    * @return The number of strokes this loader will supply.
+    */
+   public int getNumStrokes();
+   
+   /**
+    * Used to read the strokes.  The strokes are returned as they are 
+    * stored in the file at a scale level of <code>1</code>.  A new list 
+    * of new strokes is returned each time this method is invoked.
+    * 
+    * @return The strokes in the order they are stored in the file.
+    * 
+    * @throws IOException If the strokes could not be read.
+    */
+   public List<Stroke> loadStrokes() throws IOException;
+}
@@ -24,14 +24,12 @@
 
 package noteLab.model.binder;
 
-import java.awt.Graphics;
 import java.awt.geom.Rectangle2D;
-import java.awt.print.PageFormat;
-import java.awt.print.Pageable;
-import java.awt.print.Printable;
-import java.awt.print.PrinterException;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Vector;
 
 import noteLab.gui.listener.RepaintBroadcastCenter;
@@ -39,6 +37,7 @@ import noteLab.gui.listener.RepaintListener;
 import noteLab.model.Page;
 import noteLab.model.Paper.PaperType;
 import noteLab.model.geom.FloatPoint2D;
+import noteLab.model.tool.PenTable;
 import noteLab.util.CopyReady;
 import noteLab.util.UnitScaleDependent;
 import noteLab.util.geom.Bounded;
@@ -48,7 +47,6 @@ import noteLab.util.geom.unit.Unit;
 import noteLab.util.mod.ModBroadcaster;
 import noteLab.util.mod.ModListener;
 import noteLab.util.mod.ModType;
-import noteLab.util.render.PrinterRenderer2D;
 import noteLab.util.render.Renderable;
 import noteLab.util.render.Renderer2D;
 import noteLab.util.settings.SettingsUtilities;
@@ -69,17 +67,9 @@ public abstract class Binder implements Renderable, Bounded,
                                         ModListener, 
                                         Iterable<Page>, 
                                         Transformable, 
-                                        Printable, 
-                                        Pageable, 
                                         CopyReady<Binder>, 
                                         UnitScaleDependent
 {
-   /**
-    * The format in which this binder's pages are in.  This field 
-    * is used when printing this binder.
-    */
-   private static PageFormat LETTER_SIZE_FORMAT = new PageFormat();
-   
    /** The index of this binder's current page. */
    private int curPage;
    
@@ -108,11 +98,40 @@ public abstract class Binder implements Renderable, Bounded,
     */
    private Vector<ModListener> modListenerVec;
    
+   /** The table of the pens shared by the strokes in this binder. */
+   private PenTable penTable;
+   
+   /** 
+    * The source the strokes of this binder's pages are read from when 
+    * they are first needed or <code>null</code> if there isn't one.
+    */
+   private Closeable strokeSource;
+   
    public Binder(float xScaleLevel, float yScaleLevel, Page ...pages)
    {
-      if (pages == null)
+      this(xScaleLevel, yScaleLevel, new PenTable(), pages);
+   }
+   
+   /**
+    * Constructs a binder containing the given pages whose strokes share 
+    * the pens in the given table.
+    * 
+    * @param xScaleLevel The level at which the binder is scaled along 
+    *                    the x-axis.
+    * @param yScaleLevel The level at which the binder is scaled along 
+    *                    the y-axis.
+    * @param penTable The table of the pens shared by the binder's strokes.
+    * @param pages The binder's pages.
+    */
+   public Binder(float xScaleLevel, float yScaleLevel, 
+                 PenTable penTable, Page ...pages)
+   {
+      if (pages == null || penTable == null)
          throw new NullPointerException();
       
+      this.penTable = penTable;
+      this.strokeSource = null;
+      
       if (pages.length == 0)
          pages = new Page[] {new Page(SettingsUtilities.getPaperType(), 
                                       xScaleLevel, yScaleLevel, 
@@ -135,6 +154,69 @@ public abstract class Binder implements Renderable, Bounded,
       setCurrentPage(0);
    }
    
+   /**
+    * Used to get the table of the pens shared by the strokes in this 
+    * binder.  The strokes added to this binder should be given pens from 
+    * this table.
+    * 
+    * @return This binder's pen table.
+    */
+   public PenTable getPenTable()
+   {
+      return this.penTable;
+   }
+   
+   /**
+    * Used to specify the source the strokes of this binder's pages are 
+    * read from when they are first needed.  The source is closed when 
+    * this binder is closed.
+    * 
+    * @param source The source of the strokes.
+    */
+   public void setStrokeSource(Closeable source)
+   {
+      if (source == null)
+         throw new NullPointerException();
+      
+      this.strokeSource = source;
+   }
+   
+   /**
+    * Used to get the source the strokes of this binder's pages are read 
+    * from when they are first needed.
+    * 
+    * @return The source or <code>null</code> if there isn't one.
+    */
+   public Closeable getStrokeSource()
+   {
+      return this.strokeSource;
+   }
+   
+   /**
+    * Closes the source the strokes of this binder's pages are read from.  
+    * This is done once the binder is no longer used.  The strokes of 
+    * pages that haven't been loaded cannot be loaded afterwards.
+    */
+   public void close()
+   {
+      if (this.strokeSource == null)
+         return;
+      
+      try
+      {
+         this.strokeSource.close();
+      }
+      catch (IOException e)
+      {
+         System.err.println(Binder.class.getName()+
+                            " ERROR:  The source of the strokes of a " +
+                            "binder could not be closed.  The error " +
+                            "returned was:  "+e.getMessage());
+      }
+      
+      this.strokeSource = null;
+   }
+   
 //----------------=[ Methods used for modifying the pages ]=------------------//
    /**
     * Implemented so an object of this class can be used in a 
@@ -192,6 +274,39 @@ public abstract class Binder implements Renderable, Bounded,
          listener.pageAdded(this, page);
    }
    
+   /**
+    * Adds the given pages, in order, to the end of the binder.  Unlike 
+    * adding the pages one at a time with {@link #addPage(Page)}, the 
+    * binder is only laid out once and the current page is not changed.
+    * 
+    * @param pages The pages to add to the end of the binder.
+    */
+   public void addPages(List<Page> pages)
+   {
+      if (pages == null)
+         throw new NullPointerException();
+      
+      if (pages.isEmpty())
+         return;
+      
+      for (Page page : pages)
+      {
+         if (page == null)
+            throw new NullPointerException();
+         
+         this.pageList.add(page);
+         page.addModListener(this);
+      }
+      
+      doLayout();
+      
+      notifyModListeners(ModType.Other);
+      
+      for (Page page : pages)
+         for (BinderListener listener : this.binderListeners)
+            listener.pageAdded(this, page);
+   }
+   
    private void addPage(Page page, int index)
    {
       if (page == null)
@@ -529,6 +644,16 @@ public abstract class Binder implements Renderable, Bounded,
    
 //-----------------------=[ Abstract methods ]=-------------------------------//
    public abstract void doLayoutImpl();
+   
+   /**
+    * Used to get a deep copy of this binder that does not notify any of 
+    * the listeners of this binder, or of its pages and strokes, when it 
+    * is modified.  Thus, the snapshot can be scaled and rendered on a 
+    * background thread while this binder continues to be edited.
+    * 
+    * @return A deep copy of this binder without any listeners.
+    */
+   public abstract Binder getSnapshot();
 //---------------------=[ End abstract methods ]=-----------------------------//
 
    public void scaleBy(float x, float y)
@@ -636,40 +761,10 @@ public abstract class Binder implements Renderable, Bounded,
          listener.modOccured(this, type);
    }
    
-   public int print(Graphics graphics, PageFormat pageFormat, int pageIndex) 
-                       throws PrinterException
-   {
-      if (pageIndex < 0 || pageIndex >= getNumberOfPages())
-         return Printable.NO_SUCH_PAGE;
-      
-      Page page = this.pageList.get(pageIndex).getCopy();
-      PrinterRenderer2D printRenderer = 
-         new PrinterRenderer2D(graphics, pageFormat, 
-                               page.getWidth(), page.getHeight());
-      page.renderInto(printRenderer);
-      
-      return Printable.PAGE_EXISTS;
-   }
-
    public int getNumberOfPages()
    {
       return this.pageList.size();
    }
-
-   public PageFormat getPageFormat(int pageIndex) 
-                        throws IndexOutOfBoundsException
-   {
-      if (pageIndex < 0 || pageIndex >= getNumberOfPages())
-         throw new IndexOutOfBoundsException();
-      
-      return LETTER_SIZE_FORMAT;
-   }
-
-   public Printable getPrintable(int pageIndex) 
-                       throws IndexOutOfBoundsException
-   {
-      return this;
-   }
    
    public void addBinderListener(BinderListener listener)
    {
@@ -680,6 +775,14 @@ public abstract class Binder implements Renderable, Bounded,
          this.binderListeners.add(listener);
    }
    
+   public void removeBinderListener(BinderListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
+      
+      this.binderListeners.remove(listener);
+   }
+   
    public void setAllStrokeSelected(boolean isSelected)
    {
       for (Page p : this)
@@ -27,6 +27,7 @@ package noteLab.model.binder;
 import java.awt.geom.Rectangle2D;
 
 import noteLab.model.Page;
+import noteLab.model.tool.PenTable;
 
 public class FlowBinder extends Binder
 {
@@ -41,7 +42,13 @@ public class FlowBinder extends Binder
    
    public FlowBinder(float xScaleLevel, float yScaleLevel, Page ... pages)
    {
-      super(xScaleLevel, yScaleLevel, pages);
+      this(xScaleLevel, yScaleLevel, new PenTable(), pages);
+   }
+   
+   public FlowBinder(float xScaleLevel, float yScaleLevel, 
+                     PenTable penTable, Page ... pages)
+   {
+      super(xScaleLevel, yScaleLevel, penTable, pages);
       
       setPageGap(DEFAULT_GAP);
       
@@ -166,8 +173,30 @@ public class FlowBinder extends Binder
       for (Page page : this)
          pageCpArr[i++] = page.getCopy();
       
+      // the copies of the strokes share the pens of this binder's strokes
       return new FlowBinder(super.xScaleLevel, 
                             super.yScaleLevel, 
+                            getPenTable(), 
                             pageCpArr);
    }
+   
+   @Override
+   public FlowBinder getSnapshot()
+   {
+      Page[] pageCpArr = new Page[getNumberOfPages()];
+      int i=0;
+      for (Page page : this)
+         pageCpArr[i++] = page.getSnapshot();
+      
+      // The snapshot's pages that haven't been loaded read their strokes 
+      // from the same source, which is still owned by this binder.
+      FlowBinder snapshot = new FlowBinder(super.xScaleLevel, 
+                                           super.yScaleLevel, 
+                                           getPenTable(), 
+                                           pageCpArr);
+      if (getStrokeSource() != null)
+         snapshot.setStrokeSource(getStrokeSource());
+      
+      return snapshot;
+   }
 }
@@ -0,0 +1,308 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.model.binder;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+import javax.swing.Timer;
+
+import noteLab.model.Page;
+import noteLab.model.Stroke;
+import noteLab.model.StrokeLoader;
+import noteLab.util.io.noteLab.CompressedStrokeLoader;
+import noteLab.util.settings.SettingsChangedEvent;
+import noteLab.util.settings.SettingsChangedListener;
+import noteLab.util.settings.SettingsKeys;
+import noteLab.util.settings.SettingsManager;
+import noteLab.util.settings.SettingsUtilities;
+
+/**
+ * <p>
+ *   Limits the memory used by the strokes of the pages in a 
+ *   <code>Binder</code>.  Whenever the visible area of the binder 
+ *   changes, the memory used by the strokes of the loaded pages is 
+ *   estimated.  If it exceeds the memory budget, the strokes of the 
+ *   pages that are farthest from being used are unloaded until it 
+ *   doesn't.  Unloaded strokes are loaded again the next time they are 
+ *   needed, for example, when the page is rendered, searched for the 
+ *   strokes at a point or exported.
+ * </p>
+ * <p>
+ *   The pages near the visible area and the pages with selected strokes 
+ *   are never unloaded.  The strokes of a page loaded from a chunked file 
+ *   that hasn't been edited are read from the file again.  Otherwise, a 
+ *   compressed copy of the strokes is kept in memory.  The strokes still 
+ *   referenced by the undo history are put back on the page when it is 
+ *   loaded again.
+ * </p>
+ * 
+ * @author Dominic Kramer
+ */
+public class PageResidencyManager implements BinderListener, 
+                                             SettingsChangedListener, 
+                                             ActionListener
+{
+   /** 
+    * The number of milliseconds the visible area must not change before 
+    * pages are unloaded so that nothing is unloaded while scrolling.
+    */
+   private static final int TRIM_DELAY = 1000;
+   
+   private Binder binder;
+   private long memoryBudget;
+   
+   private Rectangle2D.Float viewRect;
+   
+   /** Maps pages to the last time they were near the visible area. */
+   private IdentityHashMap<Page, Long> lastUsedMap;
+   private long useCount;
+   
+   private Timer trimTimer;
+   
+   /**
+    * Constructs a manager for the given binder.  The pages currently in 
+    * the binder are considered to have not been edited.
+    * 
+    * @param binder The binder whose pages are managed.
+    */
+   public PageResidencyManager(Binder binder)
+   {
+      if (binder == null)
+         throw new NullPointerException();
+      
+      this.binder = binder;
+      this.memoryBudget = toBytes(SettingsUtilities.getPageMemory());
+      this.viewRect = null;
+      this.lastUsedMap = new IdentityHashMap<Page, Long>();
+      this.useCount = 0;
+      
+      this.trimTimer = new Timer(TRIM_DELAY, this);
+      this.trimTimer.setRepeats(false);
+      
+      for (Page page : binder)
+         page.clearEdited();
+      
+      binder.addBinderListener(this);
+      SettingsManager.getSharedInstance().addSettingsListener(this);
+   }
+   
+   /**
+    * Used to get the number of bytes the strokes of the pages can use 
+    * before pages are unloaded.
+    * 
+    * @return The memory budget in bytes.
+    */
+   public long getMemoryBudget()
+   {
+      return this.memoryBudget;
+   }
+   
+   public void setMemoryBudget(long bytes)
+   {
+      if (bytes < 0)
+         throw new IllegalArgumentException("The memory budget "+bytes+
+                                            " cannot be negative.");
+      
+      this.memoryBudget = bytes;
+      this.trimTimer.restart();
+   }
+   
+   /**
+    * Informs this manager that the visible area of the binder has 
+    * changed.  Pages are unloaded, if needed, once the visible area 
+    * hasn't changed for a short time.
+    * 
+    * @param viewRect The visible area in the binder's coordinate system.
+    */
+   public void viewChanged(Rectangle2D viewRect)
+   {
+      if (viewRect == null)
+         throw new NullPointerException();
+      
+      this.viewRect = new Rectangle2D.Float((float)viewRect.getX(), 
+                                            (float)viewRect.getY(), 
+                                            (float)viewRect.getWidth(), 
+                                            (float)viewRect.getHeight());
+      markUsed();
+      this.trimTimer.restart();
+   }
+   
+   /**
+    * Used to get the estimated number of bytes used by the strokes of the 
+    * loaded pages.
+    * 
+    * @return The estimated memory used by the strokes.
+    */
+   public long getResidentSize()
+   {
+      long size = 0;
+      for (Page page : this.binder)
+         if (page.isLoaded())
+            size += estimateSize(page);
+      
+      return size;
+   }
+   
+   /**
+    * Unloads the strokes of the pages that are farthest from being used 
+    * until the memory used by the strokes is within the memory budget or 
+    * no other pages can be unloaded.  This method must be invoked on the 
+    * event dispatch thread.
+    */
+   public void trim()
+   {
+      markUsed();
+      
+      IdentityHashMap<Page, Long> sizeMap = new IdentityHashMap<Page, Long>();
+      Vector<Page> candidateVec = new Vector<Page>();
+      long size = 0;
+      long pageSize;
+      for (Page page : this.binder)
+      {
+         if (!page.isLoaded())
+            continue;
+         
+         pageSize = estimateSize(page);
+         size += pageSize;
+         
+         if (page.canUnload() && !isNearView(page))
+         {
+            sizeMap.put(page, pageSize);
+            candidateVec.add(page);
+         }
+      }
+      
+      if (size <= this.memoryBudget)
+         return;
+      
+      Collections.sort(candidateVec, new Comparator<Page>()
+      {
+         public int compare(Page page1, Page page2)
+         {
+            long used1 = getLastUsed(page1);
+            long used2 = getLastUsed(page2);
+            return (used1 < used2) ? -1 : ((used1 == used2) ? 0 : 1);
+         }
+      });
+      
+      StrokeLoader loader;
+      for (Page page : candidateVec)
+      {
+         if (size <= this.memoryBudget)
+            break;
+         
+         // The strokes of an edited page no longer match its base loader.
+         loader = null;
+         if (page.getBaseStrokeLoader() == null || page.hasBeenEdited())
+            loader = new CompressedStrokeLoader(page, 
+                                                this.binder.getPenTable());
+         
+         page.unload(loader);
+         size -= sizeMap.get(page);
+      }
+   }
+   
+   public void actionPerformed(ActionEvent e)
+   {
+      trim();
+   }
+   
+   public void pageAdded(Binder source, Page page)
+   {
+   }
+   
+   public void pageRemoved(Binder source, Page page)
+   {
+      this.lastUsedMap.remove(page);
+   }
+   
+   public void currentPageChanged(Binder source)
+   {
+   }
+   
+   public void settingsChanged(SettingsChangedEvent event)
+   {
+      if (event == null)
+         throw new NullPointerException();
+      
+      String key = event.getKey();
+      if (key == null || !key.equals(SettingsKeys.PAGE_MEMORY))
+         return;
+      
+      Object val = event.getNewValue();
+      if (val instanceof Number)
+         setMemoryBudget(toBytes(((Number)val).intValue()));
+   }
+   
+   private void markUsed()
+   {
+      this.useCount++;
+      for (Page page : this.binder)
+         if (isNearView(page))
+            this.lastUsedMap.put(page, this.useCount);
+   }
+   
+   private long getLastUsed(Page page)
+   {
+      Long lastUsed = this.lastUsedMap.get(page);
+      return (lastUsed == null) ? 0 : lastUsed;
+   }
+   
+   /**
+    * Used to determine if the given page is within one screen of the 
+    * visible area.
+    */
+   private boolean isNearView(Page page)
+   {
+      if (this.viewRect == null)
+         return false;
+      
+      float w = this.viewRect.width;
+      float h = this.viewRect.height;
+      return page.getBounds2D().intersects(this.viewRect.x-w, 
+                                           this.viewRect.y-h, 
+                                           3*w, 3*h);
+   }
+   
+   private static long estimateSize(Page page)
+   {
+      long size = 0;
+      for (Stroke stroke : page)
+         size += stroke.getEstimatedSize();
+      
+      return size;
+   }
+   
+   private static long toBytes(int megabytes)
+   {
+      return megabytes*1024L*1024L;
+   }
+}
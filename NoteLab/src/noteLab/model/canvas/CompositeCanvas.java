@@ -32,9 +32,9 @@ import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
@@ -52,15 +52,18 @@ import noteLab.gui.listener.RepaintBroadcaster;
 import noteLab.gui.listener.RepaintListener;
 import noteLab.model.Page;
 import noteLab.model.Path;
+import noteLab.model.Stroke;
 import noteLab.model.Paper.PaperType;
 import noteLab.model.binder.Binder;
 import noteLab.model.binder.FlowBinder;
+import noteLab.model.binder.PageResidencyManager;
 import noteLab.model.canvas.SubCanvas.MouseButton;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.tool.Tool;
 import noteLab.util.CopyReady;
 import noteLab.util.UnitScaleDependent;
 import noteLab.util.geom.Bounded;
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.mod.ModBroadcaster;
 import noteLab.util.mod.ModListener;
 import noteLab.util.mod.ModType;
@@ -70,6 +73,9 @@ import noteLab.util.settings.SettingsChangedListener;
 import noteLab.util.settings.SettingsKeys;
 import noteLab.util.settings.SettingsManager;
 import noteLab.util.settings.SettingsUtilities;
+import noteLab.util.structure.SampleRingBuffer;
+import noteLab.util.trace.InkLatencyTracer;
+import noteLab.util.trace.InkLatencyTracer.Stage;
 import noteLab.util.undoRedo.UndoRedoListener;
 import noteLab.util.undoRedo.UndoRedoManager;
 
@@ -92,6 +98,9 @@ public class CompositeCanvas
       MouseDragged
    }
    
+   private static final EventType[] EVENT_TYPES = EventType.values();
+   private static final MouseButton[] MOUSE_BUTTONS = MouseButton.values();
+   
    private Binder binder;
    private SubCanvas curCanvas;
    
@@ -106,15 +115,21 @@ public class CompositeCanvas
    private MouseInputListener mouseListener;
    
    private boolean hasBeenModified;
+   
+   /** The number of modifications that have occured to this canvas. */
+   private volatile long modCount;
+   
    private Vector<ModListener> modListenerVec;
    
    private UndoRedoManager undoRedoManager;
    
+   private PageResidencyManager residencyManager;
+   
    private boolean isEnabled;
    
    private JComponent displayPanel;
    
-   private Queue<StylusEvent> pointQueue;
+   private SampleRingBuffer pointBuffer;
    private PointProcessor pointProcessor;
    
    private boolean draggingEnabled;
@@ -130,7 +145,7 @@ public class CompositeCanvas
       if (binder == null)
          throw new NullPointerException();
       
-      this.pointQueue = new LinkedList<StylusEvent>();
+      this.pointBuffer = new SampleRingBuffer();
       
       this.displayPanel = null;
       
@@ -145,6 +160,8 @@ public class CompositeCanvas
       this.binder.addRepaintListener(this);
       this.binder.addModListener(this);
       
+      this.residencyManager = new PageResidencyManager(binder);
+      
       //make the print canvas
       this.printCanvas = new StrokeCanvas(this);
       this.printCanvas.addRepaintListener(this);
@@ -170,9 +187,9 @@ public class CompositeCanvas
       }.start();
       
       this.pointProcessor = new PointProcessor();
-      this.pointProcessor.start();
       
       this.hasBeenModified = false;
+      this.modCount = 0;
       this.isEnabled = true;
       
       this.draggingEnabled = false;
@@ -221,6 +238,34 @@ public class CompositeCanvas
       return this.undoRedoManager;
    }
    
+   /**
+    * Used to get the manager that unloads the strokes of the pages away 
+    * from the visible area of this canvas when they use too much memory.
+    * 
+    * @return This canvas's page residency manager.
+    */
+   public PageResidencyManager getPageResidencyManager()
+   {
+      return this.residencyManager;
+   }
+   
+   /**
+    * Used to get the journal in which the edits made to this canvas's 
+    * session are recorded.
+    * 
+    * @return The session's journal or <code>null</code> if the session 
+    *         isn't journaled.
+    */
+   public EditJournal getEditJournal()
+   {
+      return this.undoRedoManager.getEditJournal();
+   }
+   
+   public void setEditJournal(EditJournal journal)
+   {
+      this.undoRedoManager.setEditJournal(journal);
+   }
+   
    public File getFile()
    {
       return this.file;
@@ -244,6 +289,18 @@ public class CompositeCanvas
       this.hasBeenModified = hasBeenModified;
    }
    
+   /**
+    * Used to get the number of modifications that have occured to this 
+    * canvas.  Comparing the values returned before and after some work 
+    * determines if this canvas was modified while the work was done.
+    * 
+    * @return The number of modifications that have occured.
+    */
+   public long getModificationCount()
+   {
+      return this.modCount;
+   }
+   
    public Vector<ToolBarButton> getToolBars()
    {
       Vector<ToolBarButton> toolbars = new Vector<ToolBarButton>(3);
@@ -436,6 +493,36 @@ public class CompositeCanvas
          listener.show(x, y, width, height);
    }
    
+   public void appendLiveInk(Stroke stroke, int startIndex, float x, float y)
+   {
+      for (RepaintListener listener : this)
+         listener.appendLiveInk(stroke, startIndex, x, y);
+   }
+   
+   public void invalidateLiveInk()
+   {
+      for (RepaintListener listener : this)
+         listener.invalidateLiveInk();
+   }
+   
+   public void beginSprite(List<Stroke> strokes, float x, float y)
+   {
+      for (RepaintListener listener : this)
+         listener.beginSprite(strokes, x, y);
+   }
+   
+   public void moveSprite(float xOffset, float yOffset)
+   {
+      for (RepaintListener listener : this)
+         listener.moveSprite(xOffset, yOffset);
+   }
+   
+   public void endSprite()
+   {
+      for (RepaintListener listener : this)
+         listener.endSprite();
+   }
+   
    public CompositeCanvas getCopy()
    {
       return new CompositeCanvas(this.binder.getCopy(), this.scaleLevel);
@@ -480,6 +567,7 @@ public class CompositeCanvas
    {
       notifyModListeners(type);
       this.hasBeenModified = true;
+      this.modCount++;
    }
    
    /**
@@ -511,20 +599,6 @@ public class CompositeCanvas
       return this.isBeingDragged;
    }
    
-   private class StylusEvent
-   {
-      public EventType type;
-      public MouseEvent event;
-      public MouseButton button;
-      
-      public StylusEvent(EventType type, MouseEvent event, MouseButton button)
-      {
-         this.type = type;
-         this.event = event;
-         this.button = button;
-      }
-   }
-   
    private class CanvasMouseListener implements MouseInputListener
    {
       private MouseButton curMouseButton;
@@ -601,13 +675,7 @@ public class CompositeCanvas
          
          this.curMouseButton = MouseButton.getMouseButton(e.getButton());
          
-         synchronized(pointQueue)
-         {
-            pointQueue.add(new StylusEvent(EventType.MousePressed, 
-                                           e, 
-                                           this.curMouseButton));
-            pointQueue.notify();
-         }
+         pointProcessor.post(EventType.MousePressed, e, this.curMouseButton);
       }
 
       public void mouseReleased(final MouseEvent e)
@@ -622,13 +690,7 @@ public class CompositeCanvas
          if (!isEnabled)
             return;
          
-         synchronized(pointQueue)
-         {
-            pointQueue.add(new StylusEvent(EventType.MouseReleased, 
-                                           e, 
-                                           this.curMouseButton));
-            pointQueue.notify();
-         }
+         pointProcessor.post(EventType.MouseReleased, e, this.curMouseButton);
       }
 
       public void mouseEntered(MouseEvent e)
@@ -683,13 +745,7 @@ public class CompositeCanvas
          if (!isEnabled)
             return;
          
-         synchronized(pointQueue)
-         {
-            pointQueue.add(new StylusEvent(EventType.MouseDragged, 
-                                           e, 
-                                           this.curMouseButton));
-            pointQueue.notify();
-         }
+         pointProcessor.post(EventType.MouseDragged, e, this.curMouseButton);
       }
 
       public void mouseMoved(MouseEvent e)
@@ -702,13 +758,25 @@ public class CompositeCanvas
       return this.pointProcessor.isProcessingPath();
    }
    
-   private class PointProcessor extends Thread
+   /**
+    * Receives the stylus samples generated by the mouse listener and 
+    * forwards them to the current <code>SubCanvas</code>.  Samples are 
+    * stored in a <code>SampleRingBuffer</code> and at most one drain task 
+    * is pending on the event dispatch thread at any time.  When the task 
+    * runs it consumes every pending sample, appending consecutive drag 
+    * samples to the current path as one batch before notifying the 
+    * <code>SubCanvas</code> once.  As a result, the only allocations 
+    * made per sample are the points added to the path.
+    */
+   private class PointProcessor implements Runnable
    {
       private Path curPath;
+      private final AtomicBoolean isDrainPending;
       
       public PointProcessor()
       {
          this.curPath = null;
+         this.isDrainPending = new AtomicBoolean(false);
       }
       
       public boolean isProcessingPath()
@@ -716,33 +784,125 @@ public class CompositeCanvas
          return (this.curPath != null);
       }
       
+      /**
+       * Records a stylus sample and schedules the samples to be 
+       * drained if a drain isn't already pending.  This method is 
+       * the only producer for the point buffer and is invoked by the 
+       * mouse listener on the event dispatch thread.
+       */
+      public void post(EventType type, MouseEvent e, MouseButton button)
+      {
+         InkLatencyTracer tracer = InkLatencyTracer.getSharedInstance();
+         if (tracer.isEnabled())
+            tracer.record(Stage.EventDispatch, 
+                          1000000L*(System.currentTimeMillis()-e.getWhen()));
+         
+         while (!pointBuffer.offer(type.ordinal(), e.getX(), e.getY(), 
+                                   button.ordinal(), System.nanoTime()))
+         {
+            // The buffer can only be full if the drain task hasn't had 
+            // a chance to run.  Since this method is invoked on the 
+            // event dispatch thread, draining here is safe.
+            run();
+         }
+         
+         if (this.isDrainPending.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this);
+      }
+      
       public void run()
       {
-         StylusEvent event;
-         while (true)
+         // Clear the flag before draining so that a sample posted 
+         // while draining schedules another drain.
+         this.isDrainPending.set(false);
+         
+         InkLatencyTracer tracer = InkLatencyTracer.getSharedInstance();
+         boolean isTracing = tracer.isEnabled();
+         long drainTime = 0;
+         if (isTracing)
+         {
+            tracer.recordQueueDepth(pointBuffer.getSize());
+            drainTime = System.nanoTime();
+         }
+         
+         MouseButton dragButton = null;
+         long batchStart = 0;
+         EventType type;
+         MouseButton button;
+         int offset = 0;
+         while (pointBuffer.hasSample(offset))
          {
-            synchronized (pointQueue)
+            type = EVENT_TYPES[pointBuffer.getType(offset)];
+            button = MOUSE_BUTTONS[pointBuffer.getButton(offset)];
+            
+            if (isTracing)
+               tracer.record(Stage.Queue, 
+                             drainTime-pointBuffer.getTime(offset));
+            
+            if (type == EventType.MouseDragged)
+            {
+               if (this.curPath != null)
+               {
+                  this.curPath.addItem(getClippedPoint(
+                                          pointBuffer.getX(offset), 
+                                          pointBuffer.getY(offset)));
+                  if (dragButton == null)
+                     batchStart = pointBuffer.getTime(offset);
+                  
+                  dragButton = button;
+               }
+            }
+            else
             {
-               while ( (event = pointQueue.poll()) == null)
+               if (dragButton != null)
                {
-                  try
-                  {
-                     pointQueue.wait();
-                  }
-                  catch (InterruptedException e)
-                  {
-                     continue;
-                  }
+                  firePathChanged(dragButton, batchStart);
+                  dragButton = null;
                }
+               
+               if (type == EventType.MousePressed)
+                  processMousePressed(pointBuffer.getX(offset), 
+                                      pointBuffer.getY(offset), 
+                                      button, 
+                                      pointBuffer.getTime(offset));
+               else
+                  processMouseReleased(pointBuffer.getX(offset), 
+                                       pointBuffer.getY(offset), 
+                                       button);
             }
             
-            if (event.type == EventType.MouseDragged)
-               processMouseDragged(event.event, event.button);
-            else if (event.type == EventType.MousePressed)
-               processMousePressed(event.event, event.button);
-            else if (event.type == EventType.MouseReleased)
-               processMouseReleased(event.event, event.button);
+            offset++;
+         }
+         
+         if (dragButton != null && this.curPath != null)
+            firePathChanged(dragButton, batchStart);
+         
+         pointBuffer.advance(offset);
+      }
+      
+      /**
+       * Informs the current SubCanvas that points have been added to 
+       * the current path and, if tracing is enabled, records the time 
+       * spent doing so.
+       * 
+       * @param button The button used to draw the points.
+       * @param batchStart The time the oldest of the new points was 
+       *                   posted.
+       */
+      private void firePathChanged(MouseButton button, long batchStart)
+      {
+         InkLatencyTracer tracer = InkLatencyTracer.getSharedInstance();
+         if (!tracer.isEnabled())
+         {
+            getCurrentCanvas().pathChanged(this.curPath, button);
+            return;
          }
+         
+         tracer.beginBatch(batchStart);
+         long start = System.nanoTime();
+         getCurrentCanvas().pathChanged(this.curPath, button);
+         tracer.record(Stage.PathChanged, System.nanoTime()-start);
+         tracer.endBatch();
       }
       
       // returns the 'real' point relative to the current page
@@ -750,82 +910,47 @@ public class CompositeCanvas
       // screen which may be different depending on the zoom factor.  
       // instead this method returns the point on the page as if 
       // the page has not been zoomed
-      private FloatPoint2D getClippedPoint(Point point)
+      private FloatPoint2D getClippedPoint(int x, int y)
       {
-         if (point == null)
-            throw new NullPointerException();
-         
          Page curPage = binder.getCurrentPage();
          FloatPoint2D newPt = null;
          if (getCurrentCanvas().clipPoints())
-            newPt = binder.clipPoint(point.x-curPage.getX(), 
-                                     point.y-curPage.getY());
+            newPt = binder.clipPoint(x-curPage.getX(), 
+                                     y-curPage.getY());
          else
-            newPt = new FloatPoint2D(point, 
+            newPt = new FloatPoint2D(x, y, 
                                      getZoomLevel(), 
                                      getZoomLevel());
          
          return newPt;
       }
       
-      private void processMouseDragged(final MouseEvent e, 
-                                       final MouseButton button)
-      {
-         SwingUtilities.invokeLater(new Runnable()
-         {
-            public void run()
-            {
-               if (curPath == null)
-                  return;
-               
-               FloatPoint2D point = getClippedPoint(e.getPoint());
-               curPath.addItem(point);
-               getCurrentCanvas().pathChanged(curPath, button);
-            }
-         });
-      }
-      
-      private void processMouseReleased(final MouseEvent e, 
-                                        final MouseButton button)
+      private void processMouseReleased(int x, int y, MouseButton button)
       {
-         SwingUtilities.invokeLater(new Runnable()
-         {
-            public void run()
-            {
-               if (curPath == null)
-                  return;
-               
-               curPath.addItem(getClippedPoint(e.getPoint()));
-               getCurrentCanvas().pathFinished(curPath, button);
-               curPath = null;
-            }
-         });
+         if (this.curPath == null)
+            return;
+         
+         this.curPath.addItem(getClippedPoint(x, y));
+         getCurrentCanvas().pathFinished(this.curPath, button);
+         this.curPath = null;
       }
       
-      private void processMousePressed(final MouseEvent e, 
-                                       final MouseButton button)
+      private void processMousePressed(int x, int y, MouseButton button, 
+                                       long postedTime)
       {
-         SwingUtilities.invokeLater(new Runnable()
-         {
-            public void run()
-            {
-               Point point = e.getPoint();
-               
-               boolean newCur = binder.setCurrentPage(
-                                          new FloatPoint2D(point.x, point.y, 
-                                                           scaleLevel, 
-                                                           scaleLevel));
-               
-               boolean firstTime = (curPath == null);
-               curPath = new Path(scaleLevel, scaleLevel);
-               curPath.addItem(getClippedPoint(point));
-               SubCanvas subcanvas = getCurrentCanvas();
-               if (firstTime)
-                  subcanvas.pathStarted(curPath, button, newCur);
-               
-               subcanvas.pathChanged(curPath, button);
-            }
-         });
+         boolean newCur = binder.setCurrentPage(
+                                    new FloatPoint2D(x, y, 
+                                                     scaleLevel, 
+                                                     scaleLevel));
+         
+         boolean firstTime = (this.curPath == null);
+         this.curPath = new Path(scaleLevel, scaleLevel);
+         this.curPath.addItem(getClippedPoint(x, y));
+         SubCanvas subcanvas = getCurrentCanvas();
+         if (firstTime)
+            subcanvas.pathStarted(this.curPath, button, newCur);
+         
+         firePathChanged(button, postedTime);
       }
    }
 
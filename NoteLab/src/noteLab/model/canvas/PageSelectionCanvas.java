@@ -30,6 +30,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Stack;
 import java.util.Vector;
@@ -67,6 +68,7 @@ import noteLab.gui.toolbar.CutCopyPasteToolBar;
 import noteLab.gui.toolbar.file.OpenFileProcessor;
 import noteLab.model.Page;
 import noteLab.model.Path;
+import noteLab.model.Stroke;
 import noteLab.model.Paper.PaperType;
 import noteLab.model.binder.Binder;
 import noteLab.model.geom.FloatPoint2D;
@@ -848,8 +850,24 @@ public class PageSelectionCanvas extends SubCanvas<PageSelector, Page>
          }
          else if (cmmd.equals(Action.ClearPage.toString()))
          {
+            // The strokes are deleted through an action so that clearing 
+            // the pages can be undone and is recorded in the journal.
+            Hashtable<Page, Vector<Stroke>> strokeTable = 
+               new Hashtable<Page, Vector<Stroke>>();
+            
+            Vector<Stroke> strokeVec;
             for (Page page : selPageVec)
-               page.clear();
+            {
+               strokeVec = new Vector<Stroke>(page.getNumStrokes());
+               for (Stroke stroke : page)
+                  strokeVec.add(stroke);
+               
+               if (!strokeVec.isEmpty())
+                  strokeTable.put(page, strokeVec);
+            }
+            
+            if (!strokeTable.isEmpty())
+               deleteStrokes(strokeTable);
          }
          else if (cmmd.equals(PaperType.Plain.toString()))
          {
@@ -38,6 +38,7 @@ import javax.swing.JLabel;
 import javax.swing.JSeparator;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 
 import noteLab.gui.DefinedIcon;
 import noteLab.gui.GuiSettingsConstants;
@@ -62,6 +63,7 @@ import noteLab.model.binder.Binder;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.tool.Pen;
 import noteLab.util.geom.RectangleUnioner;
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.geom.unit.MValue;
 import noteLab.util.geom.unit.Unit;
 import noteLab.util.render.EmptyRenderer2D;
@@ -95,6 +97,16 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
    
    private Vector<StrokeSmoother> strokeVec;
    
+   /**
+    * The path most recently given to 
+    * {@link #pathChangedImpl(Path, MouseButton)} and the number of its 
+    * points that have already been processed.  Points can be appended to 
+    * a path in batches, and these fields are used to determine which of 
+    * the path's points are new.
+    */
+   private Path curPath;
+   private int numProcessedPts;
+   
    public StrokeCanvas(CompositeCanvas canvas)
    {
       super(canvas, true);
@@ -102,6 +114,9 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       this.pen = new Pen(canvas.getZoomLevel());
       this.strokeVec = new Vector<StrokeSmoother>();
       
+      this.curPath = null;
+      this.numProcessedPts = 0;
+      
       this.toolBar = new PenToolBar();
    }
    
@@ -127,6 +142,8 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       {
          this.strokeVec.clear();
       }
+      
+      doInvalidateLiveInk();
    }
    
    public boolean getRenderBinder()
@@ -142,31 +159,49 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       
       if (this.toolBar.getCurrentMode() == Mode.Write)
       {
-         Stroke newStroke = new Stroke(this.pen.getCopy(), path);
-         getCompositeCanvas().getBinder().getCurrentPage().addStroke(newStroke);
-         this.strokeVec.addElement(new StrokeSmoother(newStroke));
+         Binder binder = getCompositeCanvas().getBinder();
+         Pen pen = binder.getPenTable().getPen(this.pen);
+         Stroke newStroke = new Stroke(pen, path);
+         Page page = binder.getCurrentPage();
+         page.addStroke(newStroke);
+         
+         // strokes can't be added to a page whose strokes couldn't be loaded
+         if (page.containsStroke(newStroke))
+            this.strokeVec.addElement(new StrokeSmoother(newStroke));
       }
    }
    
    @Override
    public void pathFinishedImpl(Path path, MouseButton button)
    {
-      CompositeCanvas canvas = getCompositeCanvas();
-      Page page = canvas.getBinder().getCurrentPage();
+      final CompositeCanvas canvas = getCompositeCanvas();
+      final Page page = canvas.getBinder().getCurrentPage();
       
       if (this.toolBar.getCurrentMode() == Mode.Write && 
-            !this.strokeVec.isEmpty())
+            !this.strokeVec.isEmpty() && 
+            this.strokeVec.lastElement().getStroke().getPath() == path)
       {
          StrokeSmoother smoother = this.strokeVec.lastElement();
-         smoother.smooth();
-         
-         Stroke curStroke = smoother.getStroke();
+         final Stroke curStroke = smoother.getStroke();
          
+         // The stroke is recorded, as part of the current gesture, with 
+         // the points it has now.  Once it has been smoothed, its final 
+         // points are recorded in the session's journal.
          DrawStrokeAction actionDone = 
                      new DrawStrokeAction(canvas, curStroke, page);
          DeleteStrokeAction undoAction = 
                      new DeleteStrokeAction(canvas, curStroke, page);
          canvas.getUndoRedoManager().actionDone(actionDone, undoAction);
+         
+         smoother.smooth(page, new Runnable()
+         {
+            public void run()
+            {
+               EditJournal journal = canvas.getEditJournal();
+               if (journal != null)
+                  journal.strokeUpdated(page, curStroke);
+            }
+         });
       }
       
       this.toolBar.syncMode();
@@ -178,35 +213,42 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       Mode curMode = this.toolBar.getCurrentMode();
       Binder binder = getCompositeCanvas().getBinder();
       
+      if (path != this.curPath)
+      {
+         this.curPath = path;
+         this.numProcessedPts = 0;
+      }
+      
+      int numItems = path.getNumItems();
+      int firstNew = this.numProcessedPts;
+      this.numProcessedPts = numItems;
+      
       if (curMode == Mode.Write)
       {
-         int numItems = path.getNumItems();
-         if (numItems < 2)
-         {
-            FloatPoint2D pt = path.getFirst();
-            Page page = binder.getCurrentPage();
-            float width = 0;
-            if (!this.strokeVec.isEmpty())
-               width = this.strokeVec.lastElement().
-                          getStroke().getPen().getWidth();
-            
-            float halfWidth = width/2f;
-            doRedrawOverlay(pt.getX()+page.getX()-halfWidth, 
-                            pt.getY()+page.getY()-halfWidth, 
-                            width, 
-                            width, 0);
+         if (this.strokeVec.isEmpty())
             return;
-         }
          
-         FloatPoint2D pt3 = path.getItemAt(numItems-2);
-         FloatPoint2D pt4 = path.getItemAt(numItems-1);
+         Stroke stroke = this.strokeVec.lastElement().getStroke();
+         if (stroke.getPath() != path)
+            return;
          
-         doRedrawLine(pt3, pt4, binder);
+         // Only the segments that end at one of the new points are 
+         // drawn.  Since points can be added in batches, there may be 
+         // more than one such segment.
+         Page page = binder.getCurrentPage();
+         doAppendLiveInk(stroke, firstNew, page.getX(), page.getY());
       }
       else if (curMode == Mode.Delete)
       {
          Page curPage = binder.getCurrentPage();
-         Vector<Stroke> strokesAtPt = curPage.getStrokesAt(path.getLast());
+         Vector<Stroke> strokesAtPt = new Vector<Stroke>();
+         for (int i=firstNew; i<numItems; i++)
+         {
+            for (Stroke stroke : curPage.getStrokesAt(path.getItemAt(i)))
+               if (!strokesAtPt.contains(stroke))
+                  strokesAtPt.add(stroke);
+         }
+         
          if (strokesAtPt.size() == 0)
             return;
          
@@ -220,6 +262,7 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
             {
                if (this.strokeVec.elementAt(i).getStroke().equals(stroke))
                {
+                  this.strokeVec.elementAt(i).cancel();
                   this.strokeVec.removeElementAt(i);
                }
             }
@@ -229,25 +272,6 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       }
    }
    
-   private void doRedrawLine(FloatPoint2D pt1, FloatPoint2D pt2, 
-                             Binder binder)
-   {
-      float x = Math.min(pt1.getX(), pt2.getX());
-      float y = Math.min(pt1.getY(), pt2.getY());
-      float width = Math.abs(pt1.getX()-pt2.getX());
-      float height = Math.abs(pt1.getY()-pt2.getY());
-      
-      Page page = binder.getCurrentPage();
-      if (page != null)
-      {
-         x += page.getX();
-         y += page.getY();
-      }
-      
-      float delta = 1+this.pen.getWidth()*0.5f;
-      doRedrawOverlay( x, y, width, height, delta );
-   }
-   
    public void renderInto(Renderer2D overlayDisplay, Renderer2D mainDisplay)
    {
       if (overlayDisplay == null || mainDisplay == null)
@@ -740,6 +764,8 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
       // is atomic.
       private boolean isSmooth;
       private volatile boolean hasBeenRendered;
+      // only accessed on the event dispatch thread
+      private boolean isCancelled;
       
       public StrokeSmoother(Stroke newStroke)
       {
@@ -749,45 +775,103 @@ public class StrokeCanvas extends SubCanvas<Pen, Stroke>
          this.stroke = newStroke;
          this.isSmooth = false;
          this.hasBeenRendered = false;
-      }
-      
-      public void smooth()
-      {
+         this.isCancelled = false;
+      }
+      
+      /**
+       * Smooths the stroke, in the background if necessary.  The points 
+       * are smoothed on a copy of the stroke's path which replaces the 
+       * stroke's path on the event dispatch thread.  If the stroke has 
+       * been erased or removed from the page by then, the copy is 
+       * discarded and the stroke keeps the points it was recorded with.
+       * 
+       * @param page The page the stroke was drawn on.
+       * @param smoothed Run on the event dispatch thread once the 
+       *                 stroke's path has been replaced with the smoothed 
+       *                 path.
+       */
+      public void smooth(final Page page, final Runnable smoothed)
+      {
+         if (page == null || smoothed == null)
+            throw new NullPointerException();
+         
          final int smoothFactor = SettingsUtilities.getSmoothFactor();
-         if (smoothFactor == 0)
+         if (smoothFactor == 0 || getIsSmooth())
          {
             isSmooth = true;
+            commit(stroke.getBounds2D());
             return;
          }
          
-         if (getIsSmooth())
-            return;
-         
+         final Path smoothPath = stroke.getPath().getSnapshot();
          new Thread(new Runnable()
          {
             public void run()
             {
-               RectangleUnioner unioner = new RectangleUnioner();
-               unioner.union(stroke.getBounds2D());
-               
-               stroke.getPath().smooth(smoothFactor);
+               smoothPath.smooth(smoothFactor);
                
-               unioner.union(stroke.getBounds2D());
-               Rectangle2D bounds = unioner.getUnion();
-               
-               Page page = getCompositeCanvas().getBinder().getCurrentPage();
-               final float x = (float)bounds.getX()+page.getX();
-               final float y = (float)bounds.getY()+page.getY();
-               final float width = (float)bounds.getWidth();
-               final float height = (float)bounds.getHeight();
-               
-               isSmooth = true;
-               if (!getHasBeenRendered())
-                  doRedrawOverlay(x, y, width, height, 0);
+               SwingUtilities.invokeLater(new Runnable()
+               {
+                  public void run()
+                  {
+                     RectangleUnioner unioner = new RectangleUnioner();
+                     unioner.union(stroke.getBounds2D());
+                     
+                     boolean apply = !isCancelled && 
+                                        page.containsStroke(stroke);
+                     if (apply)
+                     {
+                        // the page may have been zoomed while smoothing
+                        Path path = stroke.getPath();
+                        smoothPath.scaleTo(path.getXScaleLevel(), 
+                                           path.getYScaleLevel());
+                        stroke.setPath(smoothPath);
+                        unioner.union(stroke.getBounds2D());
+                     }
+                     
+                     isSmooth = true;
+                     commit(unioner.getUnion());
+                     
+                     if (apply)
+                        smoothed.run();
+                  }
+               });
             }
          }).start();
       }
       
+      /**
+       * Invoked when the stroke has been erased so that, if it is still 
+       * being smoothed, its smoothed path is discarded.
+       */
+      public void cancel()
+      {
+         this.isCancelled = true;
+      }
+      
+      /**
+       * Invoked when the stroke is smooth to have it rendered into the 
+       * drawing board's image of the binder.  Since the stroke is no 
+       * longer live, the live ink needs to be rebuilt without it.
+       * 
+       * @param bounds The bounds of the stroke relative to the current 
+       *               page.
+       */
+      private void commit(Rectangle2D bounds)
+      {
+         if (getHasBeenRendered())
+            return;
+         
+         Page page = getCompositeCanvas().getBinder().getCurrentPage();
+         float x = (float)bounds.getX()+page.getX();
+         float y = (float)bounds.getY()+page.getY();
+         float width = (float)bounds.getWidth();
+         float height = (float)bounds.getHeight();
+         
+         doInvalidateLiveInk();
+         doRedrawOverlay(x, y, width, height, 0);
+      }
+      
       public Stroke getStroke()
       {
          return this.stroke;
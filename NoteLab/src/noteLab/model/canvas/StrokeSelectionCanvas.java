@@ -63,12 +63,15 @@ import noteLab.model.Stroke;
 import noteLab.model.binder.Binder;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.tool.Pen;
+import noteLab.model.tool.PenTable;
 import noteLab.model.tool.StrokeSelector;
 import noteLab.util.copy.CopyStateListener;
 import noteLab.util.copy.CutCopyPasteReady;
+import noteLab.util.geom.DamageRegion;
 import noteLab.util.geom.RectangleUnioner;
 import noteLab.util.geom.unit.MValue;
 import noteLab.util.geom.unit.Unit;
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.render.Renderer2D;
 import noteLab.util.settings.SettingsUtilities;
 import noteLab.util.structure.CopyVector;
@@ -115,6 +118,12 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
    private static final float SEL_BOX_LINE_WIDTH = 1;
    private static final Color SEL_BOX_LINE_COLOR = Color.RED;
    
+   /**
+    * The area of the largest stroke whose bounds are repainted instead 
+    * of the bounds of each of its segments.
+    */
+   private static final float SMALL_DAMAGE_AREA = 64*64;
+   
    private StrokeSelector selector;
    private FloatPoint2D prevPoint;
    private SelectionToolBar toolBar;
@@ -122,6 +131,13 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
    
    private Rectangle2D.Float initScale;
    
+   // The strokes being moved or 'null' if strokes aren't being moved.  
+   // While the strokes are dragged they are shown as a sprite and they 
+   // are only translated when the mouse is released.
+   private Vector<Stroke> moveStrokeVec;
+   private float moveXOffset;
+   private float moveYOffset;
+   
    private Vector<CopyStateListener> copyListenerVec;
    
    // 'null' if there is no item to copy and 
@@ -141,6 +157,10 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
       this.copiedItem = null;
       
       this.initScale = new Rectangle2D.Float();
+      
+      this.moveStrokeVec = null;
+      this.moveXOffset = 0;
+      this.moveYOffset = 0;
    }
    
    public SelectionToolBar getToolBarButton()
@@ -156,6 +176,7 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
    @Override
    public void finish()
    {
+      finishMove();
    }
    
    @Override
@@ -172,6 +193,8 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
    @Override
    public void pathFinishedImpl(Path path, MouseButton button)
    {
+      finishMove();
+      
       Mode curMode = this.toolBar.getCurrentMode();
       
       // If the right mouse button is being used, 
@@ -195,6 +218,17 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
          
          notifyOfCopyState(checkCanCopy());
       }
+      else if (curMode == Mode.Move || curMode == Mode.Scale)
+      {
+         // Moving and scaling strokes aren't undoable actions.  Thus, 
+         // they are recorded in the session's journal directly.
+         EditJournal journal = getCompositeCanvas().getEditJournal();
+         if (journal != null)
+         {
+            Page curPage = getCompositeCanvas().getBinder().getCurrentPage();
+            journal.strokesChanged(curPage, curPage.getSelectedStrokesCopy());
+         }
+      }
       
       doRedraw();
       this.prevPoint = null;
@@ -253,6 +287,10 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             maxWidth = Math.max(maxWidth, stroke.getPen().getWidth());
          }
          
+         EditJournal journal = getCompositeCanvas().getEditJournal();
+         if (journal != null)
+            journal.strokesAdded(curPage, this.copiedItem);
+         
          Rectangle2D.Float union = unioner.getUnion();
          doRedraw( curPage.getX()+(float)union.getX(), 
                    curPage.getY()+(float)union.getY(), 
@@ -276,21 +314,25 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
       
       if (curMode == Mode.Single_Selection)
       {
+         DamageRegion damage = new DamageRegion();
          for (Stroke stroke : strokesAtPt)
          {
             curPage.setStrokeSelected(stroke, true);
-            redrawStroke(stroke);
+            addStrokeDamage(curPage, stroke, damage);
          }
+         doRedraw(damage);
          
          notifyOfCopyState(true);
       }
       else if (curMode == Mode.Single_Unselection)
       {
+         DamageRegion damage = new DamageRegion();
          for (Stroke stroke : strokesAtPt)
          {
             curPage.setStrokeSelected(stroke, false);
-            redrawStroke(stroke);
+            addStrokeDamage(curPage, stroke, damage);
          }
+         doRedraw(damage);
          
          notifyOfCopyState(checkCanCopy());
       }
@@ -336,11 +378,18 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
       {
          if (this.prevPoint != null)
          {
-            float xDiff = lastPt.getX()-this.prevPoint.getX();
-            float yDiff = lastPt.getY()-this.prevPoint.getY();
+            if (this.moveStrokeVec == null)
+            {
+               this.moveStrokeVec = curPage.getSelectedStrokesCopy();
+               this.moveXOffset = 0;
+               this.moveYOffset = 0;
+               doBeginSprite(this.moveStrokeVec, 
+                             curPage.getX(), curPage.getY());
+            }
             
-            for (int i=0; i<curPage.getNumSelectedStrokes(); i++)
-               moveStroke(curPage.getSelectedStrokeAt(i), xDiff, yDiff);
+            this.moveXOffset += lastPt.getX()-this.prevPoint.getX();
+            this.moveYOffset += lastPt.getY()-this.prevPoint.getY();
+            doMoveSprite(this.moveXOffset, this.moveYOffset);
          }
       }
       else if (curMode == Mode.Scale)
@@ -362,6 +411,7 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             float initY = this.initScale.y;
             
             RectangleUnioner unioner = new RectangleUnioner();
+            PenTable penTable = binder.getPenTable();
             
             Stroke stroke;
             Pen pen;
@@ -370,7 +420,7 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             for (int i=0; i<curPage.getNumSelectedStrokes(); i++)
             {
                stroke = curPage.getSelectedStrokeAt(i);
-               pen = stroke.getPen();
+               pen = stroke.getPen().getSnapshot();
                curWidth = pen.getWidth();
                
                maxWidth = Math.max(maxWidth, curWidth);
@@ -382,7 +432,10 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
                unioner.union(stroke.getBounds2D());
                
                stroke.translateBy(initX, initY);
+               
+               // resizing the stroke doesn't change the width of its lines
                pen.setRawWidth(curWidth);
+               stroke.setPen(penTable.getPen(pen));
             }
             
             Rectangle2D.Float union = unioner.getUnion();
@@ -419,91 +472,83 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
          listener.copyStateChanged(canCopy);
    }
    
-   private Rectangle2D.Float getLineBounds(FloatPoint2D pt1, 
-                                           FloatPoint2D pt2, 
-                                           float lineWidth)
+   /**
+    * Adds the region of the screen covered by the given stroke to the 
+    * given damaged region.  The bounds of each of the stroke's segments 
+    * are added so that the area between the segments of a long stroke 
+    * isn't repainted.  However, if the stroke's bounds are small they 
+    * are simply added instead.
+    * 
+    * @param page The page containing the stroke.
+    * @param stroke The stroke.
+    * @param damage The damaged region.
+    */
+   private void addStrokeDamage(Page page, Stroke stroke, 
+                                DamageRegion damage)
    {
-      Page curPage = getCompositeCanvas().getBinder().getCurrentPage();
-      
-      float x = Math.min(pt1.getX()+curPage.getX(), pt2.getX()+curPage.getX());
-      float y = Math.min(pt1.getY()+curPage.getY(), pt2.getY()+curPage.getY());
-      float width = Math.abs(pt1.getX()-pt2.getX());
-      float height = Math.abs(pt1.getY()-pt2.getY());
-
-      return new Rectangle2D.Float(x-lineWidth, y-lineWidth, 
-                                   width+2*lineWidth, height+2*lineWidth);
-   }
-   
-   private void redrawStroke(Stroke stroke)
-   {
-      float penWidth = stroke.getPen().getWidth();
+      // The region is enlarged by the pen's width on each side so that 
+      // the selected style of the stroke is also covered.
+      float delta = 2*stroke.getPen().getWidth();
+      float pageX = page.getX();
+      float pageY = page.getY();
       
       Path path = stroke.getPath();
-      FloatPoint2D pt1, pt2;
-      Rectangle2D.Float lineBounds;
+      if (path.isEmpty())
+         return;
       
-      for (int i=0; i<path.getNumItems()-1; i++)
+      float minX = Float.MAX_VALUE;
+      float minY = Float.MAX_VALUE;
+      float maxX = -Float.MAX_VALUE;
+      float maxY = -Float.MAX_VALUE;
+      for (FloatPoint2D pt : path)
       {
-         pt1 = path.getItemAt(i);
-         pt2 = path.getItemAt(i+1);
-         
-         lineBounds = getLineBounds(pt1, pt2, penWidth);
-         doRedraw(lineBounds.x, lineBounds.y, 
-                  lineBounds.width, lineBounds.height, penWidth);
+         minX = Math.min(minX, pt.getX());
+         minY = Math.min(minY, pt.getY());
+         maxX = Math.max(maxX, pt.getX());
+         maxY = Math.max(maxY, pt.getY());
       }
-   }
-   
-   private void moveStroke(Stroke stroke, 
-                           float xDiff, float yDiff)
-   {
-      float penWidth = stroke.getPen().getWidth();
-      doMoveAndDraw(stroke.getBounds2D(), xDiff, yDiff, penWidth);
-      stroke.translateBy(xDiff, yDiff);
-   }
-   
-   private void doMoveAndDraw(Rectangle2D bounds,  
-                              float xDiff, float yDiff, float delta)
-   {
-      Page curPage = getCompositeCanvas().getBinder().getCurrentPage();
-      
-      float x = curPage.getX() + (float)bounds.getX();
-      float y = curPage.getY() + (float)bounds.getY();
-      float width = (float)bounds.getWidth();
-      float height = (float)bounds.getHeight();
       
-      if (xDiff > 0) // if positive stretch the box left
+      if ((maxX-minX)*(maxY-minY) <= SMALL_DAMAGE_AREA)
       {
-        width += xDiff;
-      }
-      else // if negative stretch the box right
-      {
-         // Note:  xDiff is negative or 0
-         
-         // move the box left
-         x += xDiff;
-         // and stretch it right
-         width -= 2*xDiff;
-         
-         // account for the pen's width
-         width += delta;
+         damage.add(pageX+minX-delta, pageY+minY-delta, 
+                    maxX-minX+2*delta, maxY-minY+2*delta);
+         return;
       }
       
-      if (yDiff > 0) // if positive stretch the box down
-         height += yDiff;
-      else // if negative stretch the box down
+      FloatPoint2D prevPt = null;
+      for (FloatPoint2D pt : path)
       {
-         // Note:  yDiff is negative or 0
-         
-         // move the box up
-         y += yDiff;
-         // and stretch it down
-         height -= 2*yDiff;
+         if (prevPt != null)
+         {
+            float x = Math.min(prevPt.getX(), pt.getX());
+            float y = Math.min(prevPt.getY(), pt.getY());
+            damage.add(pageX+x-delta, pageY+y-delta, 
+                       Math.abs(prevPt.getX()-pt.getX())+2*delta, 
+                       Math.abs(prevPt.getY()-pt.getY())+2*delta);
+         }
          
-         // account for the pen's width
-         height += delta;
+         prevPt = pt;
       }
+   }
+   
+   /**
+    * Translates the strokes being moved, if any, by the offset they 
+    * have been dragged and stops showing them as a sprite.
+    */
+   private void finishMove()
+   {
+      if (this.moveStrokeVec == null)
+         return;
       
-      doRedraw(x,  y,  width,  height, 0);
+      if (this.moveXOffset != 0 || this.moveYOffset != 0)
+         for (Stroke stroke : this.moveStrokeVec)
+            stroke.translateBy(this.moveXOffset, this.moveYOffset);
+      
+      doEndSprite();
+      
+      this.moveStrokeVec = null;
+      this.moveXOffset = 0;
+      this.moveYOffset = 0;
    }
    
    @Override
@@ -982,18 +1027,26 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             RectangleUnioner dirtyUnioner = new RectangleUnioner();
             
             Binder binder = getCompositeCanvas().getBinder();
+            EditJournal journal = getCompositeCanvas().getEditJournal();
+            PenTable penTable = binder.getPenTable();
             for (Page page : binder)
             {
                Vector<Stroke> selStrokeVec = page.getSelectedStrokesCopy();
                Stroke selStroke;
+               Pen pen;
                for (int i=selStrokeVec.size()-1; i>=0; i--)
                {
                   selStroke = selStrokeVec.elementAt(i);
-                  selStroke.getPen().setWidth(value);
+                  pen = selStroke.getPen().getSnapshot();
+                  pen.setWidth(value);
+                  selStroke.setPen(penTable.getPen(pen));
                   
                   // add the stroke's bounding box to the dirty region
                   dirtyUnioner.union(selStroke.getBounds2D());
                }
+               
+               if (journal != null)
+                  journal.strokesChanged(page, selStrokeVec);
             }
             
             // repaint only the dirty region
@@ -1030,18 +1083,26 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             RectangleUnioner dirtyUnioner = new RectangleUnioner();
             
             Binder binder = getCompositeCanvas().getBinder();
+            EditJournal journal = getCompositeCanvas().getEditJournal();
+            PenTable penTable = binder.getPenTable();
             for (Page page : binder)
             {
                Vector<Stroke> selStrokeVec = page.getSelectedStrokesCopy();
                Stroke selStroke;
+               Pen pen;
                for (int i=selStrokeVec.size()-1; i>=0; i--)
                {
                   selStroke = selStrokeVec.elementAt(i);
-                  selStroke.getPen().setColor(color);
+                  pen = selStroke.getPen().getSnapshot();
+                  pen.setColor(color);
+                  selStroke.setPen(penTable.getPen(pen));
                   
                   // add the stroke's bounding box to the dirty region
                   dirtyUnioner.union(selStroke.getBounds2D());
                }
+               
+               if (journal != null)
+                  journal.strokesChanged(page, selStrokeVec);
             }
             
             // repaint only the dirty region
@@ -1133,6 +1194,10 @@ public class StrokeSelectionCanvas extends SubCanvas<StrokeSelector, Stroke>
             }
          }
          
+         EditJournal journal = canvas.getEditJournal();
+         if (journal != null)
+            journal.strokesRemoved(selStrokes);
+         
          Rectangle2D.Float union = dirtyRegion.getUnion();
          doRedraw((float)union.getX(), 
                   (float)union.getY(), 
@@ -166,6 +166,9 @@ public abstract class SubCanvas<T extends Tool, S>
    {
       this.isPathInProgress = false;
       pathFinishedImpl(path, button);
+      
+      // everything done while the path was drawn is undone in one step
+      this.canvas.getUndoRedoManager().endGesture();
    }
    
    public final void pathChanged(Path path, MouseButton button)
@@ -178,6 +181,7 @@ public abstract class SubCanvas<T extends Tool, S>
                                  boolean newPage)
    {
       this.isPathInProgress = true;
+      this.canvas.getUndoRedoManager().beginGesture();
       pathStartedImpl(path, button, newPage);
    }
    
@@ -37,9 +37,17 @@ public class ScalableFloat implements CopyReady<ScalableFloat>
       setValue(value, scaleLevel);
    }
    
+   /**
+    * Constructs an exact copy of the given value.  That is, the copy is 
+    * scaled the same way the given value is when scaled later.
+    * 
+    * @param value The value to copy.
+    */
    public ScalableFloat(ScalableFloat value)
    {
-      this(value.getValue(), value.getScaleLevel());
+      this.initVal = value.initVal;
+      this.srcVal = value.srcVal;
+      this.scaleLevel = value.scaleLevel;
    }
    
    
@@ -127,6 +135,14 @@ public class ScalableFloat implements CopyReady<ScalableFloat>
              (this.scaleLevel == value.scaleLevel);
    }
    
+   @Override
+   public int hashCode()
+   {
+      int hash = Float.floatToIntBits(this.initVal);
+      hash = 31*hash+Float.floatToIntBits(this.srcVal);
+      return 31*hash+Float.floatToIntBits(this.scaleLevel);
+   }
+   
    @Override
    public String toString()
    {
@@ -0,0 +1,162 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.model.pdf;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.Stack;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFObject;
+
+/**
+ * Reads the sizes of the pages of a PDF file, in order, by walking the
+ * file's page tree.  Only the dictionaries of the nodes of the tree are
+ * read.  Unlike <code>PDFFile.getPage()</code>, the content of a page is
+ * not parsed, so reading the size of a page takes very little time
+ * regardless of how complex the page is.  The tree is walked one page
+ * at a time as sizes are requested.
+ * 
+ * @author Dominic Kramer
+ */
+public class PDFPageSizeReader
+{
+   private static final String PAGES_KEY = "Pages";
+   private static final String KIDS_KEY = "Kids";
+   private static final String MEDIA_BOX_KEY = "MediaBox";
+   private static final String CROP_BOX_KEY = "CropBox";
+   private static final String ROTATE_KEY = "Rotate";
+   
+   private PDFFile pdfFile;
+   
+   /** The nodes of the page tree that have not been visited yet. */
+   private Stack<Node> nodeStack;
+   
+   /**
+    * Constructs a reader that reads the sizes of the pages of the given
+    * file starting with the first page.
+    * 
+    * @param pdfFile The PDF file whose page sizes are read.
+    * 
+    * @throws IOException If the root of the file's page tree cannot be
+    *                     read.
+    */
+   public PDFPageSizeReader(PDFFile pdfFile) throws IOException
+   {
+      if (pdfFile == null)
+         throw new NullPointerException();
+      
+      this.pdfFile = pdfFile;
+      this.nodeStack = new Stack<Node>();
+      
+      PDFObject pages = pdfFile.getRoot().getDictRef(PAGES_KEY);
+      if (pages != null)
+         this.nodeStack.push(new Node(pages, null, null, 0));
+   }
+   
+   /**
+    * Reads the size of the next page.  The size is that of the page's
+    * crop box, or its media box if it doesn't have a crop box, in
+    * points.  If the page is rotated by a quarter or three quarters of
+    * a turn, the width and height are swapped so that the size is that
+    * of the page as it is displayed.
+    * 
+    * @return The size of the next page or <code>null</code> if there
+    *         aren't any more pages.
+    * 
+    * @throws IOException If the page tree cannot be read.
+    */
+   public Rectangle2D.Float readNextSize() throws IOException
+   {
+      while (!this.nodeStack.isEmpty())
+      {
+         Node node = this.nodeStack.pop();
+         PDFObject dict = node.dict;
+         
+         PDFObject mediaBox = dict.getDictRef(MEDIA_BOX_KEY);
+         if (mediaBox == null)
+            mediaBox = node.mediaBox;
+         
+         PDFObject cropBox = dict.getDictRef(CROP_BOX_KEY);
+         if (cropBox == null)
+            cropBox = node.cropBox;
+         
+         int rotation = node.rotation;
+         PDFObject rotateOb = dict.getDictRef(ROTATE_KEY);
+         if (rotateOb != null)
+            rotation = rotateOb.getIntValue();
+         
+         PDFObject kids = dict.getDictRef(KIDS_KEY);
+         if (kids != null)
+         {
+            // The kids are pushed in reverse order so that the first
+            // kid is visited next.  The values that pages inherit are
+            // passed down to the kids.
+            PDFObject[] kidArr = kids.getArray();
+            for (int i=kidArr.length-1; i>=0; i--)
+               this.nodeStack.push(new Node(kidArr[i], mediaBox,
+                                            cropBox, rotation));
+            continue;
+         }
+         
+         PDFObject box = (cropBox != null)?(cropBox):(mediaBox);
+         if (box == null)
+            return null;
+         
+         Rectangle2D.Float rect = this.pdfFile.parseRect(box);
+         float width = Math.abs(rect.width);
+         float height = Math.abs(rect.height);
+         
+         rotation = ((rotation % 360) + 360) % 360;
+         if (rotation == 90 || rotation == 270)
+            return new Rectangle2D.Float(0, 0, height, width);
+         
+         return new Rectangle2D.Float(0, 0, width, height);
+      }
+      
+      return null;
+   }
+   
+   /**
+    * A node of the page tree that has not been visited yet together with
+    * the values it inherits from its ancestors.
+    */
+   private static class Node
+   {
+      private PDFObject dict;
+      private PDFObject mediaBox;
+      private PDFObject cropBox;
+      private int rotation;
+      
+      public Node(PDFObject dict, PDFObject mediaBox,
+                  PDFObject cropBox, int rotation)
+      {
+         this.dict = dict;
+         this.mediaBox = mediaBox;
+         this.cropBox = cropBox;
+         this.rotation = rotation;
+      }
+   }
+}
@@ -43,6 +43,11 @@ import noteLab.util.render.Renderer2D;
 /**
  * This class represents a tool that is used to draw <code>Strokes</code> 
  * on a <code>Page</code>.
+ * <br><br>
+ * The strokes of a binder share the pens in the binder's 
+ * <code>PenTable</code>.  A shared pen cannot be modified and doesn't 
+ * keep any listeners.  Instead, a stroke's pen is changed by modifying a 
+ * snapshot of it and giving the stroke the matching pen from the table.
  * 
  * @author Dominic Kramer
  */
@@ -70,21 +75,37 @@ public class Pen implements Tool
    /** The vector of listeners that are notified when this pen is modified. */
    private Vector<ModListener> modListenerVec;
    
+   /** The table that shares this pen or <code>null</code> if it isn't shared. */
+   private PenTable table;
+   
    private Pen(Pen pen)
    {
-      this.width = pen.width.getCopy();
+      // colors cannot be modified and can be shared by copies
+      this(pen, null, pen.color);
       
-      int red = pen.color.getRed();
-      int green = pen.color.getGreen();
-      int blue = pen.color.getBlue();
-      int alpha = pen.color.getAlpha();
-      this.color = new Color(red, green, blue, alpha);
+      for (ModListener listener : pen.modListenerVec)
+         this.modListenerVec.add(listener);
+   }
+   
+   /**
+    * Constructs a copy of the given pen, without its listeners, that is 
+    * shared through the given table.
+    * 
+    * @param pen The pen to copy.
+    * @param table The table that shares the copy or <code>null</code>.
+    * @param color The color of the copy.
+    */
+   Pen(Pen pen, PenTable table, Color color)
+   {
+      this.width = pen.width.getCopy();
+      this.color = color;
       
-      this.cursor = pen.constructCursor();
+      // the cursor is constructed when it is first needed since most 
+      // pens, such as those of the strokes on a page, never need one
+      this.cursor = null;
       
       this.modListenerVec = new Vector<ModListener>();
-      for (ModListener listener : pen.modListenerVec)
-         this.modListenerVec.add(listener);
+      this.table = table;
    }
    
    /**
@@ -114,9 +135,43 @@ public class Pen implements Tool
    {
       this.width = new ScalableFloat(width, scaleLevel);
       this.color = color;
-      this.cursor = getCursor();
+      this.cursor = null;
       
       this.modListenerVec = new Vector<ModListener>();
+      this.table = null;
+   }
+   
+   /**
+    * Used to get the table that shares this pen.
+    * 
+    * @return The table or <code>null</code> if this pen isn't shared.
+    */
+   public PenTable getTable()
+   {
+      return this.table;
+   }
+   
+   /**
+    * Used to get the width of this pen's lines along with the level at 
+    * which it is scaled.
+    * 
+    * @return This pen's width.
+    */
+   ScalableFloat getScalableWidth()
+   {
+      return this.width;
+   }
+   
+   /**
+    * Used to verify that this pen isn't shared before it is modified.
+    * 
+    * @throws IllegalStateException If this pen is shared.
+    */
+   private void checkModifiable()
+   {
+      if (this.table != null)
+         throw new IllegalStateException("A pen shared by strokes " +
+                                         "cannot be modified.");
    }
    
    /**
@@ -151,6 +206,8 @@ public class Pen implements Tool
       if (color == null)
          throw new NullPointerException();
       
+      checkModifiable();
+      
       this.color = color;
       invalidateCursor();
       
@@ -174,6 +231,8 @@ public class Pen implements Tool
     */
    public void setWidth(float width)
    {
+      checkModifiable();
+      
       if (width <= 0)
          width = 1;
       
@@ -184,6 +243,8 @@ public class Pen implements Tool
    
    public void setRawWidth(float width)
    {
+      checkModifiable();
+      
       if (width <= 0)
          width = 1;
       
@@ -254,7 +315,8 @@ public class Pen implements Tool
    }
    
    /**
-    * Used to get a deep copy of this pen.
+    * Used to get a deep copy of this pen.  The copy isn't shared even if 
+    * this pen is.
     * 
     * @return A deep copy of this pen.
     */
@@ -263,6 +325,18 @@ public class Pen implements Tool
       return new Pen(this);
    }
    
+   /**
+    * Used to get a deep copy of this pen that does not notify any of 
+    * this pen's listeners when it is modified.  The copy isn't shared 
+    * even if this pen is.
+    * 
+    * @return A deep copy of this pen without any listeners.
+    */
+   public Pen getSnapshot()
+   {
+      return new Pen(this, null, this.color);
+   }
+   
    /**
     * Adjusts the given renderer such that the lines drawn by the 
     * renderer have the width and color as specified by this pen.
@@ -285,6 +359,8 @@ public class Pen implements Tool
     */
    public void scaleBy(float val)
    {
+      checkModifiable();
+      
       if (val < 0)
          val = -val;
       
@@ -295,6 +371,8 @@ public class Pen implements Tool
    
    public void resizeTo(float val)
    {
+      checkModifiable();
+      
       if (val < 0)
          val = -val;
       
@@ -311,6 +389,8 @@ public class Pen implements Tool
     */
    public void scaleTo(float val)
    {
+      checkModifiable();
+      
       if (val < 0)
          val = -val;
       
@@ -330,6 +410,11 @@ public class Pen implements Tool
       if (listener == null)
          throw new NullPointerException();
       
+      // a shared pen is never modified and could otherwise collect 
+      // every stroke that uses it as a listener
+      if (this.table != null)
+         return;
+      
       if (!this.modListenerVec.contains(listener))
          this.modListenerVec.add(listener);
    }
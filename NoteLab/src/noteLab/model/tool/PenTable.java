@@ -0,0 +1,218 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.model.tool;
+
+import java.awt.Color;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+import noteLab.model.geom.ScalableFloat;
+
+/**
+ * Holds the pens that are shared by the strokes of a binder.  Most of the
+ * strokes in a binder are drawn with only a few different pens.  Thus,
+ * instead of each stroke having its own pen, strokes drawn with the same
+ * width, color, and scale level are given the same pen from this table.
+ * The colors of the pens are also shared.
+ * <br><br>
+ * A pen obtained from this table is shared and cannot be modified.  To
+ * change the pen of a stroke, a snapshot of the pen is modified and the
+ * stroke's pen is replaced with the pen in this table that matches the
+ * snapshot.
+ * <br><br>
+ * The table only keeps weak references to its pens.  Thus, the pens that
+ * are no longer used, such as the pens of strokes scaled to a zoom level
+ * that is no longer used, are discarded.
+ * <br><br>
+ * The methods of this table are synchronized since the strokes of a page
+ * can be loaded and scaled on a background thread.
+ * 
+ * @author Dominic Kramer
+ */
+public class PenTable
+{
+   /** Maps the width and color of each shared pen to the pen. */
+   private HashMap<Key, PenReference> penMap;
+   
+   /** The queue of the references to the pens that have been discarded. */
+   private ReferenceQueue<Pen> discardedQueue;
+   
+   /** Maps the RGBA value of each color used by the pens to the color. */
+   private HashMap<Integer, Color> colorMap;
+   
+   public PenTable()
+   {
+      this.penMap = new HashMap<Key, PenReference>();
+      this.discardedQueue = new ReferenceQueue<Pen>();
+      this.colorMap = new HashMap<Integer, Color>();
+   }
+   
+   /**
+    * Used to get the shared pen that draws lines with the given width and
+    * color at the given scale level.
+    * 
+    * @param width The width of the lines that are drawn by the pen.
+    * @param color The color of the lines that are drawn by the pen.
+    * @param scaleLevel The amount of the lines drawn by the pen are
+    *                   scaled in width.
+    * 
+    * @return The shared pen.
+    */
+   public Pen getPen(float width, Color color, float scaleLevel)
+   {
+      if (color == null)
+         throw new NullPointerException();
+      
+      return getPen(new Pen(width, color, scaleLevel));
+   }
+   
+   /**
+    * Used to get the shared pen that has the same width, color, and scale
+    * level as the given pen.  If this table doesn't contain such a pen, a
+    * copy of the given pen is added to this table.  The given pen itself
+    * is never added to this table since it may be modified later.
+    * 
+    * @param pen The pen.
+    * 
+    * @return The shared pen.
+    */
+   public synchronized Pen getPen(Pen pen)
+   {
+      if (pen == null)
+         throw new NullPointerException();
+      
+      if (pen.getTable() == this)
+         return pen;
+      
+      removeDiscarded();
+      
+      ScalableFloat width = pen.getScalableWidth();
+      int rgba = pen.getColor().getRGB();
+      
+      Pen sharedPen = null;
+      PenReference ref = this.penMap.get(new Key(width, rgba));
+      if (ref != null)
+         sharedPen = ref.get();
+      
+      if (sharedPen == null)
+      {
+         sharedPen = new Pen(pen, this, getColor(pen.getColor()));
+         
+         Key key = new Key(sharedPen.getScalableWidth(), rgba);
+         this.penMap.put(key, 
+                         new PenReference(sharedPen, key, 
+                                          this.discardedQueue));
+      }
+      
+      return sharedPen;
+   }
+   
+   /**
+    * Removes the entries of the pens that have been discarded.
+    */
+   private void removeDiscarded()
+   {
+      PenReference ref;
+      while ( (ref = (PenReference)this.discardedQueue.poll()) != null )
+      {
+         // the pen may have been added again after it was discarded
+         if (this.penMap.get(ref.key) == ref)
+            this.penMap.remove(ref.key);
+      }
+   }
+   
+   /**
+    * Used to get the shared color that has the same RGBA value as the
+    * given color.
+    * 
+    * @param color The color.
+    * 
+    * @return The shared color.
+    */
+   private Color getColor(Color color)
+   {
+      Color sharedColor = this.colorMap.get(color.getRGB());
+      if (sharedColor == null)
+      {
+         sharedColor = color;
+         this.colorMap.put(color.getRGB(), sharedColor);
+      }
+      
+      return sharedColor;
+   }
+   
+   /**
+    * Used to get the number of shared pens in this table.  Pens that 
+    * have been discarded but not yet removed from this table are 
+    * included.
+    * 
+    * @return The number of pens.
+    */
+   public synchronized int getNumPens()
+   {
+      removeDiscarded();
+      return this.penMap.size();
+   }
+   
+   private static class PenReference extends WeakReference<Pen>
+   {
+      private Key key;
+      
+      public PenReference(Pen pen, Key key, ReferenceQueue<Pen> queue)
+      {
+         super(pen, queue);
+         this.key = key;
+      }
+   }
+   
+   private static class Key
+   {
+      private ScalableFloat width;
+      private int rgba;
+      
+      public Key(ScalableFloat width, int rgba)
+      {
+         this.width = width;
+         this.rgba = rgba;
+      }
+      
+      @Override
+      public boolean equals(Object ob)
+      {
+         if ( !(ob instanceof Key) )
+            return false;
+         
+         Key key = (Key)ob;
+         return (this.rgba == key.rgba) && this.width.equals(key.width);
+      }
+      
+      @Override
+      public int hashCode()
+      {
+         return 31*this.width.hashCode()+this.rgba;
+      }
+   }
+}
@@ -25,6 +25,7 @@
 package noteLab.util;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Vector;
 
 import javax.swing.ImageIcon;
@@ -39,13 +40,18 @@ import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.arg.Argument;
 import noteLab.util.arg.CombFactorArg;
 import noteLab.util.arg.CommandInterpretor;
+import noteLab.util.arg.ConvertArg;
+import noteLab.util.arg.ConvertThreadsArg;
 import noteLab.util.arg.CurrentDirectoryArg;
 import noteLab.util.arg.DebugArgGenerator;
 import noteLab.util.arg.DebugMenuArg;
+import noteLab.util.arg.HistoryMemoryArg;
 import noteLab.util.arg.HistorySizeArg;
 import noteLab.util.arg.LookAndFeelArg;
 import noteLab.util.arg.PaperColorArg;
 import noteLab.util.arg.PaperTypeArg;
+import noteLab.util.arg.PageMemoryArg;
+import noteLab.util.arg.PathPrecisionArg;
 import noteLab.util.arg.PenColorArg;
 import noteLab.util.arg.PenSizeArg;
 import noteLab.util.arg.PrintArg;
@@ -54,9 +60,11 @@ import noteLab.util.arg.SmoothFactorArg;
 import noteLab.util.arg.UnitScaleArg;
 import noteLab.util.arg.VersionArg;
 import noteLab.util.io.jarnal.JarnalFileLoader;
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.io.noteLab.NoteLabFileLoadedListener;
 import noteLab.util.io.noteLab.NoteLabFileLoader;
 import noteLab.util.io.pdf.PDFFileLoader;
+import noteLab.util.mod.ModType;
 import noteLab.util.settings.SettingsKeys;
 import noteLab.util.settings.SettingsManager;
 import noteLab.util.settings.SettingsUtilities;
@@ -108,10 +116,15 @@ public class StartupUtilities implements SettingsKeys
       interpretor.registerArgument(new LookAndFeelArg());
       
       interpretor.registerArgument(new HistorySizeArg());
+      interpretor.registerArgument(new HistoryMemoryArg());
       
       interpretor.registerArgument(new CombFactorArg());
       interpretor.registerArgument(new SmoothFactorArg());
       
+      interpretor.registerArgument(new PathPrecisionArg());
+      
+      interpretor.registerArgument(new PageMemoryArg());
+      
       interpretor.registerArgument(new UnitScaleArg());
       
       interpretor.registerArgument(new CurrentDirectoryArg());
@@ -120,6 +133,10 @@ public class StartupUtilities implements SettingsKeys
       
       interpretor.registerArgument(new PrintArg());
       
+      ConvertArg convertArg = new ConvertArg();
+      interpretor.registerArgument(convertArg);
+      interpretor.registerArgument(new ConvertThreadsArg(convertArg));
+      
       interpretor.registerArgument(new RenderScrollingArg());
       
       Argument[] debugArgs = DebugArgGenerator.generateDebugArgs();
@@ -138,6 +155,13 @@ public class StartupUtilities implements SettingsKeys
       //notify everything of changes to the settings
       SettingsManager.getSharedInstance().notifyOfChanges();
       
+      // convert the files given instead of opening them
+      if (success && convertArg.isRequested())
+      {
+         int numFailed = convertArg.convert(interpretor.getSpecifiedFiles());
+         System.exit( (numFailed == 0)?(0):(1) );
+      }
+      
       //if there aren't any problems start the gui
       if (success)
       {
@@ -206,7 +230,7 @@ public class StartupUtilities implements SettingsKeys
                else if (path.endsWith(pdfExt))
                   new PDFFileLoader(file, this).loadFile();
                else
-                  new NoteLabFileLoader(file, this).loadFile();
+                  NoteLabFileLoader.getLoader(file, this).loadFile();
             }
             catch (Exception e)
             {
@@ -231,6 +255,27 @@ public class StartupUtilities implements SettingsKeys
        */
       public void noteLabFileLoaded(CompositeCanvas canvas, String message)
       {
+         EditJournal journal = openJournal(canvas);
+         int numRecovered = (journal != null)?journal.getNumRecovered():0;
+         
+         // A session opened from its compacted copy contains edits that 
+         // are not in its file even if none were replayed.
+         boolean isModified = (numRecovered > 0) || 
+                              (journal != null && journal.isCompactedBase());
+         if (isModified)
+         {
+            String recoveredMessage = "Edits made after the session was " +
+                                      "last saved have been recovered.";
+            if (numRecovered > 0)
+               recoveredMessage = numRecovered+" edits made after the " +
+                                  "session was last saved have been " +
+                                  "recovered.";
+            if (message == null || message.length() == 0)
+               message = recoveredMessage;
+            else
+               message += "\n"+recoveredMessage;
+         }
+         
          if (message != null && message.length() > 0)
          {
             int size = GuiSettingsConstants.BUTTON_SIZE;
@@ -243,7 +288,38 @@ public class StartupUtilities implements SettingsKeys
                                           icon);
          }
          
-         launchMainFrame(canvas);
+         launchMainFrame(canvas, isModified);
+      }
+      
+      /**
+       * Opens the journal of the session in the given canvas, if the 
+       * session was loaded from a file, and replays the edits made after 
+       * the session was last saved.
+       * 
+       * @param canvas The <code>CompositeCanvas</code> that has just 
+       *               been loaded.
+       * 
+       * @return The journal or <code>null</code> if it couldn't be 
+       *         opened.
+       */
+      private EditJournal openJournal(CompositeCanvas canvas)
+      {
+         File file = canvas.getFile();
+         if (file == null)
+            return null;
+         
+         try
+         {
+            EditJournal journal = EditJournal.open(canvas, file);
+            canvas.setEditJournal(journal);
+            return journal;
+         }
+         catch (IOException e)
+         {
+            System.err.println("The journal for '"+file+"' could not " +
+                               "be opened:  "+e.getMessage());
+            return null;
+         }
       }
       
       /**
@@ -262,6 +338,21 @@ public class StartupUtilities implements SettingsKeys
        *               constructed.
        */
       private void launchMainFrame(final CompositeCanvas canvas)
+      {
+         launchMainFrame(canvas, false);
+      }
+      
+      /**
+       * Creates a <code>MainFrame</code> using the given 
+       * <code>CompositeCanvas</code>.
+       * 
+       * @param canvas The canvas or <code>null</code> if a new 
+       *               <code>MainFrame</code> should be created.
+       * @param isModified <code>true</code> if the canvas contains 
+       *                   edits that are not in its file.
+       */
+      private void launchMainFrame(final CompositeCanvas canvas, 
+                                   final boolean isModified)
       {
          SwingUtilities.invokeLater(new Runnable()
          {
@@ -280,7 +371,14 @@ public class StartupUtilities implements SettingsKeys
                }
                
                if (frame != null)
+               {
                   frame.hasBeenSaved();
+                  if (isModified)
+                  {
+                     canvas.setHasBeenModified(true);
+                     frame.modOccured(canvas, ModType.Other);
+                  }
+               }
             }
          });
       }
@@ -0,0 +1,151 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.arg;
+
+import java.io.File;
+import java.util.List;
+
+import noteLab.util.InfoCenter;
+import noteLab.util.io.BatchConverter;
+
+/**
+ * Requests that the files given on the command line are converted to 
+ * another format instead of being opened.  Converting files doesn't 
+ * require a display so that it can be used when running headless.  
+ * Since the files are only known once all of the arguments have been 
+ * interpreted, the files are converted by {@link #convert(List)} after 
+ * the command line has been processed.
+ * 
+ * @author Dominic Kramer
+ */
+public class ConvertArg extends Argument
+{
+   private static final ParamInfo[] PARAM_DESCS = 
+                           new ParamInfo[] 
+                           {
+                              new ParamInfo("format", 
+                                            "The format to convert to:  "+
+                                            BatchConverter.
+                                               getSupportedFormats()), 
+                              new ParamInfo("directory", 
+                                            "The directory to which the " +
+                                            "converted files are written")
+                           };
+   
+   private static final String DESC = "Converts the "+
+                                      InfoCenter.getAppName()+
+                                      " files given after '"+PREFIX+
+                                      "', or the "+
+                                      InfoCenter.getFileExtension()+
+                                      " files in the directories given, " +
+                                      "to the given format without " +
+                                      "displaying "+
+                                      InfoCenter.getAppName()+".  " +
+                                      "Several files are converted at " +
+                                      "the same time.";
+   
+   private BatchConverter converter;
+   private int numThreads;
+   
+   public ConvertArg()
+   {
+      super("convert", 2, PARAM_DESCS, DESC, false);
+      
+      this.converter = null;
+      this.numThreads = Runtime.getRuntime().availableProcessors();
+   }
+   
+   public String encode(String format, File directory)
+   {
+      if (format == null || directory == null)
+         throw new NullPointerException();
+      
+      return PREFIX+getIdentifier()+" "+format+" "+
+                directory.getAbsolutePath();
+   }
+   
+   /**
+    * Used to determine if files should be converted instead of opened.
+    * 
+    * @return <code>true</code> if this argument was given.
+    */
+   public boolean isRequested()
+   {
+      return this.converter != null;
+   }
+   
+   /**
+    * Used to set the number of files converted at the same time.
+    * 
+    * @param numThreads The number of threads which must be positive.
+    */
+   public void setNumThreads(int numThreads)
+   {
+      if (numThreads <= 0)
+         throw new IllegalArgumentException("The number of files " +
+                                            "converted at a time must " +
+                                            "be positive.  The number "+
+                                            numThreads+" is invalid.");
+      
+      this.numThreads = numThreads;
+   }
+   
+   @Override
+   public ArgResult decode(String[] args)
+   {
+      try
+      {
+         this.converter = new BatchConverter(args[0], new File(args[1]));
+      }
+      catch (IllegalArgumentException e)
+      {
+         System.out.println("Error:  "+e.getMessage());
+         
+         return ArgResult.ERROR;
+      }
+      
+      return ArgResult.SHOW_GUI;
+   }
+   
+   /**
+    * Converts the given files to the format given with this argument.
+    * 
+    * @param files The files and directories given on the command line.
+    * 
+    * @return The number of files that could not be converted.
+    */
+   public int convert(List<File> files)
+   {
+      if (files == null)
+         throw new NullPointerException();
+      
+      if (this.converter == null)
+         throw new IllegalStateException("The format to convert to " +
+                                         "hasn't been given.");
+      
+      this.converter.setNumThreads(this.numThreads);
+      return this.converter.convert(files);
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.arg;
+
+public class ConvertThreadsArg extends Argument
+{
+   private static final ParamInfo[] PARAM_DESCS = 
+                           new ParamInfo[] 
+                           {
+                              new ParamInfo("threads", 
+                                            "a positive integer"), 
+                           };
+   
+   private static final String DESC = "Specifies the number of files " +
+                                      "converted at the same time when " +
+                                      "files are converted with "+
+                                      PREFIX+"convert.  By default, this " +
+                                      "is the number of processors.";
+   
+   private ConvertArg convertArg;
+   
+   public ConvertThreadsArg(ConvertArg convertArg)
+   {
+      super("convertThreads", 1, PARAM_DESCS, DESC, false);
+      
+      if (convertArg == null)
+         throw new NullPointerException();
+      
+      this.convertArg = convertArg;
+   }
+   
+   public String encode(int numThreads)
+   {
+      return PREFIX+getIdentifier()+" "+numThreads;
+   }
+   
+   @Override
+   public ArgResult decode(String[] args)
+   {
+      String strVal = args[0];
+      int numThreads;
+      try
+      {
+         numThreads = Integer.parseInt(strVal);
+      }
+      catch (NumberFormatException e)
+      {
+         System.out.println("Error:  The string '"+strVal+"' does not " +
+                            "correspond to an integer.");
+         return ArgResult.ERROR;
+      }
+      
+      try
+      {
+         this.convertArg.setNumThreads(numThreads);
+      }
+      catch (IllegalArgumentException e)
+      {
+         System.out.println(e.getMessage());
+         
+         return ArgResult.ERROR;
+      }
+      
+      return ArgResult.SHOW_GUI;
+   }
+}
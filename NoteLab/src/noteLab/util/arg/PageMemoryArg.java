@@ -0,0 +1,86 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.arg;
+
+import noteLab.util.settings.SettingsKeys;
+import noteLab.util.settings.SettingsUtilities;
+
+public class PageMemoryArg extends Argument
+{
+   private static final ParamInfo[] PARAM_DESCS = 
+                           new ParamInfo[] 
+                           {
+                              new ParamInfo("megabytes", 
+                                            "a nonnegative integer"), 
+                           };
+   
+   private static final String DESC = "Specifies the number of megabytes " +
+                                      "the strokes of a session can use " +
+                                      "before the strokes of pages away " +
+                                      "from the visible area are unloaded.  " +
+                                      "Unloaded strokes are loaded again " +
+                                      "when they are needed.  Pages that " +
+                                      "have been edited are never unloaded.";
+   
+   public PageMemoryArg()
+   {
+      super(SettingsKeys.PAGE_MEMORY, 1, PARAM_DESCS, DESC, false);
+   }
+   
+   public String encode(int megabytes)
+   {
+      return PREFIX+getIdentifier()+" "+megabytes;
+   }
+   
+   @Override
+   public ArgResult decode(String[] args)
+   {
+      String strVal = args[0];
+      int megabytes;
+      try
+      {
+         megabytes = Integer.parseInt(strVal);
+      }
+      catch (NumberFormatException e)
+      {
+         System.out.println("Error:  The string '"+strVal+"' does not " +
+                            "correspond to an integer.");
+         return ArgResult.ERROR;
+      }
+      
+      try
+      {
+         SettingsUtilities.setPageMemory(megabytes);
+      }
+      catch (IllegalArgumentException e)
+      {
+         System.out.println(e.getMessage());
+         
+         return ArgResult.ERROR;
+      }
+      
+      return ArgResult.SHOW_GUI;
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+package noteLab.util.arg;
+
+import noteLab.util.settings.SettingsKeys;
+import noteLab.util.settings.SettingsUtilities;
+
+public class PathPrecisionArg extends Argument
+{
+   private static final ParamInfo[] PARAM_DESCS = 
+                           new ParamInfo[] 
+                           {
+                              new ParamInfo("precision", 
+                                            "an integer between 0 and 9 " +
+                                            "or a negative integer"), 
+                           };
+   
+   private static final String DESC = "Specifies the number of decimal " +
+                                      "places to which the points of " +
+                                      "strokes are quantized when a " +
+                                      "session is saved in the native " +
+                                      "format.  Fewer places make files " +
+                                      "smaller.  A negative value specifies " +
+                                      "that every point should be stored " +
+                                      "with full precision.  Exported SVG " +
+                                      "files always use full precision.";
+   
+   public PathPrecisionArg()
+   {
+      super(SettingsKeys.PATH_PRECISION, 1, PARAM_DESCS, DESC, false);
+   }
+   
+   public String encode(int precision)
+   {
+      return PREFIX+getIdentifier()+" "+precision;
+   }
+   
+   @Override
+   public ArgResult decode(String[] args)
+   {
+      String strVal = args[0];
+      int precision;
+      try
+      {
+         precision = Integer.parseInt(strVal);
+      }
+      catch (NumberFormatException e)
+      {
+         System.out.println("Error:  The string '"+strVal+"' does not " +
+                            "correspond to an integer.");
+         return ArgResult.ERROR;
+      }
+      
+      try
+      {
+         SettingsUtilities.setPathPrecision(precision);
+      }
+      catch (IllegalArgumentException e)
+      {
+         System.out.println(e.getMessage());
+         
+         return ArgResult.ERROR;
+      }
+      
+      return ArgResult.SHOW_GUI;
+   }
+}
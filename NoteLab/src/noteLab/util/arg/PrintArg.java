@@ -8,6 +8,7 @@ import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.InfoCenter;
 import noteLab.util.io.noteLab.NoteLabFileLoadedListener;
 import noteLab.util.io.noteLab.NoteLabFileLoader;
+import noteLab.util.render.PrintSpooler;
 
 public class PrintArg extends Argument 
                          implements NoteLabFileLoadedListener
@@ -62,7 +63,7 @@ public class PrintArg extends Argument
       
       try
       {
-         new NoteLabFileLoader(file, this).loadFile();
+         NoteLabFileLoader.getLoader(file, this).loadFile();
       }
       catch (Exception e)
       {
@@ -87,7 +88,7 @@ public class PrintArg extends Argument
       }
       
       final PrinterJob printerJob = PrinterJob.getPrinterJob();
-      printerJob.setPageable(canvas.getBinder());
+      printerJob.setPageable(new PrintSpooler(canvas.getBinder()));
       
       boolean notCancelled = true;
       if (this.showDialog)
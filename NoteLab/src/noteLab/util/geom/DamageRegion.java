@@ -0,0 +1,196 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.geom;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.Vector;
+
+/**
+ * Collects the regions of the screen that are damaged during an
+ * operation so that they can be repainted with a few requests instead
+ * of one request per region.  A rectangle that is contained in one
+ * already collected is ignored.  Once more than the maximum number of
+ * rectangles are collected, the two rectangles whose union covers the
+ * least area that isn't covered by either of them are merged.  Thus,
+ * the number of rectangles stays small and little area that wasn't
+ * damaged is repainted.
+ * 
+ * @author Dominic Kramer
+ */
+public class DamageRegion implements Iterable<Rectangle2D.Float>
+{
+   /** The default maximum number of rectangles collected. */
+   public static final int DEFAULT_MAX_RECTANGLES = 8;
+   
+   private Vector<Rectangle2D.Float> rectVec;
+   private int maxRects;
+   
+   /**
+    * Constructs an empty region that holds at most
+    * {@link #DEFAULT_MAX_RECTANGLES DEFAULT_MAX_RECTANGLES} rectangles.
+    */
+   public DamageRegion()
+   {
+      this(DEFAULT_MAX_RECTANGLES);
+   }
+   
+   /**
+    * Constructs an empty region.
+    * 
+    * @param maxRects The maximum number of rectangles held which must
+    *                 be positive.
+    */
+   public DamageRegion(int maxRects)
+   {
+      if (maxRects <= 0)
+         throw new IllegalArgumentException("The maximum number of " +
+                                            "rectangles, "+maxRects+
+                                            ", is not positive.");
+      
+      this.rectVec = new Vector<Rectangle2D.Float>(maxRects+1);
+      this.maxRects = maxRects;
+   }
+   
+   /**
+    * Adds the given region to the damaged region.
+    * 
+    * @param x The x coordinate of the region.
+    * @param y The y coordinate of the region.
+    * @param width The width of the region.
+    * @param height The height of the region.
+    */
+   public void add(float x, float y, float width, float height)
+   {
+      for (Rectangle2D.Float rect : this.rectVec)
+         if (x >= rect.x && y >= rect.y &&
+               x+width <= rect.x+rect.width &&
+                  y+height <= rect.y+rect.height)
+            return;
+      
+      this.rectVec.add(new Rectangle2D.Float(x, y, width, height));
+      if (this.rectVec.size() > this.maxRects)
+         mergeClosest();
+   }
+   
+   /**
+    * Adds the given rectangle to the damaged region.
+    * 
+    * @param rect The rectangle to add.
+    */
+   public void add(Rectangle2D rect)
+   {
+      if (rect == null)
+         throw new NullPointerException();
+      
+      add((float)rect.getX(), (float)rect.getY(),
+          (float)rect.getWidth(), (float)rect.getHeight());
+   }
+   
+   /**
+    * Merges the two rectangles whose union wastes the least area.
+    */
+   private void mergeClosest()
+   {
+      int size = this.rectVec.size();
+      int bestI = 0;
+      int bestJ = 1;
+      float bestWaste = Float.MAX_VALUE;
+      
+      Rectangle2D.Float rect1;
+      Rectangle2D.Float rect2;
+      float waste;
+      for (int i=0; i<size-1; i++)
+      {
+         rect1 = this.rectVec.elementAt(i);
+         for (int j=i+1; j<size; j++)
+         {
+            rect2 = this.rectVec.elementAt(j);
+            waste = getUnionArea(rect1, rect2) -
+                       getArea(rect1) - getArea(rect2) +
+                          getIntersectionArea(rect1, rect2);
+            if (waste < bestWaste)
+            {
+               bestWaste = waste;
+               bestI = i;
+               bestJ = j;
+            }
+         }
+      }
+      
+      Rectangle2D.Float merged = this.rectVec.elementAt(bestI);
+      Rectangle2D.union(merged, this.rectVec.remove(bestJ), merged);
+   }
+   
+   private static float getArea(Rectangle2D.Float rect)
+   {
+      return rect.width*rect.height;
+   }
+   
+   private static float getUnionArea(Rectangle2D.Float rect1,
+                                     Rectangle2D.Float rect2)
+   {
+      float width = Math.max(rect1.x+rect1.width, rect2.x+rect2.width) -
+                       Math.min(rect1.x, rect2.x);
+      float height = Math.max(rect1.y+rect1.height, rect2.y+rect2.height) -
+                        Math.min(rect1.y, rect2.y);
+      
+      return width*height;
+   }
+   
+   private static float getIntersectionArea(Rectangle2D.Float rect1,
+                                            Rectangle2D.Float rect2)
+   {
+      float width = Math.min(rect1.x+rect1.width, rect2.x+rect2.width) -
+                       Math.max(rect1.x, rect2.x);
+      float height = Math.min(rect1.y+rect1.height, rect2.y+rect2.height) -
+                        Math.max(rect1.y, rect2.y);
+      
+      if (width <= 0 || height <= 0)
+         return 0;
+      
+      return width*height;
+   }
+   
+   public boolean isEmpty()
+   {
+      return this.rectVec.isEmpty();
+   }
+   
+   public int getNumRectangles()
+   {
+      return this.rectVec.size();
+   }
+   
+   public void clear()
+   {
+      this.rectVec.clear();
+   }
+   
+   public Iterator<Rectangle2D.Float> iterator()
+   {
+      return this.rectVec.iterator();
+   }
+}
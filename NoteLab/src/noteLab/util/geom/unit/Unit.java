@@ -24,6 +24,7 @@
 
 package noteLab.util.geom.unit;
 
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 
 import noteLab.util.io.noteLab.NoteLabFileConstants;
@@ -49,6 +50,12 @@ public enum Unit implements NoteLabFileConstants
    /** Specifies the conversion ratio from centimeters to inches. */
    private static final float CM_PER_INCH = 2.54f;
    
+   /** 
+    * The resolution used when there isn't a screen, as when running 
+    * headless, which is the number of points per inch.
+    */
+   public static final int HEADLESS_SCREEN_RESOLUTION = 72;
+   
    @Override
    public String toString()
    {
@@ -67,6 +74,9 @@ public enum Unit implements NoteLabFileConstants
    
    public static int getScreenResolution()
    {
+      if (GraphicsEnvironment.isHeadless())
+         return HEADLESS_SCREEN_RESOLUTION;
+      
       return Toolkit.getDefaultToolkit().getScreenResolution();
    }
    
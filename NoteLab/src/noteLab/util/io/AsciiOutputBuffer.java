@@ -0,0 +1,383 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+package noteLab.util.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes text to an <code>OutputStream</code> through a large internal 
+ * byte buffer.  Characters are encoded as UTF-8 directly into the buffer 
+ * and floating point values are formatted directly as ASCII digits.  As 
+ * a result, writing text or numbers through this class does not create 
+ * any intermediate <code>String</code> or <code>byte</code> array objects 
+ * and the underlying stream is only written to when the buffer is full.
+ * <br><br>
+ * Floating point values are written using the fewest number of decimal 
+ * places (up to {@link #MAX_DECIMAL_PLACES MAX_DECIMAL_PLACES}) such 
+ * that <code>Float.parseFloat()</code> gives back exactly the same value.
+ * 
+ * @author Dominic Kramer
+ */
+public class AsciiOutputBuffer
+{
+   /** The default size, in bytes, of the internal buffer. */
+   public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+   
+   /** 
+    * The maximum number of decimal places written before falling back 
+    * to <code>Float.toString()</code>.
+    */
+   public static final int MAX_DECIMAL_PLACES = 9;
+   
+   /** 
+    * Values whose magnitude is at least this large are written using 
+    * <code>Float.toString()</code> since their scaled value could 
+    * overflow a <code>long</code>.
+    */
+   private static final double MAX_FIXED_VALUE = 1e9;
+   
+   private static final double[] POWERS_OF_TEN;
+   static
+   {
+      POWERS_OF_TEN = new double[MAX_DECIMAL_PLACES+1];
+      double power = 1;
+      for (int i=0; i<POWERS_OF_TEN.length; i++)
+      {
+         POWERS_OF_TEN[i] = power;
+         power *= 10;
+      }
+   }
+   
+   private OutputStream outStream;
+   private byte[] buffer;
+   private int count;
+   
+   /** The number of bytes that have been flushed to the stream. */
+   private long numWritten;
+   
+   /** Scratch space used to write the digits of a number in reverse. */
+   private byte[] digitBuffer;
+   
+   public AsciiOutputBuffer(OutputStream outStream)
+   {
+      this(outStream, DEFAULT_BUFFER_SIZE);
+   }
+   
+   public AsciiOutputBuffer(OutputStream outStream, int size)
+   {
+      if (outStream == null)
+         throw new NullPointerException();
+      
+      if (size < 16)
+         size = 16;
+      
+      this.outStream = outStream;
+      this.buffer = new byte[size];
+      this.count = 0;
+      this.numWritten = 0;
+      this.digitBuffer = new byte[20];
+   }
+   
+   /**
+    * Returns the number of bytes that have been written through this 
+    * buffer, including those that have not yet been flushed.
+    * 
+    * @return The total number of bytes written.
+    */
+   public long getNumBytesWritten()
+   {
+      return this.numWritten + this.count;
+   }
+   
+   public void write(String str) throws IOException
+   {
+      if (str == null)
+         throw new NullPointerException();
+      
+      int length = str.length();
+      char c;
+      for (int i=0; i<length; i++)
+      {
+         c = str.charAt(i);
+         if (c < 0x80)
+         {
+            if (this.count == this.buffer.length)
+               flushBuffer();
+            this.buffer[this.count++] = (byte)c;
+         }
+         else if (Character.isHighSurrogate(c) && i+1 < length && 
+                  Character.isLowSurrogate(str.charAt(i+1)))
+         {
+            writeCodePoint(Character.toCodePoint(c, str.charAt(++i)));
+         }
+         else
+         {
+            writeCodePoint(c);
+         }
+      }
+   }
+   
+   public void write(char c) throws IOException
+   {
+      if (c < 0x80)
+      {
+         if (this.count == this.buffer.length)
+            flushBuffer();
+         this.buffer[this.count++] = (byte)c;
+      }
+      else
+         writeCodePoint(c);
+   }
+   
+   private void writeCodePoint(int codePoint) throws IOException
+   {
+      if (this.buffer.length - this.count < 4)
+         flushBuffer();
+      
+      // lone surrogates are replaced with '?' as String.getBytes() does
+      if (codePoint >= Character.MIN_SURROGATE && 
+          codePoint <= Character.MAX_SURROGATE)
+      {
+         this.buffer[this.count++] = (byte)'?';
+      }
+      else if (codePoint < 0x800)
+      {
+         this.buffer[this.count++] = (byte)(0xC0 | (codePoint >> 6));
+         this.buffer[this.count++] = (byte)(0x80 | (codePoint & 0x3F));
+      }
+      else if (codePoint < 0x10000)
+      {
+         this.buffer[this.count++] = (byte)(0xE0 | (codePoint >> 12));
+         this.buffer[this.count++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+         this.buffer[this.count++] = (byte)(0x80 | (codePoint & 0x3F));
+      }
+      else
+      {
+         this.buffer[this.count++] = (byte)(0xF0 | (codePoint >> 18));
+         this.buffer[this.count++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+         this.buffer[this.count++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+         this.buffer[this.count++] = (byte)(0x80 | (codePoint & 0x3F));
+      }
+   }
+   
+   /**
+    * Writes the given value as a decimal integer.
+    * 
+    * @param val The value to write.
+    */
+   public void write(long val) throws IOException
+   {
+      if (val == Long.MIN_VALUE)
+      {
+         write(Long.toString(val));
+         return;
+      }
+      
+      if (this.buffer.length - this.count < this.digitBuffer.length)
+         flushBuffer();
+      
+      if (val < 0)
+      {
+         this.buffer[this.count++] = (byte)'-';
+         val = -val;
+      }
+      
+      writeDigits(val, 0);
+   }
+   
+   /**
+    * Writes the given value using the fewest number of decimal places 
+    * needed for the value to be read back exactly.
+    * 
+    * @param val The value to write.
+    */
+   public void write(float val) throws IOException
+   {
+      write(val, MAX_DECIMAL_PLACES);
+   }
+   
+   /**
+    * Writes the given value using the fewest number of decimal places, 
+    * not exceeding <code>maxPlaces</code>, needed for the value to be 
+    * read back exactly.  If the value cannot be read back exactly using 
+    * at most <code>maxPlaces</code> decimal places and 
+    * <code>maxPlaces</code> is 
+    * {@link #MAX_DECIMAL_PLACES MAX_DECIMAL_PLACES}, the value is written 
+    * using <code>Float.toString()</code>.  Otherwise, the value is rounded 
+    * to <code>maxPlaces</code> decimal places.
+    * 
+    * @param val The value to write.
+    * @param maxPlaces The maximum number of decimal places to write.
+    */
+   public void write(float val, int maxPlaces) throws IOException
+   {
+      if (maxPlaces < 0)
+         maxPlaces = 0;
+      else if (maxPlaces > MAX_DECIMAL_PLACES)
+         maxPlaces = MAX_DECIMAL_PLACES;
+      
+      double absVal = Math.abs((double)val);
+      if (Float.isNaN(val) || absVal >= MAX_FIXED_VALUE)
+      {
+         write(Float.toString(val));
+         return;
+      }
+      
+      boolean isNegative = (val < 0);
+      
+      int places = 0;
+      // absVal is non-negative and small enough that adding 0.5 and 
+      // truncating rounds correctly, which is cheaper than Math.round()
+      long scaled = (long)(absVal + 0.5);
+      while (places < maxPlaces && (float)(scaled/POWERS_OF_TEN[places]) != absVal)
+      {
+         places++;
+         scaled = (long)(absVal*POWERS_OF_TEN[places] + 0.5);
+      }
+      
+      if (maxPlaces == MAX_DECIMAL_PLACES && 
+          (float)(scaled/POWERS_OF_TEN[places]) != absVal)
+      {
+         write(Float.toString(val));
+         return;
+      }
+      
+      // drop trailing zeros left over from rounding to maxPlaces
+      while (places > 0 && scaled % 10 == 0)
+      {
+         scaled /= 10;
+         places--;
+      }
+      
+      if (this.buffer.length - this.count < this.digitBuffer.length+2)
+         flushBuffer();
+      
+      if (isNegative && scaled != 0)
+         this.buffer[this.count++] = (byte)'-';
+      
+      writeDigits(scaled, places);
+   }
+   
+   /**
+    * Writes the given non-negative value as digits where the last 
+    * <code>places</code> digits are placed after a decimal point.  The 
+    * caller must ensure there is room in the buffer.
+    */
+   private void writeDigits(long val, int places)
+   {
+      int numDigits = 0;
+      do
+      {
+         this.digitBuffer[numDigits++] = (byte)('0' + (val % 10));
+         val /= 10;
+      } while (val != 0);
+      
+      // pad with leading zeros so there is a digit before the point
+      while (numDigits <= places)
+         this.digitBuffer[numDigits++] = (byte)'0';
+      
+      for (int i=numDigits-1; i>=0; i--)
+      {
+         this.buffer[this.count++] = this.digitBuffer[i];
+         if (i == places && places > 0)
+            this.buffer[this.count++] = (byte)'.';
+      }
+   }
+   
+   private void flushBuffer() throws IOException
+   {
+      if (this.count > 0)
+      {
+         this.outStream.write(this.buffer, 0, this.count);
+         this.numWritten += this.count;
+         this.count = 0;
+      }
+   }
+   
+   public void flush() throws IOException
+   {
+      flushBuffer();
+      this.outStream.flush();
+   }
+   
+   public void close() throws IOException
+   {
+      try
+      {
+         flushBuffer();
+      }
+      finally
+      {
+         this.outStream.close();
+      }
+   }
+   
+   /**
+    * Testbed.
+    * 
+    * @param args Unused
+    */
+   public static void main(String[] args) throws IOException
+   {
+      java.io.ByteArrayOutputStream byteStream = 
+                                         new java.io.ByteArrayOutputStream();
+      AsciiOutputBuffer buffer = new AsciiOutputBuffer(byteStream, 16);
+      
+      java.util.Random rand = new java.util.Random(1);
+      int numVals = 1000000;
+      float[] vals = new float[numVals];
+      for (int i=0; i<numVals; i++)
+      {
+         switch (i % 4)
+         {
+            case 0: vals[i] = rand.nextFloat()*1000; break;
+            case 1: vals[i] = -rand.nextFloat(); break;
+            case 2: vals[i] = rand.nextInt(2000)/4f; break;
+            default: vals[i] = Float.intBitsToFloat(rand.nextInt()); break;
+         }
+         buffer.write(vals[i]);
+         buffer.write(' ');
+      }
+      buffer.write("\u00e9\u4e2d\ud83d\ude00");
+      buffer.close();
+      
+      String text = new String(byteStream.toByteArray(), "UTF-8");
+      String[] tokens = text.split(" ");
+      int numBad = 0;
+      for (int i=0; i<numVals; i++)
+      {
+         float parsed = Float.parseFloat(tokens[i]);
+         if (Float.floatToIntBits(parsed) != Float.floatToIntBits(vals[i]) && 
+             !(parsed == 0 && vals[i] == 0))
+         {
+            if (numBad++ < 10)
+               System.out.println("Mismatch:  "+vals[i]+" written as "+tokens[i]);
+         }
+      }
+      System.out.println("Mismatches:  "+numBad+" of "+numVals);
+      System.out.println("Unicode round trip:  "+
+                         tokens[numVals].equals("\u00e9\u4e2d\ud83d\ude00"));
+   }
+}
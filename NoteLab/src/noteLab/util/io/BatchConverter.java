@@ -0,0 +1,363 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import noteLab.model.binder.Binder;
+import noteLab.util.InfoCenter;
+import noteLab.util.io.noteLab.ChunkedFileWriter;
+import noteLab.util.io.noteLab.NoteLabFileLoader;
+import noteLab.util.io.pdf.PDFExporter;
+import noteLab.util.render.SVGRenderer2D;
+import noteLab.util.settings.SettingsUtilities;
+
+/**
+ * Converts native files to another format without displaying anything.
+ * Several files are converted at the same time on a fixed pool of
+ * threads and the time taken to convert each file is printed as each
+ * file is completed.  Each file is loaded and written on a single thread
+ * so that the number of files converted at a time bounds both the
+ * number of threads and the memory used.  Nothing used to convert a
+ * file requires a display so that files can be converted when running
+ * with <code>java.awt.headless=true</code>.
+ * <br><br>
+ * Files can be converted to PDF files, PNG images, SVG files,
+ * compressed SVG files, or native files.  Each converted file is written
+ * to the output directory with the name of the original file and the
+ * extension of the format.
+ * 
+ * @author Dominic Kramer
+ */
+public class BatchConverter
+{
+   /**
+    * The extensions, without the leading period, of the formats files
+    * can be converted to.
+    */
+   private static final String[] FORMAT_ARR =
+   {
+      getFormat(InfoCenter.getPDFExtension()),
+      getFormat(InfoCenter.getPNGExt()),
+      getFormat(InfoCenter.getSVGExt()),
+      getFormat(InfoCenter.getZippedSVGExt()),
+      getFormat(InfoCenter.getFileExtension())
+   };
+   
+   private String format;
+   private File outputDir;
+   private int numThreads;
+   
+   /**
+    * Constructs a converter that converts files to the given format.
+    * 
+    * @param format The extension of the format, with or without the
+    *               leading period, such as <code>pdf</code>.
+    * @param outputDir The directory to which the converted files are
+    *                  written.  It is created if it doesn't exist.
+    * 
+    * @throws IllegalArgumentException If the format isn't supported.
+    */
+   public BatchConverter(String format, File outputDir)
+   {
+      if (format == null || outputDir == null)
+         throw new NullPointerException();
+      
+      format = getFormat(format.toLowerCase());
+      if (!Arrays.asList(FORMAT_ARR).contains(format))
+         throw new IllegalArgumentException("Files cannot be converted " +
+                                            "to the format '"+format+
+                                            "'.  The supported formats " +
+                                            "are "+getSupportedFormats()+
+                                            ".");
+      
+      this.format = format;
+      this.outputDir = outputDir;
+      this.numThreads = Runtime.getRuntime().availableProcessors();
+   }
+   
+   /**
+    * Used to get the formats that files can be converted to.
+    * 
+    * @return The extensions of the formats separated by commas.
+    */
+   public static String getSupportedFormats()
+   {
+      StringBuffer buffer = new StringBuffer();
+      for (int i=0; i<FORMAT_ARR.length; i++)
+      {
+         if (i > 0)
+            buffer.append(", ");
+         buffer.append(FORMAT_ARR[i]);
+      }
+      
+      return buffer.toString();
+   }
+   
+   private static String getFormat(String ext)
+   {
+      if (ext.startsWith("."))
+         return ext.substring(1);
+      
+      return ext;
+   }
+   
+   /**
+    * Used to get the number of files converted at the same time.
+    * 
+    * @return The number of threads.
+    */
+   public int getNumThreads()
+   {
+      return this.numThreads;
+   }
+   
+   /**
+    * Used to set the number of files converted at the same time.  By
+    * default, this is the number of processors available.
+    * 
+    * @param numThreads The number of threads which must be positive.
+    */
+   public void setNumThreads(int numThreads)
+   {
+      if (numThreads <= 0)
+         throw new IllegalArgumentException("The number of threads, "+
+                                            numThreads+
+                                            ", is not positive.");
+      
+      this.numThreads = numThreads;
+   }
+   
+   /**
+    * Converts the given files.  Each directory given is replaced by the
+    * native files it contains.  A line is printed for each file as it is
+    * converted, or as it fails to be converted, followed by a summary.
+    * 
+    * @param files The files and directories to convert.
+    * 
+    * @return The number of files that could not be converted.
+    */
+   public int convert(List<File> files)
+   {
+      if (files == null)
+         throw new NullPointerException();
+      
+      Vector<File> inputVec = new Vector<File>();
+      String nativeExt = InfoCenter.getFileExtension().toLowerCase();
+      for (File file : files)
+      {
+         if (!file.isDirectory())
+         {
+            inputVec.add(file);
+            continue;
+         }
+         
+         File[] children = file.listFiles();
+         if (children == null)
+            continue;
+         
+         Arrays.sort(children);
+         for (File child : children)
+            if (child.isFile() &&
+                  child.getName().toLowerCase().endsWith(nativeExt))
+               inputVec.add(child);
+      }
+      
+      if (!this.outputDir.isDirectory() && !this.outputDir.mkdirs())
+      {
+         System.out.println("Error:  The directory '"+
+                            this.outputDir.getAbsolutePath()+
+                            "' could not be created.");
+         return inputVec.size();
+      }
+      
+      long startTime = System.currentTimeMillis();
+      
+      Vector<Future<Boolean>> futureVec = new Vector<Future<Boolean>>();
+      ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+      try
+      {
+         for (final File file : inputVec)
+         {
+            futureVec.add(pool.submit(new Callable<Boolean>()
+            {
+               public Boolean call()
+               {
+                  return convertAndReport(file);
+               }
+            }));
+         }
+         
+         int numFailed = 0;
+         for (Future<Boolean> future : futureVec)
+            if (!getResult(future))
+               numFailed++;
+         
+         long time = System.currentTimeMillis()-startTime;
+         System.out.println("Converted "+(inputVec.size()-numFailed)+
+                            " of "+inputVec.size()+" files in "+time+
+                            " ms using "+this.numThreads+" threads.");
+         
+         return numFailed;
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+   }
+   
+   private static boolean getResult(Future<Boolean> future)
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+      catch (ExecutionException e)
+      {
+         return false;
+      }
+   }
+   
+   /**
+    * Used to get the file to which the given file is converted.
+    * 
+    * @param file The file being converted.
+    * 
+    * @return The converted file in the output directory.
+    */
+   public File getOutputFile(File file)
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      String name = file.getName();
+      int dotIndex = name.lastIndexOf('.');
+      if (dotIndex > 0)
+         name = name.substring(0, dotIndex);
+      
+      return new File(this.outputDir, name+"."+this.format);
+   }
+   
+   private boolean convertAndReport(File file)
+   {
+      File outFile = getOutputFile(file);
+      long startTime = System.currentTimeMillis();
+      try
+      {
+         int numPages = convertFile(file, outFile);
+         
+         long time = System.currentTimeMillis()-startTime;
+         System.out.println("Converted '"+file.getPath()+"' to '"+
+                            outFile.getPath()+"' ("+numPages+
+                            " pages) in "+time+" ms");
+         return true;
+      }
+      catch (Throwable throwable)
+      {
+         long time = System.currentTimeMillis()-startTime;
+         System.out.println("Error:  '"+file.getPath()+"' could not be " +
+                            "converted after "+time+" ms.  The error " +
+                            "returned was:  "+throwable);
+         return false;
+      }
+   }
+   
+   /**
+    * Converts a file.
+    * 
+    * @param file The native file to convert.
+    * @param outFile The file to write.
+    * 
+    * @return The number of pages converted.
+    * 
+    * @throws Exception If the file cannot be read or the converted file
+    *                   cannot be written.
+    */
+   public int convertFile(File file, File outFile) throws Exception
+   {
+      if (file == null || outFile == null)
+         throw new NullPointerException();
+      
+      Binder binder = NoteLabFileLoader.loadBinder(file, 1);
+      
+      if (this.format.equals(getFormat(InfoCenter.getPDFExtension())))
+      {
+         PDFExporter exporter = new PDFExporter();
+         exporter.setNumThreads(1);
+         exporter.export(binder,
+                         new BufferedOutputStream(
+                                new FileOutputStream(outFile)));
+      }
+      else if (this.format.equals(getFormat(InfoCenter.getPNGExt())))
+      {
+         PNGStreamWriter.writeImage(binder,
+                                    (int)binder.getWidth(),
+                                    (int)binder.getHeight(),
+                                    outFile, null);
+      }
+      else if (this.format.equals(getFormat(InfoCenter.getFileExtension())))
+      {
+         int precision = SettingsUtilities.getPathPrecision();
+         new ChunkedFileWriter(binder, precision).write(outFile);
+      }
+      else
+      {
+         boolean zip =
+            this.format.equals(getFormat(InfoCenter.getZippedSVGExt()));
+         
+         OutputStream outStream =
+            new BufferedOutputStream(new FileOutputStream(outFile));
+         if (zip)
+            outStream = new GZIPOutputStream(outStream);
+         
+         SVGRenderer2D svg2D = new SVGRenderer2D(binder, outStream);
+         binder.renderInto(svg2D);
+         svg2D.finish();
+         
+         Exception error = svg2D.getError();
+         if (error != null)
+            throw error;
+      }
+      
+      return binder.getNumberOfPages();
+   }
+}
@@ -0,0 +1,513 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import noteLab.util.progress.ProgressEvent;
+import noteLab.util.progress.ProgressListener;
+import noteLab.util.render.ImageRenderer2D;
+import noteLab.util.render.Renderable;
+
+/**
+ * Writes an opaque RGB PNG image one group of rows at a time.  Unlike
+ * handing a <code>BufferedImage</code> to <code>ImageIO</code>, the image
+ * never has to be held in memory as a whole.  Each group of rows is
+ * filtered and compressed as soon as it is given to this writer.  Thus,
+ * apart from the compressor itself, the memory used is that of the two
+ * rows needed to filter the next row.
+ * <br><br>
+ * The rows must be written from top to bottom and exactly as many rows
+ * as the height of the image must be written before {@link #close()} is
+ * invoked.
+ * 
+ * @author Dominic Kramer
+ */
+public class PNGStreamWriter
+{
+   /** The signature that begins every PNG file. */
+   private static final byte[] SIGNATURE =
+   {
+      (byte)137, 80, 78, 71, 13, 10, 26, 10
+   };
+   
+   private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+   private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+   private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+   
+   /** The number of bytes in a pixel of a row (8-bit red, green, blue). */
+   private static final int BYTES_PER_PIXEL = 3;
+   
+   /** The PNG filter types in the order they are numbered in the file. */
+   private static final int FILTER_NONE = 0;
+   private static final int FILTER_SUB = 1;
+   private static final int FILTER_UP = 2;
+   private static final int FILTER_AVERAGE = 3;
+   private static final int FILTER_PAETH = 4;
+   private static final int NUM_FILTERS = 5;
+   
+   /**
+    * The number of rows of an image rendered at a time by 
+    * {@link #writeImage(Renderable, int, int, File, ProgressListener) 
+    * writeImage()}.  The memory used is that of an image of the width of 
+    * the image being written and this height.
+    */
+   public static final int BAND_HEIGHT = 256;
+   
+   /** The maximum size of the data of each <code>IDAT</code> chunk. */
+   private static final int CHUNK_SIZE = 64*1024;
+   
+   private DataOutputStream output;
+   private int width;
+   private int height;
+   private int numRowsWritten;
+   
+   private Deflater deflater;
+   private CRC32 crc;
+   
+   /** The compressed data that has not been written in a chunk yet. */
+   private byte[] chunkBuffer;
+   private int chunkLength;
+   
+   /** The unfiltered bytes of the previous row and the current row. */
+   private byte[] prevRow;
+   private byte[] curRow;
+   
+   /**
+    * The current row filtered with each filter type.  The first byte of
+    * each row is the filter type.
+    */
+   private byte[][] filteredRows;
+   
+   /**
+    * Constructs a writer that writes an image of the given size to the
+    * given stream and writes the header of the image.
+    * 
+    * @param output The stream to which the image is written.
+    * @param width The width of the image in pixels.
+    * @param height The height of the image in pixels.
+    * 
+    * @throws IOException If the header cannot be written.
+    */
+   public PNGStreamWriter(OutputStream output, int width, int height)
+                             throws IOException
+   {
+      if (output == null)
+         throw new NullPointerException();
+      
+      if (width <= 0 || height <= 0)
+         throw new IllegalArgumentException("The size of the image, "+
+                                            width+"x"+height+
+                                            ", is not positive.");
+      
+      this.output = new DataOutputStream(output);
+      this.width = width;
+      this.height = height;
+      this.numRowsWritten = 0;
+      
+      this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+      this.crc = new CRC32();
+      this.chunkBuffer = new byte[CHUNK_SIZE];
+      this.chunkLength = 0;
+      
+      int rowLength = width*BYTES_PER_PIXEL;
+      this.prevRow = new byte[rowLength];
+      this.curRow = new byte[rowLength];
+      this.filteredRows = new byte[NUM_FILTERS][rowLength+1];
+      for (int i=0; i<NUM_FILTERS; i++)
+         this.filteredRows[i][0] = (byte)i;
+      
+      this.output.write(SIGNATURE);
+      
+      byte[] header = new byte[13];
+      setInt(header, 0, width);
+      setInt(header, 4, height);
+      header[8] = 8;   // bit depth
+      header[9] = 2;   // color type:  RGB
+      header[10] = 0;  // compression method:  deflate
+      header[11] = 0;  // filter method:  adaptive
+      header[12] = 0;  // interlace method:  none
+      writeChunk(IHDR, header, header.length);
+   }
+   
+   public int getWidth()
+   {
+      return this.width;
+   }
+   
+   public int getHeight()
+   {
+      return this.height;
+   }
+   
+   /**
+    * Used to get the number of rows that have been written so far.
+    * 
+    * @return The number of rows written.
+    */
+   public int getNumRowsWritten()
+   {
+      return this.numRowsWritten;
+   }
+   
+   /**
+    * Writes the next rows of the image.  The pixels are given as packed
+    * RGB integers, as held by a <code>BufferedImage</code> of type
+    * <code>TYPE_INT_RGB</code>, and any alpha component is ignored.
+    * The first <code>width</code> pixels of each row, starting at
+    * <code>offset + row*scanlineStride</code>, are written.
+    * 
+    * @param pixels The pixels of the rows.
+    * @param offset The index of the first pixel of the first row.
+    * @param scanlineStride The distance between the starts of rows.
+    * @param numRows The number of rows to write.
+    * 
+    * @throws IOException If the rows cannot be written.
+    */
+   public void writeRows(int[] pixels, int offset,
+                         int scanlineStride, int numRows)
+                            throws IOException
+   {
+      if (pixels == null)
+         throw new NullPointerException();
+      
+      if (numRows < 0 || this.numRowsWritten+numRows > this.height)
+         throw new IllegalArgumentException("Writing "+numRows+
+                                            " rows after "+
+                                            this.numRowsWritten+
+                                            " rows exceeds the height "+
+                                            this.height+" of the image.");
+      
+      for (int row=0; row<numRows; row++)
+      {
+         int start = offset+row*scanlineStride;
+         byte[] cur = this.curRow;
+         int index = 0;
+         int pixel;
+         for (int i=0; i<this.width; i++)
+         {
+            pixel = pixels[start+i];
+            cur[index++] = (byte)(pixel >> 16);
+            cur[index++] = (byte)(pixel >> 8);
+            cur[index++] = (byte)pixel;
+         }
+         
+         byte[] filtered = filterRow();
+         this.deflater.setInput(filtered, 0, filtered.length);
+         while (!this.deflater.needsInput())
+            deflate();
+         
+         // the current row becomes the previous row
+         this.curRow = this.prevRow;
+         this.prevRow = cur;
+         
+         this.numRowsWritten++;
+      }
+   }
+   
+   /**
+    * Finishes compressing the image, writes the end of the image, and
+    * closes the underlying stream.
+    * 
+    * @throws IOException If fewer rows than the height of the image
+    *                     have been written or if the end of the image
+    *                     cannot be written.
+    */
+   public void close() throws IOException
+   {
+      try
+      {
+         if (this.numRowsWritten != this.height)
+            throw new IOException("Only "+this.numRowsWritten+
+                                  " of the "+this.height+
+                                  " rows of the image have been written.");
+         
+         this.deflater.finish();
+         while (!this.deflater.finished())
+            deflate();
+         
+         if (this.chunkLength > 0)
+            writeChunk(IDAT, this.chunkBuffer, this.chunkLength);
+         
+         writeChunk(IEND, this.chunkBuffer, 0);
+         this.output.flush();
+      }
+      finally
+      {
+         this.deflater.end();
+         this.output.close();
+      }
+   }
+   
+   /**
+    * Closes the underlying stream without finishing the image.  This is 
+    * used to release the resources held by this writer when the image 
+    * cannot be completed.
+    */
+   public void abort()
+   {
+      this.deflater.end();
+      try
+      {
+         this.output.close();
+      }
+      catch (IOException e)
+      {
+         // The image is incomplete anyway
+      }
+   }
+   
+   /**
+    * Filters the current row with each filter type and chooses the
+    * filtered row whose bytes, taken as signed values, have the smallest
+    * sum of absolute values.  This is the heuristic recommended by the
+    * PNG specification and works well for the large areas of a single
+    * color found on the pages of a binder.
+    * 
+    * @return The chosen filtered row including its filter type byte.
+    */
+   private byte[] filterRow()
+   {
+      byte[] cur = this.curRow;
+      byte[] prev = this.prevRow;
+      int length = cur.length;
+      
+      // for the first row the previous row is taken to be all zeros
+      boolean isFirst = (this.numRowsWritten == 0);
+      
+      byte[] none = this.filteredRows[FILTER_NONE];
+      byte[] sub = this.filteredRows[FILTER_SUB];
+      byte[] up = this.filteredRows[FILTER_UP];
+      byte[] avg = this.filteredRows[FILTER_AVERAGE];
+      byte[] paeth = this.filteredRows[FILTER_PAETH];
+      
+      long[] sums = new long[NUM_FILTERS];
+      
+      int x;
+      int a;
+      int b;
+      int c;
+      for (int i=0; i<length; i++)
+      {
+         x = cur[i] & 0xFF;
+         a = (i >= BYTES_PER_PIXEL)?(cur[i-BYTES_PER_PIXEL] & 0xFF):(0);
+         b = (isFirst)?(0):(prev[i] & 0xFF);
+         c = (isFirst || i < BYTES_PER_PIXEL)?
+                (0):(prev[i-BYTES_PER_PIXEL] & 0xFF);
+         
+         none[i+1] = (byte)x;
+         sub[i+1] = (byte)(x-a);
+         up[i+1] = (byte)(x-b);
+         avg[i+1] = (byte)(x-((a+b) >> 1));
+         paeth[i+1] = (byte)(x-paethPredictor(a, b, c));
+         
+         sums[FILTER_NONE] += Math.abs(none[i+1]);
+         sums[FILTER_SUB] += Math.abs(sub[i+1]);
+         sums[FILTER_UP] += Math.abs(up[i+1]);
+         sums[FILTER_AVERAGE] += Math.abs(avg[i+1]);
+         sums[FILTER_PAETH] += Math.abs(paeth[i+1]);
+      }
+      
+      int best = FILTER_NONE;
+      for (int i=1; i<NUM_FILTERS; i++)
+      {
+         if (sums[i] < sums[best])
+            best = i;
+      }
+      
+      return this.filteredRows[best];
+   }
+   
+   private static int paethPredictor(int a, int b, int c)
+   {
+      int p = a+b-c;
+      int pa = Math.abs(p-a);
+      int pb = Math.abs(p-b);
+      int pc = Math.abs(p-c);
+      
+      if (pa <= pb && pa <= pc)
+         return a;
+      
+      if (pb <= pc)
+         return b;
+      
+      return c;
+   }
+   
+   /**
+    * Moves the compressed data that is available into the buffer of the
+    * next <code>IDAT</code> chunk and writes the chunk once it is full.
+    * 
+    * @throws IOException If a chunk cannot be written.
+    */
+   private void deflate() throws IOException
+   {
+      this.chunkLength += 
+         this.deflater.deflate(this.chunkBuffer, this.chunkLength,
+                               this.chunkBuffer.length-this.chunkLength);
+      
+      if (this.chunkLength == this.chunkBuffer.length)
+      {
+         writeChunk(IDAT, this.chunkBuffer, this.chunkLength);
+         this.chunkLength = 0;
+      }
+   }
+   
+   private void writeChunk(byte[] type, byte[] data, int length)
+                              throws IOException
+   {
+      this.crc.reset();
+      this.crc.update(type, 0, type.length);
+      this.crc.update(data, 0, length);
+      
+      this.output.writeInt(length);
+      this.output.write(type);
+      this.output.write(data, 0, length);
+      this.output.writeInt((int)this.crc.getValue());
+   }
+   
+   private static void setInt(byte[] array, int offset, int value)
+   {
+      array[offset] = (byte)(value >>> 24);
+      array[offset+1] = (byte)(value >>> 16);
+      array[offset+2] = (byte)(value >>> 8);
+      array[offset+3] = (byte)value;
+   }
+   
+   /**
+    * Renders the given item into a PNG image of the given size written to 
+    * the given file.  The image is rendered one horizontal band of 
+    * {@link #BAND_HEIGHT BAND_HEIGHT} rows at a time on a white 
+    * background and each band is compressed as soon as it is rendered.  
+    * Thus, the memory used doesn't grow with the height of the image.
+    * 
+    * @param renderable The item to render.
+    * @param width The width of the image in pixels.
+    * @param height The height of the image in pixels.
+    * @param file The file to which the image is written.
+    * @param listener The listener informed as each band is written or 
+    *                 <code>null</code> if progress isn't reported.
+    * 
+    * @throws IOException If the image cannot be written.
+    */
+   public static void writeImage(Renderable renderable, 
+                                 int width, int height, 
+                                 File file, 
+                                 ProgressListener listener) 
+                                    throws IOException
+   {
+      if (renderable == null || file == null)
+         throw new NullPointerException();
+      
+      int bandHeight = Math.min(BAND_HEIGHT, height);
+      BufferedImage band = new BufferedImage(width, bandHeight, 
+                                             BufferedImage.TYPE_INT_RGB);
+      int[] pixels = 
+               ((DataBufferInt)band.getRaster().getDataBuffer()).getData();
+      
+      PNGStreamWriter writer = createWriter(file, width, height);
+      boolean isComplete = false;
+      try
+      {
+         ImageRenderer2D band2D;
+         int numRows;
+         for (int bandY=0; bandY<height; bandY+=bandHeight)
+         {
+            band2D = new ImageRenderer2D(band, bandY);
+            band2D.setColor(Color.WHITE);
+            band2D.fillRectangle(0, bandY, width, bandHeight);
+            
+            renderable.renderInto(band2D);
+            band2D.finish();
+            
+            numRows = Math.min(bandHeight, height-bandY);
+            writer.writeRows(pixels, 0, width, numRows);
+            
+            if (listener != null)
+               listener.progressOccured(
+                  new ProgressEvent(null, null, null, false, 
+                                    (int)(100L*(bandY+numRows)/height), 
+                                    false));
+         }
+         
+         isComplete = true;
+      }
+      finally
+      {
+         if (isComplete)
+            writer.close();
+         else
+            writer.abort();
+      }
+      
+      if (listener != null)
+         listener.progressOccured(new ProgressEvent(null, null, null, 
+                                                    false, 100, true));
+   }
+   
+   /**
+    * Creates a writer that writes an image of the given size to the
+    * given file.
+    * 
+    * @param file The file to which the image is written.
+    * @param width The width of the image in pixels.
+    * @param height The height of the image in pixels.
+    * 
+    * @return The writer.
+    * 
+    * @throws IOException If the file cannot be opened or the header of
+    *                     the image cannot be written.
+    */
+   public static PNGStreamWriter createWriter(File file,
+                                              int width,
+                                              int height)
+                                                 throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      OutputStream output =
+         new BufferedOutputStream(new FileOutputStream(file));
+      try
+      {
+         return new PNGStreamWriter(output, width, height);
+      }
+      catch (IOException e)
+      {
+         output.close();
+         throw e;
+      }
+   }
+}
@@ -0,0 +1,197 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import noteLab.model.Page;
+
+/**
+ * Exports pages by rendering them concurrently and writing them one at a
+ * time in order.  A snapshot of each page is taken on the thread that
+ * invokes {@link #exportPages(Iterable) exportPages()}, the snapshots are
+ * rendered by {@link #renderPage(Page) renderPage()} on a pool of worker
+ * threads, and the rendered pages are handed to
+ * {@link #writePage(int, Object) writePage()} on the invoking thread in
+ * the order of the pages.  Thus, the output only has to be written by a
+ * single thread while rendering, which takes most of the time, uses all
+ * of the processors.
+ * <br><br>
+ * Only a few pages more than the number of threads are rendered ahead of
+ * the page being written so that the memory used doesn't grow with the
+ * number of pages.
+ * 
+ * @param <T> The type of a rendered page.
+ * 
+ * @author Dominic Kramer
+ */
+public abstract class ParallelPageExporter<T>
+{
+   private int numThreads;
+   
+   public ParallelPageExporter()
+   {
+      this.numThreads = Runtime.getRuntime().availableProcessors();
+   }
+   
+   /**
+    * Used to get the number of threads used to render pages.
+    * 
+    * @return The number of threads.
+    */
+   public int getNumThreads()
+   {
+      return this.numThreads;
+   }
+   
+   /**
+    * Used to set the number of threads used to render pages.
+    * 
+    * @param numThreads The number of threads which must be positive.
+    */
+   public void setNumThreads(int numThreads)
+   {
+      if (numThreads <= 0)
+         throw new IllegalArgumentException("The number of threads, "+
+                                            numThreads+
+                                            ", is not positive.");
+      
+      this.numThreads = numThreads;
+   }
+   
+   /**
+    * Renders the given pages concurrently and writes them in order.  The
+    * pages themselves are only read on the invoking thread, when their
+    * snapshots are taken.
+    * 
+    * @param pages The pages to export.
+    * 
+    * @throws IOException If a page cannot be rendered or written.
+    */
+   public void exportPages(Iterable<Page> pages) throws IOException
+   {
+      if (pages == null)
+         throw new NullPointerException();
+      
+      int maxPending = 2*this.numThreads;
+      
+      ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+      try
+      {
+         LinkedList<Future<T>> pendingList = new LinkedList<Future<T>>();
+         Iterator<Page> pageIter = pages.iterator();
+         int pageNum = 0;
+         while (true)
+         {
+            while (pageIter.hasNext() && pendingList.size() < maxPending)
+            {
+               final Page snapshot = pageIter.next().getSnapshot();
+               pendingList.add(pool.submit(new Callable<T>()
+               {
+                  public T call() throws Exception
+                  {
+                     return renderPage(snapshot);
+                  }
+               }));
+            }
+            
+            if (pendingList.isEmpty())
+               break;
+            
+            writePage(pageNum, getResult(pendingList.removeFirst()));
+            pageNum++;
+         }
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+   }
+   
+   private T getResult(Future<T> future) throws IOException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Exporting the pages was " +
+                                          "interrupted.");
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException)
+            throw (IOException)cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         
+         IOException error = new IOException("A page could not be " +
+                                             "rendered:  "+
+                                             cause.getMessage());
+         error.initCause(cause);
+         throw error;
+      }
+   }
+   
+   /**
+    * Renders a page.  This method is invoked on a worker thread and can
+    * be invoked for several pages at the same time.
+    * 
+    * @param page A snapshot of the page that only the invoking thread
+    *             uses.
+    * 
+    * @return The rendered page.
+    * 
+    * @throws Exception If the page cannot be rendered.
+    */
+   protected abstract T renderPage(Page page) throws Exception;
+   
+   /**
+    * Writes a rendered page.  This method is invoked on the thread
+    * exporting the pages, once for each page and in the order of the
+    * pages.
+    * 
+    * @param pageNum The index of the page starting at <code>0</code>.
+    * @param rendered The page as returned by
+    *                 {@link #renderPage(Page) renderPage()}.
+    * 
+    * @throws IOException If the page cannot be written.
+    */
+   protected abstract void writePage(int pageNum, T rendered)
+                                        throws IOException;
+}
@@ -0,0 +1,630 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io;
+
+import noteLab.model.Path;
+import noteLab.model.geom.FloatPoint2D;
+
+/**
+ * Reads SVG path data and numbers directly from arrays of characters.
+ * Unlike splitting the text into tokens and handing each token to
+ * <code>Float.parseFloat()</code>, the characters are scanned in place
+ * and each coordinate pair is added to the path as soon as it has been
+ * read.  Thus, apart from the points themselves, no objects are created
+ * while a path is read.
+ * <br><br>
+ * Numbers with at most {@link #MAX_DIGITS MAX_DIGITS} significant digits
+ * and a small enough decimal exponent, which covers every number written
+ * by NoteLab, are converted with a single exact floating point operation.
+ * The result is always the same as the one given by
+ * <code>Double.parseDouble()</code> and <code>Float.parseFloat()</code>.
+ * Any other number is handed to those methods.
+ *
+ * @author Dominic Kramer
+ */
+public class PathDataParser
+{
+   /**
+    * The maximum number of significant digits accumulated in a
+    * <code>long</code>.  Any additional digits are handed off to
+    * <code>Double.parseDouble()</code>.
+    */
+   public static final int MAX_DIGITS = 18;
+   
+   /** The powers of ten that are exactly representable as doubles. */
+   private static final double[] POWERS_OF_TEN =
+   {
+      1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10,
+      1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21,
+      1e22
+   };
+   
+   /**
+    * Mantissas below this value are exactly representable as doubles
+    * and can be scaled by an exact power of ten with a single rounding.
+    */
+   private static final long MAX_EXACT_MANTISSA = 1L << 53;
+   
+   /**
+    * The bits of a double that are dropped when it is converted to a
+    * float and the value those bits have when the double lies exactly
+    * half way between two floats.
+    */
+   private static final long FLOAT_DROPPED_BITS = 0x1FFFFFFFL;
+   private static final long FLOAT_HALF_WAY_BITS = 0x10000000L;
+   
+   /** The buffer used to hold the characters of a path on each thread. */
+   private static final ThreadLocal<char[]> BUFFER =
+                                               new ThreadLocal<char[]>();
+   
+   private char[] data;
+   private int pos;
+   private int end;
+   
+   /** The index of the first character of the last number read. */
+   private int numberStart;
+   
+   private PathDataParser(char[] data, int offset, int length)
+   {
+      if (data == null)
+         throw new NullPointerException();
+      
+      if (offset < 0 || length < 0 || offset+length > data.length)
+         throw new IndexOutOfBoundsException();
+      
+      this.data = data;
+      this.pos = offset;
+      this.end = offset+length;
+      this.numberStart = offset;
+   }
+   
+   /**
+    * Adds the points described by the given SVG path data to the given
+    * path.  The characters of the text are copied into a buffer that is
+    * reused by each call made on the same thread.
+    * 
+    * @param path The path to add points to.
+    * @param pathText The value of a path's <code>d</code> attribute.
+    * @param scale The scale level of the points added.
+    * 
+    * @see #fillPath(Path, char[], int, int, float)
+    */
+   public static void fillPath(Path path, String pathText, float scale)
+   {
+      if (path == null || pathText == null)
+         throw new NullPointerException();
+      
+      int length = pathText.length();
+      char[] buffer = BUFFER.get();
+      if (buffer == null || buffer.length < length)
+      {
+         buffer = new char[Math.max(length, 1024)];
+         BUFFER.set(buffer);
+      }
+      
+      pathText.getChars(0, length, buffer, 0);
+      fillPath(path, buffer, 0, length, scale);
+   }
+   
+   /**
+    * Adds the points described by the given SVG path data to the given
+    * path.  Each command letter determines how the coordinate pairs that
+    * follow it are interpreted.  The relative commands <code>l</code> and
+    * <code>m</code> give offsets from the previous point while every other
+    * command gives absolute coordinates.  A relative command at the start
+    * of the path is absolute, and points following a move are line
+    * segments.  Numbers are separated by whitespace, commas, or the sign
+    * of the following number.  Reading stops at the first character that
+    * is neither a command nor a number, or at a command that follows an
+    * unpaired coordinate.
+    * 
+    * @param path The path to add points to.
+    * @param data The characters containing the path data.
+    * @param offset The index of the first character of the path data.
+    * @param length The number of characters in the path data.
+    * @param scale The scale level of the points added.
+    */
+   public static void fillPath(Path path, char[] data,
+                               int offset, int length, float scale)
+   {
+      if (path == null)
+         throw new NullPointerException();
+      
+      PathDataParser parser = new PathDataParser(data, offset, length);
+      char command = 'M';
+      
+      // Relative offsets are summed in double precision.  Since the
+      // offsets are rounded to a fixed number of decimal places, this
+      // gives the same values as if the absolute coordinates were read.
+      double curX = 0;
+      double curY = 0;
+      boolean hasPoint = false;
+      
+      double xVal, yVal;
+      float x, y;
+      int xStart, xEnd;
+      char c;
+      while (true)
+      {
+         parser.skipSeparators();
+         if (parser.pos >= parser.end)
+            break;
+         
+         c = data[parser.pos];
+         if (Character.isLetter(c))
+         {
+            command = c;
+            parser.pos++;
+            continue;
+         }
+         
+         xVal = parser.readNumber();
+         if (Double.isNaN(xVal))
+            break;
+         xStart = parser.numberStart;
+         xEnd = parser.pos;
+         
+         parser.skipSeparators();
+         if (parser.pos >= parser.end ||
+             Character.isLetter(data[parser.pos]))
+            break;
+         
+         yVal = parser.readNumber();
+         if (Double.isNaN(yVal))
+            break;
+         
+         // a relative command is absolute at the start of a path
+         if (hasPoint && (command == 'l' || command == 'm'))
+         {
+            curX += xVal;
+            curY += yVal;
+            x = (float)curX;
+            y = (float)curY;
+         }
+         else
+         {
+            curX = xVal;
+            curY = yVal;
+            x = toFloat(xVal, data, xStart, xEnd);
+            y = toFloat(yVal, data, parser.numberStart, parser.pos);
+         }
+         
+         path.addItem(new FloatPoint2D(x, y, scale, scale));
+         hasPoint = true;
+         
+         // points following a move are implicitly line segments
+         if (command == 'M')
+            command = 'L';
+         else if (command == 'm')
+            command = 'l';
+      }
+   }
+   
+   /**
+    * Reads the number contained in the given range of the given text.
+    * Whitespace surrounding the number is ignored.
+    * 
+    * @param text The text containing the number.
+    * @param start The index of the first character of the range.
+    * @param end The index after the last character of the range.
+    * 
+    * @return The number as a double precision value.
+    * 
+    * @throws NumberFormatException If the range does not contain exactly
+    *                               one number.
+    */
+   public static double parseDouble(String text, int start, int end)
+   {
+      if (text == null)
+         throw new NullPointerException();
+      
+      if (start < 0 || end > text.length() || start > end)
+         throw new IndexOutOfBoundsException();
+      
+      int length = end-start;
+      char[] buffer = BUFFER.get();
+      if (buffer == null || buffer.length < length)
+      {
+         buffer = new char[Math.max(length, 1024)];
+         BUFFER.set(buffer);
+      }
+      text.getChars(start, end, buffer, 0);
+      
+      PathDataParser parser = new PathDataParser(buffer, 0, length);
+      parser.skipWhitespace();
+      double val = parser.readNumber();
+      parser.skipWhitespace();
+      if (Double.isNaN(val) || parser.pos != parser.end)
+         throw new NumberFormatException("The text '"+
+                                         text.substring(start, end)+
+                                         "' is not a number.");
+      
+      return val;
+   }
+   
+   private void skipSeparators()
+   {
+      char c;
+      while (this.pos < this.end)
+      {
+         c = this.data[this.pos];
+         if (c != ',' && !isWhitespace(c))
+            return;
+         
+         this.pos++;
+      }
+   }
+   
+   private void skipWhitespace()
+   {
+      while (this.pos < this.end && isWhitespace(this.data[this.pos]))
+         this.pos++;
+   }
+   
+   private static boolean isWhitespace(char c)
+   {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+   }
+   
+   /**
+    * Reads the number starting at the current position.
+    * 
+    * @return The number read or <code>NaN</code> if there isn't a number
+    *         at the current position, in which case the position is not
+    *         changed.
+    */
+   private double readNumber()
+   {
+      char[] data = this.data;
+      int end = this.end;
+      int pos = this.pos;
+      this.numberStart = pos;
+      
+      boolean negative = false;
+      if (pos < end && (data[pos] == '-' || data[pos] == '+'))
+      {
+         negative = (data[pos] == '-');
+         pos++;
+      }
+      
+      long mantissa = 0;
+      int numDigits = 0;
+      int exponent = 0;
+      boolean hasDigit = false;
+      boolean isTruncated = false;
+      int digit;
+      
+      while (pos < end && (digit = data[pos]-'0') >= 0 && digit <= 9)
+      {
+         hasDigit = true;
+         if (numDigits < MAX_DIGITS)
+         {
+            mantissa = 10*mantissa + digit;
+            if (mantissa != 0)
+               numDigits++;
+         }
+         else
+         {
+            exponent++;
+            isTruncated |= (digit != 0);
+         }
+         pos++;
+      }
+      
+      if (pos < end && data[pos] == '.')
+      {
+         pos++;
+         while (pos < end && (digit = data[pos]-'0') >= 0 && digit <= 9)
+         {
+            hasDigit = true;
+            if (numDigits < MAX_DIGITS)
+            {
+               mantissa = 10*mantissa + digit;
+               exponent--;
+               if (mantissa != 0)
+                  numDigits++;
+            }
+            else
+               isTruncated |= (digit != 0);
+            pos++;
+         }
+      }
+      
+      if (!hasDigit)
+         return Double.NaN;
+      
+      // An 'e' is only part of the number if digits follow it.
+      // Otherwise it is left to be read as a command.
+      if (pos < end && (data[pos] == 'e' || data[pos] == 'E'))
+      {
+         int expPos = pos+1;
+         boolean expNegative = false;
+         if (expPos < end && (data[expPos] == '-' || data[expPos] == '+'))
+         {
+            expNegative = (data[expPos] == '-');
+            expPos++;
+         }
+         
+         if (expPos < end && data[expPos] >= '0' && data[expPos] <= '9')
+         {
+            int expVal = 0;
+            while (expPos < end &&
+                   (digit = data[expPos]-'0') >= 0 && digit <= 9)
+            {
+               if (expVal < 100000)
+                  expVal = 10*expVal + digit;
+               expPos++;
+            }
+            
+            exponent += expNegative ? -expVal : expVal;
+            pos = expPos;
+         }
+      }
+      
+      this.pos = pos;
+      
+      double val;
+      if (!isTruncated && mantissa < MAX_EXACT_MANTISSA &&
+          exponent >= -22 && exponent <= 22)
+      {
+         if (exponent < 0)
+            val = mantissa/POWERS_OF_TEN[-exponent];
+         else
+            val = mantissa*POWERS_OF_TEN[exponent];
+         
+         return negative ? -val : val;
+      }
+      
+      return Double.parseDouble(new String(data, this.numberStart,
+                                           pos-this.numberStart));
+   }
+   
+   /**
+    * Converts the correctly rounded double value of a number to the
+    * float nearest to the number.  Rounding the double again gives
+    * the right float unless the double lies exactly half way between
+    * two floats or is outside of the range of normal floats.  In those
+    * cases the number is read again with <code>Float.parseFloat()</code>.
+    */
+   private static float toFloat(double val, char[] data, int start, int end)
+   {
+      float result = (float)val;
+      long bits = Double.doubleToRawLongBits(val);
+      
+      if ((bits & FLOAT_DROPPED_BITS) == FLOAT_HALF_WAY_BITS ||
+          Float.isInfinite(result) ||
+          (result != 0 ? Math.abs(result) < Float.MIN_NORMAL : val != 0))
+         return Float.parseFloat(new String(data, start, end-start));
+      
+      return result;
+   }
+   
+   /**
+    * Testbed and benchmark.  The path data in each of the given
+    * NoteLab files is read repeatedly both with this class and by
+    * splitting the data into tokens, and the points read by both are
+    * compared.  If no files are given, randomly generated path data
+    * is used instead.
+    * 
+    * @param args The paths of saved NoteLab files.
+    */
+   public static void main(String[] args) throws Exception
+   {
+      final java.util.List<String> dataList =
+                                       new java.util.ArrayList<String>();
+      
+      if (args.length == 0)
+      {
+         System.out.println("No files given.  Using generated path data.");
+         java.util.Random rand = new java.util.Random(1);
+         for (int i=0; i<20000; i++)
+         {
+            StringBuilder builder = new StringBuilder("M");
+            float x = rand.nextFloat()*800;
+            float y = rand.nextFloat()*1000;
+            builder.append(x).append(' ').append(y).append(" l");
+            for (int j=0; j<40; j++)
+            {
+               builder.append(' ');
+               builder.append(Math.round(rand.nextGaussian()*400)/100f);
+               builder.append(' ');
+               builder.append(Math.round(rand.nextGaussian()*400)/100f);
+            }
+            dataList.add(builder.toString());
+         }
+      }
+      
+      for (String arg : args)
+      {
+         java.io.File file = new java.io.File(arg);
+         if (noteLab.util.io.noteLab.ChunkedFileLoader.isChunkedFile(file))
+         {
+            System.out.println("Skipping '"+arg+"' since it does not " +
+                               "contain SVG path data.");
+            continue;
+         }
+         
+         javax.xml.parsers.SAXParserFactory parserFac =
+                           javax.xml.parsers.SAXParserFactory.newInstance();
+         parserFac.setNamespaceAware(true);
+         javax.xml.parsers.SAXParser parser = parserFac.newSAXParser();
+         org.xml.sax.helpers.DefaultHandler handler =
+                                        new ResolvableHandler()
+         {
+            @Override
+            public void startElement(String uri, String localName,
+                                     String qName,
+                                     org.xml.sax.Attributes attributes)
+            {
+               String pathText = attributes.getValue("d");
+               if (localName.equals("path") && pathText != null)
+                  dataList.add(pathText);
+            }
+         };
+         
+         try
+         {
+            parser.parse(new java.util.zip.GZIPInputStream(
+                            new java.io.FileInputStream(file)), handler);
+         }
+         catch (java.io.IOException e)
+         {
+            parser.parse(file, handler);
+         }
+      }
+      
+      String[] data = dataList.toArray(new String[dataList.size()]);
+      long numChars = 0;
+      for (String text : data)
+         numChars += text.length();
+      
+      // compare the points read by both methods
+      int numPoints = 0;
+      int numBad = 0;
+      for (String text : data)
+      {
+         Path fast = new Path(1, 1);
+         Path slow = new Path(1, 1);
+         fillPath(fast, text, 1);
+         fillPathWithTokens(slow, text, 1);
+         
+         numPoints += slow.getNumItems();
+         if (fast.getNumItems() != slow.getNumItems())
+         {
+            if (numBad++ < 10)
+               System.out.println("Point count mismatch:  "+text);
+            continue;
+         }
+         
+         for (int i=0; i<fast.getNumItems(); i++)
+         {
+            FloatPoint2D fastPt = fast.getItemAt(i);
+            FloatPoint2D slowPt = slow.getItemAt(i);
+            if (Float.floatToIntBits(fastPt.getX()) !=
+                   Float.floatToIntBits(slowPt.getX()) ||
+                Float.floatToIntBits(fastPt.getY()) !=
+                   Float.floatToIntBits(slowPt.getY()))
+            {
+               if (numBad++ < 10)
+                  System.out.println("Mismatch:  "+fastPt+" vs "+slowPt);
+               break;
+            }
+         }
+      }
+      System.out.println(data.length+" paths, "+numPoints+" points, "+
+                         numChars+" characters");
+      System.out.println("Mismatches:  "+numBad);
+      
+      final int numRuns = 10;
+      for (int run=0; run<numRuns; run++)
+      {
+         long start = System.nanoTime();
+         for (String text : data)
+            fillPath(new Path(1, 1), text, 1);
+         long fastTime = System.nanoTime()-start;
+         
+         start = System.nanoTime();
+         for (String text : data)
+            fillPathWithTokens(new Path(1, 1), text, 1);
+         long slowTime = System.nanoTime()-start;
+         
+         if (run >= numRuns/2)
+            System.out.println("Run "+run+":  in place "+
+                               (fastTime/Math.max(numPoints, 1))+
+                               " ns/point, tokenized "+
+                               (slowTime/Math.max(numPoints, 1))+
+                               " ns/point");
+      }
+   }
+   
+   /**
+    * The tokenizing method formerly used to read path data, kept as the
+    * baseline of the benchmark in {@link #main(String[]) main()}.
+    */
+   private static void fillPathWithTokens(Path path, String pathText,
+                                          float scale)
+   {
+      java.util.StringTokenizer tokenizer =
+                  new java.util.StringTokenizer(pathText, " \t\n\r\f,");
+      String token;
+      String xToken = null;
+      char command = 'M';
+      double curX = 0;
+      double curY = 0;
+      boolean hasPoint = false;
+      float x, y;
+      while (tokenizer.hasMoreTokens())
+      {
+         token = tokenizer.nextToken();
+         if (Character.isLetter(token.charAt(0)))
+         {
+            if (xToken != null)
+               break;
+            
+            command = token.charAt(0);
+            token = token.substring(1);
+            if (token.length() == 0)
+               continue;
+         }
+         
+         if (xToken == null)
+         {
+            xToken = token;
+            continue;
+         }
+         
+         try
+         {
+            if (hasPoint && (command == 'l' || command == 'm'))
+            {
+               curX += Double.parseDouble(xToken);
+               curY += Double.parseDouble(token);
+               x = (float)curX;
+               y = (float)curY;
+            }
+            else
+            {
+               x = Float.parseFloat(xToken);
+               y = Float.parseFloat(token);
+               curX = Double.parseDouble(xToken);
+               curY = Double.parseDouble(token);
+            }
+            
+            path.addItem(new FloatPoint2D(x, y, scale, scale));
+            hasPoint = true;
+            xToken = null;
+            
+            if (command == 'M')
+               command = 'L';
+            else if (command == 'm')
+               command = 'l';
+         }
+         catch (NumberFormatException e)
+         {
+            break;
+         }
+      }
+   }
+}
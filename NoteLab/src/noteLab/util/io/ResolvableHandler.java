@@ -26,10 +26,8 @@ package noteLab.util.io;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.StringTokenizer;
 
 import noteLab.model.Path;
-import noteLab.model.geom.FloatPoint2D;
 
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -95,37 +93,27 @@ public class ResolvableHandler extends DefaultHandler
       return null;
    }
    
+   /**
+    * Adds the points described by the given SVG path data to the given 
+    * path.  Both the original encoding, where every point is preceded by 
+    * an absolute <code>M</code> or <code>L</code> command, and paths 
+    * whose points follow a relative <code>l</code> command without 
+    * repeating it, as written by other programs and by earlier versions 
+    * of the native format, are understood.  Reading stops at the first 
+    * value that is not a number.
+    * 
+    * @param path The path to add points to.
+    * @param pathText The value of a path's <code>d</code> attribute.
+    * @param scale The scale level of the points added.
+    * 
+    * @see PathDataParser#fillPath(Path, char[], int, int, float)
+    */
    public static void fillPath(Path path, String pathText, float scale)
    {
       if (pathText == null)
          throw new NullPointerException();
       
-      StringTokenizer tokenizer = new StringTokenizer(pathText);
-      String token1, token2;
-      float x, y;
-      while (tokenizer.hasMoreTokens())
-      {
-         token1 = tokenizer.nextToken();
-         if (tokenizer.hasMoreTokens())
-            token2 = tokenizer.nextToken();
-         else
-            break;
-         
-         // pull the letter away from the front of the token
-         token1 = token1.substring(1);
-         
-         try
-         {
-            x = Float.parseFloat(token1);
-            y = Float.parseFloat(token2);
-            
-            path.addItem(new FloatPoint2D(x, y, scale, scale));
-         }
-         catch (NumberFormatException e)
-         {
-            break;
-         }
-      }
+      PathDataParser.fillPath(path, pathText, scale);
    }
    
    private void appendMessage(SAXParseException exception, String prefix)
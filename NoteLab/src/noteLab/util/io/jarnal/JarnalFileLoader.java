@@ -27,6 +27,9 @@ package noteLab.util.io.jarnal;
 import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -41,13 +44,29 @@ import noteLab.gui.GuiSettingsConstants;
 import noteLab.model.Page;
 import noteLab.model.binder.Binder;
 import noteLab.model.canvas.CompositeCanvas;
+import noteLab.model.tool.PenTable;
 import noteLab.util.InfoCenter;
 import noteLab.util.io.FileLoader;
 import noteLab.util.io.noteLab.NoteLabFileLoadedListener;
+import noteLab.util.progress.ProgressEvent;
+import noteLab.util.progress.ProgressListener;
+import noteLab.util.progress.Progressive;
 
 import org.xml.sax.SAXException;
 
-public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
+/**
+ * Loads a Jarnal file.  Each page of the file is stored as a separate 
+ * SVG document and the pages are parsed concurrently on a pool of worker 
+ * threads.  Once every page has been parsed, the pages are added to the 
+ * canvas, in order, on the event dispatch thread and the listener is 
+ * informed that the file has been loaded.  Progress is reported to 
+ * progress listeners on the event dispatch thread as pages are parsed.
+ * 
+ * @author Dominic Kramer
+ */
+public class JarnalFileLoader implements JarnalPageLoadedListener, 
+                                         FileLoader, 
+                                         Progressive
 {
    private static final String CONFIG_ENTRY_NAME = "jarnal.conf";
    
@@ -60,6 +79,9 @@ public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
    private int numPages;
    private int numLoaded;
    
+   /** The pages parsed so far indexed by their page number. */
+   private Page[] pages;
+   
    private float scale;
    
    private boolean usesBgImage;
@@ -68,6 +90,8 @@ public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
    
    private StringBuffer messageBuffer;
    
+   private Vector<ProgressListener> progressListenerVec;
+   
    public JarnalFileLoader(File file, 
                            NoteLabFileLoadedListener listener) 
                               throws IOException, 
@@ -80,6 +104,7 @@ public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
       this.zipFile = new ZipFile(file);
       this.usesBgImage = false;
       this.messageBuffer = new StringBuffer();
+      this.progressListenerVec = new Vector<ProgressListener>();
       
       Properties configProps = getJarnalConfig();
       Object foundOb = configProps.get(NUM_PAGES_KEY);
@@ -98,6 +123,7 @@ public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
             this.numPages = 0;
          }
       }
+      this.pages = new Page[Math.max(this.numPages, 0)];
       
       this.scale = 1;
       foundOb = configProps.get(SCALE_KEY);
@@ -126,72 +152,167 @@ public class JarnalFileLoader implements JarnalPageLoadedListener, FileLoader
       return configProps;
    }
 
-   public void pageLoaded(Page page, int pageNumber, 
-                          boolean usesBgImage, String message)
+   public void addProgressListener(ProgressListener listener)
    {
-      this.numLoaded++;
-      this.canvas.getBinder().addPage(page);
-      this.usesBgImage = this.usesBgImage || usesBgImage;
+      if (listener == null)
+         throw new NullPointerException();
       
-      if (message != null)
-         this.messageBuffer.append(message);
+      if (!this.progressListenerVec.contains(listener))
+         this.progressListenerVec.add(listener);
+   }
+   
+   public void removeProgressListener(ProgressListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
       
-      if (this.numLoaded == this.numPages)
+      this.progressListenerVec.remove(listener);
+   }
+   
+   /**
+    * Invoked on a worker thread when a page has been parsed.
+    */
+   public void pageLoaded(Page page, int pageNumber, 
+                          boolean usesBgImage, String message)
+   {
+      synchronized(this)
       {
-         // When the canvas is first constructed it is given a blank 
-         // page as the first page because the canvas must have at least 
-         // one page.  The page is not needed so it will be removed.
-         Binder binder = this.canvas.getBinder();
-         binder.setCurrentPage(0);
-         binder.removeCurrentPage();
-         
-         this.canvas.zoomTo(this.scale);
-         this.listener.noteLabFileLoaded(this.canvas, 
-                                         this.messageBuffer.toString());
+         if (pageNumber >= 0 && pageNumber < this.pages.length)
+            this.pages[pageNumber] = page;
          
-         ImageIcon icon = DefinedIcon.dialog_info.
-                                         getIcon(GuiSettingsConstants.BUTTON_SIZE);
+         this.usesBgImage = this.usesBgImage || usesBgImage;
          
-         String appName = InfoCenter.getAppName();
-         
-         StringBuffer messageBuffer = new StringBuffer();
-         messageBuffer.append(appName);
-         messageBuffer.append(" has tried its best to guess the correct paper type.  ");
-         if (this.usesBgImage)
+         if (message != null)
+            this.messageBuffer.append(message);
+      }
+      
+      pageFinished();
+   }
+   
+   /**
+    * Invoked on a worker thread when a page could not be parsed.
+    */
+   public void pageInvalid(int pageNumber, final Exception e)
+   {
+      final int displayNum = pageNumber+1;
+      SwingUtilities.invokeLater(new Runnable()
+      {
+         public void run()
          {
-            messageBuffer.append("Also, ");
-            messageBuffer.append(appName);
-            messageBuffer.append(" doesn't support background images.");
+            ImageIcon icon = DefinedIcon.dialog_error.
+                                getIcon(GuiSettingsConstants.BUTTON_SIZE);
+            
+            String message = "An error occured while loading page "+
+                             displayNum+".  The message returned was:  "+
+                             e.getMessage();
+            
+            JOptionPane.showMessageDialog(new JFrame(), 
+                                          message, 
+                                          "Error", 
+                                          JOptionPane.WARNING_MESSAGE, icon);
          }
-         
-         JOptionPane.showMessageDialog(new JFrame(), 
-                                       messageBuffer.toString(), 
-                                       "Notice", 
-                                       JOptionPane.INFORMATION_MESSAGE, icon);
-      }
+      });
+      
+      pageFinished();
    }
-
+   
+   /**
+    * Starts parsing the file's pages on a pool of worker threads and 
+    * returns immediately.
+    */
    public void loadFile() throws ParserConfigurationException, 
                                  SAXException, 
                                  IOException
    {
+      if (this.numPages <= 0)
+         return;
+      
+      int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), 
+                                this.numPages);
+      // the pages are added to the canvas's binder once they are loaded
+      PenTable penTable = this.canvas.getBinder().getPenTable();
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
       for (int i=0; i<this.numPages; i++)
-         SwingUtilities.invokeLater(new JarnalPageLoader(this.zipFile, i, 1, this));
+         pool.execute(new JarnalPageLoader(this.zipFile, i, 1, 
+                                           penTable, this));
+      
+      // the pool's threads finish once the queued pages are parsed
+      pool.shutdown();
    }
-
-   public void pageInvalid(int pageNumber, Exception e)
+   
+   /**
+    * Records that a page has been processed and, once all of the pages 
+    * have been processed, finishes loading the file on the event 
+    * dispatch thread.
+    */
+   private void pageFinished()
    {
-      this.numLoaded++;
+      final int numDone;
+      synchronized(this)
+      {
+         numDone = ++this.numLoaded;
+      }
       
-      ImageIcon icon = DefinedIcon.dialog_error.
-                          getIcon(GuiSettingsConstants.BUTTON_SIZE);
+      final int percent = (100*numDone)/this.numPages;
+      SwingUtilities.invokeLater(new Runnable()
+      {
+         public void run()
+         {
+            ProgressEvent event = 
+                  new ProgressEvent(null, 
+                                    "Loaded page "+numDone+" of "+numPages, 
+                                    null, false, percent, false);
+            for (ProgressListener listener : progressListenerVec)
+               listener.progressOccured(event);
+            
+            if (numDone == numPages)
+               finishLoading();
+         }
+      });
+   }
+   
+   private void finishLoading()
+   {
+      Binder binder = this.canvas.getBinder();
+      synchronized(this)
+      {
+         for (Page page : this.pages)
+            if (page != null)
+               binder.addPage(page);
+      }
+      
+      // When the canvas is first constructed it is given a blank 
+      // page as the first page because the canvas must have at least 
+      // one page.  The page is not needed so it will be removed unless 
+      // none of the pages could be loaded.
+      if (binder.getNumberOfPages() > 1)
+      {
+         binder.setCurrentPage(0);
+         binder.removeCurrentPage();
+      }
       
-      String message = "An error occured while loading page "+(pageNumber+1)+
-                       ".  The message returned was:  "+e.getMessage();
+      this.canvas.zoomTo(this.scale);
+      this.listener.noteLabFileLoaded(this.canvas, 
+                                      this.messageBuffer.toString());
+      
+      ImageIcon icon = DefinedIcon.dialog_info.
+                                      getIcon(GuiSettingsConstants.BUTTON_SIZE);
+      
+      String appName = InfoCenter.getAppName();
+      
+      StringBuffer messageBuffer = new StringBuffer();
+      messageBuffer.append(appName);
+      messageBuffer.append(" has tried its best to guess the correct paper type.  ");
+      if (this.usesBgImage)
+      {
+         messageBuffer.append("Also, ");
+         messageBuffer.append(appName);
+         messageBuffer.append(" doesn't support background images.");
+      }
       
       JOptionPane.showMessageDialog(new JFrame(), 
-                                    message, 
-                                    "Error", 
-                                    JOptionPane.WARNING_MESSAGE, icon);
+                                    messageBuffer.toString(), 
+                                    "Notice", 
+                                    JOptionPane.INFORMATION_MESSAGE, icon);
    }
 }
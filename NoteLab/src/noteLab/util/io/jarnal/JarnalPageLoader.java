@@ -41,6 +41,7 @@ import noteLab.model.Path;
 import noteLab.model.Stroke;
 import noteLab.model.Paper.PaperType;
 import noteLab.model.tool.Pen;
+import noteLab.model.tool.PenTable;
 import noteLab.util.geom.unit.Unit;
 import noteLab.util.io.ResolvableHandler;
 import noteLab.util.io.StringInputStream;
@@ -104,6 +105,14 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
    
    private static final String BG_NAME_KEY = "bgid";
    
+   /**
+    * The validating parser used on each thread.  Creating a parser 
+    * takes far longer than resetting one, so each thread that loads 
+    * pages creates a single parser and reuses it for every page.
+    */
+   private static final ThreadLocal<SAXParser> PARSER = 
+                                              new ThreadLocal<SAXParser>();
+   
    private JarnalPageLoadedListener listener;
    private ZipFile zipFile;
    private int pageNum;
@@ -111,6 +120,7 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
    private int width;
    private int height;
    private float scale;
+   private PenTable penTable;
    private Color bgColor;
    private JarnalPaperType paperType;
    private String bgName;
@@ -123,16 +133,18 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
    public JarnalPageLoader(ZipFile zipFile, 
                            int pageNum, 
                            float scale, 
+                           PenTable penTable, 
                            JarnalPageLoadedListener listener) 
                               throws ParserConfigurationException, 
                                      SAXException, 
                                      IOException
    {
       // validate the input
-      if (zipFile == null || listener == null)
+      if (zipFile == null || penTable == null || listener == null)
          throw new NullPointerException();
       
       this.scale = scale;
+      this.penTable = penTable;
       
       this.listener = listener;
       this.pageNum = pageNum;
@@ -260,10 +272,7 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
       super.characters(ch, start, length);
       
       if (this.inDesc)
-      {
-         for (int i=start; i<= start+length; i++)
-            this.descBuffer.append(ch[i]);
-      }
+         this.descBuffer.append(ch, start, length);
    }
 
    @Override
@@ -335,7 +344,8 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
             width = 1;
          }
          
-         Stroke stroke = new Stroke(new Pen(width, color, this.scale), path);
+         Pen pen = this.penTable.getPen(width, color, this.scale);
+         Stroke stroke = new Stroke(pen, path);
          this.strokeVec.add(stroke);
       }
    }
@@ -349,21 +359,45 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
          if (pageEntry == null)
             throw new IOException("The page "+pageNum+" could not be found.");
          
+         // parse the xml document describing the page
+         SAXParser parser = getParser();
+         try
+         {
+            parser.parse(this.zipFile.getInputStream(pageEntry), this);
+         }
+         finally
+         {
+            parser.reset();
+         }
+      }
+      catch (Exception e)
+      {
+         this.listener.pageInvalid(this.pageNum, e);
+      }
+   }
+   
+   /**
+    * Used to get the parser used to parse pages on the current thread.
+    * 
+    * @return The current thread's parser.
+    */
+   private static SAXParser getParser() throws ParserConfigurationException, 
+                                               SAXException
+   {
+      SAXParser parser = PARSER.get();
+      if (parser == null)
+      {
          // create a parser factory
          SAXParserFactory parserFac = SAXParserFactory.newInstance();
          parserFac.setNamespaceAware(true);
          parserFac.setValidating(true);
          
          // get a parser
-         SAXParser parser = parserFac.newSAXParser();
-         
-         // parse the xml document describing the page
-         parser.parse(this.zipFile.getInputStream(pageEntry), this);
-      }
-      catch (Exception e)
-      {
-         this.listener.pageInvalid(this.pageNum, e);
+         parser = parserFac.newSAXParser();
+         PARSER.set(parser);
       }
+      
+      return parser;
    }
    
    public static void main(String[] args) throws Exception
@@ -383,6 +417,8 @@ public class JarnalPageLoader extends ResolvableHandler implements Runnable
          }
       };
       
-      JarnalPageLoader loader = new JarnalPageLoader(file, 0, 1, listener);
+      JarnalPageLoader loader = new JarnalPageLoader(file, 0, 1, 
+                                                     new PenTable(), 
+                                                     listener);
    }
 }
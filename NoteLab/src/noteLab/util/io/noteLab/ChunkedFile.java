@@ -0,0 +1,179 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+package noteLab.util.io.noteLab;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import noteLab.util.io.noteLab.ChunkedFileLoader.PageChunk;
+
+/**
+ * Owns the channel used to read the chunks of the pages of a session 
+ * loaded from a chunked file.  The channel stays open while the session 
+ * is open so that the pages can read their strokes when they are first 
+ * needed, and is closed when the session's binder is closed.
+ * <br><br>
+ * Since an open file cannot be replaced on every platform, the channel 
+ * is closed while the file is replaced when the session is saved.  The 
+ * chunks that were copied to the new file are then read from their new 
+ * location in it and the rest are first read into memory.
+ * <br><br>
+ * The state of the chunks read from this file is only accessed while 
+ * holding this object's lock.
+ * 
+ * @author Dominic Kramer
+ */
+class ChunkedFile implements Closeable
+{
+   private File file;
+   private FileChannel channel;
+   
+   /** The chunks that are read from this file. */
+   private Set<PageChunk> chunkSet;
+   
+   /**
+    * Opens the given file for reading.  It is opened for reading only so 
+    * that other programs can still read it.
+    * 
+    * @param file The chunked file.
+    * 
+    * @throws IOException If the file could not be opened.
+    */
+   public ChunkedFile(File file) throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      this.file = file;
+      this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.chunkSet = Collections.newSetFromMap(
+                                    new WeakHashMap<PageChunk, Boolean>());
+   }
+   
+   /**
+    * Used to get the file this object reads.
+    * 
+    * @return The file.
+    */
+   public File getFile()
+   {
+      return this.file;
+   }
+   
+   /**
+    * Used to get the channel used to read this file.
+    * 
+    * @return The channel.
+    * 
+    * @throws IOException If this file has been closed.
+    */
+   synchronized FileChannel getChannel() throws IOException
+   {
+      if (this.channel == null)
+         throw new IOException("The file '"+this.file+"' has been closed.");
+      
+      return this.channel;
+   }
+   
+   /**
+    * Specifies that the given chunk is read from this file.
+    * 
+    * @param chunk The chunk.
+    */
+   synchronized void addChunk(PageChunk chunk)
+   {
+      if (chunk == null)
+         throw new NullPointerException();
+      
+      this.chunkSet.add(chunk);
+   }
+   
+   /**
+    * Replaces this file with the given file which contains the chunks in 
+    * the given map.  Any other chunk read from this file is read into 
+    * memory first.  If the file cannot be replaced, this file is opened 
+    * again and the chunks are still read from it.
+    * 
+    * @param newFile The file that replaces this file.
+    * @param offsetMap Maps the chunks that were copied to the new file 
+    *                  to their offsets in it.
+    * 
+    * @throws IOException If this file could not be replaced.
+    */
+   synchronized void replaceWith(File newFile, 
+                                 Map<PageChunk, Long> offsetMap) 
+                                    throws IOException
+   {
+      if (newFile == null || offsetMap == null)
+         throw new NullPointerException();
+      
+      for (PageChunk chunk : this.chunkSet)
+      {
+         if (!offsetMap.containsKey(chunk))
+            chunk.readIntoMemory();
+      }
+      
+      FileChannel oldChannel = getChannel();
+      this.channel = null;
+      oldChannel.close();
+      
+      try
+      {
+         ChunkedFileWriter.replace(newFile, this.file);
+      }
+      finally
+      {
+         this.channel = FileChannel.open(this.file.toPath(), 
+                                         StandardOpenOption.READ);
+      }
+      
+      // The file has been replaced so the chunks are in their new location.
+      for (Map.Entry<PageChunk, Long> entry : offsetMap.entrySet())
+         entry.getKey().moveTo(entry.getValue());
+      
+      this.chunkSet.clear();
+      this.chunkSet.addAll(offsetMap.keySet());
+   }
+   
+   /**
+    * Closes this file.  The chunks read from this file can no longer 
+    * supply their strokes.
+    */
+   public synchronized void close() throws IOException
+   {
+      if (this.channel == null)
+         return;
+      
+      FileChannel oldChannel = this.channel;
+      this.channel = null;
+      oldChannel.close();
+   }
+}
@@ -0,0 +1,80 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+/**
+ * <p>
+ *   The constants that describe the chunked native file format.  A file 
+ *   in this format is laid out as follows where all numbers are stored 
+ *   in big-endian order:
+ * </p>
+ * <pre>
+ *   int    MAGIC_NUMBER
+ *   int    VERSION
+ *   int    the screen resolution at which the session was saved
+ *   byte[] the page chunks, one after the other
+ *   byte[] the page index
+ *   long   the offset of the page index
+ *   int    MAGIC_NUMBER
+ * </pre>
+ * <p>
+ *   The page index starts with the number of pages followed, for each 
+ *   page, by the offset and length of the page's chunk, the number of 
+ *   strokes in the chunk, the page's width and height, the paper's 
+ *   description and the paper's background color.  Since the index is at 
+ *   the end of the file, the pages can be found without reading the 
+ *   chunks, and each chunk can be read when its page is first needed.
+ * </p>
+ * <p>
+ *   Each chunk is compressed separately using the deflate algorithm.  A 
+ *   decompressed chunk starts with the precision used to store the 
+ *   coordinates, followed by a table of the distinct pens used on the 
+ *   page and then the strokes.  Each stroke stores the index of its pen 
+ *   in the table, its number of points and then its points.  If the 
+ *   precision is {@link NoteLabFileConstants#FULL_PATH_PRECISION 
+ *   FULL_PATH_PRECISION} the points are stored as floats.  Otherwise, the 
+ *   coordinates are rounded to the given number of decimal places and 
+ *   each coordinate is stored as the variable length, zig-zag encoded 
+ *   difference from the previous point's coordinate.
+ * </p>
+ * 
+ * @author Dominic Kramer
+ */
+public interface ChunkedFileConstants
+{
+   /** The bytes 'NLC1' which start and end every chunked file. */
+   public static final int MAGIC_NUMBER = 0x4E4C4331;
+   
+   public static final int VERSION = 1;
+   
+   /** The size of the magic number, version and screen resolution. */
+   public static final int HEADER_SIZE = 4+4+4;
+   
+   /** The size of the index's offset and the magic number. */
+   public static final int FOOTER_SIZE = 8+4;
+   
+   /** The largest chunk or index that will be read. */
+   public static final int MAX_CHUNK_SIZE = 256*1024*1024;
+}
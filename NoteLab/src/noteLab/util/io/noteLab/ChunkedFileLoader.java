@@ -0,0 +1,630 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Vector;
+import java.util.zip.InflaterInputStream;
+
+import javax.swing.ImageIcon;
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import noteLab.gui.DefinedIcon;
+import noteLab.gui.GuiSettingsConstants;
+import noteLab.model.Page;
+import noteLab.model.Paper;
+import noteLab.model.Path;
+import noteLab.model.Stroke;
+import noteLab.model.StrokeLoader;
+import noteLab.model.binder.Binder;
+import noteLab.model.binder.FlowBinder;
+import noteLab.model.canvas.CompositeCanvas;
+import noteLab.model.geom.FloatPoint2D;
+import noteLab.model.pdf.PDFPageInfo;
+import noteLab.model.tool.Pen;
+import noteLab.model.tool.PenTable;
+import noteLab.util.InfoCenter;
+import noteLab.util.io.FileLoader;
+import noteLab.util.settings.SettingsUtilities;
+
+/**
+ * Loads a session stored in the chunked native file format described in 
+ * {@link ChunkedFileConstants}.  Only the page index is read when the 
+ * session is loaded.  The strokes of each page are read from the file 
+ * the first time the page is needed, typically when it is scrolled into 
+ * view.
+ * 
+ * @author Dominic Kramer
+ */
+public class ChunkedFileLoader implements FileLoader, ChunkedFileConstants
+{
+   private static final float SCALE_LEVEL = 1;
+   private static final float UNIT_SCALE_LEVEL = 1;
+   
+   private File file;
+   
+   /** The file the loaded session is saved to. */
+   private File sessionFile;
+   
+   private NoteLabFileLoadedListener listener;
+   private Vector<String> fileErrorVec;
+   
+   /** The binder read from the file once it has been loaded. */
+   private Binder binder;
+   
+   public ChunkedFileLoader(File file, 
+                            NoteLabFileLoadedListener listener) 
+                               throws IOException
+   {
+      this(file, file, listener);
+   }
+   
+   /**
+    * Constructs a loader that loads the session stored in the given file 
+    * as the session saved to another file.  This is used to load the 
+    * compacted copy of a session whose journal applies to the copy.
+    * 
+    * @param file The chunked file to load.
+    * @param sessionFile The file the loaded session is saved to.
+    * @param listener The listener informed when the file is loaded.
+    * 
+    * @throws IOException If the file could not be read or is not a 
+    *                     chunked file.
+    */
+   public ChunkedFileLoader(File file, File sessionFile, 
+                            NoteLabFileLoadedListener listener) 
+                               throws IOException
+   {
+      this(file);
+      
+      if (sessionFile == null || listener == null)
+         throw new NullPointerException();
+      
+      this.sessionFile = sessionFile;
+      this.listener = listener;
+   }
+   
+   /**
+    * Constructs a loader that only reads the binder stored in the given 
+    * file.  Unlike a loader with a listener, the strokes of every page 
+    * are read when the file is loaded and the file is then closed.  No 
+    * canvas is constructed, the settings are not changed, and no 
+    * messages are displayed.  The binder is available from 
+    * {@link #getBinder()} once the file has been loaded.
+    * 
+    * @param file The chunked file to load.
+    * 
+    * @throws IOException If the file could not be read or is not a 
+    *                     chunked file.
+    */
+   public ChunkedFileLoader(File file) throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      if (!isChunkedFile(file))
+         throw new IOException("The file '"+file.getAbsolutePath()+
+                               "' is not a chunked "+
+                               InfoCenter.getAppName()+" file.");
+      
+      this.file = file;
+      this.sessionFile = file;
+      this.listener = null;
+      this.fileErrorVec = new Vector<String>();
+      this.binder = null;
+   }
+   
+   /**
+    * Used to get the binder read from this loader's file.
+    * 
+    * @return The binder or <code>null</code> if the file hasn't been 
+    *         loaded.
+    */
+   public Binder getBinder()
+   {
+      return this.binder;
+   }
+   
+   /**
+    * Used to determine if the given file is stored in the chunked native 
+    * file format.
+    * 
+    * @param file The file to check.
+    * 
+    * @return <code>true</code> if the file starts with the chunked file 
+    *         format's magic number.
+    * 
+    * @throws IOException If the file could not be read.
+    */
+   public static boolean isChunkedFile(File file) throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      if (file.length() < HEADER_SIZE+FOOTER_SIZE)
+         return false;
+      
+      FileChannel channel = FileChannel.open(file.toPath(), 
+                                             StandardOpenOption.READ);
+      try
+      {
+         ByteBuffer buffer = ByteBuffer.allocate(4);
+         readFully(channel, buffer, 0);
+         return buffer.getInt(0) == MAGIC_NUMBER;
+      }
+      finally
+      {
+         channel.close();
+      }
+   }
+   
+   public void loadFile() throws IOException
+   {
+      // The file is left open since the pages read their strokes from 
+      // it when they are first needed.  The binder owns the file and 
+      // closes it when the binder is closed.
+      ChunkedFile chunkedFile = new ChunkedFile(this.file);
+      Binder binder;
+      try
+      {
+         binder = readIndex(chunkedFile);
+      }
+      catch (IOException e)
+      {
+         chunkedFile.close();
+         throw e;
+      }
+      
+      binder.doLayout();
+      this.binder = binder;
+      
+      if (this.listener == null)
+      {
+         try
+         {
+            for (Page page : binder)
+            {
+               page.load();
+               if (page.hasLoadFailed())
+                  throw new IOException("The strokes of a page in the " +
+                                        "file '"+this.file+"' could " +
+                                        "not be read.");
+            }
+         }
+         finally
+         {
+            chunkedFile.close();
+         }
+         
+         return;
+      }
+      
+      binder.setStrokeSource(chunkedFile);
+      
+      CompositeCanvas canvas = new CompositeCanvas(binder, SCALE_LEVEL);
+      canvas.setFile(this.sessionFile);
+      
+      float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
+      canvas.getBinder().resizeTo(unitScaleFactor, unitScaleFactor);
+      canvas.setUnitScaleFactor(unitScaleFactor);
+      
+      if (binder.getNumberOfPages() > 0)
+      {
+         binder.setCurrentPage(0);
+         Paper paper = binder.getCurrentPage().getPaper();
+         
+         SettingsUtilities.setPaperType(paper.getPaperType());
+         SettingsUtilities.setPaperColor(paper.getBackgroundColor());
+      }
+      
+      this.listener.noteLabFileLoaded(canvas, "");
+      
+      for (String error : this.fileErrorVec)
+         displayErrorMessage("An error occured while opening the file "+
+                                error);
+   }
+   
+   private Binder readIndex(ChunkedFile chunkedFile) throws IOException
+   {
+      FileChannel channel = chunkedFile.getChannel();
+      long size = channel.size();
+      
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+      readFully(channel, buffer, 0);
+      if (buffer.getInt() != MAGIC_NUMBER)
+         throw new IOException("The file '"+this.file+
+                               "' is not a chunked "+
+                               InfoCenter.getAppName()+" file.");
+      
+      int version = buffer.getInt();
+      if (version > VERSION)
+         throw new IOException("The file '"+this.file+"' was saved by " +
+                               "a newer version of "+
+                               InfoCenter.getAppName()+".");
+      
+      int screenRes = buffer.getInt();
+      
+      buffer = ByteBuffer.allocate(FOOTER_SIZE);
+      readFully(channel, buffer, size-FOOTER_SIZE);
+      long indexOffset = buffer.getLong();
+      if (buffer.getInt() != MAGIC_NUMBER || 
+          indexOffset < HEADER_SIZE || 
+          size-FOOTER_SIZE-indexOffset > MAX_CHUNK_SIZE)
+         throw new IOException("The file '"+this.file+
+                               "' is incomplete or corrupt.");
+      
+      buffer = ByteBuffer.allocate((int)(size-FOOTER_SIZE-indexOffset));
+      readFully(channel, buffer, indexOffset);
+      DataInputStream in = 
+         new DataInputStream(new ByteArrayInputStream(buffer.array()));
+      
+      int numPages = in.readInt();
+      if (numPages <= 0)
+         throw new IOException("The file '"+this.file+
+                               "' does not contain any pages.");
+      
+      // the pages' strokes are loaded later with pens from the binder's table
+      PenTable penTable = new PenTable();
+      Page[] pages = new Page[numPages];
+      for (int i=0; i<numPages; i++)
+      {
+         long offset = in.readLong();
+         int length = in.readInt();
+         int numStrokes = in.readInt();
+         float width = in.readFloat();
+         float height = in.readFloat();
+         String desc = in.readUTF();
+         Color bgColor = new Color(in.readInt(), true);
+         
+         if (offset < HEADER_SIZE || length < 0 || 
+             offset+length > indexOffset || numStrokes < 0)
+            throw new IOException("The file '"+this.file+
+                                  "' is incomplete or corrupt.");
+         
+         pages[i] = new Page(width, height, 
+                             Paper.decodePaperType(desc), 
+                             SCALE_LEVEL, SCALE_LEVEL, 
+                             screenRes, UNIT_SCALE_LEVEL);
+         pages[i].getPaper().setBackgroundColor(bgColor);
+         setPDFPageInfo(pages[i], desc);
+         
+         if (numStrokes > 0)
+            pages[i].setStrokeLoader(new PageChunk(chunkedFile, offset, 
+                                                   length, numStrokes, 
+                                                   penTable, i, 
+                                                   this.listener != null));
+      }
+      
+      return new FlowBinder(SCALE_LEVEL, SCALE_LEVEL, penTable, pages);
+   }
+   
+   private void setPDFPageInfo(Page page, String desc)
+   {
+      try
+      {
+         PDFPageInfo pageInfo = Paper.decodePDFPageInfo(this.file, desc);
+         if (pageInfo != null)
+            page.getPaper().setPDFPageInfo(pageInfo);
+      }
+      catch (NumberFormatException e)
+      {
+         System.err.println(ChunkedFileLoader.class.getName()+
+                            " ERROR:  The description of a page's paper " +
+                            "contains an invalid page number.  Its value " +
+                            "is '"+desc+"'");
+      }
+      catch (IOException e)
+      {
+         String message = e.getMessage();
+         
+         System.err.println(ChunkedFileLoader.class.getName()+
+                            " ERROR:  The description of a page's paper " +
+                            "contains a filename with an I/O error.  The " +
+                            "description has the value '"+desc+"'.  The " +
+                            "error returned was:  "+message);
+         
+         if (!this.fileErrorVec.contains(message))
+            this.fileErrorVec.add(message);
+      }
+   }
+   
+   private static void displayErrorMessage(String message)
+   {
+      int size = GuiSettingsConstants.BUTTON_SIZE;
+      ImageIcon icon = DefinedIcon.dialog_error.getIcon(size);
+      
+      JOptionPane.showMessageDialog(new JFrame(), 
+                                    message, 
+                                    "Error", 
+                                    JOptionPane.ERROR_MESSAGE, 
+                                    icon);
+   }
+   
+   static void readFully(FileChannel channel, 
+                                 ByteBuffer buffer, 
+                                 long position) throws IOException
+   {
+      while (buffer.hasRemaining())
+      {
+         int numRead = channel.read(buffer, position);
+         if (numRead < 0)
+            throw new EOFException();
+         
+         position += numRead;
+      }
+      
+      buffer.flip();
+   }
+   
+   /**
+    * Supplies the strokes of a page by reading and decoding the page's 
+    * chunk.  The chunk is read using positional reads so that the strokes 
+    * of different pages can be loaded on different threads.  The location 
+    * of the chunk is only accessed while holding the lock of the file it 
+    * is read from since the file may be replaced when it is saved.
+    */
+   static class PageChunk implements StrokeLoader
+   {
+      private ChunkedFile source;
+      private long offset;
+      private int length;
+      /** The chunk if it has been read into memory or <code>null</code>. */
+      private byte[] data;
+      private int numStrokes;
+      private PenTable penTable;
+      private int pageIndex;
+      private boolean reportErrors;
+      
+      private PageChunk(ChunkedFile source, long offset, 
+                        int length, int numStrokes, PenTable penTable, 
+                        int pageIndex, boolean reportErrors)
+      {
+         this.source = source;
+         this.offset = offset;
+         this.length = length;
+         this.data = null;
+         this.numStrokes = numStrokes;
+         this.penTable = penTable;
+         this.pageIndex = pageIndex;
+         this.reportErrors = reportErrors;
+         
+         source.addChunk(this);
+      }
+      
+      public int getNumStrokes()
+      {
+         return this.numStrokes;
+      }
+      
+      /**
+       * Used to read the chunk as it is stored in the file.
+       * 
+       * @return The compressed chunk.
+       * 
+       * @throws IOException If the chunk could not be read.
+       */
+      byte[] readCompressed() throws IOException
+      {
+         synchronized(this.source)
+         {
+            if (this.data != null)
+               return this.data;
+            
+            ByteBuffer buffer = ByteBuffer.allocate(this.length);
+            readFully(this.source.getChannel(), buffer, this.offset);
+            return buffer.array();
+         }
+      }
+      
+      /**
+       * Used to get the file this chunk is read from.
+       * 
+       * @return The file.
+       */
+      ChunkedFile getSource()
+      {
+         return this.source;
+      }
+      
+      /**
+       * Reads this chunk into memory so that it no longer needs to be 
+       * read from its file.  This is invoked while holding the lock of 
+       * the file.
+       * 
+       * @throws IOException If the chunk could not be read.
+       */
+      void readIntoMemory() throws IOException
+      {
+         this.data = readCompressed();
+      }
+      
+      /**
+       * Specifies that this chunk is now stored at the given offset in 
+       * its file.  This is invoked while holding the lock of the file.
+       * 
+       * @param offset The offset of the chunk.
+       */
+      void moveTo(long offset)
+      {
+         this.offset = offset;
+         this.data = null;
+      }
+      
+      public List<Stroke> loadStrokes() throws IOException
+      {
+         try
+         {
+            return decodeStrokes(readCompressed(), this.numStrokes, 
+                                 this.penTable);
+         }
+         catch (IOException e)
+         {
+            // the page keeps this loader so the strokes are still saved
+            if (this.reportErrors)
+            {
+               final String message = "The strokes of page "+
+                                      (this.pageIndex+1)+" could not be " +
+                                      "read and the page will be shown " +
+                                      "without them.  They are kept in " +
+                                      "the file when it is saved.  The " +
+                                      "error returned was:  "+
+                                      e.getMessage();
+               SwingUtilities.invokeLater(new Runnable()
+               {
+                  public void run()
+                  {
+                     displayErrorMessage(message);
+                  }
+               });
+            }
+            
+            throw e;
+         }
+      }
+   }
+   
+   /**
+    * Decodes the strokes in the given compressed chunk.
+    * 
+    * @param chunk The compressed chunk.
+    * @param numStrokes The number of strokes the chunk should contain.
+    * @param penTable The table that the strokes' pens are taken from.
+    * 
+    * @return The strokes at a scale level of <code>1</code>.
+    * 
+    * @throws IOException If the chunk is invalid or doesn't contain 
+    *                     the given number of strokes.
+    */
+   static List<Stroke> decodeStrokes(byte[] chunk, 
+                                     int numStrokes, 
+                                     PenTable penTable) throws IOException
+   {
+      DataInputStream in = 
+         new DataInputStream(
+            new InflaterInputStream(
+               new ByteArrayInputStream(chunk)));
+      
+      int precision = in.readByte();
+      
+      // The counts are checked before they are used to allocate memory 
+      // since a corrupt chunk could contain any count.  Every pen is used 
+      // by at least one stroke.
+      int numPens = readVarInt(in);
+      if (numPens > numStrokes)
+         throw new IOException("A page contains more pens than strokes.");
+      
+      Pen[] pens = new Pen[numPens];
+      for (int i=0; i<numPens; i++)
+      {
+         float width = in.readFloat();
+         Color color = new Color(in.readInt(), true);
+         pens[i] = penTable.getPen(width, color, SCALE_LEVEL);
+      }
+      
+      double factor = Math.pow(10, Math.max(precision, 0));
+      if (readVarInt(in) != numStrokes)
+         throw new IOException("A page doesn't contain the number of " +
+                               "strokes recorded in the file's index.");
+      
+      Vector<Stroke> strokeVec = new Vector<Stroke>(numStrokes);
+      for (int i=0; i<numStrokes; i++)
+      {
+         int penIndex = readVarInt(in);
+         if (penIndex >= numPens)
+            throw new IOException("A page refers to a pen that " +
+                                  "doesn't exist.");
+         
+         int numPts = readVarInt(in);
+         Path path = new Path(SCALE_LEVEL, SCALE_LEVEL);
+         long x = 0;
+         long y = 0;
+         for (int j=0; j<numPts; j++)
+         {
+            if (precision < 0)
+               path.addItem(new FloatPoint2D(in.readFloat(), 
+                                             in.readFloat(), 
+                                             SCALE_LEVEL, 
+                                             SCALE_LEVEL));
+            else
+            {
+               x += unZigZag(readVarLong(in));
+               y += unZigZag(readVarLong(in));
+               path.addItem(new FloatPoint2D((float)(x/factor), 
+                                             (float)(y/factor), 
+                                             SCALE_LEVEL, 
+                                             SCALE_LEVEL));
+            }
+         }
+         
+         strokeVec.add(new Stroke(pens[penIndex], path));
+      }
+      
+      return strokeVec;
+   }
+   
+   private static long unZigZag(long val)
+   {
+      return (val >>> 1) ^ -(val & 1);
+   }
+   
+   private static int readVarInt(DataInputStream in) throws IOException
+   {
+      long val = readVarLong(in);
+      if (val < 0 || val > Integer.MAX_VALUE)
+         throw new IOException("A page contains an invalid count.");
+      
+      return (int)val;
+   }
+   
+   private static long readVarLong(DataInputStream in) throws IOException
+   {
+      long val = 0;
+      int shift = 0;
+      int curByte;
+      do
+      {
+         if (shift > 63)
+            throw new IOException("A page contains an invalid number.");
+         
+         curByte = in.readUnsignedByte();
+         val |= ((long)(curByte & 0x7F)) << shift;
+         shift += 7;
+      }
+      while ((curByte & 0x80) != 0);
+      
+      return val;
+   }
+}
@@ -0,0 +1,465 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.zip.DeflaterOutputStream;
+
+import noteLab.model.Page;
+import noteLab.model.Path;
+import noteLab.model.StrokeLoader;
+import noteLab.model.Stroke;
+import noteLab.model.binder.Binder;
+import noteLab.model.geom.FloatPoint2D;
+import noteLab.model.tool.Pen;
+import noteLab.util.geom.unit.Unit;
+import noteLab.util.io.noteLab.ChunkedFileLoader.PageChunk;
+import noteLab.util.progress.ProgressEvent;
+import noteLab.util.progress.ProgressListener;
+import noteLab.util.progress.Progressive;
+
+/**
+ * Writes a binder to a file in the chunked native file format described 
+ * in {@link ChunkedFileConstants}.  The binder must already be at the 
+ * scale at which sessions are stored.  Pages whose strokes have not been 
+ * loaded from a chunked file are written by copying their chunk without 
+ * decompressing it.
+ * 
+ * @author Dominic Kramer
+ */
+public class ChunkedFileWriter implements ChunkedFileConstants, Progressive
+{
+   /** 
+    * The largest difference from <code>1</code> of the amount an unloaded 
+    * page will be resized by for its chunk to still be copied as it is.
+    */
+   private static final float RESIZE_TOLERANCE = 1e-4f;
+   
+   private Binder binder;
+   private int precision;
+   private String desc;
+   private Vector<ProgressListener> listenerVec;
+   
+   /**
+    * Constructs a writer that writes the given binder.
+    * 
+    * @param binder The binder to write.
+    * @param precision The number of decimal places used to store the 
+    *                  coordinates of the strokes or 
+    *                  {@link NoteLabFileConstants#FULL_PATH_PRECISION 
+    *                  FULL_PATH_PRECISION} if the coordinates should be 
+    *                  stored exactly.
+    */
+   public ChunkedFileWriter(Binder binder, int precision)
+   {
+      if (binder == null)
+         throw new NullPointerException();
+      
+      this.binder = binder;
+      this.precision = precision;
+      this.desc = "";
+      this.listenerVec = new Vector<ProgressListener>();
+   }
+   
+   /**
+    * Used to set the description given to the progress events sent 
+    * while the binder is written.
+    * 
+    * @param desc The description of the save.
+    */
+   public void setDescription(String desc)
+   {
+      if (desc == null)
+         throw new NullPointerException();
+      
+      this.desc = desc;
+   }
+   
+   public void addProgressListener(ProgressListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
+      
+      if (!this.listenerVec.contains(listener))
+         this.listenerVec.add(listener);
+   }
+   
+   public void removeProgressListener(ProgressListener listener)
+   {
+      if (listener == null)
+         throw new NullPointerException();
+      
+      this.listenerVec.remove(listener);
+   }
+   
+   /**
+    * Writes the binder to the given file.  The binder is first written 
+    * to a temporary file in the same directory which then replaces the 
+    * given file.  Thus, the given file is never left partially written.  
+    * If the binder's pages are read from the given file, the file is 
+    * closed while it is replaced and the pages then read their strokes 
+    * from the new file.
+    * 
+    * @param file The file to write to.
+    * 
+    * @throws IOException If the file could not be written.
+    */
+   public void write(File file) throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      File dir = file.getAbsoluteFile().getParentFile();
+      File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+      HashMap<PageChunk, Long> offsetMap = new HashMap<PageChunk, Long>();
+      boolean hasBeenWritten = false;
+      try
+      {
+         FileChannel channel = FileChannel.open(tempFile.toPath(), 
+                                                StandardOpenOption.WRITE, 
+                                                StandardOpenOption.
+                                                   TRUNCATE_EXISTING);
+         try
+         {
+            writeTo(channel, offsetMap);
+            channel.force(true);
+         }
+         finally
+         {
+            channel.close();
+         }
+         
+         ChunkedFile source = getSource(file);
+         if (source == null)
+            replace(tempFile, file);
+         else
+         {
+            // only the chunks read from the file are moved
+            Iterator<PageChunk> chunks = offsetMap.keySet().iterator();
+            while (chunks.hasNext())
+            {
+               if (chunks.next().getSource() != source)
+                  chunks.remove();
+            }
+            
+            source.replaceWith(tempFile, offsetMap);
+         }
+         
+         hasBeenWritten = true;
+      }
+      finally
+      {
+         if (!hasBeenWritten)
+            tempFile.delete();
+      }
+   }
+   
+   /**
+    * Used to get the file the binder's pages are read from if it is the 
+    * given file.
+    * 
+    * @param file The file being written.
+    * 
+    * @return The file the pages are read from or <code>null</code> if 
+    *         they aren't read from the given file.
+    */
+   private ChunkedFile getSource(File file)
+   {
+      Closeable source = this.binder.getStrokeSource();
+      if ( !(source instanceof ChunkedFile) )
+         return null;
+      
+      ChunkedFile chunkedFile = (ChunkedFile)source;
+      if (!chunkedFile.getFile().getAbsoluteFile().
+                                    equals(file.getAbsoluteFile()))
+         return null;
+      
+      return chunkedFile;
+   }
+   
+   /**
+    * Replaces the given file with the given temporary file.
+    * 
+    * @param tempFile The file that replaces <code>file</code>.
+    * @param file The file that is replaced.
+    * 
+    * @throws IOException If the file could not be replaced.
+    */
+   static void replace(File tempFile, File file) throws IOException
+   {
+      try
+      {
+         Files.move(tempFile.toPath(), file.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         Files.move(tempFile.toPath(), file.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+   
+   private void writeTo(FileChannel channel, 
+                        HashMap<PageChunk, Long> offsetMap) 
+                           throws IOException
+   {
+      int numPages = this.binder.getNumberOfPages();
+      int screenRes = Unit.getScreenResolution();
+      for (Page page : this.binder)
+      {
+         screenRes = page.getPaper().getScreenResolution();
+         break;
+      }
+      
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC_NUMBER);
+      header.putInt(VERSION);
+      header.putInt(screenRes);
+      header.flip();
+      writeFully(channel, header);
+      
+      ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+      DataOutputStream index = new DataOutputStream(indexBytes);
+      index.writeInt(numPages);
+      
+      long offset = HEADER_SIZE;
+      int pageNum = 0;
+      byte[] chunk;
+      for (Page page : this.binder)
+      {
+         int numStrokes = page.getNumStrokes();
+         chunk = getRawChunk(page);
+         if (chunk == null)
+            chunk = encodeStrokes(page, numStrokes, this.precision);
+         else
+            offsetMap.put((PageChunk)page.getStrokeLoader(), offset);
+         
+         writeFully(channel, ByteBuffer.wrap(chunk));
+         
+         index.writeLong(offset);
+         index.writeInt(chunk.length);
+         index.writeInt(numStrokes);
+         index.writeFloat(page.getWidth());
+         index.writeFloat(page.getHeight());
+         index.writeUTF(page.getPaper().getGroupDesc());
+         index.writeInt(page.getPaper().getBackgroundColor().getRGB());
+         
+         offset += chunk.length;
+         
+         pageNum++;
+         notifyProgress(pageNum, numPages);
+      }
+      
+      index.writeLong(offset);
+      index.writeInt(MAGIC_NUMBER);
+      index.flush();
+      writeFully(channel, ByteBuffer.wrap(indexBytes.toByteArray()));
+   }
+   
+   /**
+    * Used to get the chunk, as it is stored in the file, of a page whose 
+    * strokes haven't been loaded from a chunked file.
+    * 
+    * @return The chunk or <code>null</code> if the page has been loaded or 
+    *         its strokes would be resized when they are loaded.  The 
+    *         chunk of a page whose strokes could not be loaded is always 
+    *         returned since the strokes cannot be written any other way.
+    */
+   private static byte[] getRawChunk(Page page) throws IOException
+   {
+      StrokeLoader loader = page.getStrokeLoader();
+      if ( !(loader instanceof PageChunk) )
+         return null;
+      
+      if (!page.hasLoadFailed() && 
+          (Math.abs(page.getLoaderXResize()-1) > RESIZE_TOLERANCE || 
+           Math.abs(page.getLoaderYResize()-1) > RESIZE_TOLERANCE))
+         return null;
+      
+      return ((PageChunk)loader).readCompressed();
+   }
+   
+   /**
+    * Encodes the given strokes as a compressed chunk.  The strokes are 
+    * stored as they would be at a scale level of <code>1</code>.
+    * 
+    * @param strokes The strokes to encode.
+    * @param numStrokes The number of strokes.
+    * @param precision The number of decimal places used to store the 
+    *                  coordinates or 
+    *                  {@link NoteLabFileConstants#FULL_PATH_PRECISION 
+    *                  FULL_PATH_PRECISION}.
+    * 
+    * @return The compressed chunk.
+    */
+   static byte[] encodeStrokes(Iterable<Stroke> strokes, 
+                               int numStrokes, 
+                               int precision) throws IOException
+   {
+      ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+      DataOutputStream out = 
+         new DataOutputStream(new DeflaterOutputStream(chunkBytes));
+      
+      // build the table of the pens used by the strokes
+      HashMap<Long, Integer> penTable = new HashMap<Long, Integer>();
+      Vector<Float> widthVec = new Vector<Float>();
+      Vector<Integer> colorVec = new Vector<Integer>();
+      Vector<Integer> penIndexVec = new Vector<Integer>(numStrokes);
+      Pen pen;
+      float width;
+      int rgb;
+      Long key;
+      Integer penIndex;
+      for (Stroke stroke : strokes)
+      {
+         pen = stroke.getPen();
+         width = pen.getWidth()/pen.getScaleLevel();
+         rgb = pen.getColor().getRGB();
+         key = (((long)Float.floatToIntBits(width)) << 32) | 
+               (rgb & 0xFFFFFFFFL);
+         penIndex = penTable.get(key);
+         if (penIndex == null)
+         {
+            penIndex = widthVec.size();
+            penTable.put(key, penIndex);
+            widthVec.add(width);
+            colorVec.add(rgb);
+         }
+         
+         penIndexVec.add(penIndex);
+      }
+      
+      out.writeByte(precision);
+      writeVarInt(out, widthVec.size());
+      for (int i=0; i<widthVec.size(); i++)
+      {
+         out.writeFloat(widthVec.get(i));
+         out.writeInt(colorVec.get(i));
+      }
+      
+      double factor = Math.pow(10, Math.max(precision, 0));
+      writeVarInt(out, penIndexVec.size());
+      int strokeNum = 0;
+      Path path;
+      float x;
+      float y;
+      long lastX;
+      long lastY;
+      long curX;
+      long curY;
+      for (Stroke stroke : strokes)
+      {
+         path = stroke.getPath();
+         writeVarInt(out, penIndexVec.get(strokeNum++));
+         writeVarInt(out, path.getNumItems());
+         
+         lastX = 0;
+         lastY = 0;
+         for (FloatPoint2D pt : path)
+         {
+            x = pt.getX()/pt.getXScaleLevel();
+            y = pt.getY()/pt.getYScaleLevel();
+            if (precision < 0)
+            {
+               out.writeFloat(x);
+               out.writeFloat(y);
+            }
+            else
+            {
+               curX = Math.round(x*factor);
+               curY = Math.round(y*factor);
+               writeVarLong(out, zigZag(curX-lastX));
+               writeVarLong(out, zigZag(curY-lastY));
+               lastX = curX;
+               lastY = curY;
+            }
+         }
+      }
+      
+      out.close();
+      return chunkBytes.toByteArray();
+   }
+   
+   private void notifyProgress(int pageNum, int numPages)
+   {
+      if (this.listenerVec.isEmpty())
+         return;
+      
+      int percent = (int)(100*((float)pageNum)/numPages);
+      boolean isComplete = (pageNum == numPages);
+      ProgressEvent event = new ProgressEvent(this.desc, 
+                                              "Saving page "+pageNum+
+                                                 " of "+numPages, 
+                                              null, 
+                                              false, 
+                                              percent, 
+                                              isComplete);
+      for (ProgressListener listener : this.listenerVec)
+         listener.progressOccured(event);
+   }
+   
+   private static void writeFully(FileChannel channel, ByteBuffer buffer) 
+                                                          throws IOException
+   {
+      while (buffer.hasRemaining())
+         channel.write(buffer);
+   }
+   
+   private static long zigZag(long val)
+   {
+      return (val << 1) ^ (val >> 63);
+   }
+   
+   private static void writeVarInt(DataOutputStream out, int val) 
+                                                       throws IOException
+   {
+      writeVarLong(out, val & 0xFFFFFFFFL);
+   }
+   
+   private static void writeVarLong(DataOutputStream out, long val) 
+                                                       throws IOException
+   {
+      while ((val & ~0x7FL) != 0)
+      {
+         out.writeByte((int)((val & 0x7F) | 0x80));
+         val >>>= 7;
+      }
+      out.writeByte((int)val);
+   }
+}
@@ -0,0 +1,99 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+import java.io.IOException;
+import java.util.List;
+
+import noteLab.model.Page;
+import noteLab.model.Stroke;
+import noteLab.model.StrokeLoader;
+import noteLab.model.tool.PenTable;
+
+/**
+ * Supplies the strokes of a page from a compressed copy of them kept in 
+ * memory.  The strokes are encoded, without any loss of precision, the 
+ * same way a page's chunk is encoded in the chunked native file format.  
+ * This is used to unload the strokes of pages that weren't loaded from a 
+ * chunked file.
+ * 
+ * @author Dominic Kramer
+ */
+public class CompressedStrokeLoader implements StrokeLoader
+{
+   private byte[] chunk;
+   private int numStrokes;
+   private PenTable penTable;
+   
+   /**
+    * Constructs a loader that supplies the given page's strokes as they 
+    * currently are.
+    * 
+    * @param page The page whose strokes are compressed.
+    * @param penTable The table that the pens of the strokes are taken 
+    *                 from when they are loaded.
+    */
+   public CompressedStrokeLoader(Page page, PenTable penTable)
+   {
+      if (page == null || penTable == null)
+         throw new NullPointerException();
+      
+      this.penTable = penTable;
+      this.numStrokes = page.getNumStrokes();
+      try
+      {
+         this.chunk = ChunkedFileWriter.
+                         encodeStrokes(page, this.numStrokes, 
+                                       NoteLabFileConstants.
+                                          FULL_PATH_PRECISION);
+      }
+      catch (IOException e)
+      {
+         // writing to memory cannot fail
+         throw new IllegalStateException(e.getMessage());
+      }
+   }
+   
+   /**
+    * Used to get the number of bytes used to store the strokes.
+    * 
+    * @return The size of the compressed strokes.
+    */
+   public int getSize()
+   {
+      return this.chunk.length;
+   }
+   
+   public int getNumStrokes()
+   {
+      return this.numStrokes;
+   }
+   
+   public List<Stroke> loadStrokes() throws IOException
+   {
+      return ChunkedFileLoader.decodeStrokes(this.chunk, this.numStrokes, 
+                                             this.penTable);
+   }
+}
@@ -0,0 +1,1366 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import noteLab.model.Page;
+import noteLab.model.PageLoadListener;
+import noteLab.model.Path;
+import noteLab.model.Stroke;
+import noteLab.model.binder.Binder;
+import noteLab.model.binder.BinderListener;
+import noteLab.model.canvas.CompositeCanvas;
+import noteLab.model.geom.FloatPoint2D;
+import noteLab.model.tool.Pen;
+import noteLab.util.settings.SettingsUtilities;
+
+/**
+ * An append-only log of the edits made to a session since it was last 
+ * saved.  The journal is stored next to the session's file and is 
+ * replayed when the file is opened so that the edits made after the 
+ * last save are not lost if the program terminates unexpectedly.
+ * <p>
+ * Edits are encoded on the event dispatch thread and written, and 
+ * forced to disk, by a background thread.  Each record is prefixed by 
+ * its length and checksum so that a record that was only partially 
+ * written is detected and ignored.  The journal's header stores the 
+ * length and modification time of the session file the records apply 
+ * to.
+ * <p>
+ * Strokes are identified in the journal by number.  The strokes in the 
+ * session file are numbered in the order they appear in the file and 
+ * new strokes are numbered as they are added.  When the session is 
+ * saved, a checkpoint is written that renumbers the strokes in the 
+ * order they will appear in the new file.  Once the file has been 
+ * written, the journal is compacted by discarding the records before 
+ * the checkpoint.  If the program terminates after the file is written 
+ * but before the journal is compacted, the header will not match the 
+ * file and only the records after the last checkpoint are replayed.
+ * <p>
+ * When the journal grows too large, the session is written to a 
+ * compacted copy of the session's file, stored next to it, instead of 
+ * the session's file itself, which is only written when the user saves 
+ * the session.  The journal's header then stores the length and 
+ * modification time of the compacted copy and the session is opened 
+ * from the copy until it is saved again.
+ * <p>
+ * The strokes of pages that haven't been loaded yet, or have been 
+ * unloaded, are given their numbers without being loaded.  The numbers 
+ * are assigned to the strokes when the page is loaded.
+ * 
+ * @author Dominic Kramer
+ */
+public class EditJournal implements BinderListener, PageLoadListener
+{
+   /** The extension appended to a session's file to get its journal. */
+   public static final String JOURNAL_EXTENSION = ".journal";
+   
+   /** 
+    * The extension appended to a session's file to get the compacted 
+    * copy of the session that the journal's records apply to.
+    */
+   public static final String COMPACTED_EXTENSION = ".compacted";
+   
+   /** The bytes "NLJ1" that start every journal. */
+   private static final int MAGIC_NUMBER = 0x4E4C4A31;
+   
+   /** 
+    * The size of the journal's header which consists of the magic number 
+    * and the length and modification time of the session's file.
+    */
+   private static final int HEADER_SIZE = 4+8+8;
+   
+   /** The size of the length and checksum that precede each record. */
+   private static final int RECORD_PREFIX_SIZE = 4+4;
+   
+   /** Records larger than this are assumed to be corrupt. */
+   private static final int MAX_RECORD_SIZE = 64*1024*1024;
+   
+   /** 
+    * The journal is considered large enough to be folded into the 
+    * session's file once it is this large and at least half the size 
+    * of the file.
+    */
+   private static final long MIN_COMPACTION_SIZE = 256*1024;
+   
+   private static final byte PUT_STROKE = 1;
+   private static final byte DELETE_STROKES = 2;
+   private static final byte ADD_PAGE = 3;
+   private static final byte REMOVE_PAGE = 4;
+   private static final byte CHECKPOINT = 5;
+   
+   private CompositeCanvas canvas;
+   private File file;
+   private File journalFile;
+   
+   // The following fields are only used on the event dispatch thread
+   private IdentityHashMap<Stroke, Integer> strokeIDMap;
+   
+   /** Maps pages that aren't loaded to the numbers of their strokes. */
+   private IdentityHashMap<Page, int[]> pendingIDMap;
+   private int nextID;
+   private Vector<Page> pageVec;
+   private ByteArrayOutputStream recordBytes;
+   private DataOutputStream recordStream;
+   private long length;
+   private long baseLength;
+   private int numRecovered;
+   private boolean isCompacting;
+   
+   // The following fields are only used by the writer thread
+   private RandomAccessFile journalAccess;
+   private FileChannel journalChannel;
+   
+   /** The number of bytes discarded from the journal by compactions. */
+   private volatile long numDiscarded;
+   private volatile boolean hasFailed;
+   private volatile boolean isClosed;
+   
+   /** 
+    * Specifies if the journal's records apply to the compacted copy of 
+    * the session instead of the session's file.
+    */
+   private volatile boolean isCompactedBase;
+   
+   private LinkedBlockingQueue<Runnable> taskQueue;
+   private Thread writerThread;
+   
+   private EditJournal(CompositeCanvas canvas, File file)
+   {
+      if (canvas == null || file == null)
+         throw new NullPointerException();
+      
+      this.canvas = canvas;
+      this.file = file;
+      this.journalFile = getJournalFile(file);
+      
+      this.strokeIDMap = new IdentityHashMap<Stroke, Integer>();
+      this.pendingIDMap = new IdentityHashMap<Page, int[]>();
+      this.nextID = 0;
+      this.pageVec = new Vector<Page>();
+      this.recordBytes = new ByteArrayOutputStream();
+      this.recordStream = new DataOutputStream(this.recordBytes);
+      this.length = HEADER_SIZE;
+      this.baseLength = file.length();
+      this.numRecovered = 0;
+      this.isCompacting = false;
+      
+      this.journalAccess = null;
+      this.journalChannel = null;
+      
+      this.numDiscarded = 0;
+      this.hasFailed = false;
+      this.isClosed = false;
+      this.isCompactedBase = false;
+      
+      this.taskQueue = new LinkedBlockingQueue<Runnable>();
+   }
+   
+   /**
+    * Used to get the journal used for the session stored in the given 
+    * file.
+    * 
+    * @param file The session's file.
+    * 
+    * @return The file containing the session's journal.
+    */
+   public static File getJournalFile(File file)
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      return new File(file.getPath()+JOURNAL_EXTENSION);
+   }
+   
+   /**
+    * Used to get the file the session stored in the given file is written 
+    * to when its journal is compacted.
+    * 
+    * @param file The session's file.
+    * 
+    * @return The file containing the compacted copy of the session.
+    */
+   public static File getCompactedFile(File file)
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      return new File(file.getPath()+COMPACTED_EXTENSION);
+   }
+   
+   /**
+    * Used to get the compacted copy of the session stored in the given 
+    * file if the session's journal applies to it.  In that case, the 
+    * session should be opened from the compacted copy.
+    * 
+    * @param file The session's file.
+    * 
+    * @return The compacted copy of the session or <code>null</code> if 
+    *         the session should be opened from its file.
+    */
+   static File getCompactedSource(File file)
+   {
+      File compactedFile = getCompactedFile(file);
+      File journalFile = getJournalFile(file);
+      
+      // the session's file may have been replaced since it was compacted
+      if (!compactedFile.exists() || !journalFile.exists() || 
+          compactedFile.lastModified() < file.lastModified())
+         return null;
+      
+      try
+      {
+         DataInputStream in = 
+            new DataInputStream(new FileInputStream(journalFile));
+         try
+         {
+            if (in.readInt() != MAGIC_NUMBER || 
+                in.readLong() != compactedFile.length() || 
+                in.readLong() != compactedFile.lastModified())
+               return null;
+         }
+         finally
+         {
+            in.close();
+         }
+         
+         if (!ChunkedFileLoader.isChunkedFile(compactedFile))
+            return null;
+      }
+      catch (IOException e)
+      {
+         return null;
+      }
+      
+      return compactedFile;
+   }
+   
+   /**
+    * Opens the journal for the session in the given canvas that was 
+    * loaded from the given file.  The edits in the journal that were 
+    * made after the file was last saved are first replayed into the 
+    * canvas's binder.  As such, this method should be invoked after the 
+    * canvas has been loaded but before it is displayed.
+    * 
+    * @param canvas The canvas containing the session.
+    * @param file The file the session was loaded from.
+    * 
+    * @return The session's journal.
+    * 
+    * @throws IOException If the journal cannot be read or written.
+    */
+   public static EditJournal open(CompositeCanvas canvas, File file) 
+                                     throws IOException
+   {
+      EditJournal journal = new EditJournal(canvas, file);
+      journal.recover();
+      journal.start();
+      
+      return journal;
+   }
+   
+   /**
+    * Creates an empty journal for the session in the given canvas that 
+    * is about to be saved to the given file for the first time.  Any 
+    * existing journal for the file is replaced.  Since the file has not 
+    * been written yet, {@link #checkpoint() checkpoint()} should be 
+    * invoked before any edits are made to the session.
+    * 
+    * @param canvas The canvas containing the session.
+    * @param file The file the session will be saved to.
+    * 
+    * @return The session's journal.
+    * 
+    * @throws IOException If the journal cannot be created.
+    */
+   public static EditJournal create(CompositeCanvas canvas, File file) 
+                                       throws IOException
+   {
+      EditJournal journal = new EditJournal(canvas, file);
+      journal.numberStrokes();
+      
+      // The header is deliberately given a stamp that doesn't match any 
+      // file so that only the records after the first checkpoint are 
+      // ever replayed.
+      journal.rewrite(0, 0, null, 0, 0);
+      journal.start();
+      
+      return journal;
+   }
+   
+   /**
+    * Used to get the file containing the session this journal records.
+    * 
+    * @return The session's file.
+    */
+   public File getFile()
+   {
+      return this.file;
+   }
+   
+   /**
+    * Used to get the number of edits that were recovered from the 
+    * journal when it was opened.
+    * 
+    * @return The number of edits replayed into the session when it was 
+    *         opened.
+    */
+   public int getNumRecovered()
+   {
+      return this.numRecovered;
+   }
+   
+   /**
+    * Used to determine if the session was opened from the compacted copy 
+    * of the session, which contains edits that are not in the session's 
+    * file, instead of the session's file.
+    * 
+    * @return <code>true</code> if the session's file doesn't contain 
+    *         all of the edits recovered when the journal was opened.
+    */
+   public boolean isCompactedBase()
+   {
+      return this.isCompactedBase;
+   }
+   
+   /**
+    * Used to determine if the journal has grown large enough that it 
+    * should be folded into the session's file by saving the session.
+    * 
+    * @return <code>true</code> if the session should be saved to 
+    *         compact this journal.
+    */
+   public boolean needsCompaction()
+   {
+      if (this.isCompacting || this.hasFailed || this.isClosed)
+         return false;
+      
+      long size = this.length-this.numDiscarded;
+      return size >= MIN_COMPACTION_SIZE && size >= this.baseLength/2;
+   }
+   
+//----------------=[ Methods used to record the session's edits ]=-----------//
+   /**
+    * Records that the given strokes have been added to the given page.  
+    * The strokes are also recorded as having been added if they have 
+    * been changed in any way.
+    * 
+    * @param page The page containing the strokes.
+    * @param strokes The strokes that were added or changed.
+    */
+   public void strokesAdded(Page page, List<Stroke> strokes)
+   {
+      if (page == null || strokes == null)
+         throw new NullPointerException();
+      
+      if (this.isClosed)
+         return;
+      
+      int pageIndex = this.pageVec.indexOf(page);
+      if (pageIndex < 0)
+         return;
+      
+      float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
+      for (Stroke stroke : strokes)
+         putStroke(stroke, pageIndex, unitScaleFactor);
+   }
+   
+   /**
+    * Records that the given strokes have been changed.  This is the same 
+    * as recording that the strokes have been added to the given page.
+    * 
+    * @param page The page containing the strokes.
+    * @param strokes The strokes that were changed.
+    */
+   public void strokesChanged(Page page, List<Stroke> strokes)
+   {
+      strokesAdded(page, strokes);
+   }
+   
+   /**
+    * Records that the points of the given stroke have changed if the 
+    * stroke is currently recorded as being in the session.  Unlike 
+    * {@link #strokesChanged(Page, List)}, a stroke that has been removed 
+    * from the session isn't recorded as being added again.
+    * 
+    * @param page The page containing the stroke.
+    * @param stroke The stroke that was changed.
+    */
+   public void strokeUpdated(Page page, Stroke stroke)
+   {
+      if (page == null || stroke == null)
+         throw new NullPointerException();
+      
+      if (this.isClosed || !this.strokeIDMap.containsKey(stroke))
+         return;
+      
+      int pageIndex = this.pageVec.indexOf(page);
+      if (pageIndex < 0)
+         return;
+      
+      putStroke(stroke, pageIndex, SettingsUtilities.getUnitScaleFactor());
+   }
+   
+   /**
+    * Records that the given strokes have been removed from the session.
+    * 
+    * @param strokes The strokes that were removed.
+    */
+   public void strokesRemoved(List<Stroke> strokes)
+   {
+      if (strokes == null)
+         throw new NullPointerException();
+      
+      if (this.isClosed)
+         return;
+      
+      Vector<Integer> idVec = new Vector<Integer>(strokes.size());
+      Integer id;
+      for (Stroke stroke : strokes)
+      {
+         id = this.strokeIDMap.remove(stroke);
+         if (id != null)
+            idVec.add(id);
+      }
+      
+      if (idVec.isEmpty())
+         return;
+      
+      try
+      {
+         this.recordStream.writeByte(DELETE_STROKES);
+         this.recordStream.writeInt(idVec.size());
+         for (Integer curID : idVec)
+            this.recordStream.writeInt(curID);
+      }
+      catch (IOException e)
+      {
+         // writing to memory cannot fail
+      }
+      
+      append();
+   }
+   
+   public void pageAdded(Binder source, Page page)
+   {
+      if (this.isClosed)
+         return;
+      
+      int index = 0;
+      for (Page curPage : source)
+      {
+         if (curPage == page)
+            break;
+         
+         index++;
+      }
+      
+      this.pageVec.insertElementAt(page, index);
+      page.addPageLoadListener(this);
+      writePageRecord(ADD_PAGE, index);
+   }
+   
+   public void pageRemoved(Binder source, Page page)
+   {
+      if (this.isClosed)
+         return;
+      
+      int index = this.pageVec.indexOf(page);
+      if (index < 0)
+         return;
+      
+      this.pageVec.removeElementAt(index);
+      page.removePageLoadListener(this);
+      if (this.pendingIDMap.remove(page) == null)
+      {
+         for (Stroke stroke : page)
+            this.strokeIDMap.remove(stroke);
+      }
+      
+      writePageRecord(REMOVE_PAGE, index);
+   }
+   
+   public void currentPageChanged(Binder source)
+   {
+   }
+   
+   public void strokesLoaded(Page page)
+   {
+      int[] ids = this.pendingIDMap.remove(page);
+      if (ids == null)
+         return;
+      
+      int i = 0;
+      for (Stroke stroke : page)
+      {
+         if (i == ids.length)
+            break;
+         
+         this.strokeIDMap.put(stroke, ids[i++]);
+      }
+   }
+   
+   public void strokesUnloading(Page page)
+   {
+      int[] ids = new int[page.getNumStrokes()];
+      int i = 0;
+      Integer id;
+      for (Stroke stroke : page)
+      {
+         id = this.strokeIDMap.remove(stroke);
+         ids[i++] = (id != null) ? id : this.nextID++;
+      }
+      
+      this.pendingIDMap.put(page, ids);
+   }
+   
+   private void writePageRecord(byte type, int index)
+   {
+      try
+      {
+         this.recordStream.writeByte(type);
+         this.recordStream.writeInt(index);
+      }
+      catch (IOException e)
+      {
+         // writing to memory cannot fail
+      }
+      
+      append();
+   }
+   
+   private void putStroke(Stroke stroke, int pageIndex, 
+                          float unitScaleFactor)
+   {
+      Integer id = this.strokeIDMap.get(stroke);
+      if (id == null)
+      {
+         id = this.nextID++;
+         this.strokeIDMap.put(stroke, id);
+      }
+      
+      // The values are stored as they are stored in the session's file 
+      // so that the journal doesn't depend on the current zoom level.
+      Pen pen = stroke.getPen();
+      Path path = stroke.getPath();
+      try
+      {
+         this.recordStream.writeByte(PUT_STROKE);
+         this.recordStream.writeInt(id);
+         this.recordStream.writeInt(pageIndex);
+         this.recordStream.writeFloat(pen.getWidth()/pen.getScaleLevel()/
+                                         unitScaleFactor);
+         this.recordStream.writeInt(pen.getColor().getRGB());
+         this.recordStream.writeInt(path.getNumItems());
+         for (FloatPoint2D pt : path)
+         {
+            this.recordStream.writeFloat(pt.getX()/pt.getXScaleLevel()/
+                                            unitScaleFactor);
+            this.recordStream.writeFloat(pt.getY()/pt.getYScaleLevel()/
+                                            unitScaleFactor);
+         }
+      }
+      catch (IOException e)
+      {
+         // writing to memory cannot fail
+      }
+      
+      append();
+   }
+   
+   /**
+    * Frames the record in <code>recordBytes</code> with its length and 
+    * checksum and hands it to the writer thread.
+    */
+   private void append()
+   {
+      byte[] payload = this.recordBytes.toByteArray();
+      this.recordBytes.reset();
+      
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      
+      final ByteBuffer record = 
+                 ByteBuffer.allocate(RECORD_PREFIX_SIZE+payload.length);
+      record.putInt(payload.length);
+      record.putInt((int)crc.getValue());
+      record.put(payload);
+      record.flip();
+      
+      this.length += record.remaining();
+      submit(new Runnable()
+      {
+         public void run()
+         {
+            writeRecord(record);
+         }
+      });
+   }
+   
+//-----------------=[ Methods used to compact the journal ]=-----------------//
+   /**
+    * Records that the session is about to be saved.  The strokes in the 
+    * session are renumbered in the order they will appear in the saved 
+    * file.  This method must be invoked while the snapshot of the 
+    * session that will be saved is taken.
+    * 
+    * @return The position in the journal that should be given to 
+    *         {@link #commit(long, File, long, long) commit()} once the 
+    *         session has been saved.
+    */
+   public long checkpoint()
+   {
+      if (this.isClosed)
+         return -1;
+      
+      // Strokes that haven't been recorded yet, such as a stroke that is 
+      // still being drawn, need to be recorded so that they can be 
+      // renumbered.
+      float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
+      int pageIndex = 0;
+      int numStrokes = 0;
+      for (Page page : this.pageVec)
+      {
+         numStrokes += page.getNumStrokes();
+         if (this.pendingIDMap.containsKey(page))
+         {
+            pageIndex++;
+            continue;
+         }
+         
+         for (Stroke stroke : page)
+            if (!this.strokeIDMap.containsKey(stroke))
+               putStroke(stroke, pageIndex, unitScaleFactor);
+         
+         pageIndex++;
+      }
+      
+      try
+      {
+         this.recordStream.writeByte(CHECKPOINT);
+         this.recordStream.writeInt(numStrokes);
+         for (Page page : this.pageVec)
+         {
+            int[] ids = this.pendingIDMap.get(page);
+            if (ids != null)
+            {
+               for (int id : ids)
+                  this.recordStream.writeInt(id);
+            }
+            else
+            {
+               for (Stroke stroke : page)
+                  this.recordStream.writeInt(this.strokeIDMap.get(stroke));
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         // writing to memory cannot fail
+      }
+      
+      append();
+      numberStrokes();
+      
+      this.isCompacting = true;
+      return this.length;
+   }
+   
+   /**
+    * Discards the records before the given checkpoint since the session 
+    * has been saved.  This method is invoked on the thread that saved the 
+    * session, in the order the session was saved.
+    * 
+    * @param mark The value returned by the checkpoint that corresponds 
+    *             to the saved session.
+    * @param savedFile The file the session was saved to, which is either 
+    *                  the session's file or its compacted copy.
+    * @param fileLength The length of the saved file.
+    * @param fileModified The modification time of the saved file.
+    */
+   public void commit(final long mark, 
+                      File savedFile, 
+                      final long fileLength, 
+                      final long fileModified)
+   {
+      if (savedFile == null)
+         throw new NullPointerException();
+      
+      if (mark < 0)
+         return;
+      
+      final boolean isCompacted = 
+                       savedFile.getAbsoluteFile().equals(
+                          getCompactedFile(this.file).getAbsoluteFile());
+      submit(new Runnable()
+      {
+         public void run()
+         {
+            compact(mark, isCompacted, fileLength, fileModified);
+         }
+      });
+   }
+   
+   /**
+    * Informs this journal that saving the session to its file has 
+    * finished, successfully or not, so that it can again request to be 
+    * compacted.  This method is invoked on the event dispatch thread.
+    * 
+    * @param fileLength The length of the saved file.
+    */
+   public void saveFinished(long fileLength)
+   {
+      this.baseLength = fileLength;
+      this.isCompacting = false;
+   }
+   
+   /**
+    * Stops recording edits and waits for the records already made to be 
+    * written.
+    * 
+    * @param discard <code>true</code> if the journal's file should be 
+    *                deleted because the session's file contains all of 
+    *                the session's edits or they should be discarded.  The 
+    *                compacted copy of the session is then deleted too.
+    */
+   public void close(boolean discard)
+   {
+      if (this.isClosed)
+         return;
+      
+      this.isClosed = true;
+      this.canvas.getBinder().removeBinderListener(this);
+      
+      for (Page page : this.pageVec)
+         page.removePageLoadListener(this);
+      this.pendingIDMap.clear();
+      
+      submit(new Runnable()
+      {
+         public void run()
+         {
+            closeChannel();
+         }
+      });
+      
+      try
+      {
+         this.writerThread.join();
+      }
+      catch (InterruptedException e)
+      {
+      }
+      
+      if (discard)
+         this.journalFile.delete();
+      
+      if (discard || !this.isCompactedBase)
+         getCompactedFile(this.file).delete();
+   }
+   
+//-------------------=[ Methods run by the writer thread ]=------------------//
+   private void start() throws IOException
+   {
+      openChannel();
+      this.canvas.getBinder().addBinderListener(this);
+      
+      this.writerThread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            processTasks();
+         }
+      }, EditJournal.class.getSimpleName()+" "+this.file.getName());
+      this.writerThread.setDaemon(true);
+      this.writerThread.start();
+   }
+   
+   private void submit(Runnable task)
+   {
+      if (this.hasFailed)
+         return;
+      
+      this.taskQueue.add(task);
+   }
+   
+   private void processTasks()
+   {
+      Runnable task;
+      while (this.journalChannel != null)
+      {
+         try
+         {
+            task = this.taskQueue.take();
+         }
+         catch (InterruptedException e)
+         {
+            continue;
+         }
+         
+         task.run();
+         
+         // Records that arrive in bursts are forced to disk together.
+         if (this.taskQueue.isEmpty() && this.journalChannel != null)
+         {
+            try
+            {
+               this.journalChannel.force(false);
+            }
+            catch (IOException e)
+            {
+               fail(e);
+            }
+         }
+      }
+   }
+   
+   private void writeRecord(ByteBuffer record)
+   {
+      if (this.journalChannel == null)
+         return;
+      
+      try
+      {
+         while (record.hasRemaining())
+            this.journalChannel.write(record);
+      }
+      catch (IOException e)
+      {
+         fail(e);
+      }
+   }
+   
+   private void compact(long mark, boolean isCompacted, 
+                        long fileLength, long fileModified)
+   {
+      if (this.journalChannel == null)
+         return;
+      
+      try
+      {
+         long start = mark-this.numDiscarded;
+         long end = this.journalChannel.size();
+         if (start < HEADER_SIZE || start > end)
+            return;
+         
+         closeChannel();
+         
+         byte[] tail = new byte[(int)(end-start)];
+         RandomAccessFile in = new RandomAccessFile(this.journalFile, "r");
+         try
+         {
+            in.seek(start);
+            in.readFully(tail);
+         }
+         finally
+         {
+            in.close();
+         }
+         
+         rewrite(fileLength, fileModified, tail, 0, tail.length);
+         this.numDiscarded += start-HEADER_SIZE;
+         
+         // A compacted copy no longer applies once the session is saved.
+         this.isCompactedBase = isCompacted;
+         if (!isCompacted)
+            getCompactedFile(this.file).delete();
+         
+         openChannel();
+      }
+      catch (IOException e)
+      {
+         fail(e);
+      }
+   }
+   
+   private void openChannel() throws IOException
+   {
+      this.journalAccess = new RandomAccessFile(this.journalFile, "rw");
+      this.journalChannel = this.journalAccess.getChannel();
+      this.journalChannel.position(this.journalChannel.size());
+   }
+   
+   private void closeChannel()
+   {
+      if (this.journalChannel == null)
+         return;
+      
+      try
+      {
+         this.journalChannel.force(false);
+         this.journalAccess.close();
+      }
+      catch (IOException e)
+      {
+         System.err.println(EditJournal.class.getSimpleName()+
+                            ":  The journal '"+this.journalFile+
+                            "' could not be closed:  "+e.getMessage());
+      }
+      
+      this.journalAccess = null;
+      this.journalChannel = null;
+   }
+   
+   private void fail(IOException e)
+   {
+      System.err.println(EditJournal.class.getSimpleName()+
+                         ":  Edits will no longer be recorded in the " +
+                         "journal '"+this.journalFile+"':  "+e.getMessage());
+      
+      this.hasFailed = true;
+      this.taskQueue.clear();
+      closeChannel();
+   }
+   
+   /**
+    * Replaces the journal's file with one containing a header stamped 
+    * with the given values followed by the given records.  The new 
+    * journal is written to a temporary file which is then moved over 
+    * the old journal so that a valid journal always exists.
+    */
+   private void rewrite(long fileLength, long fileModified, 
+                        byte[] records, int offset, int count) 
+                           throws IOException
+   {
+      File tempFile = new File(this.journalFile.getPath()+".tmp");
+      RandomAccessFile out = new RandomAccessFile(tempFile, "rw");
+      try
+      {
+         out.setLength(0);
+         out.writeInt(MAGIC_NUMBER);
+         out.writeLong(fileLength);
+         out.writeLong(fileModified);
+         if (records != null)
+            out.write(records, offset, count);
+         out.getFD().sync();
+      }
+      finally
+      {
+         out.close();
+      }
+      
+      try
+      {
+         Files.move(tempFile.toPath(), this.journalFile.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         Files.move(tempFile.toPath(), this.journalFile.toPath(), 
+                    StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+   
+//----------------------=[ Methods used for recovery ]=----------------------//
+   /**
+    * Numbers the strokes in the binder in the order they are stored in 
+    * the session's file.
+    */
+   private void numberStrokes()
+   {
+      for (Page page : this.pageVec)
+         page.removePageLoadListener(this);
+      
+      this.strokeIDMap.clear();
+      this.pendingIDMap.clear();
+      this.pageVec.clear();
+      this.nextID = 0;
+      
+      for (Page page : this.canvas.getBinder())
+      {
+         this.pageVec.add(page);
+         page.addPageLoadListener(this);
+         if (!page.isLoaded())
+         {
+            int[] ids = new int[page.getNumStrokes()];
+            for (int i=0; i<ids.length; i++)
+               ids[i] = this.nextID++;
+            
+            this.pendingIDMap.put(page, ids);
+         }
+         else
+         {
+            for (Stroke stroke : page)
+               this.strokeIDMap.put(stroke, this.nextID++);
+         }
+      }
+   }
+   
+   /**
+    * Used to get the stroke with the given number while replaying the 
+    * journal.  If the stroke is on a page that isn't loaded, the page is 
+    * loaded and its strokes are added to the given table.
+    * 
+    * @param pendingTable Maps the numbers of the strokes that weren't 
+    *                     loaded when the replay started to their pages.
+    */
+   private Stroke getStroke(HashMap<Integer, Stroke> strokeTable, 
+                            HashMap<Integer, Page> pendingTable, 
+                            int id)
+   {
+      Stroke stroke = strokeTable.get(id);
+      if (stroke != null)
+         return stroke;
+      
+      Page page = pendingTable.get(id);
+      if (page == null || !this.pendingIDMap.containsKey(page))
+         return null;
+      
+      loadPage(strokeTable, page);
+      return strokeTable.get(id);
+   }
+   
+   private void loadPage(HashMap<Integer, Stroke> strokeTable, Page page)
+   {
+      page.load();
+      for (Stroke stroke : page)
+      {
+         Integer id = this.strokeIDMap.get(stroke);
+         if (id != null)
+            strokeTable.put(id, stroke);
+      }
+   }
+   
+   /**
+    * Replays the records in the journal that are not already in the 
+    * session's file and rewrites the journal so that it only contains 
+    * those records and its header matches the file.
+    */
+   private void recover() throws IOException
+   {
+      numberStrokes();
+      
+      // The session was opened from its compacted copy if the copy is 
+      // what the strokes are read from.
+      File baseFile = this.file;
+      Closeable source = this.canvas.getBinder().getStrokeSource();
+      File compactedFile = getCompactedFile(this.file);
+      if (source instanceof ChunkedFile && 
+          ((ChunkedFile)source).getFile().getAbsoluteFile().
+                                  equals(compactedFile.getAbsoluteFile()))
+         baseFile = compactedFile;
+      
+      this.isCompactedBase = (baseFile == compactedFile);
+      long fileLength = baseFile.length();
+      long fileModified = baseFile.lastModified();
+      
+      byte[] journalBytes = null;
+      if (this.journalFile.exists())
+         journalBytes = readFully(this.journalFile);
+      
+      int start = HEADER_SIZE;
+      int end = HEADER_SIZE;
+      boolean matches = false;
+      if (journalBytes != null && journalBytes.length >= HEADER_SIZE)
+      {
+         DataInputStream in = 
+            new DataInputStream(new ByteArrayInputStream(journalBytes));
+         if (in.readInt() == MAGIC_NUMBER)
+         {
+            matches = (in.readLong() == fileLength) && 
+                      (in.readLong() == fileModified);
+            
+            // Find the records that were completely written and, if 
+            // the file was saved after the header was written, the 
+            // last checkpoint.
+            int lastCheckpoint = -1;
+            int offset = HEADER_SIZE;
+            int size;
+            while ( (size = getRecordSize(journalBytes, offset)) > 0 )
+            {
+               if (journalBytes[offset+RECORD_PREFIX_SIZE] == CHECKPOINT)
+                  lastCheckpoint = offset+size;
+               
+               offset += size;
+            }
+            end = offset;
+            
+            if (!matches)
+            {
+               if (lastCheckpoint < 0)
+                  System.err.println(EditJournal.class.getSimpleName()+
+                                     ":  The journal '"+this.journalFile+
+                                     "' does not match its session and " +
+                                     "will be discarded.");
+               start = (lastCheckpoint < 0) ? end : lastCheckpoint;
+            }
+         }
+      }
+      
+      if (journalBytes != null)
+         replay(journalBytes, start, end);
+      
+      if (journalBytes == null)
+         rewrite(fileLength, fileModified, null, 0, 0);
+      else
+         rewrite(fileLength, fileModified, journalBytes, start, end-start);
+      
+      this.length = HEADER_SIZE+(end-start);
+      this.baseLength = fileLength;
+   }
+   
+   /**
+    * Used to get the size, including its length and checksum, of the 
+    * record at the given offset.
+    * 
+    * @return The record's size or <code>-1</code> if the record wasn't 
+    *         completely written.
+    */
+   private static int getRecordSize(byte[] bytes, int offset)
+   {
+      if (offset+RECORD_PREFIX_SIZE > bytes.length)
+         return -1;
+      
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, RECORD_PREFIX_SIZE);
+      int size = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (size <= 0 || size > MAX_RECORD_SIZE || 
+          offset+RECORD_PREFIX_SIZE+size > bytes.length)
+         return -1;
+      
+      CRC32 crc = new CRC32();
+      crc.update(bytes, offset+RECORD_PREFIX_SIZE, size);
+      if ((int)crc.getValue() != checksum)
+         return -1;
+      
+      return RECORD_PREFIX_SIZE+size;
+   }
+   
+   private void replay(byte[] bytes, int start, int end) throws IOException
+   {
+      Binder binder = this.canvas.getBinder();
+      float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
+      float zoomLevel = this.canvas.getZoomLevel();
+      
+      HashMap<Integer, Stroke> strokeTable = new HashMap<Integer, Stroke>();
+      for (Stroke stroke : this.strokeIDMap.keySet())
+         strokeTable.put(this.strokeIDMap.get(stroke), stroke);
+      
+      HashMap<Integer, Page> pendingTable = new HashMap<Integer, Page>();
+      for (Page page : this.pendingIDMap.keySet())
+         for (int id : this.pendingIDMap.get(page))
+            pendingTable.put(id, page);
+      int maxID = this.nextID;
+      
+      DataInputStream in = 
+         new DataInputStream(
+            new ByteArrayInputStream(bytes, start, end-start));
+      for (int offset=start; offset<end; 
+           offset += getRecordSize(bytes, offset))
+      {
+         in.skipBytes(RECORD_PREFIX_SIZE);
+         
+         byte type = in.readByte();
+         if (type == PUT_STROKE)
+         {
+            int id = in.readInt();
+            int pageIndex = in.readInt();
+            float width = in.readFloat();
+            Color color = new Color(in.readInt(), true);
+            int numPts = in.readInt();
+            Path path = new Path(1, 1);
+            for (int i=0; i<numPts; i++)
+               path.addItem(new FloatPoint2D(in.readFloat(), 
+                                             in.readFloat(), 
+                                             1, 1));
+            
+            // The stroke is brought to the scale of the session the same 
+            // way the strokes loaded from the file are.
+            Pen pen = binder.getPenTable().getPen(width, color, 1);
+            Stroke stroke = new Stroke(pen, path);
+            stroke.resizeTo(unitScaleFactor, unitScaleFactor);
+            stroke.scaleTo(zoomLevel, zoomLevel);
+            
+            Stroke existing = getStroke(strokeTable, pendingTable, id);
+            if (existing != null)
+            {
+               existing.setPen(stroke.getPen());
+               existing.setPath(stroke.getPath());
+            }
+            else
+            {
+               while (binder.getNumberOfPages() <= pageIndex)
+                  binder.addNewPage();
+               
+               Page page = getPageAt(binder, pageIndex);
+               if (this.pendingIDMap.containsKey(page))
+                  loadPage(strokeTable, page);
+               
+               page.addStroke(stroke);
+               strokeTable.put(id, stroke);
+            }
+            
+            maxID = Math.max(maxID, id+1);
+         }
+         else if (type == DELETE_STROKES)
+         {
+            int numIDs = in.readInt();
+            Stroke stroke;
+            for (int i=0; i<numIDs; i++)
+            {
+               int id = in.readInt();
+               stroke = getStroke(strokeTable, pendingTable, id);
+               if (stroke == null)
+                  continue;
+               
+               strokeTable.remove(id);
+               for (Page page : binder)
+                  page.removeStroke(stroke);
+            }
+         }
+         else if (type == ADD_PAGE)
+         {
+            int index = in.readInt();
+            int numPages = binder.getNumberOfPages();
+            Page basePage = getPageAt(binder, Math.min(index, numPages-1));
+            Page newPage = new Page(basePage);
+            if (index >= numPages)
+               binder.addPage(newPage);
+            else
+               binder.addPageBefore(basePage, newPage);
+         }
+         else if (type == REMOVE_PAGE)
+         {
+            Page page = getPageAt(binder, in.readInt());
+            if (page != null)
+               binder.removePage(page);
+         }
+         else if (type == CHECKPOINT)
+         {
+            // The strokes are renumbered so the numbers given to the 
+            // pages that aren't loaded no longer apply.
+            Vector<Page> pendingPages = 
+                            new Vector<Page>(this.pendingIDMap.keySet());
+            for (Page page : pendingPages)
+               loadPage(strokeTable, page);
+            
+            int numIDs = in.readInt();
+            HashMap<Integer, Stroke> renumbered = 
+                                       new HashMap<Integer, Stroke>();
+            Stroke stroke;
+            for (int i=0; i<numIDs; i++)
+            {
+               stroke = strokeTable.get(in.readInt());
+               if (stroke != null)
+                  renumbered.put(i, stroke);
+            }
+            
+            strokeTable = renumbered;
+            maxID = numIDs;
+         }
+         else
+            throw new IOException("The journal '"+this.journalFile+
+                                  "' contains an unknown record.");
+         
+         this.numRecovered++;
+      }
+      
+      if (this.numRecovered == 0)
+         return;
+      
+      binder.setCurrentPage(0);
+      
+      for (Page page : this.pageVec)
+         page.removePageLoadListener(this);
+      
+      this.pageVec.clear();
+      for (Page page : binder)
+      {
+         this.pageVec.add(page);
+         page.addPageLoadListener(this);
+      }
+      
+      this.strokeIDMap.clear();
+      for (Integer id : strokeTable.keySet())
+         this.strokeIDMap.put(strokeTable.get(id), id);
+      this.nextID = maxID;
+      
+      // forget the pages that were removed while replaying
+      Vector<Page> pendingPages = new Vector<Page>(this.pendingIDMap.keySet());
+      for (Page page : pendingPages)
+         if (!this.pageVec.contains(page))
+            this.pendingIDMap.remove(page);
+   }
+   
+   private static Page getPageAt(Binder binder, int index)
+   {
+      int curIndex = 0;
+      for (Page page : binder)
+      {
+         if (curIndex == index)
+            return page;
+         
+         curIndex++;
+      }
+      
+      return null;
+   }
+   
+   private static byte[] readFully(File file) throws IOException
+   {
+      DataInputStream in = 
+         new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+      try
+      {
+         byte[] bytes = new byte[(int)file.length()];
+         in.readFully(bytes);
+         return bytes;
+      }
+      catch (EOFException e)
+      {
+         throw new IOException("The journal '"+file+
+                               "' was modified while being read.");
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+}
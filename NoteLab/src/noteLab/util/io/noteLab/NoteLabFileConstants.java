@@ -58,4 +58,19 @@ public interface NoteLabFileConstants
    
    public static final String PATH_NAME = "path";
    public static final String PATH_ATT_NAME = "d";
+   
+   /** 
+    * The number of decimal places to which the coordinates of strokes 
+    * are quantized when a session is saved in the chunked format.
+    */
+   public static final int DEFAULT_PATH_PRECISION = 2;
+   
+   /** The largest number of decimal places that can be used. */
+   public static final int MAX_PATH_PRECISION = 9;
+   
+   /** 
+    * Specifies that the coordinates of strokes should be stored with 
+    * full precision instead of being quantized.
+    */
+   public static final int FULL_PATH_PRECISION = -1;
 }
@@ -26,10 +26,20 @@ package noteLab.util.io.noteLab;
 
 import java.awt.Color;
 import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 import javax.swing.ImageIcon;
@@ -52,9 +62,11 @@ import noteLab.model.canvas.CompositeCanvas;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.model.pdf.PDFPageInfo;
 import noteLab.model.tool.Pen;
+import noteLab.model.tool.PenTable;
 import noteLab.util.InfoCenter;
 import noteLab.util.geom.unit.Unit;
 import noteLab.util.io.FileLoader;
+import noteLab.util.io.PathDataParser;
 import noteLab.util.io.ResolvableHandler;
 import noteLab.util.settings.SettingsUtilities;
 
@@ -72,21 +84,57 @@ public class NoteLabFileLoader
    private File file;
    private NoteLabFileLoadedListener listener;
    
-   private Binder curBinder;
+   /** Whether this loader only parses part of a file. */
+   private boolean isPart;
+   
+   /** The binder read from the file once it has been loaded. */
+   private Binder binder;
+   
+   private Vector<Page> pageVec;
    private Page curPage;
    private Stroke curStroke;
    
+   /**
+    * The table of the pens shared by the strokes read.  The loaders of 
+    * the parts of a file share the table of the loader that started them.
+    */
+   private PenTable penTable;
+   
    private String lastID;
    
    private int screenRes;
    
    private Vector<String> fileErrorVec;
    
+   /** The number of threads used to parse pages. */
+   private int numThreads;
+   
    public NoteLabFileLoader(File file, 
                             NoteLabFileLoadedListener listener) 
                                throws IOException
    {
-      if (file == null || listener == null)
+      this(file);
+      
+      if (listener == null)
+         throw new NullPointerException();
+      
+      this.listener = listener;
+   }
+   
+   /**
+    * Constructs a loader that only reads the binder stored in the given 
+    * file.  No canvas is constructed, the settings are not changed, and 
+    * no messages are displayed.  Thus, the loader can be used when 
+    * running headless.  The binder is available from 
+    * {@link #getBinder()} once the file has been loaded.
+    * 
+    * @param file The native file to load.
+    * 
+    * @throws IOException If the file is not a native file.
+    */
+   public NoteLabFileLoader(File file) throws IOException
+   {
+      if (file == null)
          throw new NullPointerException();
       
       String ext = InfoCenter.getFileExtension().toLowerCase();
@@ -96,16 +144,165 @@ public class NoteLabFileLoader
                                " file (a file of type "+ext+").");
       
       this.file = file;
-      this.listener = listener;
+      this.listener = null;
+      this.isPart = false;
+      this.binder = null;
       
-      this.curBinder = null;
+      this.pageVec = new Vector<Page>();
       this.curPage = null;
       this.curStroke = null;
+      this.penTable = new PenTable();
       
       this.lastID = null;
       
       this.screenRes = Unit.getScreenResolution();
       this.fileErrorVec = new Vector<String>();
+      
+      this.numThreads = Runtime.getRuntime().availableProcessors();
+   }
+   
+   /**
+    * Constructs a loader that parses part of a file.  Such a loader 
+    * only collects the pages it reads and does not have a listener.
+    * 
+    * @param file The file being loaded.
+    * @param screenRes The screen resolution the file was saved at.
+    * @param penTable The table of the pens shared by the strokes read.
+    */
+   private NoteLabFileLoader(File file, int screenRes, PenTable penTable)
+   {
+      this.file = file;
+      this.listener = null;
+      this.isPart = true;
+      this.binder = null;
+      
+      this.pageVec = new Vector<Page>();
+      this.curPage = null;
+      this.curStroke = null;
+      this.penTable = penTable;
+      
+      this.lastID = null;
+      
+      this.screenRes = screenRes;
+      this.fileErrorVec = new Vector<String>();
+      
+      this.numThreads = 1;
+   }
+   
+   /**
+    * Used to get the loader that can load the given native file.  Native 
+    * files are either stored in the chunked format described in 
+    * {@link ChunkedFileConstants} or as SVG files.  If the session's 
+    * journal applies to the compacted copy of the session, the copy is 
+    * loaded instead of the file.
+    * 
+    * @param file The native file to load.
+    * @param listener The listener informed when the file is loaded.
+    * 
+    * @return A loader that loads the file.
+    * 
+    * @throws IOException If the file could not be read or is not a 
+    *                     native file.
+    */
+   public static FileLoader getLoader(File file, 
+                                      NoteLabFileLoadedListener listener) 
+                                         throws IOException
+   {
+      if (file == null || listener == null)
+         throw new NullPointerException();
+      
+      File compactedFile = EditJournal.getCompactedSource(file);
+      if (compactedFile != null)
+         return new ChunkedFileLoader(compactedFile, file, listener);
+      
+      if (ChunkedFileLoader.isChunkedFile(file))
+         return new ChunkedFileLoader(file, listener);
+      
+      return new NoteLabFileLoader(file, listener);
+   }
+   
+   /**
+    * Reads the binder stored in the given native file without 
+    * constructing a canvas, changing the settings, or displaying any 
+    * messages.  The strokes of every page are read before this method 
+    * returns and the file is not kept open.
+    * 
+    * @param file The native file to load.
+    * @param numThreads The number of threads used to parse the pages of 
+    *                   the file.
+    * 
+    * @return The binder stored in the file.
+    * 
+    * @throws ParserConfigurationException If an XML parser cannot be 
+    *                                      constructed.
+    * @throws SAXException If the file is not a valid SVG file.
+    * @throws IOException If the file cannot be read or is not a native 
+    *                     file.
+    */
+   public static Binder loadBinder(File file, int numThreads) 
+                                      throws ParserConfigurationException, 
+                                             SAXException, 
+                                             IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      if (ChunkedFileLoader.isChunkedFile(file))
+      {
+         ChunkedFileLoader loader = new ChunkedFileLoader(file);
+         loader.loadFile();
+         return loader.getBinder();
+      }
+      
+      NoteLabFileLoader loader = new NoteLabFileLoader(file);
+      loader.setNumThreads(numThreads);
+      loader.loadFile();
+      return loader.getBinder();
+   }
+   
+   /**
+    * Used to get the binder read from this loader's file.
+    * 
+    * @return The binder or <code>null</code> if the file hasn't been 
+    *         loaded.
+    */
+   public Binder getBinder()
+   {
+      return this.binder;
+   }
+   
+   /**
+    * Used to get the number of threads used to parse the pages of a 
+    * file.  By default this is the number of processors available.
+    * 
+    * @return The number of threads used to parse pages.
+    */
+   public int getNumThreads()
+   {
+      return this.numThreads;
+   }
+   
+   /**
+    * Used to set the number of threads used to parse the pages of a 
+    * file.  If more than one thread is used, the file is read into 
+    * memory and split at the start of each page so that the pages can 
+    * be parsed concurrently.  Otherwise, the file is parsed as it is 
+    * read on the thread calling {@link #loadFile()}.
+    * 
+    * @param numThreads The number of threads used to parse pages.
+    * 
+    * @throws IllegalArgumentException If <code>numThreads</code> is not 
+    *                                  positive.
+    */
+   public void setNumThreads(int numThreads)
+   {
+      if (numThreads < 1)
+         throw new IllegalArgumentException("The number of threads used " +
+                                            "to load a file must be " +
+                                            "positive.  The number " +
+                                            numThreads+" is invalid.");
+      
+      this.numThreads = numThreads;
    }
    
    public void loadFile() throws ParserConfigurationException, 
@@ -119,6 +316,18 @@ public class NoteLabFileLoader
       //get a parser
       SAXParser parser = parserFac.newSAXParser();
       
+      if (this.numThreads > 1)
+      {
+         byte[] text = readDocument();
+         PageGroupScanner scanner = PageGroupScanner.scan(text);
+         if (scanner != null && scanner.getNumPages() > 1)
+            loadPages(scanner, parser);
+         else
+            parser.parse(new ByteArrayInputStream(text), this);
+         
+         return;
+      }
+      
       //parse the xml document
       //First try to open the file as a gzip file.  If an error occurs 
       //its because the file is not in gzip format so read the file 
@@ -190,17 +399,12 @@ public class NoteLabFileLoader
                                     SCALE_LEVEL, 
                                     this.screenRes, 
                                     UNIT_SCALE_LEVEL);
-            
-            if (this.curBinder == null)
-               this.curBinder = new FlowBinder(SCALE_LEVEL, 
-                                               SCALE_LEVEL, 
-                                               this.curPage);
-            else
-               this.curBinder.addPage(this.curPage);
+            this.pageVec.add(this.curPage);
          }
          else if (id.equals(STROKE_ID_NAME))
          {
-            this.curStroke = new Stroke(new Pen(SCALE_LEVEL), 
+            this.curStroke = new Stroke(this.penTable.getPen(
+                                           new Pen(SCALE_LEVEL)), 
                                         new Path(SCALE_LEVEL, 
                                                  SCALE_LEVEL));
             this.curPage.addStroke(this.curStroke);
@@ -287,7 +491,8 @@ public class NoteLabFileLoader
                                   attributes.getValue(i)+"\"");
             }
             
-            this.curStroke = new Stroke(new Pen(SCALE_LEVEL), 
+            this.curStroke = new Stroke(this.penTable.getPen(
+                                           new Pen(SCALE_LEVEL)), 
                                         new Path(SCALE_LEVEL, 
                                                  SCALE_LEVEL));
          }
@@ -297,9 +502,8 @@ public class NoteLabFileLoader
          Color color = getColor(attributes, STROKE_NAME);
          float width = getLineWidth(attributes);
          
-         Pen pen = this.curStroke.getPen();
-         pen.setColor(color);
-         pen.setWidth(width);
+         this.curStroke.setPen(this.penTable.getPen(width, color, 
+                                                    SCALE_LEVEL));
       }
       else if (localName.equals(LINE_TAG_NAME))
       {
@@ -321,7 +525,8 @@ public class NoteLabFileLoader
                                   attributes.getValue(i)+"\"");
             }
             
-            this.curStroke = new Stroke(new Pen(SCALE_LEVEL), 
+            this.curStroke = new Stroke(this.penTable.getPen(
+                                           new Pen(SCALE_LEVEL)), 
                                         new Path(SCALE_LEVEL, 
                                                  SCALE_LEVEL));
             return;
@@ -335,9 +540,8 @@ public class NoteLabFileLoader
             Color color = getColor(attributes, STROKE_NAME);
             float width = getLineWidth(attributes);
             
-            Pen pen = this.curStroke.getPen();
-            pen.setColor(color);
-            pen.setWidth(width);
+            this.curStroke.setPen(this.penTable.getPen(width, color, 
+                                                       SCALE_LEVEL));
          }
          
          // Always add the second point from the line segment
@@ -361,9 +565,20 @@ public class NoteLabFileLoader
    {
       super.endDocument();
       
-      this.curBinder.doLayout();
+      // loaders of part of a file leave the pages to the loader 
+      // that started them
+      if (this.isPart)
+         return;
       
-      CompositeCanvas canvas = new CompositeCanvas(this.curBinder, SCALE_LEVEL);
+      Page[] pages = this.pageVec.toArray(new Page[this.pageVec.size()]);
+      Binder binder = new FlowBinder(SCALE_LEVEL, SCALE_LEVEL, 
+                                     this.penTable, pages);
+      this.binder = binder;
+      
+      if (this.listener == null)
+         return;
+      
+      CompositeCanvas canvas = new CompositeCanvas(binder, SCALE_LEVEL);
       canvas.setFile(this.file);
       
       float unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
@@ -398,11 +613,11 @@ public class NoteLabFileLoader
       }
       */
       
-      int numPages = this.curBinder.getNumberOfPages();
+      int numPages = binder.getNumberOfPages();
       if (numPages > 0)
       {
-         this.curBinder.setCurrentPage(0);
-         Paper paper = this.curBinder.getCurrentPage().getPaper();
+         binder.setCurrentPage(0);
+         Paper paper = binder.getCurrentPage().getPaper();
          
          SettingsUtilities.setPaperType(paper.getPaperType());
          SettingsUtilities.setPaperColor(paper.getBackgroundColor());
@@ -415,6 +630,157 @@ public class NoteLabFileLoader
                                 error);
    }
    
+   /**
+    * Reads the text of this loader's file into memory, decompressing 
+    * it if it is compressed.
+    * 
+    * @return The text of the file.
+    * 
+    * @throws IOException If the file could not be read.
+    */
+   private byte[] readDocument() throws IOException
+   {
+      InputStream inStream = 
+                     new BufferedInputStream(new FileInputStream(this.file));
+      try
+      {
+         // gzip streams start with the bytes 0x1f 0x8b
+         inStream.mark(2);
+         int first = inStream.read();
+         int second = inStream.read();
+         inStream.reset();
+         
+         if (first == 0x1f && second == 0x8b)
+            inStream = new GZIPInputStream(inStream);
+         
+         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int numRead;
+         while ( (numRead = inStream.read(buffer)) != -1 )
+            outStream.write(buffer, 0, numRead);
+         
+         return outStream.toByteArray();
+      }
+      finally
+      {
+         inStream.close();
+      }
+   }
+   
+   /**
+    * Parses the header and each page found by the given scanner.  The 
+    * pages are parsed concurrently, each with its own loader, and added 
+    * to this loader in the order they appear in the file.  When done, 
+    * the binder is assembled as if the whole file had been parsed by 
+    * this loader.
+    * 
+    * @param scanner The scanner that has split this loader's file.
+    * @param parser The parser used to parse the header.
+    */
+   private void loadPages(final PageGroupScanner scanner, SAXParser parser) 
+                             throws ParserConfigurationException, 
+                                    SAXException, 
+                                    IOException
+   {
+      // the header describes the screen resolution the pages use
+      NoteLabFileLoader headerLoader = 
+                           new NoteLabFileLoader(this.file, this.screenRes, 
+                                                 this.penTable);
+      parser.parse(scanner.getHeaderStream(), headerLoader);
+      this.screenRes = headerLoader.screenRes;
+      addResults(headerLoader);
+      
+      final int res = this.screenRes;
+      final PenTable table = this.penTable;
+      int numPages = scanner.getNumPages();
+      ExecutorService pool = 
+         Executors.newFixedThreadPool(Math.min(this.numThreads, numPages));
+      try
+      {
+         Vector<Future<NoteLabFileLoader>> futureVec = 
+                                    new Vector<Future<NoteLabFileLoader>>();
+         for (int i=0; i<numPages; i++)
+         {
+            final int index = i;
+            futureVec.add(pool.submit(new Callable<NoteLabFileLoader>()
+            {
+               public NoteLabFileLoader call() throws Exception
+               {
+                  // SAX parser factories are not thread safe
+                  SAXParserFactory pageFac = SAXParserFactory.newInstance();
+                  pageFac.setNamespaceAware(true);
+                  
+                  NoteLabFileLoader pageLoader = 
+                     new NoteLabFileLoader(NoteLabFileLoader.this.file, res, 
+                                           table);
+                  pageFac.newSAXParser().parse(scanner.getPageStream(index), 
+                                               pageLoader);
+                  return pageLoader;
+               }
+            }));
+         }
+         
+         for (Future<NoteLabFileLoader> future : futureVec)
+            addResults(getResult(future));
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+      
+      endDocument();
+   }
+   
+   private static NoteLabFileLoader getResult(
+                                       Future<NoteLabFileLoader> future) 
+                                          throws ParserConfigurationException, 
+                                                 SAXException, 
+                                                 IOException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Loading the file was " +
+                                          "interrupted.");
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof SAXException)
+            throw (SAXException)cause;
+         if (cause instanceof IOException)
+            throw (IOException)cause;
+         if (cause instanceof ParserConfigurationException)
+            throw (ParserConfigurationException)cause;
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         
+         throw new SAXException(e);
+      }
+   }
+   
+   /**
+    * Adds the pages, messages, and errors found by the given loader of 
+    * part of this loader's file to this loader.
+    * 
+    * @param partLoader The loader of part of this loader's file.
+    */
+   private void addResults(NoteLabFileLoader partLoader)
+   {
+      this.pageVec.addAll(partLoader.pageVec);
+      getMessageBuffer().append(partLoader.getMessageBuffer());
+      
+      for (String error : partLoader.fileErrorVec)
+         if (!this.fileErrorVec.contains(error))
+            this.fileErrorVec.add(error);
+   }
+   
    private void displayErrorMessage(String message)
    {
       int size = GuiSettingsConstants.BUTTON_SIZE;
@@ -534,32 +900,34 @@ public class NoteLabFileLoader
          throw new NullPointerException();
       
       mValStr = mValStr.trim();
-      if (mValStr.length() < 3)
+      int unitIndex = mValStr.length()-2;
+      if (unitIndex < 1)
          return 0;
       
-      String unitStr = mValStr.substring(mValStr.length()-2).trim();
-      String valStr = mValStr.substring(0, mValStr.length()-2).trim();
-      
+      // The unit is compared and the value is read in place since this 
+      // is done for every point of a file that uses line elements.
       Unit unit = Unit.INCH;
-      if (unitStr.equals(INCH_UNIT_NAME))
+      if (mValStr.startsWith(INCH_UNIT_NAME, unitIndex))
          unit = Unit.INCH;
-      else if (unitStr.equals(CM_UNIT_NAME))
+      else if (mValStr.startsWith(CM_UNIT_NAME, unitIndex))
          unit = Unit.CM;
-      else if (unitStr.equals(PIXEL_UNIT_NAME))
+      else if (mValStr.startsWith(PIXEL_UNIT_NAME, unitIndex))
          unit = Unit.PIXEL;
       else
       {
          System.out.println("LoadNoteLabFile:  Found an unsupported unit '"+
-                            unitStr+"'.  Using the default unit '"+unit+"'.");
+                            mValStr.substring(unitIndex).trim()+
+                            "'.  Using the default unit '"+unit+"'.");
       }
       
       double val = 0;
       try
       {
-         val = Double.parseDouble(valStr);
+         val = PathDataParser.parseDouble(mValStr, 0, unitIndex);
       }
       catch (NumberFormatException e)
       {
+         String valStr = mValStr.substring(0, unitIndex).trim();
          System.out.println("LoadNoteLabFile:  The value '"+valStr+
                             "' is not a proper double precision number.  " +
                             "The default value of '"+val+"' will be used.");
@@ -0,0 +1,480 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.noteLab;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Vector;
+
+/**
+ * Splits the text of a native SVG file into the groups that describe
+ * its pages so that each page can be parsed independently of the
+ * others.  The text is scanned only far enough to find the start and
+ * end of each element.  Attributes are not decoded and no objects are
+ * created for elements other than pages.
+ * <br><br>
+ * The text before the first page is called the header.  It contains
+ * the start of the binder's group, which describes the screen
+ * resolution the file was saved at.  Since the elements containing
+ * the pages are not closed in the header, the stream returned by
+ * {@link #getHeaderStream()} closes them so that it forms a complete
+ * document.
+ * 
+ * @author Dominic Kramer
+ */
+class PageGroupScanner implements NoteLabFileConstants
+{
+   private static final byte[] PAGE_ID_BYTES = getAsciiBytes(PAGE_ID_NAME);
+   private static final byte[] ID_BYTES = getAsciiBytes(ID_NAME);
+   
+   private byte[] text;
+   private int headerEnd;
+   private String headerSuffix;
+   private int[] pageStarts;
+   private int[] pageEnds;
+   
+   private PageGroupScanner(byte[] text, int headerEnd, String headerSuffix,
+                            int[] pageStarts, int[] pageEnds)
+   {
+      this.text = text;
+      this.headerEnd = headerEnd;
+      this.headerSuffix = headerSuffix;
+      this.pageStarts = pageStarts;
+      this.pageEnds = pageEnds;
+   }
+   
+   /**
+    * Scans the given UTF-8 encoded text of a native file for the groups
+    * that describe its pages.
+    * 
+    * @param text The text of the file.
+    * 
+    * @return The pages found or <code>null</code> if the file does not
+    *         contain any pages or contains markup that this class cannot
+    *         safely split, such as an internal DTD subset or a text
+    *         encoding other than UTF-8.  In this case the file should be
+    *         parsed as a whole.
+    */
+   public static PageGroupScanner scan(byte[] text)
+   {
+      if (text == null)
+         throw new NullPointerException();
+      
+      int length = text.length;
+      
+      // UTF-16 text and text that declares an encoding that is not
+      // compatible with ASCII cannot be split on byte boundaries
+      if (length < 2 || text[0] == (byte)0xFE || text[0] == (byte)0xFF ||
+          text[0] == 0 || text[1] == 0)
+         return null;
+      
+      Vector<String> stack = new Vector<String>();
+      Vector<Integer> startVec = new Vector<Integer>();
+      Vector<Integer> endVec = new Vector<Integer>();
+      
+      int headerEnd = -1;
+      String headerSuffix = null;
+      int pageDepth = -1;
+      int pageStart = -1;
+      
+      int pos = 0;
+      int tagEnd;
+      byte next;
+      while (true)
+      {
+         pos = indexOf(text, (byte)'<', pos);
+         if (pos < 0)
+            break;
+         
+         if (pos+1 >= length)
+            return null;
+         
+         next = text[pos+1];
+         if (next == '?')
+         {
+            tagEnd = indexOf(text, "?>", pos+2);
+            if (tagEnd < 0)
+               return null;
+            
+            if (isXMLDecl(text, pos) && !isUTF8(text, pos, tagEnd))
+               return null;
+            
+            pos = tagEnd+2;
+         }
+         else if (next == '!')
+         {
+            if (startsWith(text, pos, "<!--"))
+            {
+               tagEnd = indexOf(text, "-->", pos+4);
+               if (tagEnd < 0)
+                  return null;
+               
+               pos = tagEnd+3;
+            }
+            else if (startsWith(text, pos, "<![CDATA["))
+            {
+               tagEnd = indexOf(text, "]]>", pos+9);
+               if (tagEnd < 0)
+                  return null;
+               
+               pos = tagEnd+3;
+            }
+            else
+            {
+               // A document type declaration.  An internal subset could
+               // declare entities the pages use, so it isn't supported.
+               tagEnd = findTagEnd(text, pos);
+               if (tagEnd < 0 || contains(text, pos, tagEnd, (byte)'['))
+                  return null;
+               
+               pos = tagEnd+1;
+            }
+         }
+         else if (next == '/')
+         {
+            tagEnd = findTagEnd(text, pos);
+            if (tagEnd < 0 || stack.isEmpty())
+               return null;
+            
+            String name = getName(text, pos+2);
+            if (!name.equals(stack.remove(stack.size()-1)))
+               return null;
+            
+            if (pageStart >= 0 && stack.size() == pageDepth)
+            {
+               startVec.add(pageStart);
+               endVec.add(tagEnd+1);
+               pageStart = -1;
+            }
+            
+            pos = tagEnd+1;
+         }
+         else
+         {
+            tagEnd = findTagEnd(text, pos);
+            if (tagEnd < 0)
+               return null;
+            
+            String name = getName(text, pos+1);
+            boolean isEmpty = (text[tagEnd-1] == '/');
+            
+            if (!isEmpty)
+            {
+               if (pageStart < 0 && isPageGroup(text, pos, tagEnd, name))
+               {
+                  if (headerEnd < 0)
+                  {
+                     headerEnd = pos;
+                     headerSuffix = getClosingTags(stack);
+                     pageDepth = stack.size();
+                  }
+                  else if (stack.size() != pageDepth)
+                     return null;
+                  
+                  pageStart = pos;
+               }
+               
+               stack.add(name);
+            }
+            
+            pos = tagEnd+1;
+         }
+      }
+      
+      if (!stack.isEmpty() || pageStart >= 0 || startVec.isEmpty())
+         return null;
+      
+      int numPages = startVec.size();
+      int[] pageStarts = new int[numPages];
+      int[] pageEnds = new int[numPages];
+      for (int i=0; i<numPages; i++)
+      {
+         pageStarts[i] = startVec.get(i);
+         pageEnds[i] = endVec.get(i);
+      }
+      
+      return new PageGroupScanner(text, headerEnd, headerSuffix,
+                                  pageStarts, pageEnds);
+   }
+   
+   /**
+    * Used to get the number of pages found.
+    * 
+    * @return The number of pages found.
+    */
+   public int getNumPages()
+   {
+      return this.pageStarts.length;
+   }
+   
+   /**
+    * Used to get a stream containing the header of the scanned file
+    * followed by the end tags of the elements left open by the header.
+    * 
+    * @return A stream containing a complete document without any pages.
+    */
+   public InputStream getHeaderStream()
+   {
+      byte[] suffix = getAsciiBytes(this.headerSuffix);
+      return new SequenceInputStream(
+                        new ByteArrayInputStream(this.text,
+                                                 0, this.headerEnd),
+                        new ByteArrayInputStream(suffix));
+   }
+   
+   /**
+    * Used to get a stream containing the group that describes the
+    * page with the given index.  The stream reads directly from the
+    * scanned text.
+    * 
+    * @param index The index of the page.
+    * 
+    * @return A stream containing a document whose root is the page's
+    *         group.
+    */
+   public InputStream getPageStream(int index)
+   {
+      int start = this.pageStarts[index];
+      return new ByteArrayInputStream(this.text, start,
+                                      this.pageEnds[index]-start);
+   }
+   
+   private static boolean isPageGroup(byte[] text, int start, int end,
+                                      String name)
+   {
+      if (!name.equals(G_NAME))
+         return false;
+      
+      // look for an id attribute, preceded by whitespace, whose
+      // value is the page's identifier
+      int pos = start+1+name.length();
+      while (pos < end)
+      {
+         pos = indexOf(text, ID_BYTES, pos, end);
+         if (pos < 0)
+            return false;
+         
+         int valStart = skipWhitespace(text, pos+ID_BYTES.length, end);
+         if (isWhitespace(text[pos-1]) && valStart < end &&
+             text[valStart] == '=')
+         {
+            valStart = skipWhitespace(text, valStart+1, end);
+            if (valStart >= end)
+               return false;
+            
+            byte quote = text[valStart];
+            int valEnd = valStart+1+PAGE_ID_BYTES.length;
+            return (quote == '"' || quote == '\'') &&
+                   valEnd < end &&
+                   text[valEnd] == quote &&
+                   regionMatches(text, valStart+1, PAGE_ID_BYTES);
+         }
+         
+         pos += ID_BYTES.length;
+      }
+      
+      return false;
+   }
+   
+   /**
+    * Finds the <code>&gt;</code> that ends the tag starting at the given
+    * index.  Characters within quoted attribute values are skipped.
+    */
+   private static int findTagEnd(byte[] text, int start)
+   {
+      byte quote = 0;
+      byte cur;
+      for (int i=start+1; i<text.length; i++)
+      {
+         cur = text[i];
+         if (quote != 0)
+         {
+            if (cur == quote)
+               quote = 0;
+         }
+         else if (cur == '"' || cur == '\'')
+            quote = cur;
+         else if (cur == '>')
+            return i;
+         else if (cur == '<')
+            return -1;
+      }
+      
+      return -1;
+   }
+   
+   private static String getName(byte[] text, int start)
+   {
+      int end = start;
+      byte cur;
+      while (end < text.length)
+      {
+         cur = text[end];
+         if (cur == '>' || cur == '/' || isWhitespace(cur))
+            break;
+         
+         end++;
+      }
+      
+      // the local name of the element
+      int localStart = start;
+      for (int i=start; i<end; i++)
+         if (text[i] == ':')
+            localStart = i+1;
+      
+      return getString(text, localStart, end);
+   }
+   
+   private static String getClosingTags(Vector<String> stack)
+   {
+      StringBuffer buffer = new StringBuffer();
+      for (int i=stack.size()-1; i>=0; i--)
+      {
+         buffer.append("</");
+         buffer.append(stack.get(i));
+         buffer.append(">");
+      }
+      
+      return buffer.toString();
+   }
+   
+   private static boolean isXMLDecl(byte[] text, int start)
+   {
+      return startsWith(text, start, "<?xml") &&
+             start+5 < text.length &&
+             isWhitespace(text[start+5]);
+   }
+   
+   private static boolean isUTF8(byte[] text, int start, int end)
+   {
+      int pos = indexOf(text, getAsciiBytes("encoding"), start, end);
+      if (pos < 0)
+         return true;
+      
+      String decl = getString(text, pos, end);
+      int doubleIndex = decl.indexOf('"');
+      int singleIndex = decl.indexOf('\'');
+      int quoteIndex = (doubleIndex < 0 || 
+                        (singleIndex >= 0 && singleIndex < doubleIndex))?
+                           (singleIndex):(doubleIndex);
+      if (quoteIndex < 0)
+         return false;
+      
+      String encoding = decl.substring(quoteIndex+1).trim();
+      return encoding.toUpperCase().startsWith("UTF-8");
+   }
+   
+   private static boolean isWhitespace(byte b)
+   {
+      return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+   }
+   
+   private static int skipWhitespace(byte[] text, int start, int end)
+   {
+      while (start < end && isWhitespace(text[start]))
+         start++;
+      
+      return start;
+   }
+   
+   private static boolean contains(byte[] text, int start, int end, byte b)
+   {
+      for (int i=start; i<end; i++)
+         if (text[i] == b)
+            return true;
+      
+      return false;
+   }
+   
+   private static int indexOf(byte[] text, byte b, int start)
+   {
+      for (int i=start; i<text.length; i++)
+         if (text[i] == b)
+            return i;
+      
+      return -1;
+   }
+   
+   private static int indexOf(byte[] text, String str, int start)
+   {
+      return indexOf(text, getAsciiBytes(str), start, text.length);
+   }
+   
+   private static int indexOf(byte[] text, byte[] pattern,
+                              int start, int end)
+   {
+      for (int i=start; i+pattern.length<=end; i++)
+         if (regionMatches(text, i, pattern))
+            return i;
+      
+      return -1;
+   }
+   
+   private static boolean startsWith(byte[] text, int start, String str)
+   {
+      byte[] pattern = getAsciiBytes(str);
+      return start+pattern.length <= text.length &&
+             regionMatches(text, start, pattern);
+   }
+   
+   private static boolean regionMatches(byte[] text, int start,
+                                        byte[] pattern)
+   {
+      if (start+pattern.length > text.length)
+         return false;
+      
+      for (int i=0; i<pattern.length; i++)
+         if (text[start+i] != pattern[i])
+            return false;
+      
+      return true;
+   }
+   
+   private static String getString(byte[] text, int start, int end)
+   {
+      try
+      {
+         return new String(text, start, end-start, "UTF-8");
+      }
+      catch (UnsupportedEncodingException e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+   
+   private static byte[] getAsciiBytes(String str)
+   {
+      try
+      {
+         return str.getBytes("US-ASCII");
+      }
+      catch (UnsupportedEncodingException e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+}
@@ -0,0 +1,203 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.io.pdf;
+
+import java.awt.Graphics2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import noteLab.model.Page;
+import noteLab.util.io.ParallelPageExporter;
+import noteLab.util.render.SwingRenderer2D;
+import noteLab.util.render.SwingRenderer2D.RenderMode;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.FontFactory;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.DefaultFontMapper;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfImportedPage;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfTemplate;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Exports pages to a PDF file in which each page is scaled to fill a
+ * page of the document.  The <code>PdfWriter</code> of a document
+ * cannot be used by more than one thread.  Thus, each page is rendered
+ * on a worker thread into a separate single page document held in
+ * memory, and the pages of those documents are imported, in order, into
+ * the document being written.
+ * 
+ * @author Dominic Kramer
+ */
+public class PDFExporter extends ParallelPageExporter<byte[]>
+{
+   private Rectangle pageSize;
+   
+   private Document document;
+   private PdfWriter pdfWriter;
+   private PdfContentByte content;
+   
+   /**
+    * Constructs an exporter whose pages have iText's default page size.
+    */
+   public PDFExporter()
+   {
+      super();
+      
+      this.pageSize = new Document().getPageSize();
+      
+      this.document = null;
+      this.pdfWriter = null;
+      this.content = null;
+   }
+   
+   /**
+    * Writes a PDF document containing the given pages to the given
+    * stream.  The stream is closed when the document is complete.
+    * 
+    * @param pages The pages to export.
+    * @param output The stream to which the document is written.
+    * 
+    * @throws IOException If a page cannot be rendered or the document
+    *                     cannot be written.
+    */
+   public void export(Iterable<Page> pages, OutputStream output)
+                         throws IOException
+   {
+      if (pages == null || output == null)
+         throw new NullPointerException();
+      
+      // Configure the fonts
+      FontFactory.registerDirectories();
+      
+      this.document = new Document(this.pageSize);
+      try
+      {
+         this.pdfWriter = PdfWriter.getInstance(this.document, output);
+      }
+      catch (DocumentException e)
+      {
+         throw newIOException(e);
+      }
+      
+      this.document.open();
+      this.content = this.pdfWriter.getDirectContent();
+      
+      boolean exported = false;
+      try
+      {
+         exportPages(pages);
+         exported = true;
+      }
+      finally
+      {
+         // Close the document.  Closing a document fails if no pages 
+         // were written to it.  Thus, if exporting failed, the error 
+         // from closing is ignored so that the error that caused the 
+         // export to fail is the one reported.
+         try
+         {
+            this.document.close();
+         }
+         catch (RuntimeException e)
+         {
+            if (exported)
+               throw e;
+         }
+         finally
+         {
+            this.document = null;
+            this.pdfWriter = null;
+            this.content = null;
+         }
+      }
+   }
+   
+   @Override
+   protected byte[] renderPage(Page page) throws Exception
+   {
+      float width = this.pageSize.getWidth();
+      float height = this.pageSize.getHeight();
+      
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      Document doc = new Document(this.pageSize);
+      PdfWriter writer = PdfWriter.getInstance(doc, output);
+      doc.open();
+      
+      PdfContentByte pageContent = writer.getDirectContent();
+      
+      // Make a template onto which data is written
+      PdfTemplate template = pageContent.createTemplate(width, height);
+      
+      // Get the template's Graphics2D object
+      Graphics2D g2d = template.createGraphics(width, height,
+                                               new DefaultFontMapper());
+      
+      // Configure the template
+      template.setWidth(width);
+      template.setHeight(height);
+      
+      // Render the page
+      g2d.scale(width/page.getWidth(),
+                height/page.getHeight());
+      
+      SwingRenderer2D pdf2D = new SwingRenderer2D();
+      pdf2D.setSwingGraphics(g2d, RenderMode.Appearance);
+      page.renderInto(pdf2D);
+      
+      // Dispose of the graphics object
+      g2d.dispose();
+      
+      // Add the template to the content
+      pageContent.addTemplate(template, 0, 0);
+      
+      doc.close();
+      
+      return output.toByteArray();
+   }
+   
+   @Override
+   protected void writePage(int pageNum, byte[] rendered)
+                               throws IOException
+   {
+      PdfReader reader = new PdfReader(rendered);
+      PdfImportedPage page = this.pdfWriter.getImportedPage(reader, 1);
+      this.content.addTemplate(page, 0, 0);
+      this.pdfWriter.freeReader(reader);
+      
+      this.document.newPage();
+   }
+   
+   private static IOException newIOException(Exception cause)
+   {
+      IOException error = new IOException(cause.getMessage());
+      error.initCause(cause);
+      return error;
+   }
+}
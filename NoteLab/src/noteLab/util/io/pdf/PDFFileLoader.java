@@ -24,9 +24,13 @@
 
 package noteLab.util.io.pdf;
 
+import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Vector;
 
+import javax.swing.SwingUtilities;
 import javax.xml.parsers.ParserConfigurationException;
 
 import noteLab.model.Page;
@@ -35,6 +39,7 @@ import noteLab.model.binder.FlowBinder;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.model.pdf.PDFFileInfo;
 import noteLab.model.pdf.PDFPageInfo;
+import noteLab.model.pdf.PDFPageSizeReader;
 import noteLab.util.geom.unit.Unit;
 import noteLab.util.io.FileLoader;
 import noteLab.util.io.noteLab.NoteLabFileLoadedListener;
@@ -42,10 +47,37 @@ import noteLab.util.settings.SettingsUtilities;
 
 import org.xml.sax.SAXException;
 
+/**
+ * Loads a PDF file by constructing a page for each page of the file 
+ * that uses the PDF page as its background.  Each page is given the 
+ * size of its PDF page, which is read from the file's page tree without 
+ * parsing the content of the page.
+ * <br><br>
+ * In progressive mode, which is the default, only the first 
+ * {@link #NUM_INITIAL_PAGES NUM_INITIAL_PAGES} pages are constructed 
+ * before the listener is informed that the file has been loaded.  The 
+ * remaining pages are constructed on a background thread and added to 
+ * the end of the canvas's binder on the event dispatch thread in groups 
+ * of {@link #PAGE_GROUP_SIZE PAGE_GROUP_SIZE} pages.
+ * 
+ * @author Dominic Kramer
+ */
 public class PDFFileLoader implements FileLoader
 {
+   /** The number of pages constructed before the file is displayed. */
+   public static final int NUM_INITIAL_PAGES = 4;
+   
+   /** The number of pages added to the binder at a time. */
+   public static final int PAGE_GROUP_SIZE = 50;
+   
    private File file;
    private NoteLabFileLoadedListener listener;
+   private boolean isProgressive;
+   
+   private PDFFileInfo pdfFileInfo;
+   private PDFPageSizeReader sizeReader;
+   private int screenRes;
+   private float unitScaleFactor;
    
    public PDFFileLoader(File pdfFile, NoteLabFileLoadedListener listener)
    {
@@ -54,36 +86,201 @@ public class PDFFileLoader implements FileLoader
       
       this.file = pdfFile;
       this.listener = listener;
+      this.isProgressive = true;
    }
-
+   
+   /**
+    * Used to determine if the pages after the first few pages are 
+    * loaded in the background after the file has been displayed.
+    * 
+    * @return <code>true</code> if pages are loaded progressively.
+    */
+   public boolean isProgressive()
+   {
+      return this.isProgressive;
+   }
+   
+   /**
+    * Used to set if the pages after the first few pages are loaded in 
+    * the background after the file has been displayed or if all of the 
+    * pages are loaded before the listener is informed.
+    * 
+    * @param isProgressive <code>true</code> if pages should be loaded 
+    *                      progressively.
+    */
+   public void setProgressive(boolean isProgressive)
+   {
+      this.isProgressive = isProgressive;
+   }
+   
    public void loadFile() throws ParserConfigurationException, 
                                  SAXException,
                                  IOException
    {
-      PDFFileInfo pdfFileInfo = new PDFFileInfo(this.file);
+      this.pdfFileInfo = new PDFFileInfo(this.file);
+      this.screenRes = Unit.getScreenResolution();
+      this.unitScaleFactor = SettingsUtilities.getUnitScaleFactor();
       
-      int res = Unit.getScreenResolution();
+      try
+      {
+         this.sizeReader = 
+                  new PDFPageSizeReader(this.pdfFileInfo.getPDFFile());
+      }
+      catch (IOException e)
+      {
+         printSizeError(e);
+         this.sizeReader = null;
+      }
       
-      int numPages = pdfFileInfo.getPDFFile().getNumPages();
-      Page[] pages = new Page[numPages];
+      final int numPages = this.pdfFileInfo.getPDFFile().getNumPages();
+      int numInitial = numPages;
+      if (this.isProgressive)
+         numInitial = Math.min(numPages, NUM_INITIAL_PAGES);
       
+      Page[] pages = new Page[numInitial];
       for (int i=0; i<pages.length; i++)
       {
-         pages[i] = new Page(PaperType.Plain, 1, 1, 
-                             res, 
-                             SettingsUtilities.getUnitScaleFactor());
          // Note:  Pages are numbered starting at 1
-         pages[i].getPaper().
-                     setPDFPageInfo(new PDFPageInfo(pdfFileInfo, i+1));
+         pages[i] = createPage(i+1);
       }
       
       FlowBinder binder = new FlowBinder(1, 1, pages);
-      CompositeCanvas canvas = new CompositeCanvas(binder, 1);
+      final CompositeCanvas canvas = new CompositeCanvas(binder, 1);
       
       // This should not be necessary
       //for (Page page : binder)
       //   page.getPaper().setPaperType(PaperType.Plain);
       
       this.listener.noteLabFileLoaded(canvas, "");
+      
+      if (numInitial == numPages)
+         return;
+      
+      final int firstPage = numInitial+1;
+      Thread pageThread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            loadRemainingPages(canvas, firstPage, numPages);
+         }
+      });
+      pageThread.setDaemon(true);
+      pageThread.setPriority(Thread.MIN_PRIORITY);
+      pageThread.start();
+   }
+   
+   /**
+    * Constructs the pages with the given page numbers and adds them to 
+    * the given canvas's binder a group at a time on the event dispatch 
+    * thread.  This method waits for each group of pages to be added 
+    * before constructing the next group.
+    * 
+    * @param canvas The canvas to add pages to.
+    * @param firstPage The number of the first page to add.
+    * @param lastPage The number of the last page to add.
+    */
+   private void loadRemainingPages(final CompositeCanvas canvas, 
+                                   int firstPage, int lastPage)
+   {
+      int pageNum = firstPage;
+      while (pageNum <= lastPage)
+      {
+         final Vector<Page> pageVec = new Vector<Page>(PAGE_GROUP_SIZE);
+         for (int i=0; i<PAGE_GROUP_SIZE && pageNum <= lastPage; i++)
+            pageVec.add(createPage(pageNum++));
+         
+         try
+         {
+            SwingUtilities.invokeAndWait(new Runnable()
+            {
+               public void run()
+               {
+                  // the new pages are shown at the canvas's zoom level
+                  float zoomLevel = canvas.getZoomLevel();
+                  for (Page page : pageVec)
+                     page.scaleTo(zoomLevel, zoomLevel);
+                  
+                  canvas.getBinder().addPages(pageVec);
+               }
+            });
+         }
+         catch (InterruptedException e)
+         {
+            return;
+         }
+         catch (InvocationTargetException e)
+         {
+            System.err.println(PDFFileLoader.class.getName()+
+                               " ERROR:  The pages of the file '"+
+                               this.file+"' starting at page "+
+                               pageVec.firstElement().getPaper().
+                                  getPDFPageInfo().getPageNum()+
+                               " could not be added.");
+            e.getCause().printStackTrace();
+            return;
+         }
+      }
+   }
+   
+   /**
+    * Constructs the page that has the PDF page with the given number 
+    * as its background.  Pages must be constructed in order since their 
+    * sizes are read in order.  If the size of a page cannot be read, 
+    * it is given the default page size.
+    * 
+    * @param pageNum The number of the PDF page, starting at 1.
+    * 
+    * @return The page.
+    */
+   private Page createPage(int pageNum)
+   {
+      Rectangle2D.Float size = null;
+      if (this.sizeReader != null)
+      {
+         try
+         {
+            size = this.sizeReader.readNextSize();
+         }
+         catch (IOException e)
+         {
+            printSizeError(e);
+            this.sizeReader = null;
+         }
+      }
+      
+      Page page;
+      if (size == null || size.width <= 0 || size.height <= 0)
+         page = new Page(PaperType.Plain, 1, 1, 
+                         this.screenRes, 
+                         this.unitScaleFactor);
+      else
+         page = new Page(getPixels(size.width), getPixels(size.height), 
+                         PaperType.Plain, 1, 1, 
+                         this.screenRes, 
+                         this.unitScaleFactor);
+      
+      page.getPaper().
+              setPDFPageInfo(new PDFPageInfo(this.pdfFileInfo, pageNum));
+      
+      return page;
+   }
+   
+   /**
+    * Converts a length in points, of which there are 72 in an inch, 
+    * to pixels.
+    */
+   private float getPixels(float points)
+   {
+      return Unit.getValue(points/72f, Unit.INCH, Unit.PIXEL, 
+                           this.screenRes, this.unitScaleFactor);
+   }
+   
+   private void printSizeError(IOException e)
+   {
+      System.err.println(PDFFileLoader.class.getName()+
+                         " ERROR:  The page sizes of the file '"+
+                         this.file+"' could not be read.  The default " +
+                         "page size will be used.  The error returned " +
+                         "was:  "+e.getMessage());
    }
 }
@@ -0,0 +1,337 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.render;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Vector;
+
+import noteLab.model.Paper;
+import noteLab.model.Path;
+import noteLab.model.geom.FloatPoint2D;
+import noteLab.util.geom.Bounded;
+
+/**
+ * A renderer that records what is rendered into it as a list of
+ * shapes and the state used to draw them.  The list can then be
+ * replayed into a <code>SwingRenderer2D</code> any number of times
+ * without the rendered objects being traversed or their shapes being
+ * built again.
+ * <br><br>
+ * A paper that shows a page of a PDF file can only be rendered using
+ * a <code>Graphics2D</code> object.  Thus, the paper itself is
+ * recorded and it is rendered directly into the renderer the list is
+ * replayed into.
+ * 
+ * @author Dominic Kramer
+ */
+public class DisplayListRenderer2D extends Renderer2D
+{
+   private Vector<Command> commandVec;
+   
+   private Color color;
+   private float width;
+   
+   /**
+    * The paper being rendered directly when replayed or
+    * <code>null</code> if commands are currently being recorded.
+    */
+   private Renderable skipped;
+   
+   public DisplayListRenderer2D()
+   {
+      super();
+      
+      this.commandVec = new Vector<Command>();
+      this.color = Color.BLACK;
+      this.width = 0;
+      this.skipped = null;
+   }
+   
+   /**
+    * Renders everything recorded by this renderer into the given
+    * renderer.
+    * 
+    * @param renderer The renderer to render into.
+    */
+   public void replay(SwingRenderer2D renderer)
+   {
+      if (renderer == null)
+         throw new NullPointerException();
+      
+      for (Command command : this.commandVec)
+         command.replay(renderer);
+   }
+   
+   private void addCommand(Command command)
+   {
+      if (this.skipped == null)
+         this.commandVec.add(command);
+   }
+   
+   @Override
+   public void drawPath(Path path)
+   {
+      if (path == null)
+         throw new NullPointerException();
+      
+      int numPts = path.getNumItems();
+      if (numPts < 1)
+         return;
+      
+      if (numPts == 1)
+      {
+         FloatPoint2D pt1 = path.getFirst();
+         drawLine(pt1, pt1);
+         return;
+      }
+      
+      Path2D.Float floatPath = new Path2D.Float(Path2D.WIND_NON_ZERO,
+                                                numPts);
+      
+      FloatPoint2D pt = path.getItemAt(0);
+      floatPath.moveTo(pt.getX(), pt.getY());
+      
+      for (int i=1; i<numPts; i++)
+      {
+         pt = path.getItemAt(i);
+         if (pt != null)
+            floatPath.lineTo(pt.getX(), pt.getY());
+      }
+      
+      addCommand(new ShapeCommand(floatPath, false));
+   }
+   
+   @Override
+   public void drawLine(FloatPoint2D pt1, FloatPoint2D pt2)
+   {
+      if (pt1 == null || pt2 == null)
+         throw new NullPointerException();
+      
+      addCommand(new ShapeCommand(new Line2D.Float(pt1.getX(),
+                                                   pt1.getY(),
+                                                   pt2.getX(),
+                                                   pt2.getY()),
+                                  false));
+   }
+   
+   @Override
+   public void drawRectangle(float x, float y, float width, float height)
+   {
+      addCommand(new ShapeCommand(new Rectangle2D.Float(x, y,
+                                                        width, height),
+                                  false));
+   }
+   
+   @Override
+   public void fillRectangle(float x, float y, float width, float height)
+   {
+      addCommand(new ShapeCommand(new Rectangle2D.Float(x, y,
+                                                        width, height),
+                                  true));
+   }
+   
+   @Override
+   public void setSelected(boolean selected)
+   {
+      super.setSelected(selected);
+      
+      // This method is invoked by the superclass's constructor before
+      // the command vector is created.
+      if (this.commandVec != null)
+         addCommand(new StateCommand(null, -1, selected));
+   }
+   
+   @Override
+   public void setColor(Color color)
+   {
+      // Like a Graphics2D object, a null color is ignored
+      if (color == null)
+         return;
+      
+      this.color = color;
+      addCommand(new StateCommand(color, -1, null));
+   }
+   
+   @Override
+   public Color getColor()
+   {
+      return this.color;
+   }
+   
+   @Override
+   public void setLineWidth(float width)
+   {
+      this.width = width;
+      addCommand(new StateCommand(null, width, null));
+   }
+   
+   @Override
+   public float getLineWidth()
+   {
+      return this.width;
+   }
+   
+   @Override
+   public void translate(float x, float y)
+   {
+      addCommand(new TranslateCommand(x, y));
+   }
+   
+   @Override
+   public void finish()
+   {
+      this.commandVec.trimToSize();
+   }
+   
+   @Override
+   public boolean isInClipRegion(Bounded bounded)
+   {
+      return true;
+   }
+   
+   @Override
+   public boolean isCompletelyInClipRegion(Bounded bounded)
+   {
+      return true;
+   }
+   
+   @Override
+   protected void beginGroupImpl(Renderable renderable, String desc,
+                                 float xScaleFactor, float yScaleFactor)
+   {
+      if (this.skipped != null || !(renderable instanceof Paper))
+         return;
+      
+      Paper paper = (Paper)renderable;
+      if (paper.getPDFPageInfo() == null)
+         return;
+      
+      // The paper is rendered directly when replayed.  Thus, everything
+      // it renders before its group ends isn't recorded.
+      addCommand(new RenderableCommand(paper));
+      this.skipped = paper;
+   }
+   
+   @Override
+   protected void endGroupImpl(Renderable renderable)
+   {
+      if (renderable == this.skipped)
+         this.skipped = null;
+   }
+   
+   private interface Command
+   {
+      public void replay(SwingRenderer2D renderer);
+   }
+   
+   private static class ShapeCommand implements Command
+   {
+      private Shape shape;
+      private boolean fill;
+      
+      public ShapeCommand(Shape shape, boolean fill)
+      {
+         this.shape = shape;
+         this.fill = fill;
+      }
+      
+      public void replay(SwingRenderer2D renderer)
+      {
+         if (this.fill)
+            renderer.fillShape(this.shape);
+         else
+            renderer.drawShape(this.shape);
+      }
+   }
+   
+   private static class StateCommand implements Command
+   {
+      private Color color;
+      private float width;
+      private Boolean selected;
+      
+      /**
+       * Constructs a command that sets one part of a renderer's state.
+       * 
+       * @param color The color to set or <code>null</code>.
+       * @param width The line width to set or a negative number.
+       * @param selected The selection state to set or <code>null</code>.
+       */
+      public StateCommand(Color color, float width, Boolean selected)
+      {
+         this.color = color;
+         this.width = width;
+         this.selected = selected;
+      }
+      
+      public void replay(SwingRenderer2D renderer)
+      {
+         if (this.color != null)
+            renderer.setColor(this.color);
+         
+         if (this.width >= 0)
+            renderer.setLineWidth(this.width);
+         
+         if (this.selected != null)
+            renderer.setSelected(this.selected);
+      }
+   }
+   
+   private static class TranslateCommand implements Command
+   {
+      private float x;
+      private float y;
+      
+      public TranslateCommand(float x, float y)
+      {
+         this.x = x;
+         this.y = y;
+      }
+      
+      public void replay(SwingRenderer2D renderer)
+      {
+         renderer.translate(this.x, this.y);
+      }
+   }
+   
+   private static class RenderableCommand implements Command
+   {
+      private Renderable renderable;
+      
+      public RenderableCommand(Renderable renderable)
+      {
+         this.renderable = renderable;
+      }
+      
+      public void replay(SwingRenderer2D renderer)
+      {
+         this.renderable.renderInto(renderer);
+      }
+   }
+}
@@ -25,12 +25,19 @@
 package noteLab.util.render;
 
 import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 import noteLab.util.geom.Bounded;
 
 public class ImageRenderer2D extends SwingRenderer2D
 {
+   /**
+    * The graphics used to render into a band of a larger image or 
+    * <code>null</code> if the whole image is rendered.
+    */
+   private Graphics2D bandGraphics;
+   
    public ImageRenderer2D(BufferedImage image)
    {
       super();
@@ -40,11 +47,53 @@ public class ImageRenderer2D extends SwingRenderer2D
       
       Graphics2D g2d = image.createGraphics();
       setSwingGraphics(g2d, RenderMode.Appearance);
+      
+      this.bandGraphics = null;
+   }
+   
+   /**
+    * Constructs a renderer that renders a horizontal band of a larger 
+    * image into the given image.  The top row of the given image is the 
+    * row <code>bandY</code> of the larger image.  Only the items that 
+    * intersect the band are rendered.  Thus, a large image can be 
+    * rendered one band at a time while only the memory for a single 
+    * band is used.
+    * 
+    * @param image The image holding the band.
+    * @param bandY The row of the larger image at the top of the band.
+    */
+   public ImageRenderer2D(BufferedImage image, int bandY)
+   {
+      super();
+      
+      if (image == null)
+         throw new NullPointerException();
+      
+      Graphics2D g2d = image.createGraphics();
+      g2d.translate(0, -bandY);
+      g2d.setClip(0, bandY, image.getWidth(), image.getHeight());
+      setSwingGraphics(g2d, RenderMode.Appearance);
+      
+      this.bandGraphics = g2d;
    }
    
    @Override
    public boolean isInClipRegion(Bounded bounded)
    {
-      return true;
+      if (this.bandGraphics == null)
+         return true;
+      
+      if (bounded == null)
+         throw new NullPointerException();
+      
+      // The bounds are rounded outwards so that an item whose 
+      // antialiased edge just reaches into the band is rendered.
+      Rectangle2D bounds = bounded.getBounds2D();
+      int x = (int)Math.floor(bounds.getMinX())-1;
+      int y = (int)Math.floor(bounds.getMinY())-1;
+      int w = (int)Math.ceil(bounds.getMaxX())+1-x;
+      int h = (int)Math.ceil(bounds.getMaxY())+1-y;
+      
+      return this.bandGraphics.hitClip(x, y, w, h);
    }
 }
@@ -0,0 +1,257 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.render;
+
+import java.awt.Graphics;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import noteLab.model.Page;
+import noteLab.model.binder.Binder;
+
+/**
+ * Prints the pages of a binder.  A snapshot of the binder is taken when
+ * the spooler is constructed so that the binder can be modified while
+ * it is being printed.  Each page is rendered into a
+ * <code>DisplayListRenderer2D</code> on a background thread a few pages
+ * ahead of the page being printed.  A printer job typically asks for
+ * each page more than once, and each time a page is asked for its
+ * display list is simply replayed.
+ * <br><br>
+ * Only the display lists of the page being printed and the few pages
+ * after it are kept so that the memory used doesn't grow with the
+ * number of pages.
+ * 
+ * @author Dominic Kramer
+ */
+public class PrintSpooler implements Pageable, Printable
+{
+   /** The format of the pages that are printed. */
+   private static final PageFormat LETTER_SIZE_FORMAT = new PageFormat();
+   
+   /** The number of pages rendered ahead of the page being printed. */
+   private static final int NUM_PAGES_AHEAD = 2;
+   
+   /**
+    * The number of seconds the background thread waits for a page to
+    * render before it exits.
+    */
+   private static final long KEEP_ALIVE_TIME = 5;
+   
+   private Binder snapshot;
+   private Page[] pageArr;
+   
+   private ThreadPoolExecutor executor;
+   
+   /**
+    * Maps the index of a page to its display list.  Access to this map
+    * is synchronized on the map itself.
+    */
+   private HashMap<Integer, Future<DisplayListRenderer2D>> displayMap;
+   
+   /**
+    * Constructs a spooler that prints a snapshot of the given binder.
+    * This constructor has to be invoked on the thread that modifies
+    * the binder.
+    * 
+    * @param binder The binder to print.
+    */
+   public PrintSpooler(Binder binder)
+   {
+      if (binder == null)
+         throw new NullPointerException();
+      
+      this.snapshot = binder.getSnapshot();
+      
+      this.pageArr = new Page[this.snapshot.getNumberOfPages()];
+      int i = 0;
+      for (Page page : this.snapshot)
+         this.pageArr[i++] = page;
+      
+      // The background thread exits while it is idle so that the
+      // spooler doesn't need to be shut down when printing completes.
+      this.executor = new ThreadPoolExecutor(1, 1,
+                                             KEEP_ALIVE_TIME,
+                                             TimeUnit.SECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                             new ThreadFactory()
+      {
+         public Thread newThread(Runnable runnable)
+         {
+            Thread thread = new Thread(runnable,
+                                       PrintSpooler.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      this.executor.allowCoreThreadTimeOut(true);
+      
+      this.displayMap = new HashMap<Integer,
+                                    Future<DisplayListRenderer2D>>();
+      
+      // The first pages are rendered while the print dialog is shown
+      if (this.pageArr.length > 0)
+         schedulePages(0);
+   }
+   
+   public int getNumberOfPages()
+   {
+      return this.pageArr.length;
+   }
+   
+   public PageFormat getPageFormat(int pageIndex)
+                        throws IndexOutOfBoundsException
+   {
+      if (pageIndex < 0 || pageIndex >= getNumberOfPages())
+         throw new IndexOutOfBoundsException();
+      
+      return LETTER_SIZE_FORMAT;
+   }
+   
+   public Printable getPrintable(int pageIndex)
+                       throws IndexOutOfBoundsException
+   {
+      return this;
+   }
+   
+   public int print(Graphics graphics, PageFormat pageFormat, int pageIndex)
+                       throws PrinterException
+   {
+      if (pageIndex < 0 || pageIndex >= getNumberOfPages())
+         return Printable.NO_SUCH_PAGE;
+      
+      Page page = this.pageArr[pageIndex];
+      DisplayListRenderer2D displayList = getDisplayList(pageIndex);
+      
+      PrinterRenderer2D printRenderer =
+         new PrinterRenderer2D(graphics, pageFormat,
+                               page.getWidth(), page.getHeight());
+      displayList.replay(printRenderer);
+      
+      return Printable.PAGE_EXISTS;
+   }
+   
+   /**
+    * Used to get the display list of the page with the given index,
+    * waiting for the page to be rendered if necessary.
+    * 
+    * @param pageIndex The index of the page.
+    * 
+    * @return The page's display list.
+    * 
+    * @throws PrinterException If the page could not be rendered.
+    */
+   private DisplayListRenderer2D getDisplayList(int pageIndex)
+                                    throws PrinterException
+   {
+      Future<DisplayListRenderer2D> future = schedulePages(pageIndex);
+      
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new PrinterException("Printing page "+(pageIndex+1)+
+                                    " was interrupted.");
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException)cause;
+         if (cause instanceof Error)
+            throw (Error)cause;
+         
+         throw new PrinterException("Page "+(pageIndex+1)+" could not " +
+                                    "be rendered:  "+cause.getMessage());
+      }
+   }
+   
+   /**
+    * Schedules the page with the given index and the pages after it to 
+    * be rendered if they haven't been already.  The display lists of 
+    * any other pages are discarded.
+    * 
+    * @param pageIndex The index of the page.
+    * 
+    * @return The display list of the page as it is being rendered.
+    */
+   private Future<DisplayListRenderer2D> schedulePages(int pageIndex)
+   {
+      synchronized(this.displayMap)
+      {
+         int lastIndex = Math.min(pageIndex+NUM_PAGES_AHEAD, 
+                                  getNumberOfPages()-1);
+         
+         Iterator<Entry<Integer, Future<DisplayListRenderer2D>>> iter = 
+            this.displayMap.entrySet().iterator();
+         while (iter.hasNext())
+         {
+            Entry<Integer, Future<DisplayListRenderer2D>> entry = 
+               iter.next();
+            int index = entry.getKey();
+            if (index < pageIndex || index > lastIndex)
+            {
+               entry.getValue().cancel(false);
+               iter.remove();
+            }
+         }
+         
+         for (int i=pageIndex; i<=lastIndex; i++)
+            if (!this.displayMap.containsKey(i))
+               this.displayMap.put(i, submitPage(this.pageArr[i]));
+         
+         return this.displayMap.get(pageIndex);
+      }
+   }
+   
+   private Future<DisplayListRenderer2D> submitPage(final Page page)
+   {
+      return this.executor.submit(new Callable<DisplayListRenderer2D>()
+      {
+         public DisplayListRenderer2D call()
+         {
+            DisplayListRenderer2D displayList = new DisplayListRenderer2D();
+            page.renderInto(displayList);
+            displayList.finish();
+            return displayList;
+         }
+      });
+   }
+}
@@ -54,7 +54,14 @@ public class RenderProgressManager implements RenderListener, Progressive
                                 CompositeCanvas canvas, 
                                 String desc)
    {
-      if (renderer == null || canvas == null || desc == null)
+      this(renderer, canvas.getBinder(), desc);
+   }
+   
+   public RenderProgressManager(Renderer2D renderer, 
+                                Binder binder, 
+                                String desc)
+   {
+      if (renderer == null || binder == null || desc == null)
          throw new NullPointerException();
       
       this.percent = 0;
@@ -64,7 +71,7 @@ public class RenderProgressManager implements RenderListener, Progressive
       
       this.isComplete = false;
       
-      this.numPages = canvas.getBinder().getNumberOfPages();
+      this.numPages = binder.getNumberOfPages();
       this.numTotal = this.numPages;
       
       this.desc = desc;
@@ -72,7 +79,7 @@ public class RenderProgressManager implements RenderListener, Progressive
       
       this.listenerVec = new Vector<ProgressListener>();
       
-      for (Page page : canvas.getBinder())
+      for (Page page : binder)
          this.numTotal += page.getNumStrokes();
       
       renderer.addRenderListener(this);
@@ -79,6 +79,19 @@ public abstract class Renderer2D implements Selectable
       this.selected = selected;
    }
    
+   /**
+    * Used to determine if selected items should be drawn in a style that 
+    * shows they are selected.  Renderers that store items instead of 
+    * displaying them can return <code>false</code> so that selected items 
+    * are stored exactly as unselected items are.
+    * 
+    * @return <code>true</code> by default.
+    */
+   public boolean rendersSelection()
+   {
+      return true;
+   }
+   
    public void addRenderListener(RenderListener listener)
    {
       if (listener == null)
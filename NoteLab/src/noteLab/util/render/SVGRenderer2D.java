@@ -28,6 +28,7 @@ import java.awt.Color;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.Vector;
 
 import noteLab.model.Page;
@@ -37,6 +38,7 @@ import noteLab.model.binder.Binder;
 import noteLab.model.geom.FloatPoint2D;
 import noteLab.util.geom.Bounded;
 import noteLab.util.geom.unit.Unit;
+import noteLab.util.io.AsciiOutputBuffer;
 import noteLab.util.io.noteLab.NoteLabFileConstants;
 
 public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
@@ -51,14 +53,16 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
    private static final String SVG_NAMESPACE_ATTR = 
                                   "xmlns=\"http://www.w3.org/2000/svg\"";
    
+   private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+   
    private float width;
-   private String color;
+   private int color;
    
    private float originX;
    private float originY;
    private TranslateStack transStack;
    
-   private OutputStream outStream;
+   private AsciiOutputBuffer outBuffer;
    
    private Exception curError;
    
@@ -69,8 +73,8 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
          throw new NullPointerException();
       
       this.width = 1;
-      this.color = "black";
-      this.outStream = outStream;
+      this.color = 0;
+      this.outBuffer = new AsciiOutputBuffer(outStream);
       
       this.curError = null;
       
@@ -96,12 +100,12 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       append(" ");
       append(WIDTH_NAME);
       append("=\"");
-      append(""+boundWidthPx);
+      append(boundWidthPx);
       append(PIXEL_UNIT_NAME);
       append("\" ");
       append(HEIGHT_NAME);
       append("=\"");
-      append(""+boundHeightPx);
+      append(boundHeightPx);
       append(PIXEL_UNIT_NAME);
       append("\" ");
       append(SVG_VERSION_ATTR);
@@ -128,39 +132,43 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       
       FloatPoint2D first = path.getFirst();
       append("M");
-      append(""+first.getX());
+      append(first.getX());
       append(" ");
-      append(""+first.getY());
+      append(first.getY());
       
       if (size == 1)
       {
          append(" L");
-         append(""+first.getX());
+         append(first.getX());
          append(" ");
-         append(""+first.getY());
+         append(first.getY());
       }
       else
       {
+         // iterate instead of using getItemAt() since the points are 
+         // stored in a linked list
+         Iterator<FloatPoint2D> ptIter = path.iterator();
+         ptIter.next();
          FloatPoint2D curPt;
-         for (int i=1; i<size; i++)
+         while (ptIter.hasNext())
          {
-            curPt = path.getItemAt(i);
+            curPt = ptIter.next();
             
             append(" L");
-            append(""+curPt.getX());
+            append(curPt.getX());
             append(" ");
-            append(""+curPt.getY());
+            append(curPt.getY());
          }
       }
       
       append("\" ");
       append(STROKE_WIDTH_NAME);
       append("=\"");
-      append(""+this.width);
+      append(this.width);
       append("\" ");
       append(STROKE_NAME);
       append("=\"");
-      append(this.color.toString());
+      appendColor();
       append("\" ");
       append(FILL_NAME);
       append("=\"none\" />");
@@ -181,11 +189,11 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       append(" ");
       append(STROKE_WIDTH_NAME);
       append("=\"");
-      append(""+this.width);
+      append(this.width);
       append("\" ");
       append(STROKE_NAME);
       append("=\"");
-      append(this.color.toString());
+      appendColor();
       append("\" />");
    }
 
@@ -212,53 +220,46 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       appendSize(width, height);
       appendSpace();
       
-      String fillName = "none";
-      if (fill)
-         fillName = this.color.toString();
       append(FILL_NAME);
       append("=\"");
-      append(fillName);
+      if (fill)
+         appendColor();
+      else
+         append("none");
       append("\" ");
       append(STROKE_NAME);
       append("=\"");
-      append(this.color.toString());
+      appendColor();
       append("\" ");
       append(STROKE_WIDTH_NAME);
       append("=\"");
-      append(""+this.width);
+      append(this.width);
       append("\" />");
    }
 
+   /**
+    * Selected strokes are written as ordinary paths so that they are 
+    * exported exactly as unselected strokes are.
+    */
+   @Override
+   public boolean rendersSelection()
+   {
+      return false;
+   }
+   
    @Override
    public void setColor(Color color)
    {
       if (color == null)
          throw new NullPointerException();
       
-      String r = fixColorValue(Integer.toHexString(color.getRed()));
-      String g = fixColorValue(Integer.toHexString(color.getGreen()));
-      String b = fixColorValue(Integer.toHexString(color.getBlue()));
-      
-      this.color = "#"+r+g+b;
+      this.color = color.getRGB() & 0xFFFFFF;
    }
    
    @Override
    public Color getColor()
    {
-      return Color.decode(this.color);
-   }
-   
-   private static String fixColorValue(String val)
-   {
-      if (val == null)
-         throw new NullPointerException();
-      
-      String newVal = "";
-      if (val.length() == 1)
-         newVal += "0";
-      newVal += val;
-      
-      return newVal;
+      return new Color(this.color);
    }
    
    @Override
@@ -314,9 +315,9 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       append("=\"");
       append(TRANSLATE_NAME);
       append("(");
-      append(""+diffX);
+      append(diffX);
       append(",");
-      append(""+diffY);
+      append(diffY);
       append(") ");
       
       append("\">");
@@ -343,7 +344,7 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       
       try
       {
-         this.outStream.close();
+         this.outBuffer.close();
       }
       catch (IOException e)
       {
@@ -363,7 +364,7 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       
       append(label);
       append("=\"");
-      append(""+pxVal);
+      append(pxVal);
       appendSpace();
       append(Unit.PIXEL.toString());
       append("\"");
@@ -394,6 +395,16 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       appendValue(Y_NAME+suffix, y);
    }
    
+   /**
+    * Writes the current color in the form <code>#rrggbb</code>.
+    */
+   private void appendColor()
+   {
+      append('#');
+      for (int shift=20; shift>=0; shift-=4)
+         append(HEX_DIGITS[(this.color >> shift) & 0xF]);
+   }
+   
    private void append(String str)
    {
       if (this.curError != null)
@@ -404,7 +415,37 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       
       try
       {
-         this.outStream.write(str.getBytes());
+         this.outBuffer.write(str);
+      }
+      catch (IOException e)
+      {
+         this.curError = e;
+      }
+   }
+   
+   private void append(char c)
+   {
+      if (this.curError != null)
+         return;
+      
+      try
+      {
+         this.outBuffer.write(c);
+      }
+      catch (IOException e)
+      {
+         this.curError = e;
+      }
+   }
+   
+   private void append(float val)
+   {
+      if (this.curError != null)
+         return;
+      
+      try
+      {
+         this.outBuffer.write(val);
       }
       catch (IOException e)
       {
@@ -442,6 +483,94 @@ public class SVGRenderer2D extends Renderer2D implements NoteLabFileConstants
       return true;
    }
    
+   /**
+    * Testbed that measures the throughput of saving a synthetic binder 
+    * both uncompressed and compressed.  The number of pages, strokes per 
+    * page, and points per stroke can optionally be given as arguments.
+    * 
+    * @param args [numPages [numStrokes [numPoints]]]
+    */
+   public static void main(String[] args) throws Exception
+   {
+      int numPages = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+      int numStrokes = (args.length > 1) ? Integer.parseInt(args[1]) : 400;
+      int numPoints = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+      
+      java.util.Random rand = new java.util.Random(1);
+      Page[] pages = new Page[numPages];
+      for (int i=0; i<numPages; i++)
+      {
+         pages[i] = new Page(noteLab.model.Paper.PaperType.Plain, 
+                             1, 1, 72, 1);
+         for (int j=0; j<numStrokes; j++)
+         {
+            Path path = new Path(1, 1);
+            float x = rand.nextFloat()*600;
+            float y = rand.nextFloat()*780;
+            for (int k=0; k<numPoints; k++)
+            {
+               x += rand.nextFloat()*4-2;
+               y += rand.nextFloat()*4-2;
+               path.addItem(new FloatPoint2D(x, y, 1, 1));
+            }
+            
+            Color color = new Color(rand.nextInt(0xFFFFFF));
+            pages[i].addStroke(new Stroke(new noteLab.model.tool.Pen(
+                                                   1+rand.nextInt(4), 
+                                                   color, 1), path));
+         }
+      }
+      Binder binder = new noteLab.model.binder.FlowBinder(1, 1, pages);
+      
+      System.out.println("Pages = "+numPages+", strokes per page = "+
+                         numStrokes+", points per stroke = "+numPoints);
+      for (int i=0; i<5; i++)
+      {
+         runBenchmark(binder, false);
+         runBenchmark(binder, true);
+      }
+   }
+   
+   private static void runBenchmark(Binder binder, boolean zip) 
+                                                           throws Exception
+   {
+      final long[] numBytes = new long[1];
+      OutputStream outStream = new OutputStream()
+      {
+         @Override
+         public void write(int b)
+         {
+            numBytes[0]++;
+         }
+         
+         @Override
+         public void write(byte[] b, int off, int len)
+         {
+            numBytes[0] += len;
+         }
+      };
+      
+      if (zip)
+         outStream = new java.util.zip.GZIPOutputStream(outStream);
+      
+      long start = System.nanoTime();
+      SVGRenderer2D renderer = new SVGRenderer2D(binder, outStream);
+      binder.renderInto(renderer);
+      renderer.finish();
+      long time = System.nanoTime()-start;
+      
+      if (renderer.getError() != null)
+         throw renderer.getError();
+      
+      long svgBytes = renderer.outBuffer.getNumBytesWritten();
+      double seconds = time/1e9;
+      System.out.println((zip ? "Compressed:    " : "Uncompressed:  ")+
+                         (svgBytes/1024/1024)+" MB of SVG ("+
+                         (numBytes[0]/1024/1024)+" MB written) in "+
+                         (time/1000000)+" ms = "+
+                         ((int)(svgBytes/1048576.0/seconds))+" MB/s");
+   }
+   
    private class TranslateStack
    {
       private Vector<FloatPoint2D> stack;
@@ -35,6 +35,10 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import noteLab.model.Path;
 import noteLab.model.geom.FloatPoint2D;
@@ -51,11 +55,31 @@ public class SwingRenderer2D extends Renderer2D
    private Graphics2D g2d;
    private float width;
    
+   /** The items that are treated as being outside of the clip region. */
+   private Set<Bounded> hiddenSet;
+   
    public SwingRenderer2D()
    {
       super();
       
       this.width = 0;
+      this.hiddenSet = 
+         Collections.newSetFromMap(new IdentityHashMap<Bounded, Boolean>());
+   }
+   
+   /**
+    * Used to specify items that shouldn't be rendered by this renderer.  
+    * The items are treated as being outside of the clip region so that 
+    * the objects containing them skip them.
+    * 
+    * @param items The items to hide or <code>null</code> to hide 
+    *              nothing.
+    */
+   public void setHiddenItems(Collection<? extends Bounded> items)
+   {
+      this.hiddenSet.clear();
+      if (items != null)
+         this.hiddenSet.addAll(items);
    }
    
    public void setSwingGraphics(Graphics2D g2d, RenderMode mode)
@@ -287,6 +311,32 @@ public class SwingRenderer2D extends Renderer2D
       */
    }
    
+   /**
+    * Draws the given shape using the current color and line width.
+    * 
+    * @param shape The shape to draw.
+    */
+   public void drawShape(Shape shape)
+   {
+      if (shape == null)
+         throw new NullPointerException();
+      
+      this.g2d.draw(shape);
+   }
+   
+   /**
+    * Fills the given shape using the current color.
+    * 
+    * @param shape The shape to fill.
+    */
+   public void fillShape(Shape shape)
+   {
+      if (shape == null)
+         throw new NullPointerException();
+      
+      this.g2d.fill(shape);
+   }
+   
    @Override
    public void setSelected(boolean selected)
    {
@@ -363,6 +413,9 @@ public class SwingRenderer2D extends Renderer2D
       if (bounded == null)
          throw new NullPointerException();
       
+      if (this.hiddenSet.contains(bounded))
+         return false;
+      
       Rectangle2D bounds = bounded.getBounds2D();
       int x = (int)bounds.getMinX();
       int y = (int)bounds.getMinY();
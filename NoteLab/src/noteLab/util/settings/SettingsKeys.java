@@ -41,12 +41,17 @@ public interface SettingsKeys
    public static final String RENDER_SCROLLING_KEY = "renderScrolling";
    
    public static final String HISTORY_SIZE_KEY = "historySize";
+   public static final String HISTORY_MEMORY_KEY = "historyMemory";
    
    public static final String COMB_FACTOR = "combFactor";
    public static final String UNIT_SCALE_FACTOR = "unitFactor";
    
    public static final String SMOOTH_FACTOR = "smoothFactor";
    
+   public static final String PATH_PRECISION = "pathPrecision";
+   
+   public static final String PAGE_MEMORY = "pageMemory";
+   
    public static final String DEBUG_MENU_KEY = "debugMenu";
    
    public static final String LOOK_AND_FEEL_KEY = "lookAndFeel";
@@ -32,6 +32,8 @@ import noteLab.model.Paper.PaperType;
 import noteLab.util.LookAndFeelUtilities;
 import noteLab.util.geom.unit.MValue;
 import noteLab.util.geom.unit.Unit;
+import noteLab.util.io.noteLab.NoteLabFileConstants;
+import noteLab.util.undoRedo.action.UndoRedoConstants;
 
 public class SettingsUtilities implements SettingsKeys
 {
@@ -223,6 +225,82 @@ public class SettingsUtilities implements SettingsKeys
       SettingsManager.getSharedInstance().setValue(SMOOTH_FACTOR, factor);
    }
    
+   public static int getPathPrecision()
+   {
+      Object val = SettingsManager.getSharedInstance().getValue(PATH_PRECISION);
+      if (val == null || !(val instanceof Integer))
+         return NoteLabFileConstants.DEFAULT_PATH_PRECISION;
+      
+      return (Integer)val;
+   }
+   
+   public static void setPathPrecision(int precision)
+   {
+      if (precision > NoteLabFileConstants.MAX_PATH_PRECISION)
+         throw new IllegalArgumentException("The path precision "+precision+
+                                            " is not valid since at most "+
+                                            NoteLabFileConstants.MAX_PATH_PRECISION+
+                                            " decimal places can be used.");
+      
+      if (precision < 0)
+         precision = NoteLabFileConstants.FULL_PATH_PRECISION;
+      
+      SettingsManager.getSharedInstance().setValue(PATH_PRECISION, precision);
+   }
+   
+   /**
+    * Used to get the number of megabytes that the strokes of the pages 
+    * in a session can use before the strokes of pages away from the 
+    * visible area are unloaded.
+    * 
+    * @return The memory budget in megabytes.
+    */
+   public static int getPageMemory()
+   {
+      Object val = SettingsManager.getSharedInstance().getValue(PAGE_MEMORY);
+      if (val == null || !(val instanceof Integer))
+         return PageSettingsConstants.DEFAULT_PAGE_MEMORY;
+      
+      return (Integer)val;
+   }
+   
+   public static void setPageMemory(int megabytes)
+   {
+      if (megabytes < 0)
+         throw new IllegalArgumentException("The page memory "+megabytes+
+                                            " is not valid since it "+
+                                            "cannot be negative.");
+      
+      SettingsManager.getSharedInstance().setValue(PAGE_MEMORY, megabytes);
+   }
+   
+   /**
+    * Used to get the number of megabytes that the actions that can be 
+    * undone and redone can use before the oldest actions are discarded.
+    * 
+    * @return The memory budget in megabytes.
+    */
+   public static int getHistoryMemory()
+   {
+      Object val = SettingsManager.getSharedInstance().
+                      getValue(HISTORY_MEMORY_KEY);
+      if (val == null || !(val instanceof Integer))
+         return UndoRedoConstants.DEFAULT_HISTORY_MEMORY;
+      
+      return (Integer)val;
+   }
+   
+   public static void setHistoryMemory(int megabytes)
+   {
+      if (megabytes < 0)
+         throw new IllegalArgumentException("The history memory "+
+                                            megabytes+" is not valid "+
+                                            "since it cannot be negative.");
+      
+      SettingsManager.getSharedInstance().setValue(HISTORY_MEMORY_KEY, 
+                                                   megabytes);
+   }
+   
    public static String getCurrentDirectory()
    {
       return System.getProperty(SYSTEM_CURRENT_DIR_KEY);
@@ -0,0 +1,273 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.structure;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set that compares its elements by identity and keeps them in the
+ * order in which they were added.  Adding an element, removing an
+ * element, and determining if an element is in the set all take
+ * constant time, and the elements can be accessed by their position
+ * in the set.
+ * <br><br>
+ * The elements are stored in an array and a map is used to find the
+ * position of an element in the array.  When an element is removed its
+ * slot in the array is simply cleared.  The array is compacted the next
+ * time an element is accessed by its position or once half of its slots
+ * are cleared.  Thus, accessing the elements by position in a loop that
+ * doesn't remove elements, or that removes elements from the end of the
+ * set, takes linear time in total.
+ * <br><br>
+ * This set must not be modified while it is being iterated over except
+ * through the iterator's <code>remove()</code> method.
+ * 
+ * @author Dominic Kramer
+ */
+public class OrderedIdentitySet<E> implements Iterable<E>
+{
+   private static final int DEFAULT_CAPACITY = 10;
+   
+   /**
+    * The elements in the order they were added.  A removed element's
+    * slot is <code>null</code> until the array is compacted.
+    */
+   private Object[] elementArr;
+   
+   /** The number of slots of the array that are in use. */
+   private int numSlots;
+   
+   /** The number of slots in use that are <code>null</code>. */
+   private int numCleared;
+   
+   /** Maps each element to its slot in the array. */
+   private IdentityHashMap<E, Integer> indexMap;
+   
+   public OrderedIdentitySet()
+   {
+      this.elementArr = new Object[DEFAULT_CAPACITY];
+      this.numSlots = 0;
+      this.numCleared = 0;
+      this.indexMap = new IdentityHashMap<E, Integer>();
+   }
+   
+   /**
+    * Adds the given element to the end of this set if it isn't already
+    * in the set.
+    * 
+    * @param element The element to add.
+    * 
+    * @return <code>true</code> if the element was added.
+    */
+   public boolean add(E element)
+   {
+      if (element == null)
+         throw new NullPointerException();
+      
+      if (this.indexMap.containsKey(element))
+         return false;
+      
+      if (this.numSlots == this.elementArr.length)
+      {
+         if (this.numCleared > 0)
+            compact();
+         
+         if (this.numSlots == this.elementArr.length)
+            this.elementArr = Arrays.copyOf(this.elementArr,
+                                            2*this.elementArr.length);
+      }
+      
+      this.indexMap.put(element, this.numSlots);
+      this.elementArr[this.numSlots++] = element;
+      return true;
+   }
+   
+   /**
+    * Removes the given element from this set.
+    * 
+    * @param element The element to remove.
+    * 
+    * @return <code>true</code> if the element was in the set.
+    */
+   public boolean remove(Object element)
+   {
+      Integer index = this.indexMap.remove(element);
+      if (index == null)
+         return false;
+      
+      this.elementArr[index] = null;
+      this.numCleared++;
+      
+      // slots at the end of the array can be released immediately
+      while (this.numSlots > 0 && this.elementArr[this.numSlots-1] == null)
+      {
+         this.numSlots--;
+         this.numCleared--;
+      }
+      
+      if (this.numCleared > this.numSlots/2)
+         compact();
+      
+      return true;
+   }
+   
+   public boolean contains(Object element)
+   {
+      return this.indexMap.containsKey(element);
+   }
+   
+   public int size()
+   {
+      return this.indexMap.size();
+   }
+   
+   public boolean isEmpty()
+   {
+      return this.indexMap.isEmpty();
+   }
+   
+   /**
+    * Used to get the element at the given position in this set.
+    * 
+    * @param index The position of the element.
+    * 
+    * @return The element.
+    * 
+    * @throws IndexOutOfBoundsException If the index is negative or not
+    *                                   less than the size of this set.
+    */
+   @SuppressWarnings("unchecked")
+   public E get(int index)
+   {
+      if (index < 0 || index >= size())
+         throw new IndexOutOfBoundsException("Index: "+index+
+                                             ", Size: "+size());
+      
+      if (this.numCleared > 0)
+         compact();
+      
+      return (E)this.elementArr[index];
+   }
+   
+   public void clear()
+   {
+      Arrays.fill(this.elementArr, 0, this.numSlots, null);
+      this.numSlots = 0;
+      this.numCleared = 0;
+      this.indexMap.clear();
+   }
+   
+   /**
+    * Moves the elements of this set to the front of the array so that
+    * no slot in use is <code>null</code>.
+    */
+   @SuppressWarnings("unchecked")
+   private void compact()
+   {
+      int newNumSlots = 0;
+      for (int i=0; i<this.numSlots; i++)
+      {
+         Object element = this.elementArr[i];
+         if (element == null)
+            continue;
+         
+         if (newNumSlots != i)
+         {
+            this.elementArr[newNumSlots] = element;
+            this.indexMap.put((E)element, newNumSlots);
+         }
+         
+         newNumSlots++;
+      }
+      
+      Arrays.fill(this.elementArr, newNumSlots, this.numSlots, null);
+      this.numSlots = newNumSlots;
+      this.numCleared = 0;
+   }
+   
+   public Iterator<E> iterator()
+   {
+      return new Iterator<E>()
+      {
+         /** The slot of the next element to return. */
+         private int nextSlot = findSlot(0);
+         
+         /** The element last returned or <code>null</code>. */
+         private Object lastElement = null;
+         
+         public boolean hasNext()
+         {
+            return this.nextSlot < numSlots;
+         }
+         
+         @SuppressWarnings("unchecked")
+         public E next()
+         {
+            if (!hasNext())
+               throw new NoSuchElementException();
+            
+            this.lastElement = elementArr[this.nextSlot];
+            this.nextSlot = findSlot(this.nextSlot+1);
+            return (E)this.lastElement;
+         }
+         
+         public void remove()
+         {
+            if (this.lastElement == null)
+               throw new IllegalStateException();
+            
+            // Removing an element can compact the array.  Thus, the
+            // position of the next element is found again afterwards.
+            Object next = hasNext() ? elementArr[this.nextSlot] : null;
+            OrderedIdentitySet.this.remove(this.lastElement);
+            this.lastElement = null;
+            
+            if (next == null)
+               this.nextSlot = numSlots;
+            else
+               this.nextSlot = indexMap.get(next);
+         }
+      };
+   }
+   
+   /**
+    * Used to get the first slot at or after the given slot that isn't
+    * <code>null</code>.
+    * 
+    * @param slot The slot to start at.
+    * 
+    * @return The slot or the number of slots in use if there isn't one.
+    */
+   private int findSlot(int slot)
+   {
+      while (slot < this.numSlots && this.elementArr[slot] == null)
+         slot++;
+      
+      return slot;
+   }
+}
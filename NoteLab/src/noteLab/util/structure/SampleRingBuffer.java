@@ -0,0 +1,275 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.structure;
+
+/**
+ * A fixed capacity, lock-free ring buffer of stylus samples that can be 
+ * safely used by exactly one producer thread and exactly one consumer 
+ * thread.  Each sample consists of a type, an x and y coordinate, a 
+ * mouse button, and a timestamp.  The samples are stored in parallel 
+ * primitive arrays so that adding or removing a sample does not 
+ * allocate any objects.
+ * <br><br>
+ * The producer only ever writes the <code>tail</code> index and the 
+ * consumer only ever writes the <code>head</code> index.  Since both 
+ * indices are <code>volatile</code>, a sample written by the producer 
+ * is completely visible to the consumer once the producer has advanced 
+ * the tail past it.
+ * 
+ * @author Dominic Kramer
+ */
+public class SampleRingBuffer
+{
+   /** The default number of samples that can be pending at one time. */
+   public static final int DEFAULT_CAPACITY = 1024;
+   
+   private final int[] typeArr;
+   private final int[] xArr;
+   private final int[] yArr;
+   private final int[] buttonArr;
+   private final long[] timeArr;
+   
+   /** Used to quickly wrap an index since the capacity is a power of 2. */
+   private final int mask;
+   
+   /** The index of the next sample to read.  Only written by the consumer. */
+   private volatile int head;
+   
+   /** The index of the next sample to write.  Only written by the producer. */
+   private volatile int tail;
+   
+   /**
+    * Constructs a buffer that can hold 
+    * {@link #DEFAULT_CAPACITY DEFAULT_CAPACITY} pending samples.
+    */
+   public SampleRingBuffer()
+   {
+      this(DEFAULT_CAPACITY);
+   }
+   
+   /**
+    * Constructs a buffer that can hold at least the given number of 
+    * pending samples.  The capacity is rounded up to the next power 
+    * of two.
+    * 
+    * @param capacity The minimum number of samples the buffer can hold.
+    */
+   public SampleRingBuffer(int capacity)
+   {
+      if (capacity <= 0)
+         throw new IllegalArgumentException(
+                      "The capacity of a "+
+                      SampleRingBuffer.class.getSimpleName()+
+                      " must be positive.  The capacity " +
+                      "requested was "+capacity);
+      
+      int size = 1;
+      while (size < capacity)
+         size <<= 1;
+      
+      this.typeArr = new int[size];
+      this.xArr = new int[size];
+      this.yArr = new int[size];
+      this.buttonArr = new int[size];
+      this.timeArr = new long[size];
+      
+      this.mask = size-1;
+      this.head = 0;
+      this.tail = 0;
+   }
+   
+   /**
+    * Used to get the maximum number of samples that can be pending.
+    * 
+    * @return This buffer's capacity.
+    */
+   public int getCapacity()
+   {
+      return this.mask+1;
+   }
+   
+   /**
+    * Used to get the number of samples that have been added but not 
+    * yet removed.  The value is only a snapshot if the other thread 
+    * is concurrently using the buffer.
+    * 
+    * @return The number of pending samples.
+    */
+   public int getSize()
+   {
+      return this.tail-this.head;
+   }
+   
+   /**
+    * Used to determine if there are no pending samples.
+    * 
+    * @return <code>true</code> if there are no pending samples.
+    */
+   public boolean isEmpty()
+   {
+      return this.head == this.tail;
+   }
+   
+   /**
+    * Adds a sample to the buffer.  This method must only be invoked 
+    * by the producer thread.
+    * 
+    * @param type The type of the sample.
+    * @param x The sample's x coordinate.
+    * @param y The sample's y coordinate.
+    * @param button The mouse button associated with the sample.
+    * @param time The time at which the sample was generated.
+    * 
+    * @return <code>true</code> if the sample was added and 
+    *         <code>false</code> if the buffer is full.
+    */
+   public boolean offer(int type, int x, int y, int button, long time)
+   {
+      int curTail = this.tail;
+      if (curTail-this.head > this.mask)
+         return false;
+      
+      int index = curTail & this.mask;
+      this.typeArr[index] = type;
+      this.xArr[index] = x;
+      this.yArr[index] = y;
+      this.buttonArr[index] = button;
+      this.timeArr[index] = time;
+      
+      // publish the sample
+      this.tail = curTail+1;
+      return true;
+   }
+   
+   /**
+    * Used to determine if a sample can be read at the given offset 
+    * from the head of the buffer.  This method must only be invoked 
+    * by the consumer thread.
+    * 
+    * @param offset The offset from the head of the buffer.
+    * 
+    * @return <code>true</code> if a sample is available at the offset.
+    */
+   public boolean hasSample(int offset)
+   {
+      return offset >= 0 && offset < this.tail-this.head;
+   }
+   
+   public int getType(int offset)
+   {
+      return this.typeArr[(this.head+offset) & this.mask];
+   }
+   
+   public int getX(int offset)
+   {
+      return this.xArr[(this.head+offset) & this.mask];
+   }
+   
+   public int getY(int offset)
+   {
+      return this.yArr[(this.head+offset) & this.mask];
+   }
+   
+   public int getButton(int offset)
+   {
+      return this.buttonArr[(this.head+offset) & this.mask];
+   }
+   
+   public long getTime(int offset)
+   {
+      return this.timeArr[(this.head+offset) & this.mask];
+   }
+   
+   /**
+    * Removes the given number of samples from the head of the buffer 
+    * allowing the producer to reuse their slots.  This method must only 
+    * be invoked by the consumer thread.
+    * 
+    * @param count The number of samples to remove.
+    */
+   public void advance(int count)
+   {
+      int size = this.tail-this.head;
+      if (count < 0 || count > size)
+         throw new IllegalArgumentException("Cannot remove "+count+
+                                            " samples from a buffer " +
+                                            "containing "+size+
+                                            " samples.");
+      
+      this.head += count;
+   }
+   
+   /**
+    * Testbed.
+    * 
+    * @param args Unused.
+    */
+   public static void main(String[] args) throws InterruptedException
+   {
+      final SampleRingBuffer buffer = new SampleRingBuffer();
+      final int numSamples = 1000000;
+      
+      Thread producer = new Thread()
+      {
+         public void run()
+         {
+            int i = 0;
+            while (i < numSamples)
+            {
+               if (buffer.offer(0, i, -i, 1, i))
+                  i++;
+               else
+                  Thread.yield();
+            }
+         }
+      };
+      
+      long start = System.nanoTime();
+      producer.start();
+      
+      int expected = 0;
+      int size;
+      while (expected < numSamples)
+      {
+         size = buffer.getSize();
+         if (size == 0)
+            Thread.yield();
+         
+         for (int i=0; i<size; i++)
+         {
+            if (buffer.getX(i) != expected || buffer.getY(i) != -expected)
+               throw new IllegalStateException("Sample "+expected+
+                                               " was corrupted");
+            expected++;
+         }
+         buffer.advance(size);
+      }
+      
+      producer.join();
+      long time = System.nanoTime()-start;
+      System.out.println("Transferred "+numSamples+" samples in "+
+                         (time/1000000)+" ms");
+   }
+}
@@ -0,0 +1,332 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.trace;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+
+/**
+ * Records how long stylus samples take to travel through the inking 
+ * pipeline.  A sample is posted into the stylus sample buffer by the 
+ * mouse listener, drained by the point processor which updates the 
+ * current path, and then drawn on the overlay by the drawing board.  
+ * The time spent in each stage is stored in a {@link LatencyHistogram} 
+ * and the number of samples pending each time the buffer is drained 
+ * is recorded as a queue depth gauge.
+ * <br><br>
+ * Tracing is disabled by default and can be enabled from the debug 
+ * menu.  While disabled, each tracing hook reduces to a single field 
+ * read.
+ * 
+ * @author Dominic Kramer
+ */
+public class InkLatencyTracer
+{
+   public enum Stage
+   {
+      /** From the time the OS created the mouse event to the listener. */
+      EventDispatch("Event dispatch"), 
+      /** From the mouse listener to the point processor. */
+      Queue("Sample queue"), 
+      /** The time spent updating the current SubCanvas for a batch. */
+      PathChanged("Path changed"), 
+      /** The time spent drawing the overlay. */
+      OverlayRedraw("Overlay redraw"), 
+      /** From the mouse listener until the sample is on the screen. */
+      EndToEnd("Listener to screen");
+      
+      private final String displayName;
+      
+      private Stage(String displayName)
+      {
+         this.displayName = displayName;
+      }
+      
+      public String getDisplayName()
+      {
+         return this.displayName;
+      }
+   }
+   
+   private static final InkLatencyTracer SHARED_INSTANCE = 
+                                            new InkLatencyTracer();
+   
+   private volatile boolean isEnabled;
+   
+   private LatencyHistogram[] histogramArr;
+   
+   private int curDepth;
+   private int maxDepth;
+   private long depthSum;
+   private long numDrains;
+   
+   /** The posted time of the oldest sample in the current batch. */
+   private long batchStart;
+   /** The time the overlay was last drawn in the current batch. */
+   private long lastBlit;
+   
+   private InkLatencyTracer()
+   {
+      this.isEnabled = false;
+      
+      Stage[] stages = Stage.values();
+      this.histogramArr = new LatencyHistogram[stages.length];
+      for (int i=0; i<stages.length; i++)
+         this.histogramArr[i] = new LatencyHistogram();
+      
+      this.batchStart = -1;
+      this.lastBlit = -1;
+   }
+   
+   public static InkLatencyTracer getSharedInstance()
+   {
+      return SHARED_INSTANCE;
+   }
+   
+   public boolean isEnabled()
+   {
+      return this.isEnabled;
+   }
+   
+   public void setEnabled(boolean isEnabled)
+   {
+      this.isEnabled = isEnabled;
+   }
+   
+   public void flipEnabled()
+   {
+      this.isEnabled = !this.isEnabled;
+   }
+   
+   public LatencyHistogram getHistogram(Stage stage)
+   {
+      if (stage == null)
+         throw new NullPointerException();
+      
+      return this.histogramArr[stage.ordinal()];
+   }
+   
+   /**
+    * Records the time spent in the given stage.
+    * 
+    * @param stage The stage of the pipeline.
+    * @param nanos The time, in nanoseconds, spent in the stage.
+    */
+   public void record(Stage stage, long nanos)
+   {
+      if (!this.isEnabled)
+         return;
+      
+      getHistogram(stage).record(nanos);
+   }
+   
+   /**
+    * Records the number of samples that were pending when the sample 
+    * buffer was drained.
+    * 
+    * @param depth The number of pending samples.
+    */
+   public synchronized void recordQueueDepth(int depth)
+   {
+      if (!this.isEnabled)
+         return;
+      
+      this.curDepth = depth;
+      this.maxDepth = Math.max(this.maxDepth, depth);
+      this.depthSum += depth;
+      this.numDrains++;
+   }
+   
+   /**
+    * Invoked by the point processor before it forwards a batch of 
+    * samples to the current SubCanvas.
+    * 
+    * @param postedTime The time, as given by <code>System.nanoTime()</code>, 
+    *                   the oldest sample in the batch was posted.
+    */
+   public synchronized void beginBatch(long postedTime)
+   {
+      if (!this.isEnabled)
+         return;
+      
+      this.batchStart = postedTime;
+      this.lastBlit = -1;
+   }
+   
+   /**
+    * Invoked by the drawing board each time it has finished drawing the 
+    * overlay.
+    * 
+    * @param startTime The time, as given by <code>System.nanoTime()</code>, 
+    *                  the drawing board started drawing the overlay.
+    */
+   public synchronized void overlayDrawn(long startTime)
+   {
+      if (!this.isEnabled)
+         return;
+      
+      long now = System.nanoTime();
+      this.histogramArr[Stage.OverlayRedraw.ordinal()].record(now-startTime);
+      
+      if (this.batchStart >= 0)
+         this.lastBlit = now;
+   }
+   
+   /**
+    * Invoked by the point processor after the current SubCanvas has 
+    * processed a batch of samples.  If the overlay was drawn while the 
+    * batch was being processed, the time from when the oldest sample 
+    * was posted until the overlay was last drawn is recorded.
+    */
+   public synchronized void endBatch()
+   {
+      if (!this.isEnabled)
+         return;
+      
+      if (this.batchStart >= 0 && this.lastBlit >= 0)
+         this.histogramArr[Stage.EndToEnd.ordinal()].
+            record(this.lastBlit-this.batchStart);
+      
+      this.batchStart = -1;
+      this.lastBlit = -1;
+   }
+   
+   /** Clears every recorded latency and queue depth. */
+   public synchronized void reset()
+   {
+      for (LatencyHistogram histogram : this.histogramArr)
+         histogram.reset();
+      
+      this.curDepth = 0;
+      this.maxDepth = 0;
+      this.depthSum = 0;
+      this.numDrains = 0;
+   }
+   
+   /**
+    * Used to get a table summarizing the recorded latencies.  The first 
+    * row contains the column names.  All times are in milliseconds.
+    * 
+    * @return The table of latencies.
+    */
+   public String[][] getTable()
+   {
+      Stage[] stages = Stage.values();
+      String[][] table = new String[stages.length+2][];
+      table[0] = new String[] {"Stage", "Count", "Mean", 
+                               "p50", "p95", "p99", "Max"};
+      
+      LatencyHistogram histogram;
+      for (int i=0; i<stages.length; i++)
+      {
+         histogram = this.histogramArr[i];
+         table[i+1] = new String[] 
+         {
+            stages[i].getDisplayName(), 
+            ""+histogram.getCount(), 
+            toMillis(histogram.getMean()), 
+            toMillis(histogram.getPercentile(50)), 
+            toMillis(histogram.getPercentile(95)), 
+            toMillis(histogram.getPercentile(99)), 
+            toMillis(histogram.getMax())
+         };
+      }
+      
+      synchronized (this)
+      {
+         double meanDepth = 0;
+         if (this.numDrains > 0)
+            meanDepth = this.depthSum/(double)this.numDrains;
+         
+         table[stages.length+1] = new String[] 
+         {
+            "Queue depth (samples)", 
+            ""+this.numDrains, 
+            String.format("%.2f", meanDepth), 
+            "", 
+            "", 
+            "current="+this.curDepth, 
+            ""+this.maxDepth
+         };
+      }
+      
+      return table;
+   }
+   
+   /**
+    * Used to get a plain text report of the recorded latencies.
+    * 
+    * @return The report.
+    */
+   public String getReport()
+   {
+      StringBuffer buffer = new StringBuffer("Ink latency report (");
+      buffer.append(new Date());
+      buffer.append(")\n");
+      buffer.append("Times are in milliseconds\n\n");
+      
+      for (String[] row : getTable())
+      {
+         buffer.append(String.format("%-24s", row[0]));
+         for (int i=1; i<row.length; i++)
+            buffer.append(String.format("%14s", row[i]));
+         buffer.append("\n");
+      }
+      
+      return buffer.toString();
+   }
+   
+   /**
+    * Writes the report returned by {@link #getReport() getReport()} to 
+    * the given file.
+    * 
+    * @param file The file to write.
+    * 
+    * @throws IOException If the file could not be written.
+    */
+   public void exportReport(File file) throws IOException
+   {
+      if (file == null)
+         throw new NullPointerException();
+      
+      PrintWriter writer = new PrintWriter(new FileWriter(file));
+      try
+      {
+         writer.print(getReport());
+      }
+      finally
+      {
+         writer.close();
+      }
+   }
+   
+   private static String toMillis(double micros)
+   {
+      return String.format("%.3f", micros/1000.0);
+   }
+}
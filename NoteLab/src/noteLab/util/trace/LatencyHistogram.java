@@ -0,0 +1,198 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.trace;
+
+/**
+ * A histogram of latencies that uses a fixed amount of memory regardless 
+ * of the number of values recorded.  Latencies are recorded in 
+ * microseconds and are placed in buckets whose width grows with the 
+ * latency so that each bucket covers at most 6.25% of its lower bound.  
+ * Thus the percentiles reported by this histogram are within 6.25% 
+ * of the actual percentiles.
+ * 
+ * @author Dominic Kramer
+ */
+public class LatencyHistogram
+{
+   /** The number of sub-buckets used for each power of two. */
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   
+   /** Latencies less than this value are each given their own bucket. */
+   private static final int LINEAR_LIMIT = 2*SUB_BUCKET_COUNT;
+   
+   private static final int NUM_BUCKETS = 
+      LINEAR_LIMIT + (63-(SUB_BUCKET_BITS+1))*SUB_BUCKET_COUNT;
+   
+   private long[] bucketArr;
+   private long count;
+   private long sum;
+   private long max;
+   
+   public LatencyHistogram()
+   {
+      this.bucketArr = new long[NUM_BUCKETS];
+      reset();
+   }
+   
+   /**
+    * Records a latency.
+    * 
+    * @param nanos The latency in nanoseconds.  Negative values are 
+    *              treated as zero.
+    */
+   public synchronized void record(long nanos)
+   {
+      long micros = Math.max(0, nanos/1000);
+      
+      this.bucketArr[getBucketIndex(micros)]++;
+      this.count++;
+      this.sum += micros;
+      this.max = Math.max(this.max, micros);
+   }
+   
+   /** Removes every recorded latency from this histogram. */
+   public synchronized void reset()
+   {
+      for (int i=0; i<this.bucketArr.length; i++)
+         this.bucketArr[i] = 0;
+      
+      this.count = 0;
+      this.sum = 0;
+      this.max = 0;
+   }
+   
+   public synchronized long getCount()
+   {
+      return this.count;
+   }
+   
+   /**
+    * Used to get the average of the recorded latencies.
+    * 
+    * @return The average latency in microseconds or <code>0</code> if 
+    *         no latencies have been recorded.
+    */
+   public synchronized double getMean()
+   {
+      if (this.count == 0)
+         return 0;
+      
+      return this.sum/(double)this.count;
+   }
+   
+   /**
+    * Used to get the largest recorded latency.
+    * 
+    * @return The maximum latency in microseconds.
+    */
+   public synchronized long getMax()
+   {
+      return this.max;
+   }
+   
+   /**
+    * Used to get the latency below which the given percentage of the 
+    * recorded latencies fall.
+    * 
+    * @param percent The percentile in the range [0, 100].
+    * 
+    * @return The percentile in microseconds or <code>0</code> if no 
+    *         latencies have been recorded.
+    */
+   public synchronized long getPercentile(double percent)
+   {
+      if (percent < 0 || percent > 100)
+         throw new IllegalArgumentException("A percentile must be in the " +
+                                            "range [0, 100].  However, " +
+                                            percent+" was given.");
+      
+      if (this.count == 0)
+         return 0;
+      
+      long target = (long)Math.ceil(this.count*percent/100.0);
+      if (target < 1)
+         target = 1;
+      
+      long total = 0;
+      for (int i=0; i<this.bucketArr.length; i++)
+      {
+         total += this.bucketArr[i];
+         if (total >= target)
+            return Math.min(getBucketUpperBound(i), this.max);
+      }
+      
+      return this.max;
+   }
+   
+   private static int getBucketIndex(long micros)
+   {
+      if (micros < LINEAR_LIMIT)
+         return (int)micros;
+      
+      int exponent = 63-Long.numberOfLeadingZeros(micros);
+      int subBucket = (int)(micros >>> (exponent-SUB_BUCKET_BITS)) & 
+                         (SUB_BUCKET_COUNT-1);
+      
+      return LINEAR_LIMIT + 
+                (exponent-(SUB_BUCKET_BITS+1))*SUB_BUCKET_COUNT + 
+                   subBucket;
+   }
+   
+   private static long getBucketUpperBound(int index)
+   {
+      if (index < LINEAR_LIMIT)
+         return index;
+      
+      int offset = index-LINEAR_LIMIT;
+      int exponent = offset/SUB_BUCKET_COUNT + SUB_BUCKET_BITS+1;
+      int subBucket = offset%SUB_BUCKET_COUNT;
+      
+      long width = 1L << (exponent-SUB_BUCKET_BITS);
+      return (1L << exponent) + (subBucket+1)*width - 1;
+   }
+   
+   /**
+    * Testbed.
+    * 
+    * @param args Unused.
+    */
+   public static void main(String[] args)
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (int i=1; i<=10000; i++)
+         histogram.record(i*1000L);
+      
+      System.out.println("count="+histogram.getCount()+
+                         " mean="+histogram.getMean()+
+                         " max="+histogram.getMax());
+      System.out.println("p50="+histogram.getPercentile(50)+
+                         " (expected about 5000)");
+      System.out.println("p95="+histogram.getPercentile(95)+
+                         " (expected about 9500)");
+      System.out.println("p99="+histogram.getPercentile(99)+
+                         " (expected about 9900)");
+   }
+}
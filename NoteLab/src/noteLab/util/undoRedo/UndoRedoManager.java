@@ -24,25 +24,73 @@
 
 package noteLab.util.undoRedo;
 
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.Vector;
 
+import noteLab.util.io.noteLab.EditJournal;
 import noteLab.util.settings.SettingsChangedEvent;
 import noteLab.util.settings.SettingsChangedListener;
 import noteLab.util.settings.SettingsKeys;
 import noteLab.util.settings.SettingsManager;
-import noteLab.util.structure.FiniteStack;
+import noteLab.util.settings.SettingsUtilities;
+import noteLab.util.undoRedo.action.CompactableAction;
+import noteLab.util.undoRedo.action.CompoundAction;
 import noteLab.util.undoRedo.action.HistoryAction;
+import noteLab.util.undoRedo.action.JournaledAction;
 import noteLab.util.undoRedo.action.UndoRedoConstants;
 
+/**
+ * Records the actions done to a session so that they can be undone and 
+ * redone.  The history is limited both by the number of actions and by 
+ * the memory the actions use.  Since a single action can be the drawing 
+ * of one dot or the deletion of thousands of strokes, each action 
+ * reports the memory it retains.  Whenever the actions use more memory 
+ * than the memory budget, the oldest actions are discarded.  The last 
+ * action done is never discarded so that it can always be undone.
+ * <br><br>
+ * The actions done during a gesture, such as dragging the eraser across 
+ * the page, are recorded as a single entry.  Thus, the gesture is undone 
+ * in one step and it doesn't push older actions out of the history.
+ * 
+ * @author Dominic Kramer
+ */
 public class UndoRedoManager 
                 implements UndoRedoConstants, 
                            SettingsChangedListener
 {
-   private FiniteStack<UndoRedoAction> undoStack;
-   private FiniteStack<UndoRedoAction> redoStack;
+   /** The actions that can be undone with the most recent action first. */
+   private LinkedList<UndoRedoAction> undoList;
+   
+   /** The actions that can be redone with the next action first. */
+   private LinkedList<UndoRedoAction> redoList;
+   
+   /** The maximum number of actions that can be undone or redone. */
+   private int historySize;
+   
+   /** The number of bytes the actions can use. */
+   private long memoryBudget;
+   
+   /** The estimated number of bytes used by the actions. */
+   private long memoryUsed;
+   
+   /** 
+    * The actions done during the current gesture, in order, or 
+    * <code>null</code> if a gesture isn't in progress.
+    */
+   private Vector<HistoryAction> gestureDoneVec;
+   
+   /** The actions that undo the actions done during the gesture. */
+   private Vector<HistoryAction> gestureUndoVec;
    
    private Vector<UndoRedoListener> listenerVec;
    
+   /** 
+    * The journal in which the actions done, undone, and redone are 
+    * recorded or <code>null</code> if they aren't recorded.
+    */
+   private EditJournal journal;
+   
    public UndoRedoManager(UndoRedoListener listener)
    {
       if (listener == null)
@@ -69,29 +117,17 @@ public class UndoRedoManager
       this.listenerVec = new Vector<UndoRedoListener>();
       addUndoRedoListener(listener);
       
-      try
-      {
-         this.undoStack = 
-            new FiniteStack<UndoRedoAction>(historySize);
-         this.redoStack = 
-            new FiniteStack<UndoRedoAction>(historySize);
-      }
-      catch (OutOfMemoryError error)
-      {
-         StringBuffer buffer = new StringBuffer("The system does not ");
-         buffer.append("have the memory to support a history size of ");
-         buffer.append(historySize);
-         buffer.append(".  The default size of ");
-         buffer.append(DEFAULT_HISTORY_SIZE);
-         buffer.append(" will be used.");
-         
-         this.undoStack = 
-            new FiniteStack<UndoRedoAction>(DEFAULT_HISTORY_SIZE);
-         this.redoStack = 
-            new FiniteStack<UndoRedoAction>(DEFAULT_HISTORY_SIZE);
-         
-         notifyOfWarning(buffer.toString());
-      }
+      this.journal = null;
+      
+      this.undoList = new LinkedList<UndoRedoAction>();
+      this.redoList = new LinkedList<UndoRedoAction>();
+      
+      this.historySize = Math.max(historySize, 0);
+      this.memoryBudget = toBytes(SettingsUtilities.getHistoryMemory());
+      this.memoryUsed = 0;
+      
+      this.gestureDoneVec = null;
+      this.gestureUndoVec = null;
    }
    
    public void addUndoRedoListener(UndoRedoListener listener)
@@ -123,55 +159,289 @@ public class UndoRedoManager
          listener.undoRedoStackWarning(this, message);
    }
    
+   public EditJournal getEditJournal()
+   {
+      return this.journal;
+   }
+   
+   /**
+    * Used to set the journal in which the effects of the actions done, 
+    * undone, and redone are recorded.
+    * 
+    * @param journal The journal to use or <code>null</code> if the 
+    *                actions shouldn't be recorded.
+    */
+   public void setEditJournal(EditJournal journal)
+   {
+      this.journal = journal;
+   }
+   
+   /**
+    * Used to get the number of bytes the actions that can be undone and 
+    * redone can use before the oldest actions are discarded.
+    * 
+    * @return The memory budget in bytes.
+    */
+   public long getMemoryBudget()
+   {
+      return this.memoryBudget;
+   }
+   
+   public void setMemoryBudget(long bytes)
+   {
+      if (bytes < 0)
+         throw new IllegalArgumentException("The memory budget "+bytes+
+                                            " cannot be negative.");
+      
+      this.memoryBudget = bytes;
+      trimHistory();
+   }
+   
+   /**
+    * Used to get the estimated number of bytes used by the actions that 
+    * can be undone and redone.
+    * 
+    * @return The estimated memory used by the actions.
+    */
+   public long getMemoryUsed()
+   {
+      return this.memoryUsed;
+   }
+   
+   private void journal(HistoryAction action)
+   {
+      if (this.journal != null && action instanceof JournaledAction)
+         ((JournaledAction)action).journalInto(this.journal);
+   }
+   
+   /**
+    * Compacts the given action, which has just been run and journaled, 
+    * and updates the memory used by the history to account for the 
+    * change in the size of the given entry.  The entry must already be 
+    * in the history.
+    */
+   private void compact(UndoRedoAction entry, HistoryAction action)
+   {
+      if (action instanceof CompactableAction)
+      {
+         ((CompactableAction)action).compact();
+         this.memoryUsed += entry.updateSize();
+      }
+   }
+   
+   /**
+    * Used to determine if a gesture is in progress.
+    * 
+    * @return <code>true</code> if the actions done are currently 
+    *         combined into a single entry.
+    */
+   public boolean isGestureInProgress()
+   {
+      return this.gestureDoneVec != null;
+   }
+   
+   /**
+    * Starts a gesture.  Until the gesture is {@link #endGesture() ended}, 
+    * the actions done are combined into a single entry of the history.  
+    * If a gesture is already in progress, it is ended first.
+    */
+   public void beginGesture()
+   {
+      endGesture();
+      
+      this.gestureDoneVec = new Vector<HistoryAction>();
+      this.gestureUndoVec = new Vector<HistoryAction>();
+   }
+   
+   /**
+    * Ends the current gesture, if there is one, and records the actions 
+    * done during it as a single entry.  The entry undoes the actions in 
+    * the reverse of the order they were done.
+    */
+   public void endGesture()
+   {
+      if (this.gestureDoneVec == null)
+         return;
+      
+      Vector<HistoryAction> doneVec = this.gestureDoneVec;
+      Vector<HistoryAction> undoVec = this.gestureUndoVec;
+      this.gestureDoneVec = null;
+      this.gestureUndoVec = null;
+      
+      if (doneVec.isEmpty())
+         return;
+      
+      UndoRedoAction action;
+      if (doneVec.size() == 1)
+         action = new UndoRedoAction(undoVec.firstElement(), 
+                                     doneVec.firstElement());
+      else
+      {
+         Collections.reverse(undoVec);
+         action = new UndoRedoAction(new CompoundAction(undoVec), 
+                                     new CompoundAction(doneVec));
+      }
+      
+      pushAction(action);
+   }
+   
    public void actionDone(HistoryAction actionDone, HistoryAction undoAction)
+   {
+      actionDone(actionDone, undoAction, true);
+   }
+   
+   /**
+    * Records that an action has been done.
+    * 
+    * @param actionDone The action that was done.
+    * @param undoAction The action that undoes it.
+    * @param inGesture <code>true</code> if the action is part of the 
+    *                  gesture in progress, if any, and <code>false</code> 
+    *                  if it is recorded as a separate entry.  For example, 
+    *                  an action that completes asynchronously after its 
+    *                  gesture has ended isn't part of the next gesture.
+    */
+   public void actionDone(HistoryAction actionDone, HistoryAction undoAction, 
+                          boolean inGesture)
    {
       if (actionDone == null || undoAction == null)
          throw new NullPointerException();
       
-      this.undoStack.push(new UndoRedoAction(undoAction, actionDone));
-      this.redoStack.clear();
+      if (inGesture && this.gestureDoneVec != null)
+      {
+         // The action is journaled and compacted now since it has just 
+         // been done.  It is added to the history when the gesture ends.
+         if (this.gestureDoneVec.isEmpty())
+         {
+            clearRedoList();
+            notifyOfChange();
+         }
+         
+         this.gestureDoneVec.add(actionDone);
+         this.gestureUndoVec.add(undoAction);
+         
+         journal(actionDone);
+         if (actionDone instanceof CompactableAction)
+            ((CompactableAction)actionDone).compact();
+         
+         return;
+      }
+      
+      clearRedoList();
+      
+      // The action is compacted before its entry is measured since the 
+      // entry's size is only added to the memory used when it is pushed.
+      journal(actionDone);
+      if (actionDone instanceof CompactableAction)
+         ((CompactableAction)actionDone).compact();
+      
+      pushAction(new UndoRedoAction(undoAction, actionDone));
+   }
+   
+   /**
+    * Adds the given entry, whose actions have already been done and 
+    * journaled, to the top of the history.
+    */
+   private void pushAction(UndoRedoAction action)
+   {
+      this.undoList.addFirst(action);
+      this.memoryUsed += action.getSize();
+      
+      if (action.getSize() > this.memoryBudget && this.undoList.size() > 1)
+         notifyOfWarning("The last action uses more memory than the " +
+                         "history can use.  Thus, only it can be undone.");
+      
+      trimHistory();
       
       notifyOfChange();
    }
    
    public boolean canUndo()
    {
-      return !this.undoStack.isEmpty();
+      return !this.undoList.isEmpty() || 
+                (this.gestureDoneVec != null && 
+                   !this.gestureDoneVec.isEmpty());
    }
    
    public void undo()
    {
+      endGesture();
+      
       if (!canUndo())
          return;
       
-      UndoRedoAction topAction = this.undoStack.pop();
-      this.redoStack.push(topAction);
+      UndoRedoAction topAction = this.undoList.removeFirst();
+      this.redoList.addFirst(topAction);
       
       topAction.getUndoAction().run();
+      journal(topAction.getUndoAction());
+      compact(topAction, topAction.getUndoAction());
       notifyOfChange();
    }
    
    public boolean canRedo()
    {
-      return !this.redoStack.isEmpty();
+      return !this.redoList.isEmpty();
    }
    
    public void redo()
    {
+      endGesture();
+      
       if (!canRedo())
          return;
       
-      UndoRedoAction topAction = this.redoStack.pop();
-      this.undoStack.push(topAction);
+      UndoRedoAction topAction = this.redoList.removeFirst();
+      this.undoList.addFirst(topAction);
       
       topAction.getRedoAction().run();
+      journal(topAction.getRedoAction());
+      compact(topAction, topAction.getRedoAction());
       notifyOfChange();
    }
    
+   private void clearRedoList()
+   {
+      for (UndoRedoAction action : this.redoList)
+         this.memoryUsed -= action.getSize();
+      
+      this.redoList.clear();
+   }
+   
+   /**
+    * Discards the oldest actions until the number of actions and the 
+    * memory they use are within the limits of the history.  The actions 
+    * that can be undone are discarded before the actions that can be 
+    * redone, and the most recent action that can be undone is never 
+    * discarded by the memory budget.
+    */
+   private void trimHistory()
+   {
+      while (this.undoList.size() > this.historySize)
+         this.memoryUsed -= this.undoList.removeLast().getSize();
+      
+      while (this.redoList.size() > this.historySize)
+         this.memoryUsed -= this.redoList.removeLast().getSize();
+      
+      while (this.memoryUsed > this.memoryBudget && 
+               this.undoList.size() > 1)
+         this.memoryUsed -= this.undoList.removeLast().getSize();
+      
+      while (this.memoryUsed > this.memoryBudget && 
+               !this.redoList.isEmpty())
+         this.memoryUsed -= this.redoList.removeLast().getSize();
+   }
+   
+   private static long toBytes(int megabytes)
+   {
+      return megabytes*1024L*1024L;
+   }
+   
    private static class UndoRedoAction
    {
       private HistoryAction undoAction;
       private HistoryAction redoAction;
+      private long size;
       
       public UndoRedoAction(HistoryAction undoAction, 
                             HistoryAction redoAction)
@@ -181,6 +451,25 @@ public class UndoRedoManager
          
          this.undoAction = undoAction;
          this.redoAction = redoAction;
+         this.size = 0;
+         
+         updateSize();
+      }
+      
+      /**
+       * Measures the size of this entry again.  An action and the action 
+       * that undoes it typically reference the same strokes.  Thus, their 
+       * sizes aren't added.
+       * 
+       * @return The change in the size of this entry.
+       */
+      public long updateSize()
+      {
+         long oldSize = this.size;
+         this.size = Math.max(this.undoAction.getRetainedSize(), 
+                              this.redoAction.getRetainedSize());
+         
+         return this.size-oldSize;
       }
       
       public HistoryAction getUndoAction()
@@ -192,6 +481,19 @@ public class UndoRedoManager
       {
          return this.redoAction;
       }
+      
+      /**
+       * Used to get the estimated number of bytes retained by this 
+       * entry.  The size is only measured again when the entry's actions 
+       * are compacted so that the memory used by the history can be kept 
+       * exactly.
+       * 
+       * @return The estimated memory retained by this entry.
+       */
+      public long getSize()
+      {
+         return this.size;
+      }
    }
 
    public void settingsChanged(SettingsChangedEvent event)
@@ -205,12 +507,108 @@ public class UndoRedoManager
          Object val = event.getNewValue();
          if (val instanceof Integer)
          {
-            int historySize = (Integer)val;
-            this.undoStack.setSize(historySize);
-            this.redoStack.setSize(historySize);
+            this.historySize = Math.max((Integer)val, 0);
+            trimHistory();
+            
+            notifyOfChange();
+         }
+      }
+      else if (SettingsKeys.HISTORY_MEMORY_KEY.equals(key))
+      {
+         Object val = event.getNewValue();
+         if (val instanceof Integer)
+         {
+            setMemoryBudget(toBytes(Math.max((Integer)val, 0)));
             
             notifyOfChange();
          }
       }
    }
+   
+   /**
+    * Checks that the memory used by the history is kept exactly as 
+    * compactable actions are done, undone, and redone, and that it 
+    * returns to zero once the history is empty.
+    */
+   public static void main(String[] args)
+   {
+      UndoRedoManager manager = new UndoRedoManager(new UndoRedoListener()
+      {
+         public void undoRedoStackWarning(UndoRedoManager manager, 
+                                          String message)
+         {
+         }
+         
+         public void undoRedoStackChanged(UndoRedoManager manager)
+         {
+         }
+      });
+      manager.setMemoryBudget(Long.MAX_VALUE);
+      
+      for (int i=1; i<=3; i++)
+      {
+         manager.actionDone(new TestAction(), new TestAction(), false);
+         checkMemoryUsed(manager, i*TestAction.COMPACTED_SIZE);
+      }
+      
+      manager.undo();
+      manager.undo();
+      manager.redo();
+      checkMemoryUsed(manager, 3*TestAction.COMPACTED_SIZE);
+      
+      // the entry that could be redone is discarded
+      manager.actionDone(new TestAction(), new TestAction(), false);
+      checkMemoryUsed(manager, 3*TestAction.COMPACTED_SIZE);
+      
+      manager.beginGesture();
+      manager.actionDone(new TestAction(), new TestAction());
+      manager.actionDone(new TestAction(), new TestAction());
+      manager.endGesture();
+      manager.undo();
+      checkMemoryUsed(manager, 5*TestAction.COMPACTED_SIZE+ACTION_SIZE);
+      
+      manager.settingsChanged(
+         new SettingsChangedEvent(SettingsKeys.HISTORY_SIZE_KEY, null, 0));
+      checkMemoryUsed(manager, 0);
+      
+      System.out.println("The memory used by the history was kept exactly.");
+   }
+   
+   private static void checkMemoryUsed(UndoRedoManager manager, long bytes)
+   {
+      if (manager.getMemoryUsed() != bytes)
+         throw new IllegalStateException("The history uses "+
+                                         manager.getMemoryUsed()+
+                                         " bytes instead of "+bytes+
+                                         " bytes.");
+   }
+   
+   /** An action whose retained size grows when it is compacted. */
+   private static class TestAction implements HistoryAction, 
+                                              CompactableAction
+   {
+      private static final long SIZE = 100;
+      private static final long COMPACTED_SIZE = 1000;
+      
+      private long size;
+      
+      public TestAction()
+      {
+         this.size = SIZE;
+      }
+      
+      public long getRetainedSize()
+      {
+         return this.size;
+      }
+      
+      public void run()
+      {
+      }
+      
+      public void compact()
+      {
+         this.size = COMPACTED_SIZE;
+      }
+   }
 }
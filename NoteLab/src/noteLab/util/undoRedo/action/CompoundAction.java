@@ -0,0 +1,91 @@
+/*
+ *  NoteLab:  An advanced note taking application for pen-enabled platforms
+ *  
+ *  Copyright (C) 2006, Dominic Kramer
+ *  
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, write to the Free Software Foundation, Inc.,
+ *  51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *  
+ *  For any questions or comments please contact:  
+ *    Dominic Kramer
+ *    kramerd@iastate.edu
+ */
+
+package noteLab.util.undoRedo.action;
+
+import java.util.List;
+import java.util.Vector;
+
+import noteLab.util.io.noteLab.EditJournal;
+
+/**
+ * Runs a sequence of actions, in order, as a single action.  This is 
+ * used to record everything done during a single gesture, such as 
+ * erasing, as one entry in the undo history.
+ * 
+ * @author Dominic Kramer
+ */
+public class CompoundAction implements HistoryAction, 
+                                       JournaledAction, 
+                                       CompactableAction
+{
+   private Vector<HistoryAction> actionVec;
+   
+   /**
+    * Constructs an action that runs the given actions in order.
+    * 
+    * @param actions The actions to run.
+    */
+   public CompoundAction(List<HistoryAction> actions)
+   {
+      if (actions == null)
+         throw new NullPointerException();
+      
+      this.actionVec = new Vector<HistoryAction>(actions);
+   }
+   
+   public int getNumActions()
+   {
+      return this.actionVec.size();
+   }
+   
+   public long getRetainedSize()
+   {
+      long size = UndoRedoConstants.ACTION_SIZE;
+      for (HistoryAction action : this.actionVec)
+         size += action.getRetainedSize();
+      
+      return size;
+   }
+   
+   public void run()
+   {
+      for (HistoryAction action : this.actionVec)
+         action.run();
+   }
+   
+   public void journalInto(EditJournal journal)
+   {
+      for (HistoryAction action : this.actionVec)
+         if (action instanceof JournaledAction)
+            ((JournaledAction)action).journalInto(journal);
+   }
+   
+   public void compact()
+   {
+      for (HistoryAction action : this.actionVec)
+         if (action instanceof CompactableAction)
+            ((CompactableAction)action).compact();
+   }
+}
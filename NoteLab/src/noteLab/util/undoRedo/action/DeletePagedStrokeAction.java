@@ -31,8 +31,11 @@ import java.util.Vector;
 import noteLab.model.Page;
 import noteLab.model.Stroke;
 import noteLab.model.canvas.CompositeCanvas;
+import noteLab.util.io.noteLab.EditJournal;
 
-public class DeletePagedStrokeAction extends CanvasAction
+public class DeletePagedStrokeAction extends CanvasAction 
+                                     implements JournaledAction, 
+                                                CompactableAction
 {
    private Vector<DeleteStrokeAction> delStrokeActionVec;
    
@@ -69,6 +72,27 @@ public class DeletePagedStrokeAction extends CanvasAction
       for (DeleteStrokeAction action : this.delStrokeActionVec)
          action.run();
    }
+   
+   public long getRetainedSize()
+   {
+      long size = UndoRedoConstants.ACTION_SIZE;
+      for (DeleteStrokeAction action : this.delStrokeActionVec)
+         size += action.getRetainedSize();
+      
+      return size;
+   }
+   
+   public void compact()
+   {
+      for (DeleteStrokeAction action : this.delStrokeActionVec)
+         action.compact();
+   }
+   
+   public void journalInto(EditJournal journal)
+   {
+      for (DeleteStrokeAction action : this.delStrokeActionVec)
+         action.journalInto(journal);
+   }
 }
 
 /*
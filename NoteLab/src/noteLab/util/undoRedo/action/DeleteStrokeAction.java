@@ -31,8 +31,11 @@ import noteLab.model.Page;
 import noteLab.model.Stroke;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.geom.RectangleUnioner;
+import noteLab.util.io.noteLab.EditJournal;
 
-public class DeleteStrokeAction extends CanvasAction
+public class DeleteStrokeAction extends CanvasAction 
+                                implements JournaledAction, 
+                                           CompactableAction
 {
    private Vector<Stroke> strokeVec;
    private Page page;
@@ -85,4 +88,35 @@ public class DeleteStrokeAction extends CanvasAction
                                     (float)union.getHeight(), 
                                     maxWidth);
    }
+   
+   public long getRetainedSize()
+   {
+      // Strokes that aren't packed are part of the session and are only 
+      // referenced by this action.
+      long size = UndoRedoConstants.ACTION_SIZE;
+      for (Stroke stroke : this.strokeVec)
+      {
+         if (stroke.isPacked())
+            size += stroke.getEstimatedSize();
+         else
+            size += UndoRedoConstants.REFERENCE_SIZE;
+      }
+      
+      return size;
+   }
+   
+   /**
+    * Packs the deleted strokes since they are only needed again if this 
+    * action is undone.
+    */
+   public void compact()
+   {
+      for (Stroke stroke : this.strokeVec)
+         stroke.pack();
+   }
+   
+   public void journalInto(EditJournal journal)
+   {
+      journal.strokesRemoved(this.strokeVec);
+   }
 }
@@ -31,8 +31,10 @@ import java.util.Vector;
 import noteLab.model.Page;
 import noteLab.model.Stroke;
 import noteLab.model.canvas.CompositeCanvas;
+import noteLab.util.io.noteLab.EditJournal;
 
-public class DrawPagedStrokeAction extends CanvasAction
+public class DrawPagedStrokeAction extends CanvasAction 
+                                   implements JournaledAction
 {
    private Vector<DrawStrokeAction> drawStrokeActionVec;
    
@@ -69,5 +71,20 @@ public class DrawPagedStrokeAction extends CanvasAction
       for (DrawStrokeAction action : this.drawStrokeActionVec)
          action.run();
    }
+   
+   public long getRetainedSize()
+   {
+      long size = UndoRedoConstants.ACTION_SIZE;
+      for (DrawStrokeAction action : this.drawStrokeActionVec)
+         size += action.getRetainedSize();
+      
+      return size;
+   }
+   
+   public void journalInto(EditJournal journal)
+   {
+      for (DrawStrokeAction action : this.drawStrokeActionVec)
+         action.journalInto(journal);
+   }
 
 }
@@ -31,8 +31,9 @@ import noteLab.model.Page;
 import noteLab.model.Stroke;
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.geom.RectangleUnioner;
+import noteLab.util.io.noteLab.EditJournal;
 
-public class DrawStrokeAction extends CanvasAction
+public class DrawStrokeAction extends CanvasAction implements JournaledAction
 {
    private Vector<Stroke> strokeVec;
    private Page page;
@@ -75,6 +76,7 @@ public class DrawStrokeAction extends CanvasAction
       float maxWidth = 0;
       for (Stroke stroke : this.strokeVec)
       {
+         stroke.unpack();
          stroke.scaleTo(zoomLevel, zoomLevel);
          this.page.addStroke(stroke);
          stroke.setSelected(false);
@@ -91,4 +93,25 @@ public class DrawStrokeAction extends CanvasAction
                       (float)union.getHeight(), 
                       maxWidth);
    }
+   
+   public long getRetainedSize()
+   {
+      // Strokes that aren't packed are part of the session and are only 
+      // referenced by this action.
+      long size = UndoRedoConstants.ACTION_SIZE;
+      for (Stroke stroke : this.strokeVec)
+      {
+         if (stroke.isPacked())
+            size += stroke.getEstimatedSize();
+         else
+            size += UndoRedoConstants.REFERENCE_SIZE;
+      }
+      
+      return size;
+   }
+   
+   public void journalInto(EditJournal journal)
+   {
+      journal.strokesAdded(this.page, this.strokeVec);
+   }
 }
@@ -26,4 +26,13 @@ package noteLab.util.undoRedo.action;
 
 public interface HistoryAction extends Runnable
 {
+   /**
+    * Used to get the estimated number of bytes of memory that this 
+    * action keeps from being reclaimed, including the strokes it 
+    * references.  The undo history uses this size to limit the memory 
+    * it uses.
+    * 
+    * @return The estimated memory retained by this action.
+    */
+   public long getRetainedSize();
 }
@@ -49,6 +49,11 @@ public class PenAction implements HistoryAction
       this.scaleFactor = this.pen.getScaleLevel();
    }
    
+   public long getRetainedSize()
+   {
+      return UndoRedoConstants.ACTION_SIZE;
+   }
+   
    public void run()
    {
       this.pen.setColor(this.color);
@@ -25,10 +25,18 @@
 package noteLab.util.undoRedo.action;
 
 import noteLab.model.Stroke;
+import noteLab.model.tool.Pen;
 
 public class StrokeAction implements HistoryAction
 {
    private Stroke stroke;
+   
+   /**
+    * The stroke's pen if it is shared, and thus, cannot be modified, 
+    * or <code>null</code> if the stroke's pen is restored by the 
+    * pen action.
+    */
+   private Pen sharedPen;
    private PenAction penAction;
    private float xScale;
    private float yScale;
@@ -39,7 +47,18 @@ public class StrokeAction implements HistoryAction
          throw new NullPointerException();
       
       this.stroke = stroke;
-      this.penAction = new PenAction(this.stroke.getPen());
+      
+      Pen pen = this.stroke.getPen();
+      if (pen.getTable() != null)
+      {
+         this.sharedPen = pen;
+         this.penAction = null;
+      }
+      else
+      {
+         this.sharedPen = null;
+         this.penAction = new PenAction(pen);
+      }
       
       this.xScale = this.stroke.getXScaleLevel();
       this.yScale = this.stroke.getYScaleLevel();
@@ -51,9 +70,22 @@ public class StrokeAction implements HistoryAction
       return this.stroke;
    }
 
+   public long getRetainedSize()
+   {
+      long size = UndoRedoConstants.ACTION_SIZE+
+                     this.stroke.getEstimatedSize();
+      if (this.penAction != null)
+         size += this.penAction.getRetainedSize();
+      
+      return size;
+   }
+   
    public void run()
    {
       this.stroke.scaleTo(this.xScale, this.yScale);
-      this.penAction.run();
+      if (this.penAction != null)
+         this.penAction.run();
+      else
+         this.stroke.setPen(this.sharedPen);
    }
 }
@@ -24,24 +24,57 @@
 
 package noteLab.util.undoRedo.action;
 
+import java.util.List;
+import java.util.Vector;
+
 import noteLab.model.canvas.CompositeCanvas;
 import noteLab.util.geom.Transformable;
 
+/**
+ * Scales and then translates a list of items by fixed amounts.  Only 
+ * references to the items and the change in their scale and location 
+ * are stored instead of the items' absolute scale and location.  Thus, 
+ * running this action takes time proportional to the number of items it 
+ * affects, and the action that undoes it is simply its 
+ * {@link #getInverse() inverse}.
+ * 
+ * @author Dominic Kramer
+ */
 public class TransformAction extends CanvasAction
 {
-   private Transformable transformer;
+   private Vector<Transformable> itemVec;
    private float xScale;
    private float yScale;
    private float xTrans;
    private float yTrans;
    
-   public TransformAction(CompositeCanvas canvas, Transformable transformer, 
+   /**
+    * Constructs an action that transforms the given items.
+    * 
+    * @param canvas The canvas containing the items.
+    * @param items The items to transform.
+    * @param xScale The amount to scale the items by in the x direction.
+    * @param yScale The amount to scale the items by in the y direction.
+    * @param xTrans The amount to translate the items by in the x 
+    *               direction after they are scaled.
+    * @param yTrans The amount to translate the items by in the y 
+    *               direction after they are scaled.
+    */
+   public TransformAction(CompositeCanvas canvas, 
+                          List<? extends Transformable> items, 
                           float xScale, float yScale, 
                           float xTrans, float yTrans)
    {
       super(canvas);
       
-      this.transformer = transformer;
+      if (items == null)
+         throw new NullPointerException();
+      
+      if (xScale == 0 || yScale == 0)
+         throw new IllegalArgumentException("An action cannot scale " +
+                                            "items by zero.");
+      
+      this.itemVec = new Vector<Transformable>(items);
       
       this.xScale = xScale;
       this.yScale = yScale;
@@ -49,10 +82,40 @@ public class TransformAction extends CanvasAction
       this.yTrans = yTrans;
    }
    
+   /**
+    * Used to get the action that undoes this action.  If this action maps 
+    * a point <code>p</code> to <code>s*p+t</code>, the inverse scales 
+    * by <code>1/s</code> and then translates by <code>-t/s</code>.
+    * 
+    * @return The inverse of this action.
+    */
+   public TransformAction getInverse()
+   {
+      return new TransformAction(getCompositeCanvas(), this.itemVec, 
+                                 1/this.xScale, 1/this.yScale, 
+                                 -this.xTrans/this.xScale, 
+                                 -this.yTrans/this.yScale);
+   }
+   
+   public long getRetainedSize()
+   {
+      return UndoRedoConstants.ACTION_SIZE+
+                UndoRedoConstants.REFERENCE_SIZE*this.itemVec.size();
+   }
+   
    public void run()
    {
-      this.transformer.scaleTo(this.xScale, this.yScale);
-      this.transformer.translateTo(this.xTrans, this.yTrans);
+      boolean scale = (this.xScale != 1 || this.yScale != 1);
+      boolean translate = (this.xTrans != 0 || this.yTrans != 0);
+      
+      for (Transformable item : this.itemVec)
+      {
+         if (scale)
+            item.scaleBy(this.xScale, this.yScale);
+         
+         if (translate)
+            item.translateBy(this.xTrans, this.yTrans);
+      }
       
       getCompositeCanvas().redraw();
    }
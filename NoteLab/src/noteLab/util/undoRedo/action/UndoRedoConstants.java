@@ -26,5 +26,21 @@ package noteLab.util.undoRedo.action;
 
 public interface UndoRedoConstants
 {
-   public static final int DEFAULT_HISTORY_SIZE = 25;
+   /** The maximum number of actions that can be undone by default. */
+   public static final int DEFAULT_HISTORY_SIZE = 500;
+   
+   /** 
+    * The number of megabytes the actions that can be undone and redone 
+    * can use by default before the oldest actions are discarded.
+    */
+   public static final int DEFAULT_HISTORY_MEMORY = 32;
+   
+   /** 
+    * The estimated number of bytes used by an action without the 
+    * strokes it references.
+    */
+   public static final long ACTION_SIZE = 64;
+   
+   /** The number of bytes used to reference an object. */
+   public static final long REFERENCE_SIZE = 8;
 }